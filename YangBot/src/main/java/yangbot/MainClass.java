@@ -7,7 +7,10 @@ import rlbot.pyinterop.SocketServer;
 import yangbot.cpp.YangBotCppInterop;
 import yangbot.optimizers.model.ModelUtils;
 import yangbot.path.navmesh.Graph;
+import yangbot.path.navmesh.Landmarks;
+import yangbot.path.navmesh.NavmeshCache;
 import yangbot.path.navmesh.Navigator;
+import yangbot.path.navmesh.NavigatorLut;
 import yangbot.strategy.abstraction.DriveDodgeStrikeAbstraction;
 import yangbot.util.Tuple;
 import yangbot.util.io.LEDataInputStream;
@@ -240,9 +243,6 @@ public class MainClass {
             final Thread t = Thread.currentThread();
             t.setPriority(1);
             final int[] parameters = new int[4];
-            final List<Graph.Edge> edges = new ArrayList<>();
-            final List<Vector3> nav_nodes = new ArrayList<>();
-            final List<Vector3> nav_normals = new ArrayList<>();
             final String navmeshPrefix = "soccar";
 
             long startMs = System.currentTimeMillis();
@@ -256,47 +256,75 @@ public class MainClass {
             log.fine("Read parameters");
             Thread.sleep(0);
             long ms = System.currentTimeMillis();
-            {
 
-                var para = Objects.requireNonNull(cl.getResourceAsStream(navmeshPrefix + "_navigation_edges.bin"));
-                byte[] allData = para.readNBytes(para.available());
-                assert para.available() <= 0 : "This java version broke or sum";
-                assert allData.length % 12 == 0;
-                for (int i = 0; i < allData.length; i += 12) { // This is terrible code, but at least it loads the navmesh within 200ms
-                    // Basically the code pasted from LEDataInputStream
-                    edges.add(new Graph.Edge(((allData[i] & 255) + ((allData[i + 1] & 255) << 8) + ((allData[i + 2] & 255) << 16) + ((allData[i + 3] & 255) << 24)),
-                            ((allData[i + 4] & 255) + ((allData[i + 5] & 255) << 8) + ((allData[i + 6] & 255) << 16) + ((allData[i + 7] & 255) << 24)),
-                            Float.intBitsToFloat((allData[i + 8] & 255) + ((allData[i + 9] & 255) << 8) + ((allData[i + 10] & 255) << 16) + ((allData[i + 11] & 255) << 24))));
+            NavmeshCache.Navmesh navmesh = null;
+            try {
+                navmesh = NavmeshCache.load(cl, navmeshPrefix + "_navmesh.ynav");
+                if (navmesh != null && navmesh.numDirections != parameters[2]) {
+                    log.warning("Navmesh cache has " + navmesh.numDirections + " directions, expected " + parameters[2]);
+                    navmesh = null;
                 }
+            } catch (IllegalStateException e) {
+                log.warning("Ignoring navmesh cache: " + e.getMessage());
             }
-            log.fine("Read NAV_GRAPH(" + edges.size() + ") " + (System.currentTimeMillis() - ms) + "ms");
-            Thread.sleep(0);
-            ms = System.currentTimeMillis();
-            {
-                LEDataInputStream para = new LEDataInputStream(cl.getResourceAsStream(navmeshPrefix + "_navigation_nodes.bin"));
-                while (para.available() > 0) {
-                    Vector3 vec = new Vector3(para.readFloatLE(), para.readFloatLE(), para.readFloatLE());
-                    if (vec.z <= 15)
-                        vec = vec.withZ(15);
-                    nav_nodes.add(vec);
+
+            if (navmesh != null) {
+                log.fine("Read navmesh cache(" + navmesh.graph.getNumEdges() + ") " + (System.currentTimeMillis() - ms) + "ms");
+            } else {
+                // Old format, see NavmeshCache.main for converting it
+                final Graph.Edge[] edges;
+                try (var para = Objects.requireNonNull(cl.getResourceAsStream(navmeshPrefix + "_navigation_edges.bin"), "Neither " + navmeshPrefix + "_navmesh.ynav nor " + navmeshPrefix + "_navigation_edges.bin are in the resources, see NavmeshCache")) {
+                    edges = NavmeshCache.readLegacyEdges(para);
+                }
+                log.fine("Read NAV_GRAPH(" + edges.length + ") " + (System.currentTimeMillis() - ms) + "ms");
+                Thread.sleep(0);
+                ms = System.currentTimeMillis();
+                final Vector3[] nav_nodes;
+                try (var para = Objects.requireNonNull(cl.getResourceAsStream(navmeshPrefix + "_navigation_nodes.bin"))) {
+                    nav_nodes = NavmeshCache.readLegacyVectors(para, true);
                 }
+                log.fine("Read NAV_NODES(" + nav_nodes.length + ") " + (System.currentTimeMillis() - ms) + "ms");
+                Thread.sleep(0);
+                ms = System.currentTimeMillis();
+                final Vector3[] nav_normals;
+                try (var para = Objects.requireNonNull(cl.getResourceAsStream(navmeshPrefix + "_navigation_normals.bin"))) {
+                    nav_normals = NavmeshCache.readLegacyVectors(para, false);
+                }
+                log.fine("Read NAV_NORMALS(" + nav_normals.length + ") " + (System.currentTimeMillis() - ms) + "ms");
+                Thread.sleep(0);
+                navmesh = new NavmeshCache.Navmesh(new Graph(edges), nav_nodes, nav_normals, parameters[2]);
             }
-            log.fine("Read NAV_NODES(" + nav_nodes.size() + ") " + (System.currentTimeMillis() - ms) + "ms");
-            Thread.sleep(0);
             ms = System.currentTimeMillis();
-            {
-                LEDataInputStream para = new LEDataInputStream(cl.getResourceAsStream(navmeshPrefix + "_navigation_normals.bin"));
-                while (para.available() > 0) {
-                    nav_normals.add(new Vector3(para.readFloatLE(), para.readFloatLE(), para.readFloatLE()));
+
+            // Optional A* heuristic, see Landmarks.main for making one
+            try {
+                final Landmarks landmarks = Landmarks.load(cl, navmeshPrefix + "_navmesh.ylmk");
+                if (landmarks != null) {
+                    navmesh.graph.setLandmarks(landmarks);
+                    log.fine("Read landmarks(" + landmarks.getNumLandmarks() + ") " + (System.currentTimeMillis() - ms) + "ms");
                 }
+            } catch (IllegalStateException e) {
+                log.warning("Ignoring landmarks: " + e.getMessage());
             }
-            log.fine("Read NAV_NORMALS(" + nav_normals.size() + ") " + (System.currentTimeMillis() - ms) + "ms");
-            Thread.sleep(0);
             ms = System.currentTimeMillis();
 
-            Navigator.initStatics(parameters, null, null, edges.toArray(new Graph.Edge[0]), nav_nodes.toArray(new Vector3[0]), nav_normals.toArray(new Vector3[0]));
+            Navigator.initStatics(parameters, navmesh.graph, navmesh.nodes, navmesh.normals);
 
             log.fine("Navigator-Init in " + (System.currentTimeMillis() - ms) + "ms");
+            ms = System.currentTimeMillis();
+
+            // Optional, see NavigatorLutGenerator for making one
+            try {
+                final NavigatorLut lut = NavigatorLut.load(cl, navmeshPrefix + "_navigation_lut.ylut");
+                if (lut != null && lut.ntheta != parameters[2]) {
+                    log.warning("Navigator LUT has " + lut.ntheta + " directions, expected " + parameters[2]);
+                } else if (lut != null) {
+                    Navigator.setLut(lut);
+                    log.fine("Read navigator LUT(" + lut.numStates() + ") " + (System.currentTimeMillis() - ms) + "ms");
+                }
+            } catch (IllegalStateException e) {
+                log.warning("Ignoring navigator LUT: " + e.getMessage());
+            }
             log.info("Done after " + (System.currentTimeMillis() - startMs) + "ms");
 
             System.gc();
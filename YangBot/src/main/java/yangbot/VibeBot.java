@@ -18,6 +18,7 @@ import yangbot.strategy.manuever.Maneuver;
 import yangbot.strategy.manuever.kickoff.KickoffTester;
 import yangbot.strategy.manuever.kickoff.SimpleKickoffManeuver;
 import yangbot.util.AdvancedRenderer;
+import yangbot.util.BallPredictionManager;
 import yangbot.util.YangBallPrediction;
 import yangbot.util.math.MathUtils;
 
@@ -36,6 +37,7 @@ public class VibeBot implements Bot {
     private float lastTick = -1;
     private Maneuver kickoffManeuver = null;
     private Strategy currentPlan = null;
+    private final BallPredictionManager ballPredictionManager = BallPredictionManager.createIfEnabled(RLConstants.tickRate, 5); // null: use the native prediction
     private boolean hasSetPriority = false;
     private String oldStrat = "";
 
@@ -57,7 +59,9 @@ public class VibeBot implements Bot {
         CarData car = input.car;
         BallData ball = input.ball;
         {
-            gameData.update(input.car, new ImmutableBallData(input.ball), input.allCars, input.gameInfo, dt, renderer, YangBotJNAInterop.getBallPrediction(ball, RLConstants.tickRate, 5f));
+            final ImmutableBallData immutableBall = new ImmutableBallData(input.ball);
+            final YangBallPrediction ballPrediction = this.ballPredictionManager != null ? this.ballPredictionManager.update(immutableBall) : YangBotJNAInterop.getBallPrediction(ball, RLConstants.tickRate, 5f);
+            gameData.update(input.car, immutableBall, input.allCars, input.gameInfo, dt, renderer, ballPrediction);
         }
 
         drawDebugLines(input, gameData.getCarData());
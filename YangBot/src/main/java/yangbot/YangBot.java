@@ -15,7 +15,9 @@ import yangbot.strategy.manuever.Maneuver;
 import yangbot.strategy.manuever.kickoff.KickoffTester;
 import yangbot.strategy.manuever.kickoff.SimpleKickoffManeuver;
 import yangbot.util.AdvancedRenderer;
+import yangbot.util.BallPredictionManager;
 import yangbot.util.YangBallPrediction;
+import yangbot.util.profiling.TickProfiler;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -33,12 +35,15 @@ public class YangBot implements Bot {
     private Maneuver kickoffManeuver = null;
     private Strategy currentPlan = null;
     private boolean hasSetPriority = false;
+    private final DataPacketPool packetPool;
+    private final BallPredictionManager ballPredictionManager = BallPredictionManager.createIfEnabled(RLConstants.tickRate, 6); // null: use RLBot's prediction
     private String oldStrat = "";
 
     private boolean renderingActive = true;
 
     public YangBot(int playerIndex) {
         this.playerIndex = playerIndex;
+        this.packetPool = new DataPacketPool(playerIndex);
 
     }
 
@@ -50,12 +55,19 @@ public class YangBot implements Bot {
             renderer = new DummyRenderer(this.playerIndex);
 
         final GameData gameData = GameData.current();
+        final TickProfiler profiler = TickProfiler.current();
 
         CarData car = input.car;
         BallData ball = input.ball;
-        gameData.update(input.car, new ImmutableBallData(input.ball), input.allCars, input.gameInfo, dt, renderer, YangBallPrediction.get());
+        long phaseStart = profiler.start();
+        final ImmutableBallData immutableBall = new ImmutableBallData(input.ball);
+        final YangBallPrediction ballPrediction = this.ballPredictionManager != null ? this.ballPredictionManager.update(immutableBall) : YangBallPrediction.get();
+        phaseStart = profiler.next(TickProfiler.Phase.BALL_PREDICTION, phaseStart);
+        gameData.update(input.car, immutableBall, input.allCars, input.gameInfo, dt, renderer, ballPrediction);
+        phaseStart = profiler.next(TickProfiler.Phase.GAME_DATA, phaseStart);
 
         drawDebugLines(input, gameData.getCarData());
+        phaseStart = profiler.accumulate(TickProfiler.Phase.RENDER, phaseStart);
         ControlsOutput output = new ControlsOutput();
 
         switch (state) {
@@ -100,11 +112,14 @@ public class YangBot implements Bot {
                 this.currentPlan.step(dt, output);
             }
         }
+        phaseStart = profiler.next(TickProfiler.Phase.STRATEGY, phaseStart);
 
         car.hitbox.draw(renderer, car.position, 1, Color.GREEN);
+        phaseStart = profiler.accumulate(TickProfiler.Phase.RENDER, phaseStart);
 
         if (car.hasWheelContact && output.holdBoost() && car.forward().dot(car.velocity) >= CarData.MAX_VELOCITY - 20)
             output.withBoost(false);
+        phaseStart = profiler.next(TickProfiler.Phase.OUTPUT, phaseStart);
 
         // Print Throttle info
         {
@@ -131,6 +146,7 @@ public class YangBot implements Bot {
             }
             renderer.drawControlsOutput(output, 440);
         }
+        profiler.accumulate(TickProfiler.Phase.RENDER, phaseStart);
 
         return output;
     }
@@ -177,6 +193,9 @@ public class YangBot implements Bot {
         if (GameData.timeOfMatchStart < 0)
             GameData.timeOfMatchStart = packet.gameInfo().secondsElapsed();
 
+        final TickProfiler profiler = TickProfiler.current();
+        final long tickStart = profiler.start();
+
         AdvancedRenderer r;
         if (playerIndex == 0 || playerIndex == 3)
             r = AdvancedRenderer.forBotLoop(this);
@@ -189,7 +208,7 @@ public class YangBot implements Bot {
 
         BoostManager.loadGameTickPacket(packet);
 
-        DataPacket dataPacket = new DataPacket(packet, playerIndex);
+        DataPacket dataPacket = this.packetPool.next(packet);
 
         {
             var quickchats = this.receiveQuickChat(dataPacket.car);
@@ -223,21 +242,21 @@ public class YangBot implements Bot {
         }
 
         ControlsOutput controlsOutput = new ControlsOutput();
+        profiler.end(TickProfiler.Phase.PACKET, tickStart);
 
-        //long t = System.nanoTime();
         try {
             controlsOutput = processInput(dataPacket);
         } catch (Exception | AssertionError e) {
             System.out.print("index=" + this.playerIndex + ": ");
             e.printStackTrace();
         }
-        //if(dataPacket.car.playerIndex == 0 || dataPacket.car.playerIndex == 3)
-        //System.out.println("ms: "+((System.nanoTime() - t)*0.000001f));
-
 
         lastTick = dataPacket.gameInfo.secondsElapsed();
 
+        final long renderStart = profiler.start();
         r.finishAndSendIfDifferent();
+        profiler.accumulate(TickProfiler.Phase.RENDER, renderStart);
+        profiler.endTick(tickStart);
         return controlsOutput;
     }
 
@@ -9,14 +9,11 @@ import rlbot.cppinterop.ByteBufferStruct;
 import yangbot.MainClass;
 import yangbot.input.BallData;
 import yangbot.input.CarData;
-import yangbot.input.ImmutableBallData;
 import yangbot.path.Curve;
 import yangbot.util.YangBallPrediction;
 import yangbot.util.math.vector.Vector3;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 public class YangBotJNAInterop {
@@ -29,33 +26,62 @@ public class YangBotJNAInterop {
         Native.register(libName);
     }
 
-    private static Memory getMemory(byte[] protoBytes) {
-        if (protoBytes.length == 0)
-            return new Memory(1);
+    private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Per-thread buffers reused by every call, so a call doesn't allocate a builder or native input memory.
+     * Results handed back to the caller are copied, everything else is read straight from native memory before it is freed.
+     */
+    static final class Scratch {
+        final FlatBufferBuilder builder = new FlatBufferBuilder(256);
+        private final Memory[] inputs = new Memory[2];
+        private final FlatPhysics physics = new FlatPhysics();
+
+        // Copies the finished flatbuffer into native memory slot, the slot only grows
+        Memory finish(int slot, int root) {
+            this.builder.finish(root);
+            final ByteBuffer data = this.builder.dataBuffer();
+            final int size = data.remaining();
+
+            Memory memory = this.inputs[slot];
+            if (memory == null || memory.size() < size) {
+                memory = new Memory(Math.max(size, 256));
+                this.inputs[slot] = memory;
+            }
+            memory.write(0, data.array(), data.arrayOffset() + data.position(), size);
+            this.builder.clear();
+            return memory;
+        }
+    }
 
-        final Memory mem = new Memory(protoBytes.length);
-        mem.write(0, protoBytes, 0, protoBytes.length);
-        return mem;
+    // Copies a native result into a buffer owned by the caller and frees the native memory
+    private static ByteBuffer copyResult(ByteBufferStruct struct) {
+        final ByteBuffer result = ByteBuffer.allocate(struct.size);
+        result.put(struct.ptr.getByteBuffer(0, struct.size));
+        result.flip();
+        Free(struct.ptr);
+        return result;
+    }
+
+    // Frees empty results, returns true if there is something to read
+    private static boolean hasResult(ByteBufferStruct struct) {
+        if (struct.size < 4) {
+            if (struct.size > 0)
+                Free(struct.ptr);
+            return false;
+        }
+        return true;
     }
 
     public static Optional<yangbot.cpp.FlatCarCollisionInfo> simulateCarWallCollision(CarData carData) {
         try {
-            FlatBufferBuilder builder = new FlatBufferBuilder(128);
-
-            builder.finish(carData.makeFlat(builder));
-
-            final byte[] proto = builder.sizedByteArray();
-            final Memory memory = getMemory(proto);
+            final Scratch s = scratch.get();
+            final Memory memory = s.finish(0, carData.makeFlat(s.builder));
 
             final ByteBufferStruct struct = simulateCarCollision(memory);
-            if (struct.size < 4) {
-                if (struct.size > 0)
-                    Free(struct.ptr);
+            if (!hasResult(struct))
                 return Optional.empty();
-            }
-            final byte[] protoBytes = struct.ptr.getByteArray(0, struct.size);
-            Free(struct.ptr);
-            return Optional.ofNullable(yangbot.cpp.FlatCarCollisionInfo.getRootAsFlatCarCollisionInfo(ByteBuffer.wrap(protoBytes)));
+            return Optional.ofNullable(yangbot.cpp.FlatCarCollisionInfo.getRootAsFlatCarCollisionInfo(copyResult(struct)));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -64,22 +90,13 @@ public class YangBotJNAInterop {
 
     public static Optional<yangbot.cpp.FlatCarData> simulateSimpleCar(CarData carData, float time) {
         try {
-            FlatBufferBuilder builder = new FlatBufferBuilder(128);
-
-            builder.finish(carData.makeFlat(builder));
-
-            final byte[] proto = builder.sizedByteArray();
-            final Memory memory = getMemory(proto);
+            final Scratch s = scratch.get();
+            final Memory memory = s.finish(0, carData.makeFlat(s.builder));
 
             final ByteBufferStruct struct = simulateSimpleCar(memory, time);
-            if (struct.size < 4) {
-                if (struct.size > 0)
-                    Free(struct.ptr);
+            if (!hasResult(struct))
                 return Optional.empty();
-            }
-            final byte[] protoBytes = struct.ptr.getByteArray(0, struct.size);
-            Free(struct.ptr);
-            return Optional.ofNullable(yangbot.cpp.FlatCarData.getRootAsFlatCarData(ByteBuffer.wrap(protoBytes)));
+            return Optional.ofNullable(yangbot.cpp.FlatCarData.getRootAsFlatCarData(copyResult(struct)));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -87,46 +104,44 @@ public class YangBotJNAInterop {
     }
 
     public static YangBallPrediction getBallPrediction(BallData ballData, int tickrate, float time) {
-        Memory ballMemory;
-        {
-            FlatBufferBuilder builder = new FlatBufferBuilder(128);
-
-            builder.finish(ballData.makeFlatPhysics(builder));
-
-            final byte[] proto = builder.sizedByteArray();
-            ballMemory = getMemory(proto);
-        }
+        final Scratch s = scratch.get();
+        final Memory ballMemory = s.finish(0, ballData.makeFlatPhysics(s.builder));
 
         final ByteBufferStruct struct = simulateBall(ballMemory, tickrate, time);
-        if (struct.size < 4) {
-            if (struct.size > 0)
-                Free(struct.ptr);
-
+        if (!hasResult(struct)) {
             if (MainClass.BOT_TYPE == MainClass.BotType.SCENARIO)
                 assert false : "YangBotCppInterop.init((byte) 0, (byte) 0); has not been called!!!";
             else
                 System.out.println("YangBotCppInterop.init((byte) 0, (byte) 0); has not been called!!!");
             return YangBallPrediction.empty();
         }
-        final byte[] protoBytes = struct.ptr.getByteArray(0, struct.size);
-        Free(struct.ptr);
-        FlatPhysicsPrediction flatPrediction = FlatPhysicsPrediction.getRootAsFlatPhysicsPrediction(ByteBuffer.wrap(protoBytes));
 
-        float tickFreq = 1f / tickrate;
-
-        List<YangBallPrediction.YangPredictionFrame> ballDataList = new ArrayList<>();
-        assert flatPrediction.framesLength() > 0;
-        for (int i = 0; i < flatPrediction.framesLength(); i++) {
-            FlatPhysics frame = flatPrediction.frames(i);
-            ImmutableBallData data = new ImmutableBallData(frame);
-            ballDataList.add(new YangBallPrediction.YangPredictionFrame(i * tickFreq + ballData.elapsedSeconds, i * tickFreq, data));
+        try {
+            // Decode straight from native memory, frames are copied into the packed prediction anyway
+            final FlatPhysicsPrediction flatPrediction = FlatPhysicsPrediction.getRootAsFlatPhysicsPrediction(struct.ptr.getByteBuffer(0, struct.size));
+            final float tickFreq = 1f / tickrate;
+
+            assert flatPrediction.framesLength() > 0;
+            final YangBallPrediction.Builder builder = new YangBallPrediction.Builder(flatPrediction.framesLength());
+            final FlatPhysics frame = s.physics;
+            for (int i = 0; i < flatPrediction.framesLength(); i++) {
+                flatPrediction.frames(frame, i);
+                final FlatVec3 pos = frame.position(), vel = frame.velocity(), ang = frame.angularVelocity();
+                builder.add(i * tickFreq + ballData.elapsedSeconds, i * tickFreq,
+                        pos.x(), pos.y(), pos.z(),
+                        vel.x(), vel.y(), vel.z(),
+                        ang.x(), ang.y(), ang.z());
+            }
+            return builder.build(tickFreq);
+        } finally {
+            Free(struct.ptr);
         }
-        return YangBallPrediction.from(ballDataList, tickFreq);
     }
 
     public static Optional<Curve> findPath(Vector3 startPos, Vector3 startTangent, Vector3 endPos, Vector3 endTangent, float endTangentScalar) {
         try {
-            FlatBufferBuilder builder = new FlatBufferBuilder(128);
+            final Scratch s = scratch.get();
+            final FlatBufferBuilder builder = s.builder;
 
             FlatNavigatorRequest.startFlatNavigatorRequest(builder);
             FlatNavigatorRequest.addStartPosition(builder, startPos.toYangbuffer(builder));
@@ -135,69 +150,74 @@ public class YangBotJNAInterop {
             FlatNavigatorRequest.addEndTangent(builder, endTangent.toYangbuffer(builder));
             FlatNavigatorRequest.addEndTangentMultiplier(builder, endTangentScalar);
 
-            builder.finish(FlatNavigatorRequest.endFlatNavigatorRequest(builder));
+            final Memory memory = s.finish(0, FlatNavigatorRequest.endFlatNavigatorRequest(builder));
 
-            final byte[] proto = builder.sizedByteArray();
-            final Memory memory = getMemory(proto);
-
-            long ms = System.currentTimeMillis();
             final ByteBufferStruct struct = findPath(memory);
-            if (struct.size < 4) {
-                if (struct.size > 0)
-                    Free(struct.ptr);
-                return Optional.empty();
-            }
-            final byte[] protoBytes = struct.ptr.getByteArray(0, struct.size);
-            Free(struct.ptr);
-            FlatCurve flatCurve = FlatCurve.getRootAsFlatCurve(ByteBuffer.wrap(protoBytes));
-            if (flatCurve == null || flatCurve.length() == 0)
+            if (!hasResult(struct))
                 return Optional.empty();
 
-            return Optional.ofNullable(Curve.from(flatCurve));
+            try {
+                // Curve.from copies everything it needs, so read in place
+                FlatCurve flatCurve = FlatCurve.getRootAsFlatCurve(struct.ptr.getByteBuffer(0, struct.size));
+                if (flatCurve == null || flatCurve.length() == 0)
+                    return Optional.empty();
+
+                return Optional.ofNullable(Curve.from(flatCurve));
+            } finally {
+                Free(struct.ptr);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
         return Optional.empty();
     }
 
+    /**
+     * Prefer {@link #simulateCarBallCollision(CarData, BallData, float, BallData)}, it doesn't copy the result
+     */
     public static Optional<yangbot.cpp.FlatPhysics> simulateCarBallCollision(CarData carData, BallData ballData, float dt) {
         try {
-            Memory carMemory;
-            Memory ballMemory;
-            {
-                FlatBufferBuilder builder = new FlatBufferBuilder(128);
-
-                builder.finish(carData.makeFlat(builder));
-
-                final byte[] proto = builder.sizedByteArray();
-                carMemory = getMemory(proto);
-            }
-
-            {
-                FlatBufferBuilder builder = new FlatBufferBuilder(128);
-
-                builder.finish(ballData.makeFlatPhysics(builder));
-
-                final byte[] proto = builder.sizedByteArray();
-                ballMemory = getMemory(proto);
-            }
+            final Scratch s = scratch.get();
+            final Memory carMemory = s.finish(0, carData.makeFlat(s.builder));
+            final Memory ballMemory = s.finish(1, ballData.makeFlatPhysics(s.builder));
 
             final ByteBufferStruct struct = simulateCarBallCollision(carMemory, ballMemory, dt);
-            if (struct.size < 4) {
-                if (struct.size > 0)
-                    Free(struct.ptr);
+            if (!hasResult(struct)) {
                 System.out.println("Got nothign back");
                 return Optional.empty();
             }
-            final byte[] protoBytes = struct.ptr.getByteArray(0, struct.size);
-            Free(struct.ptr);
-            return Optional.ofNullable(yangbot.cpp.FlatPhysics.getRootAsFlatPhysics(ByteBuffer.wrap(protoBytes)));
+            return Optional.ofNullable(yangbot.cpp.FlatPhysics.getRootAsFlatPhysics(copyResult(struct)));
         } catch (Exception e) {
             e.printStackTrace();
         }
         return Optional.empty();
     }
 
+    /**
+     * Simulates the collision and writes the resulting ball physics into out, reading the result straight from native memory
+     *
+     * @return false if the native side returned nothing, out is left untouched in that case
+     */
+    public static boolean simulateCarBallCollision(CarData carData, BallData ballData, float dt, BallData out) {
+        final Scratch s = scratch.get();
+        final Memory carMemory = s.finish(0, carData.makeFlat(s.builder));
+        final Memory ballMemory = s.finish(1, ballData.makeFlatPhysics(s.builder));
+
+        final ByteBufferStruct struct = simulateCarBallCollision(carMemory, ballMemory, dt);
+        if (!hasResult(struct))
+            return false;
+
+        try {
+            final FlatPhysics physics = FlatPhysics.getRootAsFlatPhysics(struct.ptr.getByteBuffer(0, struct.size), s.physics);
+            out.position = new Vector3(physics.position());
+            out.velocity = new Vector3(physics.velocity());
+            out.angularVelocity = new Vector3(physics.angularVelocity());
+            return true;
+        } finally {
+            Free(struct.ptr);
+        }
+    }
+
     private static native ByteBufferStruct simulateCarCollision(Pointer ptr);
 
     private static native ByteBufferStruct simulateSimpleCar(Pointer ptr, float time);
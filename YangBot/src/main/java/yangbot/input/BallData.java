@@ -3,6 +3,7 @@ package yangbot.input;
 import com.google.flatbuffers.FlatBufferBuilder;
 import rlbot.flat.BallInfo;
 import rlbot.flat.Physics;
+import rlbot.flat.Touch;
 import rlbot.gamestate.BallState;
 import rlbot.gamestate.PhysicsState;
 import yangbot.cpp.FlatPhysics;
@@ -12,10 +13,9 @@ import yangbot.util.hitbox.YangHitbox;
 import yangbot.util.hitbox.YangSphereHitbox;
 import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.MutableVector3;
 import yangbot.util.math.vector.Vector3;
 
-import java.util.ArrayList;
-import java.util.List;
 
 public class BallData {
     public static final float RESTITUTION = 0.6f;
@@ -29,6 +29,16 @@ public class BallData {
     public static final float INERTIA = 0.375f * MASS * RADIUS * RADIUS;
     public static final float MU = 2;
 
+    // Intermediate results of step and collide, one per thread
+    private static final class StepScratch {
+        final MutableVector3 position = new MutableVector3();
+        final MutableVector3 velocity = new MutableVector3();
+        final MutableVector3 angularVelocity = new MutableVector3();
+        final MutableVector3 tmp = new MutableVector3();
+    }
+
+    private static final ThreadLocal<StepScratch> stepScratch = ThreadLocal.withInitial(StepScratch::new);
+
     public Vector3 position;
     public Vector3 velocity;
     public Vector3 angularVelocity;
@@ -37,11 +47,24 @@ public class BallData {
     public float elapsedSeconds = 0;
 
     public BallData(final BallInfo ball, float elapsedSeconds) {
-        this.position = new Vector3(ball.physics().location());
-        this.velocity = new Vector3(ball.physics().velocity());
-        this.angularVelocity = new Vector3(ball.physics().angularVelocity());
-        this.hasBeenTouched = ball.latestTouch() != null;
-        this.latestTouch = this.hasBeenTouched ? new BallTouch(ball.latestTouch()) : null;
+        this.fill(ball, elapsedSeconds, new DataPacket.Readers());
+    }
+
+    /**
+     * Overwrites this ball with the one from the packet, like {@link CarData#fill} does for cars.
+     * The touch is only read again if it's a different one.
+     */
+    void fill(final BallInfo ball, float elapsedSeconds, DataPacket.Readers readers) {
+        final Physics physics = ball.physics(readers.physics);
+        this.position = new Vector3(physics.location(readers.vector));
+        this.velocity = new Vector3(physics.velocity(readers.vector));
+        this.angularVelocity = new Vector3(physics.angularVelocity(readers.vector));
+        final Touch touch = ball.latestTouch(readers.touch);
+        this.hasBeenTouched = touch != null;
+        if (!this.hasBeenTouched)
+            this.latestTouch = null;
+        else if (this.latestTouch == null || this.latestTouch.gameSeconds != touch.gameSeconds() || this.latestTouch.playerIndex != touch.playerIndex())
+            this.latestTouch = new BallTouch(touch);
         this.elapsedSeconds = elapsedSeconds;
     }
 
@@ -122,10 +145,8 @@ public class BallData {
     }
 
     public void stepWithCollideChip(float dt, CarData car) {
-        FlatPhysics fbsCarData = YangBotJNAInterop.simulateCarBallCollision(car, this, dt).get();
-        this.position = new Vector3(fbsCarData.position());
-        this.velocity = new Vector3(fbsCarData.velocity());
-        this.angularVelocity = new Vector3(fbsCarData.angularVelocity());
+        if (!YangBotJNAInterop.simulateCarBallCollision(car, this, dt, this))
+            throw new IllegalStateException("Car-ball collision simulation returned nothing");
     }
 
     public int makeFlatPhysics(FlatBufferBuilder builder) {
@@ -143,29 +164,35 @@ public class BallData {
         return Math.abs(this.position.y) > BallData.RADIUS + RLConstants.goalDistance;
     }
 
+    /**
+     * @param sign side of the field, a team sign for that team's own goal
+     */
+    public static boolean isInGoal(float y, int sign) {
+        return Math.abs(y) > BallData.RADIUS + RLConstants.goalDistance && Math.signum(y) == sign;
+    }
+
     public boolean isInEnemyGoal(int teamSign) {
-        return isInAnyGoal() && Math.signum(this.position.y) == -teamSign;
+        return isInGoal(this.position.y, -teamSign);
     }
 
     public boolean isInOwnGoal(int teamSign) {
-        return isInAnyGoal() && Math.signum(this.position.y) == teamSign;
+        return isInGoal(this.position.y, teamSign);
     }
 
     public void step(float dt) {
         // https://github.com/samuelpmish/RLUtilities/blob/master/src/simulation/ball.cc#L36
-        this.velocity = velocity.add(
-                velocity.mul(BallData.DRAG)
-                        .add(RLConstants.gravity)
-                        .mul(dt)
+        final StepScratch s = stepScratch.get();
+        final MutableVector3 v = s.velocity.set(this.velocity);
+        final MutableVector3 w = s.angularVelocity.set(this.angularVelocity);
+        v.add(s.tmp.set(v)
+                .mul(BallData.DRAG)
+                .add(RLConstants.gravity)
+                .mul(dt)
         );
-        this.position = position.add(velocity.mul(dt));
+        this.position = s.position.set(this.position).addScaled(v, dt).toVector3();
 
-        this.angularVelocity = angularVelocity.mul(
-                Math.min(1, BallData.MAX_ANGULAR / angularVelocity.magnitude())
-        );
-        this.velocity = velocity.mul(
-                Math.min(1, BallData.MAX_VELOCITY / velocity.magnitude())
-        );
+        this.angularVelocity = w.mul(Math.min(1, BallData.MAX_ANGULAR / w.magnitude())).toVector3();
+        this.velocity = v.mul(Math.min(1, BallData.MAX_VELOCITY / v.magnitude())).toVector3();
 
         this.elapsedSeconds += dt;
     }
@@ -256,22 +283,23 @@ public class BallData {
         assert length <= 5;
         assert tickFrequency > 0;
 
-        List<YangBallPrediction.YangPredictionFrame> ballDataList = new ArrayList<>();
+        final YangBallPrediction.Builder builder = new YangBallPrediction.Builder((int) (length / tickFrequency) + 2);
         BallData simBall = new BallData(this);
         for (float t = 0; t <= length; t += tickFrequency) {
-            ballDataList.add(new YangBallPrediction.YangPredictionFrame(t + this.elapsedSeconds, t, simBall));
+            builder.add(t + this.elapsedSeconds, t, simBall);
             simBall.stepCollideGround(tickFrequency);
         }
-        return YangBallPrediction.from(ballDataList, tickFrequency);
+        return builder.build(tickFrequency);
     }
 
     public Vector3 collide(CarData car, float tolerance) {
         // https://github.com/samuelpmish/RLUtilities/blob/prerelease/src/simulation/ball.cc#L113
 
-        Vector3 contactPoint = car.hitbox.getClosestPointOnHitbox(car.position, this.position);
-
-        Vector3 normal = contactPoint.sub(this.position);
-        if (normal.magnitude() < COLLISION_RADIUS + tolerance) {
+        // Most calls don't touch, check that without allocating
+        final MutableVector3 closest = car.hitbox.getClosestPointOnHitbox(car.position, this.position, stepScratch.get().tmp);
+        if (closest.distance(this.position) < COLLISION_RADIUS + tolerance) {
+            final Vector3 contactPoint = closest.toVector3();
+            final Vector3 normal = contactPoint.sub(this.position);
 
             this.hasBeenTouched = true;
 
@@ -0,0 +1,161 @@
+package yangbot.input;
+
+import yangbot.input.fieldinfo.SoccarArena;
+import yangbot.util.YangBallPrediction;
+import yangbot.util.math.vector.Vector3;
+
+/**
+ * Ball physics against the full soccar arena ({@link SoccarArena}), in plain floats.
+ * <p>
+ * Same physics as {@link BallData#stepCollideGround(float)}, but every surface can be collided with.
+ * State is kept in primitives, so stepping doesn't allocate and predictions are written straight into a {@link YangBallPrediction.Builder}.
+ * <p>
+ * The arena is built from its dimensions, not from the collision mesh, and is only checked against itself so far.
+ * Callers keep using the native simulation unless they opt in (see {@link yangbot.optimizers.DodgeStrikeOptimizer#useJavaBallSimulation}).
+ */
+public class BallSimulator {
+
+    private static final float INV_MASS = 1 / BallData.MASS;
+    private static final float INV_INERTIA = 1 / BallData.INERTIA;
+
+    public float px, py, pz;
+    public float vx, vy, vz;
+    public float wx, wy, wz;
+    public float elapsedSeconds;
+
+    private final SoccarArena.Contact contact = new SoccarArena.Contact();
+
+    public BallSimulator() {
+    }
+
+    public BallSimulator(BallData ball) {
+        this.set(ball);
+    }
+
+    public BallSimulator(ImmutableBallData ball) {
+        this.set(ball.position, ball.velocity, ball.angularVelocity, ball.elapsedSeconds);
+    }
+
+    public void set(BallData ball) {
+        this.set(ball.position, ball.velocity, ball.angularVelocity, ball.elapsedSeconds);
+    }
+
+    public void set(Vector3 position, Vector3 velocity, Vector3 angularVelocity, float elapsedSeconds) {
+        this.px = position.x;
+        this.py = position.y;
+        this.pz = position.z;
+        this.vx = velocity.x;
+        this.vy = velocity.y;
+        this.vz = velocity.z;
+        this.wx = angularVelocity.x;
+        this.wy = angularVelocity.y;
+        this.wz = angularVelocity.z;
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    public BallData toBallData() {
+        final BallData ball = new BallData(new Vector3(px, py, pz), new Vector3(vx, vy, vz), new Vector3(wx, wy, wz));
+        ball.elapsedSeconds = this.elapsedSeconds;
+        return ball;
+    }
+
+    public void step(float dt) {
+        // https://github.com/samuelpmish/RLUtilities/blob/master/src/simulation/ball.cc#L36
+        vx += vx * BallData.DRAG * dt;
+        vy += vy * BallData.DRAG * dt;
+        vz += (vz * BallData.DRAG + RLConstants.gravity.z) * dt;
+
+        SoccarArena.closestSurface(px, py, pz, contact);
+        final float dist = contact.distance;
+        if (dist <= BallData.COLLISION_RADIUS + 0.001f) {
+            final float nx = contact.nx, ny = contact.ny, nz = contact.nz;
+
+            // Ball center -> contact point
+            final float lx = -nx * dist, ly = -ny * dist, lz = -nz * dist;
+            final float m_reduced = 1f / (INV_MASS + (lx * lx + ly * ly + lz * lz) * INV_INERTIA);
+
+            final float vn = Math.min(vx * nx + vy * ny + vz * nz, 0);
+            final float perpX = nx * vn, perpY = ny * vn, perpZ = nz * vn;
+            // v - v_perp - L x w
+            final float paraX = vx - perpX - (ly * wz - lz * wy);
+            final float paraY = vy - perpY - (lz * wx - lx * wz);
+            final float paraZ = vz - perpZ - (lx * wy - ly * wx);
+
+            final float perpMag = Math.abs(vn);
+            final float paraMag = (float) Math.sqrt(paraX * paraX + paraY * paraY + paraZ * paraZ);
+            final float ratio = perpMag / Math.max(paraMag, 0.0001f);
+
+            final float perpScale = -(1f + BallData.RESTITUTION) * BallData.MASS;
+            final float paraScale = -Math.min(1, BallData.MU * ratio) * m_reduced;
+            final float jx = perpX * perpScale + paraX * paraScale;
+            final float jy = perpY * perpScale + paraY * paraScale;
+            final float jz = perpZ * perpScale + paraZ * paraScale;
+
+            wx += (ly * jz - lz * jy) * INV_INERTIA;
+            wy += (lz * jx - lx * jz) * INV_INERTIA;
+            wz += (lx * jy - ly * jx) * INV_INERTIA;
+            vx += jx * INV_MASS;
+            vy += jy * INV_MASS;
+            vz += jz * INV_MASS;
+
+            px += vx * dt;
+            py += vy * dt;
+            pz += vz * dt;
+
+            // Push out of the contact plane
+            final float penetration = BallData.COLLISION_RADIUS - (dist + vx * dt * nx + vy * dt * ny + vz * dt * nz);
+            if (penetration > 0) {
+                px += nx * 1.001f * penetration;
+                py += ny * 1.001f * penetration;
+                pz += nz * 1.001f * penetration;
+            }
+        } else {
+            px += vx * dt;
+            py += vy * dt;
+            pz += vz * dt;
+        }
+
+        final float w = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+        if (w > BallData.MAX_ANGULAR) {
+            final float s = BallData.MAX_ANGULAR / w;
+            wx *= s;
+            wy *= s;
+            wz *= s;
+        }
+        final float v = (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+        if (v > BallData.MAX_VELOCITY) {
+            final float s = BallData.MAX_VELOCITY / v;
+            vx *= s;
+            vy *= s;
+            vz *= s;
+        }
+
+        this.elapsedSeconds += dt;
+    }
+
+    /**
+     * Simulates {@code (int) (seconds * tickRate)} frames, the first one being the current state
+     */
+    public YangBallPrediction simulate(int tickRate, float seconds) {
+        assert tickRate > 0;
+        final float dt = 1f / tickRate;
+        final int steps = (int) (seconds / dt);
+        final float startTime = this.elapsedSeconds;
+
+        final YangBallPrediction.Builder builder = new YangBallPrediction.Builder(steps);
+        for (int i = 0; i < steps; i++) {
+            final float t = i * dt;
+            builder.add(startTime + t, t, px, py, pz, vx, vy, vz, wx, wy, wz);
+            this.step(dt);
+        }
+        return builder.build(dt);
+    }
+
+    public static YangBallPrediction getBallPrediction(BallData ball, int tickRate, float seconds) {
+        return new BallSimulator(ball).simulate(tickRate, seconds);
+    }
+
+    public static YangBallPrediction getBallPrediction(ImmutableBallData ball, int tickRate, float seconds) {
+        return new BallSimulator(ball).simulate(tickRate, seconds);
+    }
+}
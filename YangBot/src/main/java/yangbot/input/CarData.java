@@ -2,6 +2,8 @@ package yangbot.input;
 
 
 import com.google.flatbuffers.FlatBufferBuilder;
+import rlbot.flat.BoxShape;
+import rlbot.flat.Physics;
 import rlbot.flat.Rotator;
 import rlbot.gamestate.CarState;
 import yangbot.cpp.FlatCarData;
@@ -17,6 +19,9 @@ import yangbot.util.math.Car2D;
 import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Matrix2x2;
 import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.MutableMatrix3x3;
+import yangbot.util.math.vector.MutableQuaternion;
+import yangbot.util.math.vector.MutableVector3;
 import yangbot.util.math.vector.Vector2;
 import yangbot.util.math.vector.Vector3;
 
@@ -30,6 +35,7 @@ public class CarData {
 
     public static final float MAX_VELOCITY = 2300.0f;
     public static final float MAX_ANGULAR_VELOCITY = 5.5f;
+
     public static final float MASS = 180f;
     public static final Matrix3x3 INERTIA;
     public static final Matrix3x3 INV_INERTIA;
@@ -49,29 +55,37 @@ public class CarData {
         INV_INERTIA = INERTIA.invert();
     }
 
-    public final int team; // 0 for blue team, 1 for orange team.
+    public int team; // 0 for blue team, 1 for orange team.
 
     public Vector3 position;
     public Vector3 velocity;
     public Vector3 angularVelocity;
     public Matrix3x3 orientation;
+    // orientation as a quaternion, kept by step so consecutive steps don't convert back from the matrix. Only valid while orientation == attitudeOf
+    private Matrix3x3 attitudeOf = null;
+    private float attitudeW, attitudeX, attitudeY, attitudeZ;
+    // Integrate the orientation in step as a quaternion instead of multiplying rotation matrices, within a small tolerance of the matrix version.
+    // Off by default: step still reads and stores the matrix every tick, so it isn't measurably faster and only changes rollouts.
+    // Copies keep the choice, so a simulation and its forks all step the same way
+    public boolean useQuaternionOrientation = false;
 
     public float boost;
     public boolean hasWheelContact;
     public float elapsedSeconds;
 
     public final YangWheelInfo wheelInfo = YangWheelInfo.octane();
-    public final YangCarHitbox hitbox;
+    public YangCarHitbox hitbox;
     public boolean doubleJumped;
     public boolean jumped;
     public int goalsScored = 0;
 
-    public final boolean isDemolished;
-    public final boolean isBot;
-    public final String name;
-    public final String strippedName;
+    public boolean isDemolished;
+    public boolean isBot;
+    public String name;
+    public String strippedName;
     public int playerIndex;
     public ControlsOutput lastControllerInputs = new ControlsOutput();
+    private static final ControlsOutput NO_INPUTS = new ControlsOutput();
 
     // Variables used exclusively in step functions
     private Vector3 dodgeTorque;
@@ -80,28 +94,61 @@ public class CarData {
     public boolean enableJumpAcceleration = false;
 
     public CarData(rlbot.flat.PlayerInfo playerInfo, float elapsedSeconds, int index) {
-        this.position = new Vector3(playerInfo.physics().location());
-        this.velocity = new Vector3(playerInfo.physics().velocity());
-        Rotator r = playerInfo.physics().rotation();
-        this.orientation = Matrix3x3.eulerToRotation(new Vector3(r.pitch(), r.yaw(), r.roll()));
+        this.fill(playerInfo, elapsedSeconds, index, new DataPacket.Readers());
+    }
+
+    // Empty car for DataPacketPool, filled every tick
+    CarData() {
+    }
+
+    /**
+     * Overwrites this car with the player from the packet, reading through the reusable flatbuffer accessors in readers.
+     * Position, velocity and orientation are new objects, so references to the old ones stay valid.
+     * The name is only read again if the player in this slot changed, the hitbox is only rebuilt if its shape changed.
+     */
+    void fill(rlbot.flat.PlayerInfo playerInfo, float elapsedSeconds, int index, DataPacket.Readers readers) {
+        final Physics physics = playerInfo.physics(readers.physics);
+        this.position = new Vector3(physics.location(readers.vector));
+        this.velocity = new Vector3(physics.velocity(readers.vector));
+        this.angularVelocity = new Vector3(physics.angularVelocity(readers.vector));
+        final Rotator r = physics.rotation(readers.rotator);
+        this.orientation = Matrix3x3.eulerToRotation(r.pitch(), r.yaw(), r.roll());
         this.boost = playerInfo.boost();
-        this.team = playerInfo.team();
         this.hasWheelContact = playerInfo.hasWheelContact();
         this.elapsedSeconds = elapsedSeconds;
-        this.angularVelocity = new Vector3(playerInfo.physics().angularVelocity());
-        this.hitbox = new YangCarHitbox(playerInfo.hitbox(), new Vector3(playerInfo.hitboxOffset()), this.orientation);
-        this.isBot = playerInfo.isBot();
-        this.name = playerInfo.name();
-        this.playerIndex = index;
         this.doubleJumped = playerInfo.doubleJumped();
         this.jumped = playerInfo.jumped();
-        this.goalsScored = playerInfo.scoreInfo().goals();
+        this.goalsScored = playerInfo.scoreInfo(readers.scoreInfo).goals();
         this.isDemolished = playerInfo.isDemolished();
 
-        if (isBot && name.endsWith("(" + (playerIndex + 1) + ")"))
-            strippedName = name.substring(0, name.length() - 3).toLowerCase();
+        final int team = playerInfo.team();
+        final boolean isBot = playerInfo.isBot();
+        if (this.name == null || this.playerIndex != index || this.team != team || this.isBot != isBot) {
+            this.name = playerInfo.name();
+            if (isBot && this.name.endsWith("(" + (index + 1) + ")"))
+                this.strippedName = this.name.substring(0, this.name.length() - 3).toLowerCase();
+            else
+                this.strippedName = this.name.toLowerCase();
+        }
+        this.team = team;
+        this.isBot = isBot;
+        this.playerIndex = index;
+
+        final BoxShape shape = playerInfo.hitbox(readers.hitbox);
+        final rlbot.flat.Vector3 offset = playerInfo.hitboxOffset(readers.vector);
+        if (this.hitbox != null
+                && this.hitbox.hitboxLengths.x == shape.length() && this.hitbox.hitboxLengths.y == shape.width() && this.hitbox.hitboxLengths.z == shape.height()
+                && this.hitbox.hitboxOffset.x == offset.x() && this.hitbox.hitboxOffset.y == offset.y() && this.hitbox.hitboxOffset.z == offset.z())
+            this.hitbox.setOrientation(this.orientation);
         else
-            strippedName = name.toLowerCase();
+            this.hitbox = new YangCarHitbox(shape, new Vector3(offset), this.orientation);
+
+        // Like a freshly constructed car
+        this.lastControllerInputs.set(NO_INPUTS);
+        this.dodgeTorque = null;
+        this.jumpTimer = -1.0f;
+        this.dodgeTimer = -1.0f;
+        this.enableJumpAcceleration = false;
     }
 
     public CarData(CarData o) {
@@ -111,6 +158,14 @@ public class CarData {
         this.velocity = new Vector3(o.velocity);
         this.angularVelocity = new Vector3(o.angularVelocity);
         this.orientation = new Matrix3x3(o.orientation);
+        this.useQuaternionOrientation = o.useQuaternionOrientation;
+        if (o.attitudeOf == o.orientation) {
+            this.attitudeOf = this.orientation;
+            this.attitudeW = o.attitudeW;
+            this.attitudeX = o.attitudeX;
+            this.attitudeY = o.attitudeY;
+            this.attitudeZ = o.attitudeZ;
+        }
 
         this.boost = o.boost;
         this.hasWheelContact = o.hasWheelContact;
@@ -128,6 +183,20 @@ public class CarData {
         this.goalsScored = o.goalsScored;
     }
 
+    /**
+     * Copy including the jump and dodge state, stepping the copy continues exactly like stepping this car would
+     */
+    public CarData fork() {
+        final CarData copy = new CarData(this);
+        copy.jumpTimer = this.jumpTimer;
+        copy.dodgeTimer = this.dodgeTimer;
+        copy.dodgeTorque = this.dodgeTorque;
+        copy.enableJumpAcceleration = this.enableJumpAcceleration;
+        copy.lastControllerInputs = new ControlsOutput();
+        copy.lastControllerInputs.set(this.lastControllerInputs);
+        return copy;
+    }
+
     public CarData(Vector3 position, Vector3 velocity, Vector3 angularVelocity, Matrix3x3 orientation) {
         this.position = position;
         this.velocity = velocity;
@@ -352,27 +421,31 @@ public class CarData {
         // TODO
     }
 
-    private void driving(ControlsOutput in, float dt) {
-        final float v_f = velocity.dot(forward());
-        final float v_l = velocity.dot(right());
-        final float w_u = angularVelocity.dot(up());
-
-        Vector3 force = forward().mul(driveForceForward(in, v_f, v_l, w_u)).add(right().mul(driveForceLeft(in, v_f, v_l, w_u)));
+    private void driving(ControlsOutput in, float dt, StepScratch s) {
+        final MutableVector3 forward = s.orientation().forward(s.forward);
+        final MutableVector3 right = s.orientation().right(s.right);
+        final MutableVector3 up = s.orientation().up(s.up);
+        final float v_f = s.velocity.dot(forward);
+        final float v_l = s.velocity.dot(right);
+        final float w_u = s.angularVelocity.dot(up);
 
-        Vector3 torque = up().mul(driveTorqueUp(in, v_f, w_u));
+        final float forceForward = driveForceForward(in, v_f, v_l, w_u), forceLeft = driveForceLeft(in, v_f, v_l, w_u);
+        s.tmp.set(forward.x * forceForward + right.x * forceLeft, forward.y * forceForward + right.y * forceLeft, forward.z * forceForward + right.z * forceLeft);
+        final float torque = driveTorqueUp(in, v_f, w_u);
 
-        velocity = velocity.add(force.mul(dt));
-        position = position.add(velocity.mul(dt));
+        s.velocity.addScaled(s.tmp, dt);
+        s.position.addScaled(s.velocity, dt);
 
-        angularVelocity = angularVelocity.add(torque.mul(dt));
-        orientation = Matrix3x3.axisToRotation(angularVelocity.mul(dt)).matrixMul(orientation);
+        s.angularVelocity.add(up.x * torque * dt, up.y * torque * dt, up.z * torque * dt);
+        s.rotate(dt);
     }
 
-    private void air_dodge(ControlsOutput in, float dt) {
+    private void air_dodge(ControlsOutput in, float dt, StepScratch s) {
+        final Vector3 gravity = GameData.current().getGravity();
         if (Math.abs(in.getPitch()) + Math.abs(in.getRoll()) + Math.abs(in.getYaw()) >= DodgeManeuver.input_threshold) {
             // directional dodge
 
-            float vf = this.velocity.dot(this.forward());
+            float vf = s.velocity.dot(s.orientation().forward(s.forward));
             float scalar = Math.abs(vf) / CarData.MAX_VELOCITY;
 
             Vector2 dodgeDir = new Vector2(-in.getPitch(), in.getYaw()).normalized();
@@ -397,11 +470,12 @@ public class CarData {
             }
             dv = dv.mul(1, (1.0f + 0.9f * scalar));
 
-            this.velocity = this.velocity.add(GameData.current().getGravity().mul(dt)).add(new Vector3(getDodgeOrientation().dot(dv)));
-            this.position = this.position.add(this.velocity.mul(dt));
+            final Vector2 dvWorld = getDodgeOrientation().dot(dv);
+            s.velocity.addScaled(gravity, dt).add(dvWorld.x, dvWorld.y, 0);
+            s.position.addScaled(s.velocity, dt);
 
-            this.angularVelocity = this.angularVelocity.add(dodgeTorque.mul(dt));
-            this.orientation = Matrix3x3.axisToRotation(this.angularVelocity.mul(dt)).matrixMul(this.orientation);
+            s.angularVelocity.addScaled(dodgeTorque, dt);
+            s.rotate(dt);
 
             this.doubleJumped = true;
             this.dodgeTimer = 0.0f;
@@ -409,78 +483,72 @@ public class CarData {
             // double jump
             dodgeTorque = new Vector3(0, 0, 0);
 
-            this.velocity = this.velocity.add(GameData.current().getGravity().mul(dt)).add(this.up().mul(DodgeManeuver.speed));
-            this.position = this.position.add(this.velocity.mul(dt));
+            s.velocity.addScaled(gravity, dt).addScaled(s.orientation().up(s.up), DodgeManeuver.speed);
+            s.position.addScaled(s.velocity, dt);
 
-            this.angularVelocity = this.angularVelocity.add(dodgeTorque.mul(dt));
-            this.orientation = Matrix3x3.axisToRotation(this.angularVelocity.mul(dt)).matrixMul(this.orientation);
+            s.angularVelocity.addScaled(dodgeTorque, dt);
+            s.rotate(dt);
 
             this.doubleJumped = true;
             this.dodgeTimer = 1.01f * DodgeManeuver.torque_time;
         }
     }
 
-    private void aerial_control(ControlsOutput in, float dt) {
+    private void aerial_control(ControlsOutput in, float dt, StepScratch s) {
         final float J = 10.5f;
 
-        final Vector3 T = new Vector3(-400.f, -130.f, 95.f);
-        final Vector3 H = new Vector3(-50.f, -30.f * (1.f - Math.abs(in.getPitch())), -20.f * (1.0f - Math.abs(in.getYaw())));
+        // T * rpy + H * w_local
+        final float Tx = -400.f, Ty = -130.f, Tz = 95.f;
+        final float Hx = -50.f, Hy = -30.f * (1.f - Math.abs(in.getPitch())), Hz = -20.f * (1.0f - Math.abs(in.getYaw()));
 
-        Vector3 rpy = new Vector3(in.getRoll(), in.getPitch(), in.getYaw());
+        final MutableVector3 forward = s.orientation().forward(s.forward);
+        final MutableVector3 up = s.orientation().up(s.up);
         if (in.holdBoost() && boost > 0) {
-            this.velocity = this.velocity.add(this.forward().mul(AerialManeuver.boost_airthrottle_acceleration * dt));
+            s.velocity.addScaled(forward, AerialManeuver.boost_airthrottle_acceleration * dt);
             boost -= CarData.BOOST_CONSUMPTION * dt;
         } else {
-            this.velocity = this.velocity.add(this.forward().mul(in.getThrottle() * AerialManeuver.throttle_acceleration * dt));
+            s.velocity.addScaled(forward, in.getThrottle() * AerialManeuver.throttle_acceleration * dt);
         }
 
         if (in.holdJump() && enableJumpAcceleration) {
             if (jumpTimer < DodgeManeuver.min_duration) {
-                this.velocity = this.velocity.add(
-                        (
-                                this.up()
-                                        .mul(0.75f * DodgeManeuver.acceleration)
-                                        .sub(this.forward().mul(510.0f))
-                        ).mul(dt)
-                );
+                s.velocity.add(s.tmp.set(up)
+                        .mul(0.75f * DodgeManeuver.acceleration)
+                        .sub(forward.x * 510.0f, forward.y * 510.0f, forward.z * 510.0f)
+                        .mul(dt));
             } else {
-                this.velocity = this.velocity.add(this.up().mul(DodgeManeuver.acceleration * dt));
+                s.velocity.addScaled(up, DodgeManeuver.acceleration * dt);
             }
         }
 
-        if (dodgeTimer >= DodgeManeuver.z_damping_start && (this.velocity.z < 0.0f || dodgeTimer < DodgeManeuver.z_damping_end)) {
-            this.velocity = this.velocity.add(new Vector3(0.0f, 0.0f, -this.velocity.z * DodgeManeuver.z_damping));
+        if (dodgeTimer >= DodgeManeuver.z_damping_start && (s.velocity.z < 0.0f || dodgeTimer < DodgeManeuver.z_damping_end)) {
+            s.velocity.add(0.0f, 0.0f, -s.velocity.z * DodgeManeuver.z_damping);
         }
 
-        if (0.0f <= dodgeTimer && dodgeTimer <= 0.3f) {
-            rpy = rpy.withY(0);
-        }
+        // Pitch used to be zeroed while 0 <= dodgeTimer <= 0.3 here. That window lies inside the dodge torque window (torque_time = 0.65),
+        // where the torque below doesn't read the stick at all, so it never had an effect and is left out
 
         if (0.0f <= dodgeTimer && dodgeTimer <= DodgeManeuver.torque_time) {
-            this.angularVelocity = this.angularVelocity.add(dodgeTorque.mul(dt));
+            s.angularVelocity.addScaled(dodgeTorque, dt);
         } else {
-            Vector3 w_local = this.angularVelocity.dot(this.orientation);
-            this.angularVelocity = this.angularVelocity.add(
-                    this.orientation
-                            .dot(T
-                                    .mul(rpy)
-                                    .add(H.mul(w_local))
-                            )
-                            .mul(dt / J)
-            );
+            final MutableVector3 w_local = s.tmp.setDotTransposed(s.angularVelocity, s.orientation());
+            w_local.set(Tx * in.getRoll() + Hx * w_local.x, Ty * in.getPitch() + Hy * w_local.y, Tz * in.getYaw() + Hz * w_local.z);
+            s.angularVelocity.add(w_local.setDot(s.orientation(), w_local).mul(dt / J));
         }
-        this.velocity = this.velocity.add(RLConstants.gravity.mul(dt));
-        this.position = this.position.add(this.velocity.mul(dt));
-        this.orientation = Matrix3x3.axisToRotation(this.angularVelocity.mul(dt)).matrixMul(this.orientation);
+        s.velocity.addScaled(RLConstants.gravity, dt);
+        s.position.addScaled(s.velocity, dt);
+        s.rotate(dt);
     }
 
     public void step(ControlsOutput in, float dt) {
+        final StepScratch s = stepScratch.get();
+        s.load(this);
         if (this.hasWheelContact) { // On Ground
             if (in.holdJump()) {
-                jump(in, dt);
+                jump(in, dt, s);
             } else {
                 if (!in.holdHandbrake()) {
-                    //driving(in, dt);
+                    //driving(in, dt, s);
                 } else {
                     //driving_handbrake(in, dt);
                 }
@@ -492,14 +560,15 @@ public class CarData {
                             this.jumpTimer < DodgeManeuver.timeout &&
                             !this.doubleJumped
             ) {
-                air_dodge(in, dt);
+                air_dodge(in, dt, s);
             } else {
-                aerial_control(in, dt);
+                aerial_control(in, dt, s);
             }
         }
         // if the velocities exceed their maximum values, scale them back
-        this.velocity = this.velocity.div(Math.max(1.0f, this.velocity.magnitude() / CarData.MAX_VELOCITY));
-        this.angularVelocity = this.angularVelocity.div(Math.max(1.0f, this.angularVelocity.magnitude() / CarData.MAX_ANGULAR_VELOCITY));
+        s.velocity.div(Math.max(1.0f, s.velocity.magnitude() / CarData.MAX_VELOCITY));
+        s.angularVelocity.div(Math.max(1.0f, s.angularVelocity.magnitude() / CarData.MAX_ANGULAR_VELOCITY));
+        s.store(this);
 
         this.elapsedSeconds += dt;
 
@@ -531,14 +600,19 @@ public class CarData {
         assert this.hasWheelContact : "cannot do smart prediction if airborne";
 
         float dt = RLConstants.simulationTickFrequency;
-        Vector3 localVel = new Vector3(this.forwardSpeed(), this.right().dot(this.velocity), 0);
+        final float localX = this.forwardSpeed(), localY = this.right().dot(this.velocity);
+        final StepScratch s = stepScratch.get();
+        s.load(this);
         for (float t = 0; t < time; t += dt) {
             if (t < 0.5f)
-                this.orientation = Matrix3x3.axisToRotation(this.angularVelocity.mul(dt)).matrixMul(this.orientation);
-            this.velocity = this.forward().mul(localVel.x).add(this.right().mul(localVel.y));
-            this.position = this.position.add(this.velocity.mul(dt, dt, 0));
+                s.rotate(dt);
+            final MutableVector3 forward = s.orientation().forward(s.forward);
+            final MutableVector3 right = s.orientation().right(s.right);
+            s.velocity.set(forward.x * localX + right.x * localY, forward.y * localX + right.y * localY, forward.z * localX + right.z * localY);
+            s.position.add(s.velocity.x * dt, s.velocity.y * dt, s.velocity.z * 0);
             this.elapsedSeconds += dt;
         }
+        s.store(this);
 
         this.hitbox.setOrientation(this.orientation);
     }
@@ -550,15 +624,13 @@ public class CarData {
 
     }
 
-    private void jump(ControlsOutput in, float dt) {
-        this.velocity = this.velocity.add(
-                GameData.current().getGravity().mul(dt)
-                        .add(this.up().mul(DodgeManeuver.speed))
-        );
-        this.position = this.position.add(this.velocity.mul(dt));
+    private void jump(ControlsOutput in, float dt, StepScratch s) {
+        final Vector3 gravity = GameData.current().getGravity();
+        s.orientation().up(s.up);
+        s.velocity.add(s.tmp.set(gravity.x * dt + s.up.x * DodgeManeuver.speed, gravity.y * dt + s.up.y * DodgeManeuver.speed, gravity.z * dt + s.up.z * DodgeManeuver.speed));
+        s.position.addScaled(s.velocity, dt);
 
-        this.orientation = Matrix3x3.axisToRotation(this.angularVelocity.mul(dt))
-                .matrixMul(this.orientation);
+        s.rotate(dt);
 
         this.jumpTimer = 0.0f;
         this.jumped = true;
@@ -567,6 +639,74 @@ public class CarData {
         this.hasWheelContact = false;
     }
 
+    // Intermediate results of step, so simulating doesn't allocate a vector per operation. One per thread, step isn't reentrant
+    private static final class StepScratch {
+        final MutableVector3 position = new MutableVector3();
+        final MutableVector3 velocity = new MutableVector3();
+        final MutableVector3 angularVelocity = new MutableVector3();
+        private final MutableMatrix3x3 orientation = new MutableMatrix3x3(); // Stale while the attitude has been integrated since, read with orientation()
+        final MutableMatrix3x3 rotation = new MutableMatrix3x3();
+        final MutableQuaternion attitude = new MutableQuaternion();
+        final MutableVector3 forward = new MutableVector3();
+        final MutableVector3 right = new MutableVector3();
+        final MutableVector3 up = new MutableVector3();
+        final MutableVector3 tmp = new MutableVector3();
+        boolean rotated, useAttitude, orientationStale;
+
+        void load(CarData car) {
+            this.position.set(car.position);
+            this.velocity.set(car.velocity);
+            this.angularVelocity.set(car.angularVelocity);
+            this.orientation.set(car.orientation);
+            this.rotated = false;
+            this.orientationStale = false;
+            this.useAttitude = car.useQuaternionOrientation;
+            if (this.useAttitude) {
+                if (car.attitudeOf == car.orientation)
+                    this.attitude.set(car.attitudeW, car.attitudeX, car.attitudeY, car.attitudeZ);
+                else
+                    this.attitude.set(car.orientation);
+            }
+        }
+
+        MutableMatrix3x3 orientation() {
+            if (this.orientationStale) {
+                this.attitude.toMatrix(this.orientation);
+                this.orientationStale = false;
+            }
+            return this.orientation;
+        }
+
+        // Rotate by the angular velocity for dt
+        void rotate(float dt) {
+            if (this.useAttitude) {
+                this.attitude.integrate(this.angularVelocity.x, this.angularVelocity.y, this.angularVelocity.z, dt);
+                this.orientationStale = true;
+            } else {
+                this.orientation.rotate(this.angularVelocity.x * dt, this.angularVelocity.y * dt, this.angularVelocity.z * dt, this.rotation);
+            }
+            this.rotated = true;
+        }
+
+        void store(CarData car) {
+            car.position = this.position.toVector3();
+            car.velocity = this.velocity.toVector3();
+            car.angularVelocity = this.angularVelocity.toVector3();
+            if (!this.rotated)
+                return;
+            car.orientation = this.orientation().toMatrix3x3();
+            if (this.useAttitude) {
+                car.attitudeOf = car.orientation;
+                car.attitudeW = this.attitude.w;
+                car.attitudeX = this.attitude.x;
+                car.attitudeY = this.attitude.y;
+                car.attitudeZ = this.attitude.z;
+            }
+        }
+    }
+
+    private static final ThreadLocal<StepScratch> stepScratch = ThreadLocal.withInitial(StepScratch::new);
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(this.getClass().getSimpleName());
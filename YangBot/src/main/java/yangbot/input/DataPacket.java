@@ -1,7 +1,15 @@
 package yangbot.input;
 
+import rlbot.flat.BallInfo;
+import rlbot.flat.BoxShape;
 import rlbot.flat.GameInfo;
 import rlbot.flat.GameTickPacket;
+import rlbot.flat.Physics;
+import rlbot.flat.PlayerInfo;
+import rlbot.flat.Rotator;
+import rlbot.flat.ScoreInfo;
+import rlbot.flat.Touch;
+import yangbot.util.math.vector.Vector3;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,37 +20,103 @@ import java.util.List;
  * 1. You end up with nice custom Vector3 objects that you can call methods on.
  * 2. If the framework changes its data format, you can just update the code here
  * and leave your bot logic alone.
+ * <p>
+ * Packets from a {@link DataPacketPool} are refilled in place, use {@link #snapshot()} to keep one around.
  */
 public class DataPacket {
 
     /**
      * Your own car, based on the playerIndex
      */
-    public final CarData car;
+    public CarData car;
 
     public final List<CarData> allCars;
 
     public final BallData ball;
-    public final int team;
+    public int team;
 
     /**
      * The index of your player
      */
     public final int playerIndex;
 
-    public final GameInfo gameInfo;
+    public GameInfo gameInfo;
+
+    private GameTickPacket request;
+    private final Readers readers;
+    private final List<CarData> carPool; // Grows to the most players seen, allCars holds the ones in the current packet
 
     public DataPacket(GameTickPacket request, int playerIndex) {
+        this(playerIndex);
+        this.fill(request);
+    }
+
+    // Empty packet for DataPacketPool
+    DataPacket(int playerIndex) {
         this.playerIndex = playerIndex;
-        this.ball = new BallData(request.ball(), request.gameInfo().secondsElapsed());
+        this.ball = new BallData(new Vector3(), new Vector3(), new Vector3());
+        this.allCars = new ArrayList<>();
+        this.readers = new Readers();
+        this.carPool = new ArrayList<>();
+    }
 
-        allCars = new ArrayList<>();
-        for (int i = 0; i < request.playersLength(); i++) {
-            allCars.add(new CarData(request.players(i), request.gameInfo().secondsElapsed(), i));
+    private DataPacket(DataPacket o) {
+        this.playerIndex = o.playerIndex;
+        this.ball = new BallData(o.ball);
+        this.allCars = new ArrayList<>(o.allCars.size());
+        for (var car : o.allCars)
+            this.allCars.add(car.fork());
+        this.car = this.allCars.get(o.allCars.indexOf(o.car));
+        this.team = o.team;
+        this.request = o.request;
+        this.gameInfo = o.request.gameInfo();
+        this.readers = null;
+        this.carPool = null;
+    }
+
+    /**
+     * Overwrites the cars, ball and game info with the ones from request. Nothing but the vectors and matrices of the cars and ball is allocated,
+     * once the pool has seen every player
+     */
+    DataPacket fill(GameTickPacket request) {
+        assert this.readers != null : "Snapshots can't be refilled";
+        this.request = request;
+        this.gameInfo = request.gameInfo(this.readers.gameInfo);
+        final float elapsedSeconds = this.gameInfo.secondsElapsed();
+        this.ball.fill(request.ball(this.readers.ball), elapsedSeconds, this.readers);
+
+        final int numPlayers = request.playersLength();
+        while (this.carPool.size() < numPlayers)
+            this.carPool.add(new CarData());
+        this.allCars.clear();
+        for (int i = 0; i < numPlayers; i++) {
+            final CarData car = this.carPool.get(i);
+            car.fill(request.players(this.readers.player, i), elapsedSeconds, i, this.readers);
+            this.allCars.add(car);
         }
 
-        this.car = allCars.get(playerIndex);
+        this.car = this.allCars.get(this.playerIndex);
         this.team = this.car.team;
-        this.gameInfo = request.gameInfo();
+        return this;
+    }
+
+    /**
+     * Deep copy of the cars (including their jump and dodge state) and ball, it stays the same when this packet is refilled
+     */
+    public DataPacket snapshot() {
+        return new DataPacket(this);
+    }
+
+    // Reusable flatbuffer accessors, reading a table through these doesn't allocate
+    static final class Readers {
+        final PlayerInfo player = new PlayerInfo();
+        final BallInfo ball = new BallInfo();
+        final GameInfo gameInfo = new GameInfo();
+        final Physics physics = new Physics();
+        final Touch touch = new Touch();
+        final ScoreInfo scoreInfo = new ScoreInfo();
+        final BoxShape hitbox = new BoxShape();
+        final Rotator rotator = new Rotator();
+        final rlbot.flat.Vector3 vector = new rlbot.flat.Vector3();
     }
 }
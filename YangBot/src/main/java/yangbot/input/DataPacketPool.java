@@ -0,0 +1,28 @@
+package yangbot.input;
+
+import rlbot.flat.GameTickPacket;
+
+/**
+ * Two {@link DataPacket}s per bot that take turns being refilled from the GameTickPacket, instead of building a new packet with new cars every tick.
+ * <p>
+ * A packet returned by {@link #next} (and every car and the ball in it) is valid for the tick it was filled in and the one after.
+ * The tick after that it is overwritten, so the previous tick's cars are still intact while the current one is processed.
+ * Anything that holds on to packet cars or the ball for longer has to copy them:
+ * {@link DataPacket#snapshot()}, {@link CarData#fork()} or {@link BallData#BallData(BallData)}.
+ * The vectors and matrices of a car or ball are never modified, only replaced, keeping references to those is fine.
+ * Not thread-safe, one pool per bot.
+ */
+public class DataPacketPool {
+
+    private final DataPacket[] packets;
+    private int current = 0;
+
+    public DataPacketPool(int playerIndex) {
+        this.packets = new DataPacket[]{new DataPacket(playerIndex), new DataPacket(playerIndex)};
+    }
+
+    public DataPacket next(GameTickPacket request) {
+        this.current ^= 1;
+        return this.packets[this.current].fill(request);
+    }
+}
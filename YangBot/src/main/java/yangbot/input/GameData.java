@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class GameData {
 
@@ -34,11 +35,34 @@ public class GameData {
     public GameData(Long threadId) {
     }
 
+    // Overrides current() while a simulation task runs on a worker thread
+    private static final ThreadLocal<GameData> boundGameData = new ThreadLocal<>();
+
     public static GameData current() {
+        final GameData bound = boundGameData.get();
+        if (bound != null)
+            return bound;
         botLoopMap.computeIfAbsent(Thread.currentThread().getId(), GameData::new);
         return botLoopMap.get(Thread.currentThread().getId());
     }
 
+    /**
+     * Runs the task with {@link #current()} returning gameData on this thread.
+     * Lets simulations that rely on {@link #current()} run on pool threads, each with their own context
+     */
+    public static <T> T runWith(GameData gameData, Supplier<T> task) {
+        final GameData previous = boundGameData.get();
+        boundGameData.set(gameData);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null)
+                boundGameData.remove();
+            else
+                boundGameData.set(previous);
+        }
+    }
+
     public boolean isFoolGameData() {
         return false;
     }
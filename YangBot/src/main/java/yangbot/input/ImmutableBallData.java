@@ -49,6 +49,15 @@ public class ImmutableBallData {
         this.elapsedSeconds = 0;
     }
 
+    public ImmutableBallData(Vector3 position, Vector3 velocity, Vector3 angularVelocity, float elapsedSeconds) {
+        this.position = position;
+        this.velocity = velocity;
+        this.angularVelocity = angularVelocity;
+        this.latestTouch = null;
+        this.hasBeenTouched = false;
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
     public boolean hasBeenTouched() {
         return this.hasBeenTouched && this.latestTouch != null;
     }
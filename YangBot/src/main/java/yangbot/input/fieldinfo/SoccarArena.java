@@ -0,0 +1,158 @@
+package yangbot.input.fieldinfo;
+
+import yangbot.input.RLConstants;
+
+/**
+ * Analytic collision geometry of the standard soccar arena.
+ * <p>
+ * The playable volume is an octagonal prism (side walls, back walls and 45° corners) between the floor and the ceiling,
+ * with every edge rounded by {@link #EDGE_RADIUS}. The goals are boxes cut into the back walls.
+ * This replaces the triangle mesh RLUtilities uses, which is good enough for ball prediction and cheap enough to call every tick.
+ */
+public class SoccarArena {
+
+    public static final float WALL_X = RLConstants.arenaHalfWidth;
+    public static final float WALL_Y = RLConstants.arenaHalfLength;
+    public static final float CEILING_Z = RLConstants.arenaHeight;
+    public static final float CORNER = 8064; // |x| + |y| on the diagonal corner walls
+    public static final float EDGE_RADIUS = 256; // Rounding between floor, walls and ceiling
+
+    public static final float GOAL_HALF_WIDTH = RLConstants.goalCenterToPost;
+    public static final float GOAL_HEIGHT = RLConstants.goalHeight;
+    public static final float GOAL_BACK_Y = WALL_Y + 880;
+
+    private static final float SQRT2 = (float) Math.sqrt(2);
+    private static final float INV_SQRT2 = 1 / SQRT2;
+
+    // The arena shrunk by EDGE_RADIUS, rounded edges are everything within EDGE_RADIUS of this prism
+    private static final float INNER_X = WALL_X - EDGE_RADIUS;
+    private static final float INNER_Y = WALL_Y - EDGE_RADIUS;
+    private static final float INNER_CORNER = CORNER - EDGE_RADIUS * SQRT2;
+    private static final float INNER_FLOOR = EDGE_RADIUS;
+    private static final float INNER_CEILING = CEILING_Z - EDGE_RADIUS;
+
+    /**
+     * Closest arena surface to a point.
+     * <p>
+     * {@code distance} is negative if the point is inside a wall. The normal is a unit vector pointing away from the surface, into the arena.
+     * The contact point on the surface is {@code point - normal * distance}.
+     */
+    public static class Contact {
+        public float distance;
+        public float nx, ny, nz;
+
+        private void set(float distance, float nx, float ny, float nz) {
+            this.distance = distance;
+            this.nx = nx;
+            this.ny = ny;
+            this.nz = nz;
+        }
+    }
+
+    /**
+     * Finds the surface closest to (x, y, z). Doesn't allocate, so it can be called from tight simulation loops.
+     */
+    public static void closestSurface(float x, float y, float z, Contact out) {
+        final float ax = Math.abs(x), ay = Math.abs(y);
+        final float sx = x < 0 ? -1 : 1, sy = y < 0 ? -1 : 1;
+
+        if (ax < GOAL_HALF_WIDTH && z < GOAL_HEIGHT)
+            goalChannel(ax, ay, z, sx, sy, out);
+        else
+            arena(ax, ay, z, sx, sy, out);
+    }
+
+    public static Contact closestSurface(float x, float y, float z) {
+        final Contact contact = new Contact();
+        closestSurface(x, y, z, contact);
+        return contact;
+    }
+
+    // Points in front of / inside a goal: flat floor, the posts and crossbar, and the goal box itself
+    private static void goalChannel(float ax, float ay, float z, float sx, float sy, Contact out) {
+        out.set(z, 0, 0, 1);
+
+        // Distance to the goal frame, or the goal walls once the point is past the goal line
+        final float inFront = Math.max(0, WALL_Y - ay);
+        final float toSide = GOAL_HALF_WIDTH - ax;
+        final float toRoof = GOAL_HEIGHT - z;
+        final float toFrame = Math.min(toSide, toRoof);
+        final float frameDist = (float) Math.sqrt(inFront * inFront + toFrame * toFrame);
+        if (frameDist < out.distance) {
+            final float inv = 1 / Math.max(frameDist, 1e-6f);
+            if (toSide < toRoof)
+                out.set(frameDist, -sx * toSide * inv, -sy * inFront * inv, 0);
+            else
+                out.set(frameDist, 0, -sy * inFront * inv, -toRoof * inv);
+        }
+
+        final float toBack = GOAL_BACK_Y - ay;
+        if (toBack < out.distance)
+            out.set(toBack, 0, -sy, 0);
+    }
+
+    private static void arena(float ax, float ay, float z, float sx, float sy, Contact out) {
+        // Project onto the inner octagon (first quadrant, everything is mirrored)
+        float qx = ax, qy = ay;
+        if (ax > INNER_X || ay > INNER_Y || ax + ay > INNER_CORNER) {
+            float bestDistSq = Float.MAX_VALUE;
+
+            // Side wall: x = INNER_X, y in [0, INNER_CORNER - INNER_X]
+            {
+                final float py = Math.min(ay, INNER_CORNER - INNER_X);
+                final float dx = ax - INNER_X, dy = ay - py;
+                final float d = dx * dx + dy * dy;
+                if (d < bestDistSq) {
+                    bestDistSq = d;
+                    qx = INNER_X;
+                    qy = py;
+                }
+            }
+            // Back wall: y = INNER_Y, x in [0, INNER_CORNER - INNER_Y]
+            {
+                final float px = Math.min(ax, INNER_CORNER - INNER_Y);
+                final float dx = ax - px, dy = ay - INNER_Y;
+                final float d = dx * dx + dy * dy;
+                if (d < bestDistSq) {
+                    bestDistSq = d;
+                    qx = px;
+                    qy = INNER_Y;
+                }
+            }
+            // Corner: from (INNER_X, INNER_CORNER - INNER_X) to (INNER_CORNER - INNER_Y, INNER_Y)
+            {
+                final float over = (ax + ay - INNER_CORNER) * 0.5f;
+                final float px = Math.max(INNER_CORNER - INNER_Y, Math.min(INNER_X, ax - over));
+                final float py = INNER_CORNER - px;
+                final float dx = ax - px, dy = ay - py;
+                final float d = dx * dx + dy * dy;
+                if (d < bestDistSq) {
+                    qx = px;
+                    qy = py;
+                }
+            }
+        }
+        final float qz = Math.max(INNER_FLOOR, Math.min(INNER_CEILING, z));
+
+        final float dx = ax - qx, dy = ay - qy, dz = z - qz;
+        final float outside = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (outside > 0) {
+            // On a rounded edge or a flat surface, the normal points back towards the inner prism
+            final float inv = 1 / outside;
+            out.set(EDGE_RADIUS - outside, -dx * inv * sx, -dy * inv * sy, -dz * inv);
+            return;
+        }
+
+        // Deep inside: distance to the nearest face of the inner prism plus the rounding
+        out.set(z, 0, 0, 1);
+        if (CEILING_Z - z < out.distance)
+            out.set(CEILING_Z - z, 0, 0, -1);
+        if (WALL_X - ax < out.distance)
+            out.set(WALL_X - ax, -sx, 0, 0);
+        if (WALL_Y - ay < out.distance)
+            out.set(WALL_Y - ay, 0, -sy, 0);
+        final float toCorner = (CORNER - ax - ay) * INV_SQRT2;
+        if (toCorner < out.distance)
+            out.set(toCorner, -sx * INV_SQRT2, -sy * INV_SQRT2, 0);
+    }
+}
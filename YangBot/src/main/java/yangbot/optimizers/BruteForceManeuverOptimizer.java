@@ -1,21 +1,38 @@
 package yangbot.optimizers;
 
-import java.util.function.Function;
-
+/**
+ * Evaluates every point of the grid spanned by the parameter steps, in order.
+ * Mainly useful as a reference for the other strategies, the number of evaluations grows exponentially with the number of parameters.
+ */
 public class BruteForceManeuverOptimizer<T extends Optimizeable> extends ManeuverOptimizer<T> {
 
-
     public BruteForceManeuverOptimizer(T maneuver) {
         super(maneuver);
-    }
-
-    // Steps = Number of values evaluated
-    public void addVariable(String name, float lowerBound, float upperBound, float steps) {
-
+        this.evaluationBudget = Integer.MAX_VALUE;
     }
 
     @Override
-    public void optimize(Function<T, Float> f) {
-
+    protected void search() {
+        final int dimensions = this.dimensions();
+        final int[] index = new int[dimensions];
+        final float[] point = new float[dimensions];
+
+        while (!this.shouldStop()) {
+            for (int i = 0; i < dimensions; i++)
+                point[i] = this.parameters.get(i).gridPosition(index[i]);
+            this.evaluate(point);
+
+            // Advance the odometer
+            int i = 0;
+            while (i < dimensions) {
+                index[i]++;
+                if (index[i] < this.parameters.get(i).getSteps())
+                    break;
+                index[i] = 0;
+                i++;
+            }
+            if (i == dimensions)
+                return;
+        }
     }
 }
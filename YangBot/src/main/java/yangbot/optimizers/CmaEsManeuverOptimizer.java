@@ -0,0 +1,128 @@
+package yangbot.optimizers;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Evolution strategy with a diagonal covariance matrix (separable CMA-ES).
+ * <p>
+ * Samples a population around the current mean, moves the mean towards the best samples,
+ * and adapts the step size and the per-parameter spread from the successful steps.
+ * Handles noisy and rugged objectives better than {@link PatternSearchManeuverOptimizer}, but needs more evaluations to converge.
+ * Sampling is seeded, so results are reproducible.
+ */
+public class CmaEsManeuverOptimizer<T extends Optimizeable> extends ManeuverOptimizer<T> {
+
+    /**
+     * Initial standard deviation (normalized)
+     */
+    public float initialSigma = 0.3f;
+    /**
+     * Stop once the standard deviation of all parameters is smaller than this (normalized)
+     */
+    public float minSigma = 1e-3f;
+    /**
+     * Samples per generation, 0 picks the default of 4 + 3 ln(n)
+     */
+    public int populationSize = 0;
+    public long seed = 0;
+
+    public CmaEsManeuverOptimizer(T maneuver) {
+        super(maneuver);
+    }
+
+    @Override
+    protected void search() {
+        final int n = this.dimensions();
+        final int lambda = this.populationSize > 0 ? this.populationSize : 4 + (int) (3 * Math.log(n));
+        final int mu = Math.max(1, lambda / 2);
+        final Random random = new Random(this.seed);
+
+        // Recombination weights
+        final double[] weights = new double[mu];
+        double weightSum = 0;
+        for (int i = 0; i < mu; i++) {
+            weights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+            weightSum += weights[i];
+        }
+        double weightSqSum = 0;
+        for (int i = 0; i < mu; i++) {
+            weights[i] /= weightSum;
+            weightSqSum += weights[i] * weights[i];
+        }
+        final double muEff = 1 / weightSqSum;
+
+        // Learning rates, covariance rates scaled up for the diagonal model
+        final double cSigma = (muEff + 2) / (n + muEff + 5);
+        final double dSigma = 1 + 2 * Math.max(0, Math.sqrt((muEff - 1) / (n + 1)) - 1) + cSigma;
+        final double cC = (4 + muEff / n) / (n + 4 + 2 * muEff / n);
+        final double c1 = Math.min(1, (n + 2) / 3.0 * 2 / ((n + 1.3) * (n + 1.3) + muEff));
+        final double cMu = Math.min(1 - c1, (n + 2) / 3.0 * 2 * (muEff - 2 + 1 / muEff) / ((n + 2) * (n + 2) + muEff));
+        final double chiN = Math.sqrt(n) * (1 - 1 / (4.0 * n) + 1 / (21.0 * n * n));
+
+        final double[] mean = new double[n];
+        Arrays.fill(mean, 0.5);
+        final double[] variance = new double[n];
+        Arrays.fill(variance, 1);
+        final double[] pathSigma = new double[n];
+        final double[] pathC = new double[n];
+        double sigma = this.initialSigma;
+
+        final float[][] samples = new float[lambda][n];
+        final double[][] steps = new double[lambda][n];
+        final float[] scores = new float[lambda];
+        final Integer[] order = new Integer[lambda];
+
+        int generation = 0;
+        while (!this.shouldStop()) {
+            generation++;
+            for (int k = 0; k < lambda; k++) {
+                for (int i = 0; i < n; i++) {
+                    final double x = Math.max(0, Math.min(1, mean[i] + sigma * Math.sqrt(variance[i]) * random.nextGaussian()));
+                    samples[k][i] = (float) x;
+                    // Step actually taken after clamping to the bounds
+                    steps[k][i] = (x - mean[i]) / sigma;
+                }
+                scores[k] = this.evaluate(samples[k]);
+                order[k] = k;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(scores[a], scores[b]));
+
+            final double[] meanStep = new double[n];
+            for (int j = 0; j < mu; j++) {
+                final double[] step = steps[order[j]];
+                for (int i = 0; i < n; i++)
+                    meanStep[i] += weights[j] * step[i];
+            }
+
+            double pathSigmaNorm = 0;
+            for (int i = 0; i < n; i++) {
+                mean[i] = Math.max(0, Math.min(1, mean[i] + sigma * meanStep[i]));
+                pathSigma[i] = (1 - cSigma) * pathSigma[i] + Math.sqrt(cSigma * (2 - cSigma) * muEff) * meanStep[i] / Math.sqrt(variance[i]);
+                pathSigmaNorm += pathSigma[i] * pathSigma[i];
+            }
+            pathSigmaNorm = Math.sqrt(pathSigmaNorm);
+
+            // h_sigma = 0: the step was unusually long, don't grow the evolution path of the covariance with it
+            final boolean stepTooLong = pathSigmaNorm / Math.sqrt(1 - Math.pow(1 - cSigma, 2 * generation)) >= (1.4 + 2 / (n + 1.0)) * chiN;
+            double maxDeviation = 0;
+            for (int i = 0; i < n; i++) {
+                pathC[i] = (1 - cC) * pathC[i] + (stepTooLong ? 0 : Math.sqrt(cC * (2 - cC) * muEff) * meanStep[i]);
+
+                double rankMu = 0;
+                for (int j = 0; j < mu; j++)
+                    rankMu += weights[j] * steps[order[j]][i] * steps[order[j]][i];
+                // Without the path update the variance would shrink too fast, the correction makes up for it
+                final double pathCorrection = stepTooLong ? cC * (2 - cC) * variance[i] : 0;
+                variance[i] = (1 - c1 - cMu) * variance[i] + c1 * (pathC[i] * pathC[i] + pathCorrection) + cMu * rankMu;
+                variance[i] = Math.max(variance[i], 1e-12);
+                maxDeviation = Math.max(maxDeviation, Math.sqrt(variance[i]));
+            }
+            sigma *= Math.exp(cSigma / dSigma * (pathSigmaNorm / chiN - 1));
+            sigma = Math.min(sigma, 1);
+
+            if (sigma * maxDeviation < this.minSigma)
+                return;
+        }
+    }
+}
@@ -14,8 +14,14 @@ import yangbot.util.math.vector.Vector3;
 import yangbot.util.scenario.ScenarioUtil;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.function.BiPredicate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 public class DodgeStrikeOptimizer {
 
@@ -30,6 +36,28 @@ public class DodgeStrikeOptimizer {
 
     public float maxJumpDelay = 0.6f;
     public float jumpDelayStep = 0.1f;
+    /**
+     * Number of threads simulating strike candidates, 1 simulates everything on the calling thread
+     */
+    public int parallelism = defaultParallelism;
+    public static int defaultParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    /**
+     * Sweep a twice as coarse grid and refine the best strike with a pattern search instead, needs far fewer simulations
+     */
+    public boolean adaptiveSearch = false;
+    /**
+     * Simulate the jump shared by candidates that only differ in their dodge once, and fork the candidates from checkpoints right before their dodge
+     */
+    public boolean shareSimulationPrefix = true;
+    /**
+     * Maximum number of simulations spent refining when adaptiveSearch is enabled
+     */
+    public int refinementBudget = 16;
+    /**
+     * Predict the ball with the pure-Java {@link BallSimulator} instead of the native simulation.
+     * Off by default, the arena model hasn't been validated against recorded game trajectories yet
+     */
+    public boolean useJavaBallSimulation = false;
 
     public float dodgeCollisionTime = 0;
     public boolean solvedGoodStrike = false;
@@ -38,12 +66,85 @@ public class DodgeStrikeOptimizer {
     private BallData hitBall;
     private Vector3 contactPoint;
     private boolean doesHitNotInvolveDodge;
+    private int simulationCount = 0;
+    private long simulatedTicks = 0;
 
     private GameData gameData;
 
-    private boolean evaluateCollisionState(CarData simCar, BallData simBall, StrikeStatistics statistics) {
-        final GameData gameData = GameData.current();
-        final CarData car = gameData.getCarData();
+    /**
+     * Candidate parameters for the strike dodge, in the order the sweep would test them sequentially
+     */
+    private static class StrikeCandidate {
+        final int delayGroup; // hadNonDodgeHit is reset for every delay
+        final float delay, duration, angleDiff, enableBoostAt;
+        final Vector2 direction;
+        final Matrix3x3 preorientMatrix;
+
+        StrikeCandidate(int delayGroup, float delay, float duration, float angleDiff, Vector2 direction, Matrix3x3 preorientMatrix, float enableBoostAt) {
+            this.delayGroup = delayGroup;
+            this.delay = delay;
+            this.duration = duration;
+            this.angleDiff = angleDiff;
+            this.direction = direction;
+            this.preorientMatrix = preorientMatrix;
+            this.enableBoostAt = enableBoostAt;
+        }
+    }
+
+    /**
+     * Parameters refined by the pattern search around the best candidate of the sweep
+     */
+    public static class StrikeParameters implements Optimizeable {
+        public float delay, angleDiff;
+    }
+
+    /**
+     * Outcome of simulating a candidate that hit the ball
+     */
+    private static class StrikeResult {
+        final CarData simCar;
+        final BallData simBall;
+        final Vector3 simContact;
+        final DodgeManeuver simDodge;
+        final boolean isWheelHit;
+        final YangBallPrediction simBallPred;
+        final GameData gradingGameData;
+
+        StrikeResult(CarData simCar, BallData simBall, Vector3 simContact, DodgeManeuver simDodge, boolean isWheelHit, YangBallPrediction simBallPred, GameData gradingGameData) {
+            this.simCar = simCar;
+            this.simBall = simBall;
+            this.simContact = simContact;
+            this.simDodge = simDodge;
+            this.isWheelHit = isWheelHit;
+            this.simBallPred = simBallPred;
+            this.gradingGameData = gradingGameData;
+        }
+    }
+
+    private static final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    private static ForkJoinPool getPool(int parallelism) {
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    private boolean isWheelHit(CarData simCar, BallData simBall) {
+        final CarData car = this.gameData.getCarData();
+
+        assert simBall.latestTouch != null && simBall.latestTouch.position != null;
+        var rel = simBall.latestTouch.position.sub(simCar.position); // car -> contact
+        float localContactF = rel.dot(simCar.hitbox.getOrientation().forward());
+        rel = simCar.hitbox.removeOffset(rel); // hitbox center -> contact
+        float localHitboxContactZ = simCar.hitbox.getOrientation().up().dot(rel);
+
+        final var wheelInfo = car.wheelInfo;
+        final var frontAxle = wheelInfo.get(1, 0);
+        final var backAxle = wheelInfo.get(-1, 0);
+        return localHitboxContactZ < -simCar.hitbox.hitboxLengths.mul(0.5f).z && Range.isInRange(localContactF, backAxle.localPos.x - backAxle.radius - 1, frontAxle.localPos.x + frontAxle.radius + 1);
+    }
+
+    // Runs in submission order on the calling thread, graders are stateful
+    private boolean evaluateCollisionState(StrikeResult result, StrikeStatistics statistics) {
+        final CarData simCar = result.simCar;
 
         statistics.didHitBall = true;
         final boolean isNonDodgeHit = (!simCar.doubleJumped || simCar.dodgeTimer < 0.05f);
@@ -56,74 +157,130 @@ public class DodgeStrikeOptimizer {
         statistics.didHitBallAfterDodge |= !isNonDodgeHit;
 
         // Did it hit with the wheels?
-        {
-            assert simBall.latestTouch != null && simBall.latestTouch.position != null;
-            var rel = simBall.latestTouch.position.sub(simCar.position); // car -> contact
-            float localContactF = rel.dot(simCar.hitbox.getOrientation().forward());
-            rel = simCar.hitbox.removeOffset(rel); // hitbox center -> contact
-            float localHitboxContactZ = simCar.hitbox.getOrientation().up().dot(rel);
-
-            final var wheelInfo = car.wheelInfo;
-            final var frontAxle = wheelInfo.get(1, 0);
-            final var backAxle = wheelInfo.get(-1, 0);
-            if (localHitboxContactZ < -simCar.hitbox.hitboxLengths.mul(0.5f).z && Range.isInRange(localContactF, backAxle.localPos.x - backAxle.radius - 1, frontAxle.localPos.x + frontAxle.radius + 1)) {
-                statistics.numWheelHits++;
-                return false;
-            }
+        if (result.isWheelHit) {
+            statistics.numWheelHits++;
+            return false;
         }
 
-        YangBallPrediction simBallPred;
-        if (this.customGrader.requiredBallPredLength() > 0)
-            simBallPred = YangBotJNAInterop.getBallPrediction(simBall, this.customGrader.requiredBallPredLength() > 1 ? 60 : 120, this.customGrader.requiredBallPredLength());
-        else
-            simBallPred = YangBallPrediction.empty();
-
-        final GameData tempGameData = new GameData(0L);
-        tempGameData.update(simCar, new ImmutableBallData(simBall), List.of(simCar), gameData.getGravity().z, RLConstants.tickFrequency, null, simBallPred);
-
         statistics.numGraderCalls++;
 
-        if (!this.customGrader.isImproved(tempGameData))
+        if (!this.customGrader.isImproved(result.gradingGameData))
             return false;
-        this.hitPrediction = simBallPred;
+        this.hitPrediction = result.simBallPred;
         return true;
     }
 
-    private boolean testParameters(float delay, float duration, Vector2 direction, Matrix3x3 preorientMatrix, float enableBoostAt, float T, BiPredicate<CarData, BallData> onCollide, YangBallPrediction ballPrediction) {
-        assert !ballPrediction.isEmpty();
+    /**
+     * Car, dodge and ball at the start of a simulation tick
+     */
+    private static class SimulationState {
+        float time = 0;
+        CarData simCar;
+        DodgeManeuver simDodge;
+        BallData simBall;
+        Vector3 simContact = null;
+        boolean ended = false; // Ball was hit, car left the arena or ran out of time
+        int ticks = 0;
+
+        SimulationState fork() {
+            final SimulationState fork = new SimulationState();
+            fork.time = this.time;
+            fork.simCar = this.simCar.fork();
+            fork.simDodge = new DodgeManeuver(this.simDodge);
+            fork.simDodge.setIsDone(this.simDodge.isDone());
+            fork.simBall = new BallData(this.simBall);
+            fork.simContact = this.simContact;
+            fork.ended = this.ended;
+            return fork;
+        }
+    }
+
+    /**
+     * Candidates that simulate identically until their dodge starts: same jump duration, preorientation and boost.
+     * They share one simulated prefix and fork from it at the last tick before the dodge can happen.
+     */
+    private static class PrefixGroup {
+        final StrikeCandidate prototype;
+        final List<Integer> candidates = new ArrayList<>();
+        float[] delays;
+        SimulationState[] checkpoints;
+        int prefixTicks = 0;
+
+        PrefixGroup(StrikeCandidate prototype) {
+            this.prototype = prototype;
+        }
+
+        boolean sharesPrefix(StrikeCandidate candidate) {
+            return candidate.duration == prototype.duration
+                    && candidate.enableBoostAt == prototype.enableBoostAt
+                    && (candidate.preorientMatrix == null) == (prototype.preorientMatrix == null);
+        }
+
+        void collectDelays(List<StrikeCandidate> all) {
+            final float[] delays = new float[this.candidates.size()];
+            for (int i = 0; i < delays.length; i++)
+                delays[i] = all.get(this.candidates.get(i)).delay;
+            Arrays.sort(delays);
+
+            int unique = 0;
+            for (float delay : delays) {
+                if (unique == 0 || delay != delays[unique - 1])
+                    delays[unique++] = delay;
+            }
+            this.delays = Arrays.copyOf(delays, unique);
+        }
+
+        SimulationState checkpointFor(StrikeCandidate candidate) {
+            final int index = Arrays.binarySearch(this.delays, candidate.delay);
+            assert index >= 0;
+            return this.checkpoints[index];
+        }
+    }
+
+    private SimulationState initialState(StrikeCandidate candidate, DodgeManeuver baseDodge) {
         final CarData car = gameData.getCarData();
         final ImmutableBallData ball = gameData.getBallData();
 
-        if(enableBoostAt == -1)
-            enableBoostAt = 999;
-
-        CarData simCar = new CarData(car);
-        simCar.hasWheelContact = false;
-        simCar.elapsedSeconds = 0;
-        simCar.jumpTimer = this.strikeDodge.timer;
-        simCar.enableJumpAcceleration = true;
-        simCar.lastControllerInputs.withJump(true);
-
-        BallData simBall = new BallData(ball);
-        simBall.hasBeenTouched = false;
-        DodgeManeuver simDodge = new DodgeManeuver(this.strikeDodge);
-        simDodge.reportProblems = false;
-        simDodge.delay = delay;
-        simDodge.duration = duration;
-        simDodge.direction = direction;
-        simDodge.timer = this.strikeDodge.timer;
-
-        if (preorientMatrix != null) {
-            simDodge.preorientOrientation = preorientMatrix;
-            simDodge.enablePreorient = true;
+        final SimulationState state = new SimulationState();
+        state.simCar = new CarData(car);
+        state.simCar.hasWheelContact = false;
+        state.simCar.elapsedSeconds = 0;
+        state.simCar.jumpTimer = baseDodge.timer;
+        state.simCar.enableJumpAcceleration = true;
+        state.simCar.lastControllerInputs.withJump(true);
+
+        state.simBall = new BallData(ball);
+        state.simBall.hasBeenTouched = false;
+        state.simDodge = new DodgeManeuver(baseDodge);
+        state.simDodge.reportProblems = false;
+        state.simDodge.delay = candidate.delay;
+        state.simDodge.duration = candidate.duration;
+        state.simDodge.direction = candidate.direction;
+        state.simDodge.timer = baseDodge.timer;
+
+        if (candidate.preorientMatrix != null) {
+            state.simDodge.preorientOrientation = candidate.preorientMatrix;
+            state.simDodge.enablePreorient = true;
         }
+        return state;
+    }
 
-        FoolGameData foolGameData = GameData.current().fool();
-        Vector3 simContact = null;
+    /**
+     * Steps the state until it ended, or until the tick in which a dodge with the given delay could start
+     *
+     * @return true if the state ended
+     */
+    private static boolean simulate(SimulationState state, float timeEnd, float forkDelay, float enableBoostAt, YangBallPrediction ballPrediction, FoolGameData foolGameData) {
+        final CarData simCar = state.simCar;
+        final DodgeManeuver simDodge = state.simDodge;
 
-        float timeEnd = T + 0.3f;
         // Simulate ball - car collision
-        for (float time = 0; time < timeEnd; time += SIMULATION_DT) {
+        for (; state.time < timeEnd; state.time += SIMULATION_DT) {
+            // One tick early, so float rounding can't make us miss the dodge
+            if (simDodge.timer + 2 * SIMULATION_DT >= forkDelay)
+                return false;
+
+            state.ticks++;
             ControlsOutput simControls = new ControlsOutput();
 
             foolGameData.foolCar(simCar);
@@ -142,57 +299,204 @@ public class DodgeStrikeOptimizer {
             if (simCar.position.z < RLConstants.carElevation - 5)
                 break;
 
-            simContact = simBall.collide(simCar, -3);
+            state.simContact = state.simBall.collide(simCar, -3);
 
-            if (simBall.hasBeenTouched)
+            if (state.simBall.hasBeenTouched)
                 break;
 
             // + = hit earlier (car will arrive before ball when executed)
             // - = hit later (ball will arrive before car when executed)
             // The right parameter is different depending on random stuff, its probably latency between us, the framework and rocket league
-            var frameOptional = ballPrediction.getFrameAtRelativeTime(time + RLConstants.tickFrequency);
-            if (frameOptional.isEmpty()) {
+            final int frameIndex = ballPrediction.indexAtRelativeTime(state.time + RLConstants.tickFrequency);
+            if (frameIndex == -1) {
                 // this is pretty terrible ngl
                 break;
             }
 
-            simBall = frameOptional.get().ballData.makeMutable();
-            assert simBall.velocity.magnitude() < BallData.MAX_VELOCITY * 1.2f : "Got faulty ball: " + simBall;
+            state.simBall = ballPrediction.frameAt(frameIndex).ballData.makeMutable();
+            assert state.simBall.velocity.magnitude() < BallData.MAX_VELOCITY * 1.2f : "Got faulty ball: " + state.simBall;
 
-            simBall.hasBeenTouched = false;
+            state.simBall.hasBeenTouched = false;
         }
 
-        if (!simBall.hasBeenTouched){
-            //System.out.println("miss with delay="+simDodge.delay+" dur="+simDodge.duration);
-            return false;
+        state.ended = true;
+        return true;
+    }
+
+    /**
+     * Simulates the prefix shared by the group without dodging, and checkpoints it right before each delay
+     */
+    private void simulatePrefix(PrefixGroup group, DodgeManeuver baseDodge, float T, YangBallPrediction ballPrediction, FoolGameData foolGameData) {
+        final SimulationState state = this.initialState(group.prototype, baseDodge);
+        state.simDodge.delay = Float.MAX_VALUE; // never dodges
+        state.simDodge.direction = null;
+
+        float enableBoostAt = group.prototype.enableBoostAt;
+        if (enableBoostAt == -1)
+            enableBoostAt = 999;
+
+        group.checkpoints = new SimulationState[group.delays.length];
+        for (int i = 0; i < group.delays.length; i++) {
+            if (!state.ended)
+                simulate(state, T + 0.3f, group.delays[i], enableBoostAt, ballPrediction, foolGameData);
+            group.checkpoints[i] = state.fork();
         }
+        group.prefixTicks = state.ticks;
+    }
 
-        //System.out.println("hit  with delay="+simDodge.delay+" dur="+simDodge.duration);
+    /**
+     * Finishes a candidate from a fork of its checkpoint and prepares everything the grader needs. Doesn't touch the optimizer's state, so candidates can be simulated in parallel.
+     *
+     * @return null if the ball wasn't hit
+     */
+    private StrikeResult testParameters(StrikeCandidate candidate, SimulationState state, float T, YangBallPrediction ballPrediction, FoolGameData foolGameData) {
+        assert !ballPrediction.isEmpty();
 
-        // Evaluate post-collision ball state
-        if (onCollide.test(simCar, simBall)) {
-            this.strikeDodge.delay = simDodge.delay;
-            this.strikeDodge.target = null;
-            this.strikeDodge.direction = simDodge.direction;
-            this.strikeDodge.duration = simDodge.duration;
-            this.strikeDodge.enablePreorient = simDodge.enablePreorient;
-            this.strikeDodge.preorientOrientation = simDodge.preorientOrientation;
-            this.strikeDodge.controllerInput = simDodge.controllerInput;
-
-            if (!simCar.doubleJumped)
-                this.strikeDodge.delay = 9999;
-
-            this.optimizedEnableBoostAt = enableBoostAt;
-
-            this.strikeSolved = true;
-            this.hitCar = simCar;
-            this.hitBall = simBall;
-            this.contactPoint = simContact;
-            this.dodgeCollisionTime = simCar.elapsedSeconds + car.elapsedSeconds;
-            this.doesHitNotInvolveDodge = !simCar.doubleJumped;
-            return true;
+        float enableBoostAt = candidate.enableBoostAt;
+        if (enableBoostAt == -1)
+            enableBoostAt = 999;
+
+        state.simDodge.delay = candidate.delay;
+        state.simDodge.direction = candidate.direction;
+        if (!state.ended)
+            simulate(state, T + 0.3f, Float.MAX_VALUE, enableBoostAt, ballPrediction, foolGameData);
+
+        final CarData simCar = state.simCar;
+        final BallData simBall = state.simBall;
+        if (!simBall.hasBeenTouched)
+            return null;
+
+        // Post-collision ball state, graded later
+        final boolean isWheelHit = this.isWheelHit(simCar, simBall);
+        YangBallPrediction simBallPred = YangBallPrediction.empty();
+        GameData gradingGameData = null;
+        if (!isWheelHit) {
+            if (this.customGrader.requiredBallPredLength() > 0)
+                simBallPred = this.predictBall(simBall, this.customGrader.requiredBallPredLength() > 1 ? 60 : 120, this.customGrader.requiredBallPredLength());
+
+            gradingGameData = new GameData(0L);
+            gradingGameData.update(simCar, new ImmutableBallData(simBall), List.of(simCar), gameData.getGravity().z, RLConstants.tickFrequency, null, simBallPred);
+        }
+
+        return new StrikeResult(simCar, simBall, state.simContact, state.simDodge, isWheelHit, simBallPred, gradingGameData);
+    }
+
+    private void applyStrike(StrikeCandidate candidate, StrikeResult result) {
+        final CarData car = gameData.getCarData();
+        final DodgeManeuver simDodge = result.simDodge;
+        final CarData simCar = result.simCar;
+
+        this.strikeDodge.delay = simDodge.delay;
+        this.strikeDodge.target = null;
+        this.strikeDodge.direction = simDodge.direction;
+        this.strikeDodge.duration = simDodge.duration;
+        this.strikeDodge.enablePreorient = simDodge.enablePreorient;
+        this.strikeDodge.preorientOrientation = simDodge.preorientOrientation;
+        this.strikeDodge.controllerInput = simDodge.controllerInput;
+
+        if (!simCar.doubleJumped)
+            this.strikeDodge.delay = 9999;
+
+        this.optimizedEnableBoostAt = candidate.enableBoostAt;
+
+        this.strikeSolved = true;
+        this.hitCar = simCar;
+        this.hitBall = result.simBall;
+        this.contactPoint = result.simContact;
+        this.dodgeCollisionTime = simCar.elapsedSeconds + car.elapsedSeconds;
+        this.doesHitNotInvolveDodge = !simCar.doubleJumped;
+    }
+
+    private StrikeResult[] simulateCandidates(List<StrikeCandidate> candidates, DodgeManeuver baseDodge, float T, YangBallPrediction ballPrediction) {
+        final StrikeResult[] results = new StrikeResult[candidates.size()];
+
+        // Candidates that only differ in their dodge share one simulated prefix
+        final List<PrefixGroup> groups = new ArrayList<>();
+        final PrefixGroup[] groupOf = new PrefixGroup[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            final StrikeCandidate candidate = candidates.get(i);
+            PrefixGroup group = null;
+            if (this.shareSimulationPrefix) {
+                for (PrefixGroup g : groups) {
+                    if (g.sharesPrefix(candidate)) {
+                        group = g;
+                        break;
+                    }
+                }
+            }
+            if (group == null) {
+                group = new PrefixGroup(candidate);
+                groups.add(group);
+            }
+            group.candidates.add(i);
+            groupOf[i] = group;
+        }
+        for (PrefixGroup group : groups)
+            group.collectDelays(candidates);
+
+        // Every task gets its own context, simulations use GameData.current() for gravity and maneuvers
+        this.forEach(groups.size(), i -> {
+            final FoolGameData context = this.gameData.fool();
+            GameData.runWith(context, () -> {
+                this.simulatePrefix(groups.get(i), baseDodge, T, ballPrediction, context);
+                return null;
+            });
+        });
+        final int[] ticks = new int[candidates.size()];
+        this.forEach(candidates.size(), i -> {
+            final FoolGameData context = this.gameData.fool();
+            final StrikeCandidate candidate = candidates.get(i);
+            final SimulationState state = groupOf[i].checkpointFor(candidate).fork();
+            state.ticks = 0;
+            results[i] = GameData.runWith(context, () -> this.testParameters(candidate, state, T, ballPrediction, context));
+            ticks[i] = state.ticks;
+        });
+
+        for (PrefixGroup group : groups)
+            this.simulatedTicks += group.prefixTicks;
+        for (int t : ticks)
+            this.simulatedTicks += t;
+        return results;
+    }
+
+    /**
+     * Runs task for [from, to) by splitting the range in halves, every simulation is expensive enough to be its own task
+     */
+    private static class RangeAction extends RecursiveAction {
+        private final int from, to;
+        private final IntConsumer task;
+
+        RangeAction(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                this.task.accept(this.from);
+                return;
+            }
+            final int mid = (this.from + this.to) >>> 1;
+            invokeAll(new RangeAction(this.from, mid, this.task), new RangeAction(mid, this.to, this.task));
+        }
+    }
+
+    private void forEach(int count, IntConsumer task) {
+        if (this.parallelism <= 1 || count < 2) {
+            for (int i = 0; i < count; i++)
+                task.accept(i);
+        } else {
+            // Forked subtasks run in the pool that invoked them
+            getPool(this.parallelism).invoke(new RangeAction(0, count, task));
         }
-        return false;
+    }
+
+    private YangBallPrediction predictBall(BallData ball, int tickRate, float seconds) {
+        if (this.useJavaBallSimulation)
+            return BallSimulator.getBallPrediction(ball, tickRate, seconds);
+        return YangBotJNAInterop.getBallPrediction(ball, tickRate, seconds);
     }
 
     public void solveGoodStrike(GameData gameData, DodgeManeuver strikeDodge) {
@@ -203,7 +507,14 @@ public class DodgeStrikeOptimizer {
         assert this.customGrader != null;
         final CarData car = gameData.getCarData();
         final ImmutableBallData ball = gameData.getBallData();
-        YangBallPrediction ballPrediction = YangBotJNAInterop.getBallPrediction(ball.makeMutable(), RLConstants.tickRate, 3);
+        YangBallPrediction ballPrediction = gameData.getBallPrediction();
+        // Reuse this tick's prediction if it is fine grained enough and starts at the current ball
+        if (ballPrediction == null || ballPrediction.isEmpty() || ballPrediction.tickRate < RLConstants.tickRate
+                || ballPrediction.relativeTimeOfLastFrame() < 3 - RLConstants.tickFrequency
+                || Math.abs(ballPrediction.absoluteTimeAt(0) - ball.elapsedSeconds) > RLConstants.tickFrequency * 0.5f)
+            ballPrediction = this.predictBall(ball.makeMutable(), RLConstants.tickRate, 3);
+        else
+            ballPrediction = ballPrediction.getBeforeRelative(3);
 
         if(debugMessages)
             System.out.println(car.playerIndex+": > Solving good strike " + ScenarioUtil.getEncodedGameState(gameData));
@@ -249,6 +560,7 @@ public class DodgeStrikeOptimizer {
 
         // Statistics
         long ms = System.currentTimeMillis();
+        this.simulatedTicks = 0;
         final var statistics = new StrikeStatistics();
 
         Matrix3x3 preorientMatrix = strikeDodge.preorientOrientation;
@@ -259,46 +571,69 @@ public class DodgeStrikeOptimizer {
             preorientMatrix = Matrix3x3.lookAt(comb, new Vector3(0, 0, 1));
         }
 
-        float chosenAngleDiff = 0;
-        float chosenEnableBoost = 999;
+        final List<StrikeCandidate> candidates = new ArrayList<>();
+        final float gridScale = this.adaptiveSearch ? 2 : 1;
+        int delayGroup = 0;
         for (float duration = MathUtils.clip(this.strikeDodge.timer, 0.1f, 0.2f); duration <= 0.2f; duration = duration < 0.2f ? 0.2f : 999f) {
-            float jumpDelayStep = this.jumpDelayStep;
-            float angleDiffStep = (float) (Math.PI * 0.15f);
+            float jumpDelayStep = this.jumpDelayStep * gridScale;
+            float angleDiffStep = (float) (Math.PI * 0.15f) * gridScale;
             if (duration < 0.2f && T > 0.4f) { // We really only need a duration < 0.2 if we want to single jump
                 jumpDelayStep *= 2;
                 angleDiffStep *= 3;
             }
             for (float delay = duration + 0.05f; delay <= (duration < 0.2f ? 0.3f : this.maxJumpDelay); delay += jumpDelayStep) {
-                statistics.hadNonDodgeHit = false;
                 for (float angleDiff = (float) (Math.PI * -0.9f); angleDiff < (float) (Math.PI * 0.9f); angleDiff += angleDiffStep) {
                     boolean allowBoost = car.boost > 10 && duration == 0.2f && delay > 0.3f;
                     allowBoost &= Math.abs(angleDiff) < Math.PI * 0.2f;
                     for(int enableBoost = 0; enableBoost <= (allowBoost ? 1 : 0); enableBoost++){
-                        statistics.simulationCount++;
-
-                        boolean hasImproved = this.testParameters(
+                        candidates.add(new StrikeCandidate(
+                                delayGroup,
                                 delay,
                                 duration,
+                                angleDiff,
                                 carToBallDirection.rotateBy(angleDiff),
                                 delay >= 0.2f ? preorientMatrix : null,
-                                enableBoost == 1 ? this.strikeDodge.timer + 0.1f : 999,
-                                T,
-                                (simCar, simBall) -> this.evaluateCollisionState(simCar, simBall, statistics),
-                                ballPrediction);
-                        if(hasImproved){
-                            chosenAngleDiff = angleDiff;
-                            chosenEnableBoost = enableBoost == 1 ? this.strikeDodge.timer + 0.1f : 999;
-                        }
+                                enableBoost == 1 ? this.strikeDodge.timer + 0.1f : 999));
                     }
                 }
+                delayGroup++;
             }
         }
 
+        // Every candidate starts from the strike dodge as it was before the sweep, so its result doesn't depend on which candidates were graded before it.
+        // The old sequential sweep copied strikeDodge after earlier improvements had written to it, so an improving preoriented candidate
+        // also made later candidates preorient (and reuse its controllerInput). The chosen strike can differ from that sweep for that reason
+        final DodgeManeuver baseDodge = new DodgeManeuver(this.strikeDodge);
+        final StrikeResult[] results = this.simulateCandidates(candidates, baseDodge, T, ballPrediction);
+
+        // Reduce in sweep order, so the grader sees candidates exactly like it would sequentially
+        StrikeCandidate chosen = null;
+        int lastDelayGroup = -1;
+        for (int i = 0; i < candidates.size(); i++) {
+            final StrikeCandidate candidate = candidates.get(i);
+            statistics.simulationCount++;
+            if (candidate.delayGroup != lastDelayGroup) {
+                statistics.hadNonDodgeHit = false;
+                lastDelayGroup = candidate.delayGroup;
+            }
+
+            final StrikeResult result = results[i];
+            if (result == null || !this.evaluateCollisionState(result, statistics))
+                continue;
+
+            this.applyStrike(candidate, result);
+            chosen = candidate;
+        }
+
+        if (this.adaptiveSearch && chosen != null && this.refinementBudget > 0)
+            chosen = this.refineStrike(chosen, carToBallDirection, preorientMatrix, baseDodge, T, ballPrediction, statistics);
+        this.simulationCount = statistics.simulationCount;
+
         if (this.strikeSolved) { // Found shot
 
             if (debugMessages){
                 System.out.printf("%d: >> Optimized dodgeManeuver: delay=%.2f duration=%.2f grader=%s doesHitNotInvolveDodge=%s angleDiff=%.3f boostAt=%.3f "+System.lineSeparator(),
-                        car.playerIndex, this.strikeDodge.delay, this.strikeDodge.duration, this.customGrader.getClass().getSimpleName(), doesHitNotInvolveDodge, chosenAngleDiff, chosenEnableBoost);
+                        car.playerIndex, this.strikeDodge.delay, this.strikeDodge.duration, this.customGrader.getClass().getSimpleName(), doesHitNotInvolveDodge, chosen.angleDiff, chosen.enableBoostAt);
 
                 System.out.println(car.playerIndex + ": > Additional grader info: " + this.customGrader.getAdditionalInfo());
             }
@@ -318,7 +653,67 @@ public class DodgeStrikeOptimizer {
             System.out.println(car.playerIndex + ": > expectedBallHitTime=" + this.expectedBallHitTime + " T=" + T + " numHits=" + statistics.numHits+" wheelHits="+ statistics.numWheelHits);
         }
         if(debugMessages)
-            System.out.println(car.playerIndex + ": > Strike planning took: " + (System.currentTimeMillis() - ms) + "ms with " + statistics.simulationCount + " simulations at: " + car.elapsedSeconds);
+            System.out.println(car.playerIndex + ": > Strike planning took: " + (System.currentTimeMillis() - ms) + "ms with " + statistics.simulationCount + " simulations (" + this.simulatedTicks + " ticks) on " + this.parallelism + " threads at: " + car.elapsedSeconds);
+    }
+
+    /**
+     * Pattern search over delay and angle, one coarse grid cell around the best candidate.
+     * Graders are stateful, so every improvement gets a lower score than all previous ones.
+     *
+     * @return The best candidate
+     */
+    private StrikeCandidate refineStrike(StrikeCandidate chosen, Vector2 carToBallDirection, Matrix3x3 preorientMatrix, DodgeManeuver baseDodge, float T, YangBallPrediction ballPrediction, StrikeStatistics statistics) {
+        final float delayRadius = this.jumpDelayStep * 2;
+        final float angleRadius = (float) (Math.PI * 0.15f) * 2;
+        final float minDelay = chosen.duration + 0.05f;
+        final float maxDelay = chosen.duration < 0.2f ? 0.3f : this.maxJumpDelay;
+        final float delayLower = Math.max(minDelay, chosen.delay - delayRadius);
+        final float delayUpper = Math.min(maxDelay, chosen.delay + delayRadius);
+        if (delayUpper <= delayLower)
+            return chosen;
+
+        final StrikeCandidate[] best = {chosen};
+        final int[] improvements = {0};
+        final var optimizer = new PatternSearchManeuverOptimizer<>(new StrikeParameters());
+        optimizer.addVariable("delay", delayLower, delayUpper, 2);
+        optimizer.addVariable("angleDiff", chosen.angleDiff - angleRadius, chosen.angleDiff + angleRadius, 2);
+        optimizer.setStart(chosen.delay, chosen.angleDiff);
+        optimizer.evaluationBudget = this.refinementBudget;
+        optimizer.initialStep = 0.25f;
+        optimizer.minStep = 0.03f;
+        optimizer.optimize(parameters -> {
+            final StrikeCandidate candidate = new StrikeCandidate(-1,
+                    parameters.delay,
+                    chosen.duration,
+                    parameters.angleDiff,
+                    carToBallDirection.rotateBy(parameters.angleDiff),
+                    parameters.delay >= 0.2f ? preorientMatrix : null,
+                    chosen.enableBoostAt);
+            statistics.simulationCount++;
+            final StrikeResult result = this.simulateCandidates(List.of(candidate), baseDodge, T, ballPrediction)[0];
+            if (result == null)
+                return 1f;
+
+            statistics.hadNonDodgeHit = false;
+            if (!this.evaluateCollisionState(result, statistics))
+                return 0f;
+            this.applyStrike(candidate, result);
+            best[0] = candidate;
+            improvements[0]++;
+            return (float) -improvements[0];
+        });
+        return best[0];
+    }
+
+    public int getSimulationCount() {
+        return this.simulationCount;
+    }
+
+    /**
+     * @return Number of car ticks simulated by the last solve
+     */
+    public long getSimulatedTicks() {
+        return this.simulatedTicks;
     }
 
     public void drawSolvedStrike(AdvancedRenderer renderer) {
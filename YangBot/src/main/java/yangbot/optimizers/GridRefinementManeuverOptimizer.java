@@ -0,0 +1,77 @@
+package yangbot.optimizers;
+
+import java.util.Arrays;
+
+/**
+ * Coarse-to-fine grid search.
+ * <p>
+ * Evaluates the grid spanned by the parameter steps, then repeatedly shrinks the grid around the best point
+ * (keeping the number of steps, by default spanning one cell of the previous grid in each direction) until the budget is used up, the target score is reached or the cells get smaller than {@link #minCellSize}.
+ */
+public class GridRefinementManeuverOptimizer<T extends Optimizeable> extends ManeuverOptimizer<T> {
+
+    /**
+     * Number of cells of the previous grid covered by the refined grid, centered on the best point
+     */
+    public float refinementCells = 2;
+    /**
+     * Stop refining once grid cells are smaller than this (normalized)
+     */
+    public float minCellSize = 1e-3f;
+
+    public GridRefinementManeuverOptimizer(T maneuver) {
+        super(maneuver);
+    }
+
+    @Override
+    protected void search() {
+
+        final int dimensions = this.dimensions();
+        final float[] lower = new float[dimensions];
+        final float[] size = new float[dimensions];
+        Arrays.fill(size, 1);
+
+        while (!this.shouldStop()) {
+            this.evaluateGrid(lower, size);
+            if (!this.hasResult())
+                return;
+
+            final float[] best = this.bestPoint();
+            boolean canRefine = false;
+            for (int i = 0; i < dimensions; i++) {
+                final int cells = this.parameters.get(i).getSteps() - 1;
+                if (cells < 1) // Single step, always the midpoint of the full range
+                    continue;
+                size[i] = Math.min(size[i] * 0.5f, size[i] * this.refinementCells / cells);
+                lower[i] = Math.max(0, Math.min(1 - size[i], best[i] - size[i] * 0.5f));
+                if (size[i] / cells >= this.minCellSize)
+                    canRefine = true;
+            }
+            if (!canRefine)
+                return;
+        }
+    }
+
+    private void evaluateGrid(float[] lower, float[] size) {
+        final int dimensions = this.dimensions();
+        final int[] index = new int[dimensions];
+        final float[] point = new float[dimensions];
+
+        while (!this.shouldStop()) {
+            for (int i = 0; i < dimensions; i++)
+                point[i] = lower[i] + size[i] * this.parameters.get(i).gridPosition(index[i]);
+            this.evaluate(point);
+
+            int i = 0;
+            while (i < dimensions) {
+                index[i]++;
+                if (index[i] < this.parameters.get(i).getSteps())
+                    break;
+                index[i] = 0;
+                i++;
+            }
+            if (i == dimensions)
+                return;
+        }
+    }
+}
@@ -3,20 +3,138 @@ package yangbot.optimizers;
 import yangbot.util.math.MathUtils;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Function;
 
+/**
+ * Searches the public float fields of an {@link Optimizeable} for the lowest output of an objective function.
+ * <p>
+ * Subclasses implement the search strategy, they work in normalized coordinates (every parameter mapped to [0, 1])
+ * and evaluate points through {@link #evaluate(float[])}, which takes care of the evaluation budget, early stopping and tracking the best point.
+ */
 public abstract class ManeuverOptimizer<T extends Optimizeable> {
 
     protected T maneuver;
+    protected final List<OptimizeableParameter> parameters = new ArrayList<>();
+
+    /**
+     * Maximum number of objective evaluations
+     */
+    public int evaluationBudget = 200;
+    /**
+     * Stop as soon as a score at or below this is found
+     */
+    public float targetScore = Float.NEGATIVE_INFINITY;
+
+    private Function<T, Float> objective;
+    private int evaluations = 0;
+    private float bestScore = Float.POSITIVE_INFINITY;
+    private float[] bestPoint = null;
 
     public ManeuverOptimizer(T maneuver) {
         this.maneuver = maneuver;
     }
 
+    // Steps = Number of values evaluated on a grid, strategies that don't use a grid ignore it. A single step evaluates the midpoint
+    public ManeuverOptimizer<T> addVariable(String name, float lowerBound, float upperBound, int steps) {
+        this.parameters.add(new OptimizeableParameter(name, lowerBound, upperBound, steps));
+        return this;
+    }
+
     // Optimizes ? for lowest output
-    public abstract void optimize(Function<T, Float> f);
+    public void optimize(Function<T, Float> f) {
+        assert !this.parameters.isEmpty() : "No variables to optimize";
+        this.objective = f;
+        this.evaluations = 0;
+        this.bestScore = Float.POSITIVE_INFINITY;
+        this.bestPoint = null;
+
+        this.search();
+
+        if (this.bestPoint != null)
+            this.apply(this.bestPoint);
+    }
+
+    /**
+     * Runs the search strategy, calling {@link #evaluate(float[])} until {@link #shouldStop()}
+     */
+    protected abstract void search();
+
+    /**
+     * Evaluates a point in normalized coordinates, values outside [0, 1] are clamped
+     *
+     * @return The score, or {@link Float#POSITIVE_INFINITY} if the budget is used up
+     */
+    protected float evaluate(float[] point) {
+        assert point.length == this.parameters.size();
+        if (this.evaluations >= this.evaluationBudget)
+            return Float.POSITIVE_INFINITY;
+
+        final float[] clamped = new float[point.length];
+        for (int i = 0; i < point.length; i++)
+            clamped[i] = MathUtils.clip(point[i], 0, 1);
+
+        this.apply(clamped);
+        this.evaluations++;
+        final Float result = this.objective.apply(this.maneuver);
+        final float score = result == null || Float.isNaN(result) ? Float.POSITIVE_INFINITY : result;
+
+        if (score < this.bestScore) {
+            this.bestScore = score;
+            this.bestPoint = clamped;
+        }
+        return score;
+    }
+
+    protected boolean shouldStop() {
+        return this.evaluations >= this.evaluationBudget || this.bestScore <= this.targetScore;
+    }
+
+    private void apply(float[] point) {
+        for (int i = 0; i < point.length; i++) {
+            final OptimizeableParameter parameter = this.parameters.get(i);
+            parameter.set(this.maneuver, parameter.valueAt(point[i]));
+        }
+    }
+
+    protected int dimensions() {
+        return this.parameters.size();
+    }
+
+    protected float[] bestPoint() {
+        return this.bestPoint == null ? null : this.bestPoint.clone();
+    }
 
+    public int getEvaluations() {
+        return this.evaluations;
+    }
+
+    public float getBestScore() {
+        return this.bestScore;
+    }
+
+    public boolean hasResult() {
+        return this.bestPoint != null;
+    }
+
+    /**
+     * @return Best parameter values in the order they were added
+     */
+    public float[] getBestValues() {
+        assert this.hasResult();
+        final float[] values = new float[this.bestPoint.length];
+        for (int i = 0; i < values.length; i++)
+            values[i] = this.parameters.get(i).valueAt(this.bestPoint[i]);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(evaluations=" + this.evaluations + ",bestScore=" + this.bestScore + ",best=" + (this.hasResult() ? Arrays.toString(this.getBestValues()) : "none") + ")";
+    }
 
     public static class OptimizeableParameter implements Iterator<Float> {
         public final String name;
@@ -24,6 +142,8 @@ public abstract class ManeuverOptimizer<T extends Optimizeable> {
         public final float upperBound;
         private float stepsTaken = 0;
         private int steps;
+        private Field field = null;
+        private Class<?> fieldClass = null; // Class the field was looked up on, it may be declared in a superclass
 
         public OptimizeableParameter(String name, float lowerBound, float upperBound, int steps) {
             this.name = name;
@@ -31,21 +151,43 @@ public abstract class ManeuverOptimizer<T extends Optimizeable> {
             this.upperBound = upperBound;
             this.steps = steps;
 
-            assert steps > 1;
+            assert steps >= 1;
             assert this.upperBound > this.lowerBound;
         }
 
         public void updateObject(Object o) {
             assert hasNext();
+            this.set(o, this.next());
+        }
+
+        public void set(Object o, float value) {
             try {
-                Class<?> clazz = o.getClass();
-                Field f = clazz.getField(this.name);
-                f.setFloat(o, this.next());
+                if (this.fieldClass != o.getClass()) {
+                    this.field = o.getClass().getField(this.name);
+                    this.fieldClass = o.getClass();
+                }
+                this.field.setFloat(o, value);
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
 
+        // Maps [0, 1] onto [lowerBound, upperBound]
+        public float valueAt(float normalized) {
+            return MathUtils.lerp(this.lowerBound, this.upperBound, normalized);
+        }
+
+        public int getSteps() {
+            return this.steps;
+        }
+
+        // Normalized position of grid step index, the midpoint if there is only one step
+        public float gridPosition(int index) {
+            if (this.steps <= 1)
+                return 0.5f;
+            return index / (float) (this.steps - 1);
+        }
+
         public void reset() {
             this.stepsTaken = 0;
         }
@@ -60,6 +202,8 @@ public abstract class ManeuverOptimizer<T extends Optimizeable> {
         public Float next() {
             float stepsTaken = this.stepsTaken;
             this.stepsTaken++;
+            if (steps <= 1)
+                return this.valueAt(0.5f);
             if (stepsTaken <= 0)
                 return lowerBound;
             if (stepsTaken >= steps)
@@ -68,4 +212,4 @@ public abstract class ManeuverOptimizer<T extends Optimizeable> {
             return MathUtils.lerp(this.lowerBound, this.upperBound, (float) stepsTaken / (steps - 1));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package yangbot.optimizers;
+
+/**
+ * Hooke-Jeeves pattern search.
+ * <p>
+ * Polls both directions of every parameter around the current point and moves to the first improvement.
+ * After a successful poll it tries to keep moving in the same direction (pattern move), after a failed one it halves the step size.
+ * Converges to a local minimum, so start it close to a good solution (see {@link #setStart(float...)}).
+ */
+public class PatternSearchManeuverOptimizer<T extends Optimizeable> extends ManeuverOptimizer<T> {
+
+    /**
+     * Initial step size (normalized)
+     */
+    public float initialStep = 0.25f;
+    /**
+     * Stop once the step size is smaller than this (normalized)
+     */
+    public float minStep = 1e-3f;
+    private float[] start = null;
+
+    public PatternSearchManeuverOptimizer(T maneuver) {
+        super(maneuver);
+    }
+
+    /**
+     * Start point in parameter space, defaults to the center of all ranges
+     */
+    public PatternSearchManeuverOptimizer<T> setStart(float... values) {
+        assert values.length == this.dimensions();
+        this.start = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final OptimizeableParameter parameter = this.parameters.get(i);
+            this.start[i] = (values[i] - parameter.lowerBound) / (parameter.upperBound - parameter.lowerBound);
+        }
+        return this;
+    }
+
+    @Override
+    protected void search() {
+        final int dimensions = this.dimensions();
+        float[] base = new float[dimensions];
+        for (int i = 0; i < dimensions; i++)
+            base[i] = this.start == null ? 0.5f : Math.max(0, Math.min(1, this.start[i]));
+
+        float baseScore = this.evaluate(base);
+        float step = this.initialStep;
+
+        while (!this.shouldStop() && step >= this.minStep) {
+            final float[] polled = base.clone();
+            final float polledScore = this.poll(polled, baseScore, step);
+            if (polledScore >= baseScore) {
+                step *= 0.5f;
+                continue;
+            }
+
+            // Pattern move: keep going in the direction that worked
+            final float[] pattern = new float[dimensions];
+            for (int i = 0; i < dimensions; i++)
+                pattern[i] = Math.max(0, Math.min(1, 2 * polled[i] - base[i]));
+            base = polled;
+            baseScore = polledScore;
+
+            if (this.shouldStop())
+                return;
+            final float patternScore = this.evaluate(pattern);
+            if (patternScore < baseScore) {
+                base = pattern;
+                baseScore = patternScore;
+            }
+        }
+    }
+
+    // Exploratory moves around point, modifies point in place
+    private float poll(float[] point, float score, float step) {
+        for (int i = 0; i < point.length && !this.shouldStop(); i++) {
+            final float original = point[i];
+            for (int sign = 1; sign >= -1; sign -= 2) {
+                final float moved = original + sign * step;
+                if (moved < 0 || moved > 1)
+                    continue;
+                point[i] = moved;
+                final float movedScore = this.evaluate(point);
+                if (movedScore < score) {
+                    score = movedScore;
+                    break;
+                }
+                point[i] = original;
+            }
+        }
+        return score;
+    }
+}
@@ -1,14 +1,12 @@
 package yangbot.optimizers.graders;
 
+import yangbot.input.BallData;
 import yangbot.input.CarData;
 import yangbot.input.GameData;
-import yangbot.input.ImmutableBallData;
 import yangbot.input.RLConstants;
 import yangbot.util.YangBallPrediction;
 import yangbot.util.math.vector.Vector2;
 
-import java.util.Optional;
-
 public class DefensiveGrader extends Grader {
 
     private boolean isScoring = true;
@@ -24,12 +22,12 @@ public class DefensiveGrader extends Grader {
         boolean result = false;
 
         for (float time = 0; time < Math.min(3, simBallPred.relativeTimeOfLastFrame()); time += RLConstants.simulationTickFrequency * 2) {
-            Optional<YangBallPrediction.YangPredictionFrame> dataAtFrame = simBallPred.getFrameAtRelativeTime(time);
-            if (dataAtFrame.isEmpty())
+            final int frameIndex = simBallPred.indexAtRelativeTime(time);
+            if (frameIndex == -1)
                 break;
 
-            ImmutableBallData ballAtFrame = dataAtFrame.get().ballData;
-            boolean landsInGoal = ballAtFrame.makeMutable().isInOwnGoal(teamSign);
+            final float ballY = simBallPred.positionYAt(frameIndex);
+            boolean landsInGoal = BallData.isInGoal(ballY, teamSign);
 
             if (landsInGoal) {
                 if (time > this.timeToGoal) {
@@ -54,14 +52,14 @@ public class DefensiveGrader extends Grader {
         int distSamples = 0;
         // Take some samples for avg. dist to own goal
         for (float time = 0; time < Math.min(2.5f, simBallPred.relativeTimeOfLastFrame()); time += 0.25f) {
-            Optional<YangBallPrediction.YangPredictionFrame> dataAtFrame = simBallPred.getFrameAtRelativeTime(time);
-            if (dataAtFrame.isEmpty())
+            final int frameIndex = simBallPred.indexAtRelativeTime(time);
+            if (frameIndex == -1)
                 break;
 
-            ImmutableBallData ballAtFrame = dataAtFrame.get().ballData;
-
             // Weigh x axis more, we don't want to pass it back to the opponent waiting in the middle
-            dist += ballAtFrame.position.flatten().sub(ownGoal).mul(1.2f, 1).magnitude();
+            final float dx = (simBallPred.positionXAt(frameIndex) - ownGoal.x) * 1.2f;
+            final float dy = simBallPred.positionYAt(frameIndex) - ownGoal.y;
+            dist += (float) Math.sqrt(dx * dx + dy * dy);
             distSamples++;
         }
 
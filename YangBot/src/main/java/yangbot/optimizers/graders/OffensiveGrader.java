@@ -1,14 +1,12 @@
 package yangbot.optimizers.graders;
 
+import yangbot.input.BallData;
 import yangbot.input.CarData;
 import yangbot.input.GameData;
-import yangbot.input.ImmutableBallData;
 import yangbot.input.RLConstants;
 import yangbot.util.YangBallPrediction;
 import yangbot.util.math.vector.Vector2;
 
-import java.util.Optional;
-
 public class OffensiveGrader extends Grader {
 
     private final float maximumTimeForGoal = 2.5f;
@@ -25,12 +23,12 @@ public class OffensiveGrader extends Grader {
         final int teamSign = car.team * 2 - 1;
 
         for (float time = 0; time < Math.min(3, simBallPred.relativeTimeOfLastFrame()); time += RLConstants.simulationTickFrequency * 2) {
-            Optional<YangBallPrediction.YangPredictionFrame> dataAtFrame = simBallPred.getFrameAtRelativeTime(time);
-            if (dataAtFrame.isEmpty())
+            final int frameIndex = simBallPred.indexAtRelativeTime(time);
+            if (frameIndex == -1)
                 break;
-            ImmutableBallData ballAtFrame = dataAtFrame.get().ballData;
+            final float ballY = simBallPred.positionYAt(frameIndex);
 
-            boolean landsInGoal = time <= maximumTimeForGoal && ballAtFrame.makeMutable().isInEnemyGoal(teamSign);
+            boolean landsInGoal = time <= maximumTimeForGoal && BallData.isInGoal(ballY, -teamSign);
 
             if (didLandInGoal) { // The ball has to at least land in the goal to be better than the last simulation
                 if (!landsInGoal)
@@ -57,14 +55,14 @@ public class OffensiveGrader extends Grader {
         final Vector2 enemyGoal = new Vector2(0, -teamSign * (RLConstants.goalDistance + 100));
         // Take some samples for avg. dist to goal
         for (float time = 0; time < Math.min(1.80f, simBallPred.relativeTimeOfLastFrame()); time += 0.25f) {
-            Optional<YangBallPrediction.YangPredictionFrame> dataAtFrame = simBallPred.getFrameAtRelativeTime(time);
-            if (dataAtFrame.isEmpty())
+            final int frameIndex = simBallPred.indexAtRelativeTime(time);
+            if (frameIndex == -1)
                 break;
 
-            ImmutableBallData ballAtFrame = dataAtFrame.get().ballData;
-
             // a ball close to the middle is worth more than a ball close in the corner
-            dist += ballAtFrame.position.flatten().sub(enemyGoal).mul(1.2f, 1).magnitude();
+            final float dx = (simBallPred.positionXAt(frameIndex) - enemyGoal.x) * 1.2f;
+            final float dy = simBallPred.positionYAt(frameIndex) - enemyGoal.y;
+            dist += (float) Math.sqrt(dx * dx + dy * dy);
             distSamples++;
         }
 
@@ -1,8 +1,9 @@
 package yangbot.optimizers.graders;
 
 import yangbot.input.GameData;
+import yangbot.input.ImmutableBallData;
+import yangbot.optimizers.model.GameStateEvaluator;
 import yangbot.optimizers.model.ModelUtils;
-import yangbot.util.Tuple;
 
 public class ValueNetworkGrader extends Grader {
 
@@ -10,18 +11,27 @@ public class ValueNetworkGrader extends Grader {
     private float bestPrediction = -1;
     public boolean careAboutCars = true;
     public boolean usedAdvancedValuation = false;
+    // Cars and ball of the last candidate, so unchanged cars aren't encoded again
+    private final GameStateEvaluator evaluator = new GameStateEvaluator();
 
     @Override
     public boolean isImproved(GameData gameData) {
-        float myTeam = gameData.getCarData().team;
-        var simBall = gameData.getBallData();
-        var ball = simBall;
+        var ball = gameData.getBallData();
         float pred;
         if(careAboutCars && gameData.getAllCars().size() >= 1 && gameData.getAllCars().stream().anyMatch(c -> !c.isDemolished)){
-            pred = 0.8f * ModelUtils.gameStateToPrediction(gameData, false, true) + 0.2f * ModelUtils.ballToPrediction(ball).getKey();
-            this.usedAdvancedValuation = true;
+            this.evaluator.setState(gameData.getAllCars(), ball);
+            pred = this.predict(ball);
         }else
             pred = ModelUtils.ballToPrediction(ball).getKey();
+        return this.grade(gameData.getCarData().team, pred);
+    }
+
+    private float predict(ImmutableBallData ball) {
+        this.usedAdvancedValuation = true;
+        return 0.8f * this.evaluator.evaluate(GameData.current().getCarData().team, false, true) + 0.2f * ModelUtils.ballToPrediction(ball).getKey();
+    }
+
+    private boolean grade(float myTeam, float pred) {
         float error = Math.abs(pred - myTeam);
         if (error < lastError) {
             lastError = error;
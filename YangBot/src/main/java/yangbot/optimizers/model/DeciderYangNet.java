@@ -43,16 +43,25 @@ public class DeciderYangNet extends SimpleYangNet {
     }
 
     public float[] deciderForward(float[] input){
-        for(int i = 0; i < dActs.length; i++)
-            input = this.layers.get(i + vActs.length).forward(input);
-        return input;
+        final float[] out = new float[this.layers.get(vActs.length + dActs.length - 1).getOutputs()];
+        this.deciderForward(input, 1, out);
+        return out;
+    }
+
+    public void deciderForward(float[] inputs, int batch, float[] out) {
+        this.forwardLayers(vActs.length, vActs.length + dActs.length, inputs, batch, out);
     }
 
     @Override
     public float[] forward(float[] input) {
-        for(int i = 0; i < vActs.length; i++)
-            input = this.layers.get(i).forward(input);
-        return input;
+        final float[] out = new float[this.layers.get(vActs.length - 1).getOutputs()];
+        this.forward(input, 1, out);
+        return out;
+    }
+
+    @Override
+    public void forward(float[] inputs, int batch, float[] out) {
+        this.forwardLayers(0, vActs.length, inputs, batch, out);
     }
 
     public static DeciderYangNet readFrom(String resourcePath, int[][] sizes, LinearLayer.Activation[] vAct, LinearLayer.Activation[] dAct) {
@@ -0,0 +1,258 @@
+package yangbot.optimizers.model;
+
+import yangbot.input.CarData;
+import yangbot.input.ImmutableBallData;
+import yangbot.input.RLConstants;
+import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental version of {@link ModelUtils#gameStateToPrediction}.
+ * <p>
+ * Remembers the cars and ball of the last evaluation and only re-encodes what changed:
+ * the ball independent part of a car encoding is redone when the car changed, the ball relative part and the importance when the car or the ball changed.
+ * Cars are matched by playerIndex and compared by instance (plus their physics state, team and demolition, in case the instance was updated in place).
+ * The decider runs in one batch for all cars with an outdated importance, the value net in one batch for all matchups.
+ * <p>
+ * Not thread-safe.
+ */
+public class GameStateEvaluator {
+
+    private static final int CAR_SIZE = ModelUtils.CAR_ENCODING_SIZE;
+    private static final int BALL_SIZE = ModelUtils.BALL_ENCODING_SIZE;
+    private static final int DECIDER_SIZE = CAR_SIZE + BALL_SIZE;
+    private static final int VALUE_SIZE = BALL_SIZE + 2 * CAR_SIZE;
+
+    // Stand-ins for an empty team, sitting in their goal
+    private static final CarData[] PLACEHOLDERS = {placeholder(-1), placeholder(1)};
+
+    private final List<Slot> slots = new ArrayList<>();
+    private ImmutableBallData ball = null;
+    private final float[] ballEncoding = new float[BALL_SIZE];
+
+    private float[] deciderBatch = new float[0];
+    private float[] deciderOut = new float[0];
+    private float[] valueBatch = new float[0];
+    private float[] valueOut = new float[0];
+    private int[] team0 = new int[0], team1 = new int[0];
+
+    private int deciderEvaluations = 0;
+    private int carEncodings = 0;
+
+    private static class Slot {
+        final int playerIndex;
+        CarData car;
+        // Physics state the encoding was made from
+        Vector3 position, velocity, angularVelocity;
+        Matrix3x3 orientation;
+        float boost;
+        int team;
+        boolean isDemolished;
+
+        final float[] encoding = new float[CAR_SIZE];
+        boolean relativeValid = false;
+        float importance;
+        boolean importanceValid = false;
+        boolean present = true;
+
+        Slot(int playerIndex) {
+            this.playerIndex = playerIndex;
+        }
+
+        boolean matches(CarData c) {
+            return c == this.car && c.position == this.position && c.velocity == this.velocity
+                    && c.angularVelocity == this.angularVelocity && c.orientation == this.orientation && c.boost == this.boost
+                    && c.team == this.team && c.isDemolished == this.isDemolished;
+        }
+    }
+
+    private static CarData placeholder(int team) {
+        var sample = new CarData(new Vector3(0, team * -(RLConstants.goalDistance + 200), RLConstants.carElevation), new Vector3(), new Vector3(), Matrix3x3.lookAt(new Vector3(1, 0, 0)));
+        sample.playerIndex = -999;
+        return sample;
+    }
+
+    /**
+     * Replaces all cars and the ball
+     */
+    public void setState(List<CarData> cars, ImmutableBallData ball) {
+        for (Slot slot : this.slots)
+            slot.present = false;
+        for (CarData car : cars)
+            this.updateCar(car);
+        this.slots.removeIf(s -> !s.present);
+        this.updateBall(ball);
+    }
+
+    /**
+     * Replaces the car with the same playerIndex, or adds it
+     */
+    public void updateCar(CarData car) {
+        Slot slot = null;
+        for (Slot s : this.slots) {
+            if (s.playerIndex == car.playerIndex) {
+                slot = s;
+                break;
+            }
+        }
+        if (slot == null) {
+            slot = new Slot(car.playerIndex);
+            this.slots.add(slot);
+        }
+        slot.present = true;
+        if (slot.matches(car))
+            return;
+
+        slot.car = car;
+        slot.position = car.position;
+        slot.velocity = car.velocity;
+        slot.angularVelocity = car.angularVelocity;
+        slot.orientation = car.orientation;
+        slot.boost = car.boost;
+        slot.team = car.team;
+        slot.isDemolished = car.isDemolished;
+        ModelUtils.encodeCarStatic(car, slot.encoding, 0);
+        slot.relativeValid = false;
+        slot.importanceValid = false;
+        this.carEncodings++;
+    }
+
+    public void updateBall(ImmutableBallData ball) {
+        if (ball == this.ball)
+            return;
+        this.ball = ball;
+        ModelUtils.encodeBall(ball, this.ballEncoding, 0);
+        for (Slot slot : this.slots) {
+            slot.relativeValid = false;
+            slot.importanceValid = false;
+        }
+    }
+
+    /**
+     * Same as {@link ModelUtils#gameStateToPrediction}, for the current cars and ball
+     *
+     * @param myTeam Team of the car we are evaluating for
+     */
+    public float evaluate(int myTeam, boolean allTeammates, boolean allEnemies) {
+        assert this.ball != null;
+
+        // Importance of every car that changed, in one batch
+        int numDecider = 0;
+        for (Slot slot : this.slots) {
+            if (slot.car.isDemolished)
+                continue;
+            if (!slot.relativeValid) {
+                ModelUtils.encodeCarRelative(slot.car, this.ball, slot.encoding, 0);
+                slot.relativeValid = true;
+            }
+            if (!slot.importanceValid)
+                numDecider++;
+        }
+        if (numDecider > 0) {
+            this.deciderBatch = ensureSize(this.deciderBatch, numDecider * DECIDER_SIZE);
+            this.deciderOut = ensureSize(this.deciderOut, numDecider);
+            int row = 0;
+            for (Slot slot : this.slots) {
+                if (slot.car.isDemolished || slot.importanceValid)
+                    continue;
+                System.arraycopy(slot.encoding, 0, this.deciderBatch, row * DECIDER_SIZE, CAR_SIZE);
+                System.arraycopy(this.ballEncoding, 0, this.deciderBatch, row * DECIDER_SIZE + CAR_SIZE, BALL_SIZE);
+                row++;
+            }
+            DeciderYangNet.GAME_STATE_PREDICTOR.deciderForward(this.deciderBatch, numDecider, this.deciderOut);
+            this.deciderEvaluations += numDecider;
+            row = 0;
+            for (Slot slot : this.slots) {
+                if (slot.car.isDemolished || slot.importanceValid)
+                    continue;
+                slot.importance = this.deciderOut[row++];
+                slot.importanceValid = true;
+            }
+        }
+
+        // Most important cars of each team
+        final int num0 = this.selectTeam(0, (myTeam == 0 ? allTeammates : allEnemies) ? 3 : 1);
+        final int num1 = this.selectTeam(1, (myTeam == 1 ? allTeammates : allEnemies) ? 3 : 1);
+        assert num0 > 0 || num1 > 0;
+
+        float[] placeholder = null;
+        if (num0 == 0 || num1 == 0) {
+            placeholder = new float[CAR_SIZE];
+            final CarData sample = PLACEHOLDERS[num0 == 0 ? 0 : 1];
+            ModelUtils.encodeCarStatic(sample, placeholder, 0);
+            ModelUtils.encodeCarRelative(sample, this.ball, placeholder, 0);
+        }
+
+        // Value of every matchup in one batch
+        final int rows0 = Math.max(1, num0), rows1 = Math.max(1, num1);
+        final int numVal = rows0 * rows1;
+        this.valueBatch = ensureSize(this.valueBatch, numVal * VALUE_SIZE);
+        this.valueOut = ensureSize(this.valueOut, numVal);
+        int row = 0;
+        for (int i = 0; i < rows0; i++) {
+            final float[] enc0 = num0 == 0 ? placeholder : this.slots.get(this.team0[i]).encoding;
+            for (int j = 0; j < rows1; j++) {
+                final float[] enc1 = num1 == 0 ? placeholder : this.slots.get(this.team1[j]).encoding;
+                final int offset = row * VALUE_SIZE;
+                System.arraycopy(this.ballEncoding, 0, this.valueBatch, offset, BALL_SIZE);
+                System.arraycopy(enc0, 0, this.valueBatch, offset + BALL_SIZE, CAR_SIZE);
+                System.arraycopy(enc1, 0, this.valueBatch, offset + BALL_SIZE + CAR_SIZE, CAR_SIZE);
+                row++;
+            }
+        }
+        DeciderYangNet.GAME_STATE_PREDICTOR.forward(this.valueBatch, numVal, this.valueOut);
+
+        float val = 0;
+        for (int i = 0; i < numVal; i++)
+            val += this.valueOut[i];
+        return val / numVal;
+    }
+
+    // Fills team0/team1 with the slot indices of the most important cars, most important first
+    private int selectTeam(int team, int limit) {
+        int[] selected = team == 0 ? this.team0 : this.team1;
+        if (selected.length < this.slots.size()) {
+            selected = new int[this.slots.size()];
+            if (team == 0)
+                this.team0 = selected;
+            else
+                this.team1 = selected;
+        }
+
+        int count = 0;
+        for (int i = 0; i < this.slots.size(); i++) {
+            final Slot slot = this.slots.get(i);
+            if (slot.car.team != team || slot.car.isDemolished)
+                continue;
+            // Stable insertion sort, descending importance
+            int j = count++;
+            while (j > 0 && this.slots.get(selected[j - 1]).importance < slot.importance) {
+                selected[j] = selected[j - 1];
+                j--;
+            }
+            selected[j] = i;
+        }
+        return Math.min(count, limit);
+    }
+
+    private static float[] ensureSize(float[] arr, int size) {
+        return arr.length >= size ? arr : new float[size];
+    }
+
+    /**
+     * @return Number of cars the decider net ran for so far
+     */
+    public int getDeciderEvaluations() {
+        return this.deciderEvaluations;
+    }
+
+    /**
+     * @return Number of (ball independent) car encodings made so far
+     */
+    public int getCarEncodings() {
+        return this.carEncodings;
+    }
+}
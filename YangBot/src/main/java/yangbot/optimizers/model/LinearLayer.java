@@ -4,45 +4,96 @@ import net.jafama.FastMath;
 
 public class LinearLayer {
 
-    private float[][] weights;
-    private float[] biases;
-    private Activation activation;
+    private final int inputs, outputs;
+    private final float[] weights; // row-major, outputs x inputs
+    private final float[] biases;
+    private final Activation activation;
 
     public LinearLayer(float[][] weights, float[] biases, Activation activation) {
+        this(weights[0].length, weights.length, flatten(weights), biases, activation);
+    }
+
+    public LinearLayer(int inputs, int outputs, float[] weights, float[] biases, Activation activation) {
+        assert weights.length == inputs * outputs;
+        assert biases.length == outputs;
+        this.inputs = inputs;
+        this.outputs = outputs;
         this.weights = weights;
         this.biases = biases;
         this.activation = activation;
     }
 
-    private float sigmoid(float x) {
-        return 1 / (1 + (float) FastMath.exp(-1 * x));
+    private static float[] flatten(float[][] weights) {
+        final int cols = weights[0].length;
+        final float[] flat = new float[weights.length * cols];
+        for (int i = 0; i < weights.length; i++) {
+            assert weights[i].length == cols;
+            System.arraycopy(weights[i], 0, flat, i * cols, cols);
+        }
+        return flat;
     }
 
-    private float mish(float x) {
-        return x * (float) (FastMath.tanh(FastMath.log(1 + FastMath.exp(x))));
+    private static float sigmoid(float x) {
+        return 1 / (1 + (float) FastMath.exp(-x));
     }
 
-    private float activation(float x) {
-        switch (activation) {
-            case MISH:
-                return mish(x);
-            case SIGMOID:
-                return sigmoid(x);
-        }
-        return x;
+    // x * tanh(ln(1 + e^x)) with a single exp: tanh(ln(1 + e^x)) = n / (n + 2) with n = e^x * (e^x + 2)
+    private static float mish(float x) {
+        if (x > 20)
+            return x;
+        final float e = (float) FastMath.exp(x);
+        final float n = e * (e + 2);
+        return x * n / (n + 2);
     }
 
     public float[] forward(float[] inp) {
-        assert inp.length == weights[0].length;
-        float[] output = new float[weights.length];
-        for (int i = 0; i < output.length; i++) {
-            for (int b = 0; b < inp.length; b++) {
-                output[i] += inp[b] * weights[i][b];
+        assert inp.length == this.inputs;
+        final float[] output = new float[this.outputs];
+        this.forward(inp, 1, output);
+        return output;
+    }
+
+    /**
+     * Evaluates the layer for a batch of inputs without allocating
+     *
+     * @param inputs row-major, batch x getInputs()
+     * @param out    row-major, batch x getOutputs()
+     */
+    public void forward(float[] inputs, int batch, float[] out) {
+        this.forward(inputs, batch, out, MatMulKernel.INSTANCE);
+    }
+
+    void forward(float[] inputs, int batch, float[] out, MatMulKernel kernel) {
+        assert inputs.length >= batch * this.inputs;
+        assert out.length >= batch * this.outputs;
+        assert inputs != out;
+
+        kernel.multiply(this.weights, this.outputs, this.inputs, inputs, batch, out);
+
+        for (int b = 0; b < batch; b++) {
+            final int offset = b * this.outputs;
+            switch (this.activation) {
+                case MISH:
+                    for (int i = 0; i < this.outputs; i++)
+                        out[offset + i] = mish(out[offset + i] + this.biases[i]);
+                    break;
+                case SIGMOID:
+                    for (int i = 0; i < this.outputs; i++)
+                        out[offset + i] = sigmoid(out[offset + i] + this.biases[i]);
+                    break;
+                default:
+                    for (int i = 0; i < this.outputs; i++)
+                        out[offset + i] += this.biases[i];
             }
-            output[i] += biases[i];
-            output[i] = activation(output[i]);
         }
-        return output;
+    }
+
+    public int getInputs() {
+        return this.inputs;
+    }
+
+    public int getOutputs() {
+        return this.outputs;
     }
 
     public enum Activation {
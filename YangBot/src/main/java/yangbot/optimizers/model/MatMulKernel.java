@@ -0,0 +1,41 @@
+package yangbot.optimizers.model;
+
+/**
+ * Matrix times a batch of vectors: {@code out[b][r] = dot(weights[r], inputs[b])}, all arrays row-major
+ */
+interface MatMulKernel {
+
+    MatMulKernel SCALAR = (weights, rows, cols, inputs, batch, out) -> {
+        for (int b = 0; b < batch; b++) {
+            final int inOffset = b * cols;
+            final int outOffset = b * rows;
+            for (int r = 0; r < rows; r++) {
+                final int wOffset = r * cols;
+                float sum = 0;
+                for (int c = 0; c < cols; c++)
+                    sum += weights[wOffset + c] * inputs[inOffset + c];
+                out[outOffset + r] = sum;
+            }
+        }
+    };
+
+    /**
+     * SIMD kernel if the jdk.incubator.vector module is available (--add-modules jdk.incubator.vector, gradlew run -PvectorApi), the scalar one otherwise.
+     * The kernel itself is in the simd source set, so the module is only needed to compile and run that one.
+     */
+    MatMulKernel INSTANCE = select();
+
+    void multiply(float[] weights, int rows, int cols, float[] inputs, int batch, float[] out);
+
+    static MatMulKernel select() {
+        if (Boolean.getBoolean("yangbot.disableVectorApi") || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return SCALAR;
+        try {
+            // Loaded reflectively, referencing it directly would fail without the module
+            return (MatMulKernel) Class.forName("yangbot.optimizers.model.VectorMatMulKernel").getDeclaredConstructor().newInstance();
+        } catch (Throwable t) {
+            System.err.println("Vector API unavailable, using scalar matmul: " + t);
+            return SCALAR;
+        }
+    }
+}
@@ -2,39 +2,78 @@ package yangbot.optimizers.model;
 
 import yangbot.input.*;
 import yangbot.util.Tuple;
-import yangbot.util.math.vector.Matrix3x3;
-import yangbot.util.math.vector.Vector3;
-
-import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class ModelUtils {
 
+    public static final int BALL_ENCODING_SIZE = 9;
+    public static final int CAR_ENCODING_SIZE = 20;
+    // The first 16 values of a car encoding don't depend on the ball
+    private static final int CAR_STATIC_SIZE = 16;
+
+    // Every thread keeps the state of its last evaluation, cars and ball that didn't change aren't encoded again
+    private static final ThreadLocal<GameStateEvaluator> evaluator = ThreadLocal.withInitial(GameStateEvaluator::new);
+
     public static float[] encodeBall(ImmutableBallData b) {
+        final float[] out = new float[BALL_ENCODING_SIZE];
+        encodeBall(b, out, 0);
+        return out;
+    }
+
+    public static void encodeBall(ImmutableBallData b, float[] out, int offset) {
         var pos = b.position;
         var vel = b.velocity;
         var ang = b.angularVelocity;
-        return new float[]{pos.x / 4100f, pos.y / 6000f, pos.z / 2000f, vel.x / 4000f, vel.y / 4000, vel.z / 4000, ang.x / 6f, ang.y / 6f, ang.z / 6f};
+        out[offset] = pos.x / 4100f;
+        out[offset + 1] = pos.y / 6000f;
+        out[offset + 2] = pos.z / 2000f;
+        out[offset + 3] = vel.x / 4000f;
+        out[offset + 4] = vel.y / 4000;
+        out[offset + 5] = vel.z / 4000;
+        out[offset + 6] = ang.x / 6f;
+        out[offset + 7] = ang.y / 6f;
+        out[offset + 8] = ang.z / 6f;
     }
 
     public static float[] encodeCar(CarData c, ImmutableBallData b) {
+        final float[] out = new float[CAR_ENCODING_SIZE];
+        encodeCarStatic(c, out, 0);
+        encodeCarRelative(c, b, out, 0);
+        return out;
+    }
+
+    // Part of the car encoding that doesn't depend on the ball
+    public static void encodeCarStatic(CarData c, float[] out, int offset) {
         var pos = c.position;
         var vel = c.velocity;
         var ang = c.angularVelocity;
         var forward = c.forward();
         var right = c.right();
+        out[offset] = pos.x / 4100f;
+        out[offset + 1] = pos.y / 6000f;
+        out[offset + 2] = pos.z / 2000f;
+        out[offset + 3] = vel.x / 2300f;
+        out[offset + 4] = vel.y / 2300;
+        out[offset + 5] = vel.z / 2300;
+        out[offset + 6] = ang.x / 5.5f;
+        out[offset + 7] = ang.y / 5.5f;
+        out[offset + 8] = ang.z / 5.5f;
+        out[offset + 9] = forward.x;
+        out[offset + 10] = forward.y;
+        out[offset + 11] = forward.z;
+        out[offset + 12] = right.x;
+        out[offset + 13] = right.y;
+        out[offset + 14] = right.z;
+        out[offset + 15] = c.boost / 100.f;
+    }
+
+    // Car to ball part of the car encoding
+    public static void encodeCarRelative(CarData c, ImmutableBallData b, float[] out, int offset) {
         var cToB = b.position.sub(c.position);
         var cToBNorm = cToB.normalized();
-        return new float[]{
-                pos.x / 4100f, pos.y / 6000f, pos.z / 2000f,
-                vel.x / 2300f, vel.y / 2300, vel.z / 2300,
-                ang.x / 5.5f, ang.y / 5.5f, ang.z / 5.5f,
-                forward.x, forward.y, forward.z,
-                right.x, right.y, right.z,
-                c.boost / 100.f,
-                cToBNorm.x, cToBNorm.y, cToBNorm.z, (float)(Math.sqrt(cToB.magnitudeF()) / Math.sqrt(6000))
-        };
+        out[offset + CAR_STATIC_SIZE] = cToBNorm.x;
+        out[offset + CAR_STATIC_SIZE + 1] = cToBNorm.y;
+        out[offset + CAR_STATIC_SIZE + 2] = cToBNorm.z;
+        out[offset + CAR_STATIC_SIZE + 3] = (float) (Math.sqrt(cToB.magnitudeF()) / Math.sqrt(6000));
     }
 
     // < side | time >
@@ -70,55 +109,9 @@ public class ModelUtils {
 
     public static float gameStateToPrediction(GameData g, boolean allTeammates, boolean allEnemies){
         var myTeam = GameData.current().getCarData().team;
-        var ballEnc = ModelUtils.encodeBall(g.getBallData());
-        Map<Integer, float[]> carData = new HashMap<>();
-        g.getAllCars().forEach(c -> carData.put(c.playerIndex, ModelUtils.encodeCar(c, g.getBallData())));
-        var carImportances = g.getAllCars().stream()
-                .filter(c -> !c.isDemolished)
-                .map(c -> {
-                    var data = ModelUtils.combine(carData.get(c.playerIndex), ballEnc);
-                    float importance = DeciderYangNet.GAME_STATE_PREDICTOR.deciderForward(data)[0];
-                    return new Tuple<>(c, importance);
-                })
-                .collect(Collectors.toList());
-        var t0 = carImportances.stream()
-                .filter(c -> c.getKey().team == 0 && !c.getKey().isDemolished)
-                .sorted(Collections.reverseOrder(Comparator.comparingDouble(Tuple::getValue)))
-                .map(Tuple::getKey).limit((myTeam == 0 ? allTeammates : allEnemies) ? 3 : 1).collect(Collectors.toList());
-        var t1 = carImportances.stream()
-                .filter(c -> c.getKey().team == 1 && !c.getKey().isDemolished)
-                .sorted(Collections.reverseOrder(Comparator.comparingDouble(Tuple::getValue)))
-                .map(Tuple::getKey).limit((myTeam == 1 ? allTeammates : allEnemies) ? 3 : 1).collect(Collectors.toList());
-
-        if(t0.isEmpty() || t1.isEmpty()){
-            assert !t0.isEmpty() || !t1.isEmpty();
-            int team = t0.isEmpty() ? -1 : 1;
-            var sample = new CarData(new Vector3(0, team * -(RLConstants.goalDistance + 200), RLConstants.carElevation), new Vector3(), new Vector3(), Matrix3x3.lookAt(new Vector3(1, 0, 0)));
-            sample.playerIndex = -999;
-            carData.put(-999, ModelUtils.encodeCar(sample, g.getBallData()));
-            if(t0.isEmpty())
-                t0 = List.of(sample);
-            else
-                t1 = List.of(sample);
-        }
-        Function<Tuple<Integer, Integer>, Float> predictOne = tuple -> {
-            var data = ModelUtils.combine(ballEnc, carData.get(tuple.getKey()));
-            data = ModelUtils.combine(data, carData.get(tuple.getValue()));
-            return DeciderYangNet.GAME_STATE_PREDICTOR.forward(data)[0];
-        };
-
-        float val = 0;
-        int numVal = 0;
-        for(var e0 : t0) {
-            for (var e1 : t1) {
-                val += predictOne.apply(new Tuple<>(e0.playerIndex, e1.playerIndex));
-                numVal++;
-            }
-        }
-
-        assert numVal > 0;
-
-        return val / numVal;
+        final GameStateEvaluator evaluator = ModelUtils.evaluator.get();
+        evaluator.setState(g.getAllCars(), g.getBallData());
+        return evaluator.evaluate(myTeam, allTeammates, allEnemies);
     }
 
     public static void preloadAllModels() {
@@ -18,6 +18,9 @@ public class SimpleYangNet {
                         LinearLayer.Activation.SIGMOID});
     }
 
+    // Ping-pong buffers for the hidden layers of batched forward passes
+    private static final ThreadLocal<float[][]> scratch = ThreadLocal.withInitial(() -> new float[2][0]);
+
     protected List<LinearLayer> layers;
 
     protected SimpleYangNet() {
@@ -44,21 +47,21 @@ public class SimpleYangNet {
         int modelIndex = 0;
         int layerIndex = 0;
         while (modelIndex + 1 < model.length) {
-            float[][] weigths = new float[sizes[layerIndex][1]][sizes[layerIndex][0]];
-            float[] biases = new float[sizes[layerIndex][1]];
+            final int inputs = sizes[layerIndex][0];
+            final int outputs = sizes[layerIndex][1];
+            float[] weigths = new float[outputs * inputs]; // row-major, same order as in the model file
+            float[] biases = new float[outputs];
 
-            assert model.length >= modelIndex + 4 * weigths.length * weigths[0].length + 4 * biases.length : model.length + " " + modelIndex + " " + weigths.length + " " + weigths[0].length + " " + biases.length;
+            assert model.length >= modelIndex + 4 * weigths.length + 4 * biases.length : model.length + " " + modelIndex + " " + outputs + " " + inputs + " " + biases.length;
 
             for (int i = 0; i < weigths.length; i++) {
-                for (int b = 0; b < weigths[0].length; b++) {
-                    float f = Float.intBitsToFloat(
-                            (model[modelIndex] & 255) +
-                                    ((model[modelIndex + 1] & 255) << 8) +
-                                    ((model[modelIndex + 2] & 255) << 16) +
-                                    ((model[modelIndex + 3] & 255) << 24));
-                    weigths[i][b] = f;
-                    modelIndex += 4;
-                }
+                float f = Float.intBitsToFloat(
+                        (model[modelIndex] & 255) +
+                                ((model[modelIndex + 1] & 255) << 8) +
+                                ((model[modelIndex + 2] & 255) << 16) +
+                                ((model[modelIndex + 3] & 255) << 24));
+                weigths[i] = f;
+                modelIndex += 4;
             }
             for (int b = 0; b < biases.length; b++) {
                 float f = Float.intBitsToFloat(
@@ -70,7 +73,7 @@ public class SimpleYangNet {
                 modelIndex += 4;
             }
 
-            layers.add(new LinearLayer(weigths, biases, activations[layerIndex]));
+            layers.add(new LinearLayer(inputs, outputs, weigths, biases, activations[layerIndex]));
             layerIndex++;
         }
         assert modelIndex == model.length;
@@ -88,8 +91,36 @@ public class SimpleYangNet {
     }
 
     public float[] forward(float[] input) {
-        for (var l : layers)
-            input = l.forward(input);
-        return input;
+        final float[] out = new float[this.layers.get(this.layers.size() - 1).getOutputs()];
+        this.forward(input, 1, out);
+        return out;
+    }
+
+    /**
+     * Evaluates the net for a batch of inputs, only allocates if the thread's scratch buffers need to grow
+     *
+     * @param inputs row-major, batch x input size
+     * @param out    row-major, batch x output size
+     */
+    public void forward(float[] inputs, int batch, float[] out) {
+        this.forwardLayers(0, this.layers.size(), inputs, batch, out);
+    }
+
+    protected void forwardLayers(int fromLayer, int toLayer, float[] inputs, int batch, float[] out) {
+        assert toLayer > fromLayer;
+        final float[][] buffers = scratch.get();
+        float[] in = inputs;
+        for (int i = fromLayer; i < toLayer; i++) {
+            final LinearLayer layer = this.layers.get(i);
+            float[] target = out;
+            if (i < toLayer - 1) {
+                final int buffer = (i - fromLayer) & 1;
+                if (buffers[buffer].length < batch * layer.getOutputs())
+                    buffers[buffer] = new float[batch * layer.getOutputs()];
+                target = buffers[buffer];
+            }
+            layer.forward(in, batch, target);
+            in = target;
+        }
     }
 }
@@ -18,30 +18,68 @@ import yangbot.util.math.vector.Vector3;
 import java.awt.*;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * Path sampled at points, ordered from start to end. Positions along the path are given as the remaining distance s to the end, so distances[0] = length and the last distance is 0.
+ * <p>
+ * Points and tangents are packed as x, y, z in float arrays. Since distances decrease monotonically, lookups by distance are binary searches,
+ * and {@link #findNearest(Vector3)} starts at the previous result and skips chunks of the path by their bounding spheres.
+ */
 public class Curve {
 
     public float length;
-    public ArrayList<Vector3> points;
     public float[] maxSpeeds;
-    public ArrayList<Vector3> tangents;
     public float[] curvatures;
     public float[] distances;
     public float minimumSpeed = -1;
 
+    private float[] points; // x, y, z per point
+    private float[] tangents; // x, y, z per point, null until calculated or set
+    private int numPoints;
+
+    private static final int NEAREST_CHUNK = 16; // segments per bounding sphere
+    private float[] chunkBounds = null; // center x, y, z, radius per chunk, null if the points changed
+    private int nearestHint = 0; // segment of the last findNearest result
+    private float nearestBest, nearestS; // scratch state of findNearest
+    private int nearestIndex;
+
+    // Reuse segment results in calculateMaxSpeeds and doPathChecking, instead of simulating everything again
+    public boolean useSegmentCache = true;
+
+    // Per segment results of calculateMaxSpeeds, each entry starts with the inputs it was simulated with
+    private static final int FORWARD_STRIDE = 5; // acceleration, curvature, ds, speed in | speed out
+    private static final int BACKWARD_STRIDE = 4; // acceleration, ds, speed in | speed out
+    private static final int BOOST_STRIDE = 11; // gravity, curvature at start and end, ds, max speed at start and end, boost, boost press time | speed, boost, boost press time
+    private float[] forwardCache, backwardCache, boostCache;
+    private int segmentsSimulated = 0, segmentsReused = 0;
+
+    // Inputs of the last doPathChecking, its result is pathCheckStatus
+    private float[] checkedInputs = null;
+    private YangBallPrediction checkedPrediction = null;
+    private float[] checkedMaxSpeeds = null;
+    private float[] bounds = null; // min x, y, z, max x, y, z, null if the points changed
+
     private List<ControlPoint> controlPoints;
     private PathCheckStatus pathCheckStatus = new PathCheckStatus(PathStatus.UNKNOWN);
     private static int ndiv = 16;
     private final int numSubDivisions;
 
     public Curve() {
+        this(0);
+    }
+
+    /**
+     * Empty curve with room for numPoints points, distances and curvatures, to be filled in with {@link #setPoint(int, Vector3)}
+     */
+    public Curve(int numPoints) {
         this.length = -1f;
-        this.points = new ArrayList<>();
-        this.tangents = new ArrayList<>();
-        this.curvatures = new float[0];
-        this.distances = new float[0];
+        this.numPoints = numPoints;
+        this.points = new float[3 * numPoints];
+        this.tangents = null;
+        this.curvatures = new float[numPoints];
+        this.distances = new float[numPoints];
         this.maxSpeeds = new float[0];
         this.controlPoints = new ArrayList<>();
         this.numSubDivisions = ndiv;
@@ -58,15 +96,12 @@ public class Curve {
     public Curve(List<ControlPoint> info, int numSubSegments) {
         this.numSubDivisions = numSubSegments;
         this.controlPoints = info;
-        this.points = new ArrayList<>();
-        this.tangents = new ArrayList<>();
-        this.curvatures = new float[0];
         this.maxSpeeds = new float[0];
 
         int num_segments = info.size() - 1;
 
-        this.points.ensureCapacity(numSubSegments * num_segments + 1);
-        this.tangents.ensureCapacity(numSubSegments * num_segments + 1);
+        this.points = new float[3 * (numSubSegments * num_segments + 1)];
+        this.tangents = new float[this.points.length];
         this.curvatures = new float[numSubSegments * num_segments + 1];
 
         for (int i = 1; i < num_segments - 1; i++) {
@@ -128,12 +163,13 @@ public class Curve {
                         .dot(normalAtT)
                         / (dgMag * dgMag * dgMag);
 
-                this.points.add(g);
-                this.tangents.add(dg.normalized());
-                this.curvatures[this.points.size() - 1] = (float) kappa;
+                put(this.points, this.numPoints, g);
+                put(this.tangents, this.numPoints, dg.normalized());
+                this.curvatures[this.numPoints] = (float) kappa;
+                this.numPoints++;
             }
         }
-        assert this.points.size() == this.tangents.size() && this.tangents.size() == this.curvatures.length : this.points.size() + " " + this.tangents.size() + " " + this.curvatures.length + " " + this.numSubDivisions + " " + info.size();
+        assert this.numPoints == this.curvatures.length : this.numPoints + " " + this.curvatures.length + " " + this.numSubDivisions + " " + info.size();
 
         calculateDistances();
     }
@@ -143,19 +179,15 @@ public class Curve {
         this.numSubDivisions = ndiv;
         int num_segments = info.size() - 1;
 
-        this.points = new ArrayList<>();
-        this.tangents = new ArrayList<>();
         this.curvatures = new float[0];
         this.maxSpeeds = new float[0];
 
-        this.points.ensureCapacity(numSubDivisions * num_segments + 2);
-        this.tangents.ensureCapacity(numSubDivisions * num_segments + 2);
+        // Room for the start and end point, if they need to be added
+        this.points = new float[3 * (numSubDivisions * num_segments + 3)];
+        this.numPoints = 0;
 
         ArrayList<Vector3> normals = new ArrayList<>();
-        ArrayList<Integer> segment_ids = new ArrayList<>();
-
         normals.ensureCapacity(numSubDivisions * num_segments + 2);
-        segment_ids.ensureCapacity(numSubDivisions * num_segments + 2);
 
         for (int i = 0; i < num_segments; i++) {
             ControlPoint our = info.get(i);
@@ -189,9 +221,9 @@ public class Curve {
                     p = p.sub(N1.mul(p.sub(P1).dot(N1)));
                 }
 
-                this.points.add(p);
+                put(this.points, this.numPoints, p);
+                this.numPoints++;
                 normals.add(n);
-                segment_ids.add(i);
             }
         }
 
@@ -199,26 +231,29 @@ public class Curve {
 
         CubicHermite correction = new CubicHermite(dx0, dt0, dx1, dt1, length);
 
-        for (int i = 0; i < this.points.size(); i++) {
+        for (int i = 0; i < this.numPoints; i++) {
             Vector3 n = normals.get(i);
             Vector3 dx = correction.e(length - distances[i]);
-            this.points.set(i, this.points.get(i).add(dx.sub(n.mul(dx.dot(n)))));
+            put(this.points, i, this.getPoint(i).add(dx.sub(n.mul(dx.dot(n)))));
         }
 
-        if (start.sub(this.points.get(0)).magnitude() > 1f) {
-            this.points.add(0, start);
+        if (start.sub(this.getPoint(0)).magnitude() > 1f) {
+            System.arraycopy(this.points, 0, this.points, 3, 3 * this.numPoints);
+            put(this.points, 0, start);
+            this.numPoints++;
             normals.add(0, normals.get(0));
         }
 
-        if (end.sub(this.points.get(this.points.size() - 1)).magnitude() > 1f) {
-            this.points.add(end);
+        if (end.sub(this.getPoint(this.numPoints - 1)).magnitude() > 1f) {
+            put(this.points, this.numPoints, end);
+            this.numPoints++;
             normals.add(normals.get(normals.size() - 1));
         }
 
         calculateDistances();
         calculateTangents();
 
-        this.curvatures = new float[this.points.size()];
+        this.curvatures = new float[this.numPoints];
 
         int last = this.curvatures.length - 1;
 
@@ -229,7 +264,7 @@ public class Curve {
         float kappa1, kappa2, ds;
 
         for (int i = 1; i < last; i++) {
-            m = this.tangents.get(i + 1).crossProduct(this.tangents.get(i - 1));
+            m = this.getTangent(i + 1).crossProduct(this.getTangent(i - 1));
             n = normals.get(i);
 
             ds = this.distances[i - 1] - this.distances[i + 1];
@@ -238,14 +273,14 @@ public class Curve {
             this.curvatures[i] = MathUtils.lerp(kappa1, kappa2, inPlaneWeight);
         }
 
-        m = this.tangents.get(1).crossProduct(this.tangents.get(0));
+        m = this.getTangent(1).crossProduct(this.getTangent(0));
         n = normals.get(0);
         ds = this.distances[0] - this.distances[1];
         kappa1 = (float) MathUtils.clip(Math.asin(m.magnitude()) / ds, 0f, kappa_max);
         kappa2 = (float) Math.asin(Math.abs(m.dot(n))) / ds;
         this.curvatures[0] = MathUtils.lerp(kappa1, kappa2, inPlaneWeight);
 
-        m = this.tangents.get(last).crossProduct(this.tangents.get(last - 1));
+        m = this.getTangent(last).crossProduct(this.getTangent(last - 1));
         n = normals.get(last);
         ds = this.distances[last - 1] - this.distances[last];
         kappa1 = (float) MathUtils.clip(Math.asin(m.magnitude()) / ds, 0f, kappa_max);
@@ -254,11 +289,10 @@ public class Curve {
     }
 
     public static Curve from(FlatCurve flatCurve) {
-        Curve c = new Curve();
-
-        c.length = flatCurve.length();
-        if (Float.isNaN(c.length))
+        if (Float.isNaN(flatCurve.length()))
             return null;
+        Curve c = new Curve(flatCurve.pointsLength());
+        c.length = flatCurve.length();
 
         FloatBuffer curvaturesBuffer = flatCurve.curvaturesAsByteBuffer().asFloatBuffer();
         c.curvatures = new float[curvaturesBuffer.limit()];
@@ -268,20 +302,42 @@ public class Curve {
         c.distances = new float[distancesBuffer.limit()];
         distancesBuffer.get(c.distances);
 
-        c.points = new ArrayList<>(flatCurve.pointsLength());
         for (int i = 0; i < flatCurve.pointsLength(); i++)
-            c.points.add(new Vector3(flatCurve.points(i)));
-        for (int i = 0; i < flatCurve.tangentsLength(); i++)
-            c.tangents.add(new Vector3(flatCurve.tangents(i)));
+            c.setPoint(i, new Vector3(flatCurve.points(i)));
+        if (flatCurve.tangentsLength() == c.numPoints) {
+            for (int i = 0; i < flatCurve.tangentsLength(); i++)
+                c.setTangent(i, new Vector3(flatCurve.tangents(i)));
+        }
 
         return c;
     }
 
+    /**
+     * Simulates the car following this path at the speed needed to arrive at absoluteArrivalTime, checking for ball collisions on the way.
+     * <p>
+     * Checking again with the same car state, arrival time, ball prediction and speed profile returns the previous result.
+     * Ball collisions are only checked per tick where the ball gets close to the bounding box of the path.
+     */
     public PathCheckStatus doPathChecking(CarData car, float absoluteArrivalTime, YangBallPrediction ballPrediction) {
         assert this.curvatures.length > 0;
 
         if (ballPrediction == null)
             ballPrediction = YangBallPrediction.empty();
+
+        final float currentSpeed = (float) car.velocity.dot(car.forward());
+        final YangSphereHitbox carBox = car.hitbox.asSphere(1.1f);
+        final float[] inputs = {car.position.x, car.position.y, car.position.z, currentSpeed, car.boost, car.elapsedSeconds, absoluteArrivalTime, carBox.radius};
+        if (this.useSegmentCache && this.checkedPrediction == ballPrediction && this.checkedMaxSpeeds == this.maxSpeeds && Arrays.equals(this.checkedInputs, inputs))
+            return this.pathCheckStatus;
+
+        this.pathCheckStatus = this.simulatePathCheck(car, currentSpeed, carBox, absoluteArrivalTime, ballPrediction);
+        this.checkedInputs = inputs;
+        this.checkedPrediction = ballPrediction;
+        this.checkedMaxSpeeds = this.maxSpeeds;
+        return this.pathCheckStatus;
+    }
+
+    private PathCheckStatus simulatePathCheck(CarData car, float currentSpeed, YangSphereHitbox carBox, float absoluteArrivalTime, YangBallPrediction ballPrediction) {
         if (absoluteArrivalTime < 0)
             absoluteArrivalTime = car.elapsedSeconds + (this.length / (DriveManeuver.max_throttle_speed));
 
@@ -289,19 +345,14 @@ public class Curve {
         final float relativeArrivalTime = absoluteArrivalTime - car.elapsedSeconds;
         final float averageSpeed = this.length / Math.max(relativeArrivalTime, RLConstants.simulationTickFrequency);
 
-        if (averageSpeed > CarData.MAX_VELOCITY + 25) {
-            this.pathCheckStatus = new PathCheckStatus(averageSpeed);
-            return this.pathCheckStatus;
-        }
+        if (averageSpeed > CarData.MAX_VELOCITY + 25)
+            return new PathCheckStatus(averageSpeed);
 
         if (this.maxSpeeds.length == 0) {
             assert false;
             this.calculateMaxSpeeds(CarData.MAX_VELOCITY, CarData.MAX_VELOCITY, 100);
         }
 
-
-        float currentSpeed = (float) car.velocity.dot(car.forward());
-
         float distToTarget = this.findNearest(car.position);
 
         double boost = car.boost;
@@ -310,7 +361,13 @@ public class Curve {
         Vector3 ballCollisionContactPoint = new Vector3();
         Vector3 ballCollisionBallPosition = new Vector3();
 
-        final YangSphereHitbox carBox = car.hitbox.asSphere(1.1f);
+        // The car is always somewhere on the path, the ball can only hit it while it's within reach of the path's bounding box
+        final float reach = BallData.COLLISION_RADIUS + carBox.radius;
+        final float[] bounds = this.getBounds();
+        boolean checkBall = !ballPrediction.isEmpty();
+        if (checkBall && this.useSegmentCache)
+            checkBall = this.ballSweepReachesBounds(ballPrediction, relativeArrivalTime, bounds, reach);
+
         float t = 0;
         for (; t < relativeArrivalTime; t += dt) {
             //if (distToTarget <= 0) // Made it there before time ran out, shouldn't usually happen
@@ -320,25 +377,23 @@ public class Curve {
             final float maxSpeed = Math.max(50, this.maxSpeedAt(distToTarget));
             final float avgSpeedAhead = distToTarget / Math.max(timeUntilArrival, dt);
 
-            if (avgSpeedAhead > CarData.MAX_VELOCITY + 50) {
-                this.pathCheckStatus = new PathCheckStatus(avgSpeedAhead);
-                return this.pathCheckStatus;
-            }
-
-            final Optional<YangBallPrediction.YangPredictionFrame> ballAtFrameOptional = ballPrediction.getFrameAtRelativeTime(t);
+            if (avgSpeedAhead > CarData.MAX_VELOCITY + 50)
+                return new PathCheckStatus(avgSpeedAhead);
 
             // Check for ball collisions
-            if (!collidedWithBall && ballAtFrameOptional.isPresent() && distToTarget > Math.max(currentSpeed, 500f) * 0.2f + 50) {
-                BallData ballAtFrame = ballAtFrameOptional.get().ballData.makeMutable();
-
-                Vector3 carPos = this.pointAt(distToTarget);
-                if (ballAtFrame.collidesWith(carBox, carPos)) { // Collide with ball
-                    collidedWithBall = true;
-                    distanceOfBallCollision = distToTarget;
-
-                    ballCollisionContactPoint = carBox.getClosestPointOnHitbox(carPos, ballAtFrame.position);
-                    ballCollisionBallPosition = ballAtFrame.position;
-                    //System.out.println("Colliding with ball at t=" + t + " arr=" + (relativeArrivalTime - t));
+            if (checkBall && !collidedWithBall && distToTarget > Math.max(currentSpeed, 500f) * 0.2f + 50) {
+                final int frame = ballPrediction.indexAtRelativeTime(t);
+                if (frame != -1 && (!this.useSegmentCache || isWithin(bounds, reach, ballPrediction.positionXAt(frame), ballPrediction.positionYAt(frame), ballPrediction.positionZAt(frame)))) {
+                    final Vector3 ballPosition = ballPrediction.frameAt(frame).ballData.position;
+                    final Vector3 carPos = this.pointAt(distToTarget);
+                    if (ballPosition.sub(carPos).magnitudeSquared() < reach * reach) { // Collide with ball
+                        collidedWithBall = true;
+                        distanceOfBallCollision = distToTarget;
+
+                        ballCollisionContactPoint = carBox.getClosestPointOnHitbox(carPos, ballPosition);
+                        ballCollisionBallPosition = ballPosition;
+                        //System.out.println("Colliding with ball at t=" + t + " arr=" + (relativeArrivalTime - t));
+                    }
                 }
             }
             // Simulate the car
@@ -360,14 +415,53 @@ public class Curve {
             }
         }
 
-        this.pathCheckStatus = new PathCheckStatus(distToTarget < 150 && distToTarget > -150 ? PathStatus.VALID : PathStatus.SPEED_EXCEEDED, collidedWithBall, distanceOfBallCollision, ballCollisionContactPoint, ballCollisionBallPosition, currentSpeed);
-        return this.pathCheckStatus;
+        return new PathCheckStatus(distToTarget < 150 && distToTarget > -150 ? PathStatus.VALID : PathStatus.SPEED_EXCEEDED, collidedWithBall, distanceOfBallCollision, ballCollisionContactPoint, ballCollisionBallPosition, currentSpeed);
+    }
+
+    // Swept bounds of the ball until arrival against the bounds of the path
+    private boolean ballSweepReachesBounds(YangBallPrediction ballPrediction, float relativeArrivalTime, float[] bounds, float reach) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = 0; i < ballPrediction.size(); i++) {
+            final float x = ballPrediction.positionXAt(i), y = ballPrediction.positionYAt(i), z = ballPrediction.positionZAt(i);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+            if (ballPrediction.relativeTimeAt(i) >= relativeArrivalTime) // Frames after this one are never looked at
+                break;
+        }
+        return maxX >= bounds[0] - reach && minX <= bounds[3] + reach
+                && maxY >= bounds[1] - reach && minY <= bounds[4] + reach
+                && maxZ >= bounds[2] - reach && minZ <= bounds[5] + reach;
+    }
+
+    private static boolean isWithin(float[] bounds, float reach, float x, float y, float z) {
+        return x >= bounds[0] - reach && x <= bounds[3] + reach
+                && y >= bounds[1] - reach && y <= bounds[4] + reach
+                && z >= bounds[2] - reach && z <= bounds[5] + reach;
+    }
+
+    // min x, y, z, max x, y, z of all points
+    private float[] getBounds() {
+        if (this.bounds != null)
+            return this.bounds;
+        final float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int i = 0; i < 3 * this.numPoints; i++) {
+            bounds[i % 3] = Math.min(bounds[i % 3], this.points[i]);
+            bounds[3 + i % 3] = Math.max(bounds[3 + i % 3], this.points[i]);
+        }
+        this.bounds = bounds;
+        return bounds;
     }
 
     public void draw(AdvancedRenderer renderer, Color color) {
         Vector3 lastPoint = null;
         int c = renderer.insertColor(color);
-        for (Vector3 point : this.points) {
+        for (int i = 0; i < this.numPoints; i++) {
+            Vector3 point = this.getPoint(i);
             if (lastPoint == null) {
                 lastPoint = point;
                 continue;
@@ -379,54 +473,115 @@ public class Curve {
 
         }
 
-        if (this.points.size() > 1) {
-            renderer.drawCentered3dCube(Color.GREEN, this.points.get(0), 50);
-            renderer.drawCentered3dCube(Color.RED, this.points.get(this.points.size() - 1), 50);
+        if (this.numPoints > 1) {
+            renderer.drawCentered3dCube(Color.GREEN, this.getPoint(0), 50);
+            renderer.drawCentered3dCube(Color.RED, this.getPoint(this.numPoints - 1), 50);
+        }
+    }
+
+    private static void put(float[] data, int i, Vector3 vec) {
+        data[3 * i] = vec.x;
+        data[3 * i + 1] = vec.y;
+        data[3 * i + 2] = vec.z;
+    }
+
+    public int getNumPoints() {
+        return this.numPoints;
+    }
+
+    public Vector3 getPoint(int i) {
+        assert i >= 0 && i < this.numPoints : i + " " + this.numPoints;
+        return new Vector3(this.points[3 * i], this.points[3 * i + 1], this.points[3 * i + 2]);
+    }
+
+    public void setPoint(int i, Vector3 point) {
+        assert i >= 0 && i < this.numPoints : i + " " + this.numPoints;
+        put(this.points, i, point);
+        this.chunkBounds = null;
+        this.bounds = null;
+        this.checkedInputs = null;
+    }
+
+    public Vector3 getTangent(int i) {
+        assert i >= 0 && i < this.numPoints : i + " " + this.numPoints;
+        if (this.tangents == null)
+            this.calculateTangents();
+        return new Vector3(this.tangents[3 * i], this.tangents[3 * i + 1], this.tangents[3 * i + 2]);
+    }
+
+    public void setTangent(int i, Vector3 tangent) {
+        assert i >= 0 && i < this.numPoints : i + " " + this.numPoints;
+        if (this.tangents == null)
+            this.tangents = new float[3 * this.numPoints];
+        put(this.tangents, i, tangent);
+    }
+
+    /**
+     * @return The segment i with distances[i] >= s >= distances[i + 1] (the first one if several fit), -1 if there is none
+     */
+    private int segmentAt(float s) {
+        int lo = 0, hi = this.numPoints - 2;
+        if (hi < 0 || this.distances[hi + 1] > s)
+            return -1;
+        // distances decrease, find the first segment ending at or below s
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (this.distances[mid + 1] <= s)
+                hi = mid;
+            else
+                lo = mid + 1;
         }
+        return lo;
+    }
+
+    // Position of s within segment i, 0 at its end, 1 at its start
+    private float segmentFraction(int i, float s) {
+        return (s - this.distances[i + 1]) / (this.distances[i] - this.distances[i + 1]);
+    }
+
+    private Vector3 lerpPacked(float[] data, int i, float u) {
+        // u = 1 is point i, u = 0 is point i + 1
+        final int a = 3 * (i + 1), b = 3 * i;
+        return new Vector3(
+                data[a] * (1 - u) + data[b] * u,
+                data[a + 1] * (1 - u) + data[b + 1] * u,
+                data[a + 2] * (1 - u) + data[b + 2] * u);
     }
 
     public Vector3 pointAt(float s) {
         s = MathUtils.clip(s, 0, distances[0]);
 
-        for (int i = 0; i < (points.size() - 1); i++) {
-            if (distances[i] >= s && s >= distances[i + 1]) {
-                float u = (s - distances[i + 1]) / (distances[i] - distances[i + 1]);
-                if (Float.isNaN(u)) // Happens when distances are equal
-                    return points.get(i + 1);
-                return MathUtils.lerp(points.get(i + 1), points.get(i), u);
-            }
-        }
-        return new Vector3();
+        final int i = this.segmentAt(s);
+        if (i == -1)
+            return new Vector3();
+        float u = this.segmentFraction(i, s);
+        if (Float.isNaN(u)) // Happens when distances are equal
+            return this.getPoint(i + 1);
+        return this.lerpPacked(this.points, i, u);
     }
 
     public Vector3 tangentAt(float s) {
         if (s == -1)
             s = distances[0];
         s = MathUtils.clip(s, 0, distances[0]);
-        if(this.tangents.size() == 0)
+        if (this.tangents == null)
             this.calculateTangents();
 
-        for (int i = 0; i < (points.size() - 1); i++) {
-            if (distances[i] >= s && s >= distances[i + 1]) {
-                float u = (s - distances[i + 1]) / (distances[i] - distances[i + 1]);
-                return MathUtils.lerp(tangents.get(i + 1), tangents.get(i), u).normalized();
-            }
+        final int i = this.segmentAt(s);
+        if (i == -1) {
+            assert false : "s=" + s + " ds=" + distances.length + " d0=" + distances[0] + " dE=" + distances[distances.length - 1];
+            return new Vector3();
         }
-        assert false : "s="+s+" ds="+distances.length+" d0="+distances[0]+" dE="+distances[distances.length - 1];
-        return new Vector3();
+        return this.lerpPacked(this.tangents, i, this.segmentFraction(i, s)).normalized();
     }
 
     public float curvatureAt(float s) {
         s = MathUtils.clip(s, 0, distances[0]);
 
-        for (int i = 0; i < (points.size() - 1); i++) {
-            if (distances[i] >= s && s >= distances[i + 1]) {
-                float u = (s - distances[i + 1]) / (distances[i] - distances[i + 1]);
-                return MathUtils.lerp(curvatures[i + 1], curvatures[i], u);
-            }
-        }
-
-        return 0f;
+        final int i = this.segmentAt(s);
+        if (i == -1)
+            return 0f;
+        return MathUtils.lerp(curvatures[i + 1], curvatures[i], this.segmentFraction(i, s));
     }
 
     public float maxSpeedAt(float s) {
@@ -437,104 +592,176 @@ public class Curve {
             this.calculateMaxSpeeds(CarData.MAX_VELOCITY, CarData.MAX_VELOCITY, 100);
         }
 
-
-        for (int i = 0; i < (points.size() - 1); i++) {
-            if (distances[i] >= s && s >= distances[i + 1]) {
-                float u = (s - distances[i + 1]) / (distances[i] - distances[i + 1]);
-                assert u >= 0 && u <= 1 : u + " " + s + " " + distances[i] + " " + distances[i + 1];
-                float lerped = MathUtils.lerp(maxSpeeds[i + 1], maxSpeeds[i], u);
-                assert Float.isFinite(lerped);
-                return lerped;
-            }
-        }
-        return 0f;
+        final int i = this.segmentAt(s);
+        if (i == -1)
+            return 0f;
+        float u = this.segmentFraction(i, s);
+        assert u >= 0 && u <= 1 : u + " " + s + " " + distances[i] + " " + distances[i + 1];
+        float lerped = MathUtils.lerp(maxSpeeds[i + 1], maxSpeeds[i], u);
+        assert Float.isFinite(lerped);
+        return lerped;
     }
 
     public float getControlPoint(float s) {
         s = MathUtils.clip(s, 0, distances[0]);
 
-        for (int i = 0; i < (points.size() - 1); i++) {
-            if (distances[i] >= s && s >= distances[i + 1]) {
-                if (i == 0)
-                    return 0;
-                float u = (s - distances[i + 1]) / (distances[i] - distances[i + 1]);
-                return MathUtils.lerp(maxSpeeds[i + 1], maxSpeeds[i], u);
-            }
-        }
-        return (points.size() - 2f) / numSubDivisions;
+        final int i = this.segmentAt(s);
+        if (i == -1)
+            return (this.numPoints - 2f) / numSubDivisions;
+        if (i == 0)
+            return 0;
+        return MathUtils.lerp(maxSpeeds[i + 1], maxSpeeds[i], this.segmentFraction(i, s));
     }
 
     public float findIndex(float s){
         s = MathUtils.clip(s, 0, distances[0]);
 
-        for (int i = 0; i < (points.size() - 1); i++) {
-            if (distances[i] >= s && s >= distances[i + 1]) {
-                float u = (s - distances[i + 1]) / (distances[i] - distances[i + 1]);
-                assert u >= 0 && u <= 1 : u + " " + s + " " + distances[i] + " " + distances[i + 1];
-                return u + i;
-            }
+        final int i = this.segmentAt(s);
+        if (i == -1) {
+            assert false;
+            return 0;
         }
-        assert false;
-        return 0;
+        float u = this.segmentFraction(i, s);
+        assert u >= 0 && u <= 1 : u + " " + s + " " + distances[i] + " " + distances[i + 1];
+        return u + i;
     }
 
+    /**
+     * @return Distance to the end of the point on the path closest to c
+     */
     public float findNearest(Vector3 c) {
-        float s = length;
-        float minDistance = (float) c.sub(points.get(0)).magnitude();
-
-        for (int i = 0; i < (points.size() - 1); i++) {
-            Vector3 a = points.get(i);
-            Vector3 b = points.get(i + 1);
+        final int numSegments = this.numPoints - 1;
+        if (numSegments < 1)
+            return length;
+        if (this.chunkBounds == null)
+            this.calculateChunkBounds();
+
+        final float cx = c.x, cy = c.y, cz = c.z;
+        this.nearestBest = distance(cx, cy, cz, 0);
+        this.nearestS = length;
+        this.nearestIndex = -1;
+
+        // Start around the last result, usually close by, to get a tight bound for skipping the other chunks
+        final int hintChunk = Math.min(this.nearestHint, numSegments - 1) / NEAREST_CHUNK;
+        this.scanChunk(hintChunk, cx, cy, cz);
+        final int numChunks = (numSegments + NEAREST_CHUNK - 1) / NEAREST_CHUNK;
+        for (int chunk = 0; chunk < numChunks; chunk++) {
+            if (chunk == hintChunk)
+                continue;
+            final int b = 4 * chunk;
+            final float dx = this.chunkBounds[b] - cx, dy = this.chunkBounds[b + 1] - cy, dz = this.chunkBounds[b + 2] - cz;
+            // Nothing in the sphere can be closer (small margin for rounding)
+            if ((float) Math.sqrt(dx * dx + dy * dy + dz * dz) - this.chunkBounds[b + 3] > this.nearestBest + 0.01f)
+                continue;
+            this.scanChunk(chunk, cx, cy, cz);
+        }
 
-            float alpha = MathUtils.clip(b.sub(a).dot(c.sub(a)) / Math.max(b.sub(a).dot(b.sub(a)), 0.0001f), 0f, 1f);
-            assert !Float.isNaN(alpha) : a.toString() + ":" + b.toString() + " " + i + " " + c;
-            float distance = (float) c.sub(a.add(b.sub(a).mul(alpha))).magnitude();
+        if (this.nearestIndex != -1)
+            this.nearestHint = this.nearestIndex;
+        return this.nearestS;
+    }
 
-            if (distance < minDistance) {
-                minDistance = distance;
-                s = MathUtils.lerp(distances[i], distances[i + 1], alpha);
+    private void scanChunk(int chunk, float cx, float cy, float cz) {
+        final int end = Math.min((chunk + 1) * NEAREST_CHUNK, this.numPoints - 1);
+        for (int i = chunk * NEAREST_CHUNK; i < end; i++) {
+            final int a = 3 * i, b = a + 3;
+            final float abx = this.points[b] - this.points[a], aby = this.points[b + 1] - this.points[a + 1], abz = this.points[b + 2] - this.points[a + 2];
+            final float acx = cx - this.points[a], acy = cy - this.points[a + 1], acz = cz - this.points[a + 2];
+
+            float alpha = MathUtils.clip((abx * acx + aby * acy + abz * acz) / Math.max(abx * abx + aby * aby + abz * abz, 0.0001f), 0f, 1f);
+            assert !Float.isNaN(alpha) : this.getPoint(i) + ":" + this.getPoint(i + 1) + " " + i + " " + new Vector3(cx, cy, cz);
+            final float dx = acx - abx * alpha, dy = acy - aby * alpha, dz = acz - abz * alpha;
+            final float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            // Ties go to the earlier segment, like a front to back scan
+            if (distance < this.nearestBest || (distance == this.nearestBest && i < this.nearestIndex)) {
+                this.nearestBest = distance;
+                this.nearestIndex = i;
+                this.nearestS = MathUtils.lerp(distances[i], distances[i + 1], alpha);
             }
         }
+    }
 
-        return s;
+    private float distance(float x, float y, float z, int i) {
+        final float dx = x - this.points[3 * i], dy = y - this.points[3 * i + 1], dz = z - this.points[3 * i + 2];
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    // Bounding sphere (around the bounding box center) of the points of every chunk of segments
+    private void calculateChunkBounds() {
+        final int numSegments = this.numPoints - 1;
+        final int numChunks = (numSegments + NEAREST_CHUNK - 1) / NEAREST_CHUNK;
+        final float[] bounds = new float[4 * numChunks];
+        for (int chunk = 0; chunk < numChunks; chunk++) {
+            final int first = chunk * NEAREST_CHUNK, last = Math.min((chunk + 1) * NEAREST_CHUNK, numSegments);
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+            for (int i = first; i <= last; i++) {
+                minX = Math.min(minX, this.points[3 * i]);
+                minY = Math.min(minY, this.points[3 * i + 1]);
+                minZ = Math.min(minZ, this.points[3 * i + 2]);
+                maxX = Math.max(maxX, this.points[3 * i]);
+                maxY = Math.max(maxY, this.points[3 * i + 1]);
+                maxZ = Math.max(maxZ, this.points[3 * i + 2]);
+            }
+            final float x = (minX + maxX) * 0.5f, y = (minY + maxY) * 0.5f, z = (minZ + maxZ) * 0.5f;
+            float radius = 0;
+            for (int i = first; i <= last; i++)
+                radius = Math.max(radius, this.distance(x, y, z, i));
+            bounds[4 * chunk] = x;
+            bounds[4 * chunk + 1] = y;
+            bounds[4 * chunk + 2] = z;
+            bounds[4 * chunk + 3] = radius;
+        }
+        this.chunkBounds = bounds;
     }
 
     private void calculateDistances() {
-        distances = new float[points.size()];
-        int last = points.size() - 1;
+        distances = new float[numPoints];
+        int last = numPoints - 1;
 
         for (int i = last - 1; i >= 0; i--)
-            distances[i] = (float) (distances[i + 1] + points.get(i + 1).sub(points.get(i)).magnitude());
+            distances[i] = distances[i + 1] + this.distance(points[3 * i], points[3 * i + 1], points[3 * i + 2], i + 1);
 
         length = distances[0];
+        this.chunkBounds = null;
+        this.bounds = null;
+        this.checkedInputs = null;
     }
 
     public void calculateTangents() {
-        tangents = new ArrayList<>(points.size());
+        tangents = new float[3 * numPoints];
 
-        int last = points.size() - 1;
+        int last = numPoints - 1;
 
-        tangents.add(points.get(0).mul(-3f)
-                        .add(points.get(1).mul(4f))
-                        .sub(points.get(2))
+        put(tangents, 0, getPoint(0).mul(-3f)
+                        .add(getPoint(1).mul(4f))
+                        .sub(getPoint(2))
                         .normalized()
         );
 
         for (int i = 1; i < last; i++)
-            tangents.add(points.get(i + 1).sub(points.get(i - 1)).normalized());
+            put(tangents, i, getPoint(i + 1).sub(getPoint(i - 1)).normalized());
 
-        tangents.add(
-                points.get(last).mul(3f)
-                        .sub(points.get(last - 1).mul(4f))
-                        .add(points.get(last - 2))
+        put(tangents, last,
+                getPoint(last).mul(3f)
+                        .sub(getPoint(last - 1).mul(4f))
+                        .add(getPoint(last - 2))
                         .normalized()
         );
 
-        assert !tangents.get(tangents.size() - 1).isZero();
-        assert tangents.size() == points.size();
+        assert !getTangent(last).isZero();
     }
 
 
+    /**
+     * Speed profile of the path, starting at v0 and ending at most at vf (-1 for any speed).
+     * <p>
+     * The forward, backward and boost passes simulate the car segment by segment. Every segment result is cached with the inputs it was simulated with,
+     * recalculating (e.g. for another arrival speed) only simulates the segments whose inputs changed.
+     *
+     * @return Time estimate
+     */
     @SuppressWarnings("UnusedReturnValue")
     public float calculateMaxSpeeds(float v0, float vf, float boost) {
         boost *= 0.99f;
@@ -566,14 +793,28 @@ public class Curve {
 
         assert curvatures.length == distances.length : curvatures.length + " " + distances.length;
 
-        if(tangents.size() == 0)
+        if(tangents == null)
             this.calculateTangents();
+        this.prepareProfileCache();
+        final boolean useCache = this.useSegmentCache;
+
         for (int i = 1; i < curvatures.length; i++) {
             float ds = distances[i - 1] - distances[i];
-            Vector3 t = tangents.get(i).add(tangents.get(i - 1)).normalized();
-
-            float attainable_speed = maximizeSpeedWithThrottleSteer((boost > 0 ? 1f : 0f) * DriveManeuver.boost_acceleration + gravity.dot(t), maxSpeeds[i - 1], ds, tempCurvatures[i]);
-            maxSpeeds[i] = Math.min(maxSpeeds[i], attainable_speed);
+            Vector3 t = getTangent(i).add(getTangent(i - 1)).normalized();
+            final float accel = (boost > 0 ? 1f : 0f) * DriveManeuver.boost_acceleration + gravity.dot(t);
+
+            final float[] cache = this.forwardCache;
+            final int c = FORWARD_STRIDE * i;
+            if (!useCache || cache[c] != accel || cache[c + 1] != tempCurvatures[i] || cache[c + 2] != ds || cache[c + 3] != maxSpeeds[i - 1]) {
+                cache[c] = accel;
+                cache[c + 1] = tempCurvatures[i];
+                cache[c + 2] = ds;
+                cache[c + 3] = maxSpeeds[i - 1];
+                cache[c + 4] = maximizeSpeedWithThrottleSteer(accel, maxSpeeds[i - 1], ds, tempCurvatures[i]);
+                this.segmentsSimulated++;
+            } else
+                this.segmentsReused++;
+            maxSpeeds[i] = Math.min(maxSpeeds[i], cache[c + 4]);
             assert Float.isFinite(maxSpeeds[i]);
         }
 
@@ -581,66 +822,49 @@ public class Curve {
             float ds = distances[i] - distances[i + 1];
             if (Math.abs(ds) < 0.001)
                 continue;
-            Vector3 t = tangents.get(i).add(tangents.get(i + 1)).normalized();
-            float attainable_speed = maximizeSpeedWithoutThrottle(-DriveManeuver.brake_acceleration - gravity.dot(t), maxSpeeds[i + 1], ds);
-            maxSpeeds[i] = Math.min(maxSpeeds[i], attainable_speed);
+            Vector3 t = getTangent(i).add(getTangent(i + 1)).normalized();
+            final float accel = -DriveManeuver.brake_acceleration - gravity.dot(t);
+
+            final float[] cache = this.backwardCache;
+            final int c = BACKWARD_STRIDE * i;
+            if (!useCache || cache[c] != accel || cache[c + 1] != ds || cache[c + 2] != maxSpeeds[i + 1]) {
+                cache[c] = accel;
+                cache[c + 1] = ds;
+                cache[c + 2] = maxSpeeds[i + 1];
+                cache[c + 3] = maximizeSpeedWithoutThrottle(accel, maxSpeeds[i + 1], ds);
+                this.segmentsSimulated++;
+            } else
+                this.segmentsReused++;
+            maxSpeeds[i] = Math.min(maxSpeeds[i], cache[c + 3]);
             assert Float.isFinite(maxSpeeds[i]);
         }
 
         if(boost > 0){
             float minBoostPressTime = 0;
             for (int i = 1; i < curvatures.length; i++) {
-                float endS = distances[i];
                 float startDs = distances[i - 1] - distances[i];
-                float ds = startDs;
-                Vector3 t = tangents.get(i).add(tangents.get(i - 1)).normalized();
-
-                float dt = RLConstants.simulationTickFrequency;
-                float v = maxSpeeds[i - 1];
+                Vector3 t = getTangent(i).add(getTangent(i - 1)).normalized();
                 float gAccel = gravity.dot(t);
 
-                for (float et = 0; et < 5; et += dt){
-                    float curv = MathUtils.remapClip(ds, startDs, 0, tempCurvatures[i - 1], tempCurvatures[i]);
-                    float maxCurv = DriveManeuver.maxTurningCurvature(v);
-                    float ratio = MathUtils.clip(Math.abs(curv) / maxCurv, 0, 1);
-                    float steerSlowdown = CarData.slowdownForceFromSteering(ratio * ratio, v);
-                    assert steerSlowdown <= 0 : steerSlowdown;
-                    var c = new ControlsOutput();
-                    float targetSpeed = maxSpeedAt(endS + ds);
-                    assert Float.isFinite(targetSpeed);
-                    assert Float.isFinite(v);
-                    assert Float.isFinite(steerSlowdown);
-                    DriveManeuver.speedController(dt, c, v, targetSpeed, targetSpeed + 5, 0.04f, true, steerSlowdown);
-                    if(boost > 0){
-                        if(c.holdBoost()){
-                            minBoostPressTime = 0.1f;
-                            boost -= CarData.BOOST_CONSUMPTION * dt;
-
-                        }else if(minBoostPressTime > 0){
-                            c.withBoost();
-                            boost -= CarData.BOOST_CONSUMPTION * dt;
-                            minBoostPressTime -= dt;
-                        }
-                    }else
-                        c.withBoost(false);
-
-                    float accel = (CarData.driveForceForward(c, v, 0, 0) + steerSlowdown + gAccel) * dt;
-                    float change = (v + 0.5f * accel) * dt;
-                    assert Float.isFinite(accel) : accel + " v="+v+ " st="+steerSlowdown+" g="+gAccel+" "+CarData.driveForceForward(c, v, 0, 0)+" thr="+c.getThrottle()+" boo="+c.holdBoost();
-                    v += accel;
-                    ds -= change;
-                    if (ds <= 0) {
-                        v -= ds * (accel / change);
-                        if(c.holdBoost())
-                            boost -= ds * (CarData.BOOST_CONSUMPTION * dt / change);
-                        else if(minBoostPressTime > 0 && minBoostPressTime < 0.1f)
-                            minBoostPressTime -= ds * (dt / change);
-                        break;
-                    }
-                    v = MathUtils.clip(v, -CarData.MAX_VELOCITY, CarData.MAX_VELOCITY);
-                }
-                v = MathUtils.clip(v, -CarData.MAX_VELOCITY, CarData.MAX_VELOCITY);
-                maxSpeeds[i] = Math.min(maxSpeeds[i], v);
+                final float[] cache = this.boostCache;
+                final int c = BOOST_STRIDE * i;
+                if (!useCache || cache[c] != gAccel || cache[c + 1] != tempCurvatures[i - 1] || cache[c + 2] != tempCurvatures[i] || cache[c + 3] != startDs
+                        || cache[c + 4] != maxSpeeds[i - 1] || cache[c + 5] != maxSpeeds[i] || cache[c + 6] != boost || cache[c + 7] != minBoostPressTime) {
+                    cache[c] = gAccel;
+                    cache[c + 1] = tempCurvatures[i - 1];
+                    cache[c + 2] = tempCurvatures[i];
+                    cache[c + 3] = startDs;
+                    cache[c + 4] = maxSpeeds[i - 1];
+                    cache[c + 5] = maxSpeeds[i];
+                    cache[c + 6] = boost;
+                    cache[c + 7] = minBoostPressTime;
+                    simulateBoostSegment(cache, c);
+                    this.segmentsSimulated++;
+                } else
+                    this.segmentsReused++;
+                boost = cache[c + 9];
+                minBoostPressTime = cache[c + 10];
+                maxSpeeds[i] = Math.min(maxSpeeds[i], cache[c + 8]);
             }
         }
 
@@ -665,6 +889,91 @@ public class Curve {
         return time;
     }
 
+    private void prepareProfileCache() {
+        final int n = this.curvatures.length;
+        if (this.forwardCache != null && this.forwardCache.length == FORWARD_STRIDE * n)
+            return;
+        // NaN never equals anything, so every segment is simulated the first time
+        this.forwardCache = new float[FORWARD_STRIDE * n];
+        this.backwardCache = new float[BACKWARD_STRIDE * n];
+        this.boostCache = new float[BOOST_STRIDE * n];
+        Arrays.fill(this.forwardCache, Float.NaN);
+        Arrays.fill(this.backwardCache, Float.NaN);
+        Arrays.fill(this.boostCache, Float.NaN);
+    }
+
+    // Drives one segment with the speed controller and boost, inputs and outputs are in the cache entry at c
+    private static void simulateBoostSegment(float[] cache, int at) {
+        final float gAccel = cache[at], startCurvature = cache[at + 1], endCurvature = cache[at + 2], startDs = cache[at + 3];
+        final float startSpeed = cache[at + 4], endSpeed = cache[at + 5];
+        float boost = cache[at + 6], minBoostPressTime = cache[at + 7];
+
+        float ds = startDs;
+        float dt = RLConstants.simulationTickFrequency;
+        float v = startSpeed;
+
+        for (float et = 0; et < 5; et += dt){
+            float curv = MathUtils.remapClip(ds, startDs, 0, startCurvature, endCurvature);
+            float maxCurv = DriveManeuver.maxTurningCurvature(v);
+            float ratio = MathUtils.clip(Math.abs(curv) / maxCurv, 0, 1);
+            float steerSlowdown = CarData.slowdownForceFromSteering(ratio * ratio, v);
+            assert steerSlowdown <= 0 : steerSlowdown;
+            var c = new ControlsOutput();
+            // Max speed within this segment, like maxSpeedAt
+            float targetSpeed = startDs > 0 ? MathUtils.lerp(endSpeed, startSpeed, MathUtils.clip(ds / startDs, 0, 1)) : endSpeed;
+            assert Float.isFinite(targetSpeed);
+            assert Float.isFinite(v);
+            assert Float.isFinite(steerSlowdown);
+            DriveManeuver.speedController(dt, c, v, targetSpeed, targetSpeed + 5, 0.04f, true, steerSlowdown);
+            if(boost > 0){
+                if(c.holdBoost()){
+                    minBoostPressTime = 0.1f;
+                    boost -= CarData.BOOST_CONSUMPTION * dt;
+
+                }else if(minBoostPressTime > 0){
+                    c.withBoost();
+                    boost -= CarData.BOOST_CONSUMPTION * dt;
+                    minBoostPressTime -= dt;
+                }
+            }else
+                c.withBoost(false);
+
+            float accel = (CarData.driveForceForward(c, v, 0, 0) + steerSlowdown + gAccel) * dt;
+            float change = (v + 0.5f * accel) * dt;
+            assert Float.isFinite(accel) : accel + " v="+v+ " st="+steerSlowdown+" g="+gAccel+" "+CarData.driveForceForward(c, v, 0, 0)+" thr="+c.getThrottle()+" boo="+c.holdBoost();
+            v += accel;
+            ds -= change;
+            if (ds <= 0) {
+                v -= ds * (accel / change);
+                if(c.holdBoost())
+                    boost -= ds * (CarData.BOOST_CONSUMPTION * dt / change);
+                else if(minBoostPressTime > 0 && minBoostPressTime < 0.1f)
+                    minBoostPressTime -= ds * (dt / change);
+                break;
+            }
+            v = MathUtils.clip(v, -CarData.MAX_VELOCITY, CarData.MAX_VELOCITY);
+        }
+        v = MathUtils.clip(v, -CarData.MAX_VELOCITY, CarData.MAX_VELOCITY);
+
+        cache[at + 8] = v;
+        cache[at + 9] = boost;
+        cache[at + 10] = minBoostPressTime;
+    }
+
+    /**
+     * @return Segments simulated by {@link #calculateMaxSpeeds(float, float, float)} so far
+     */
+    public int getSegmentsSimulated() {
+        return this.segmentsSimulated;
+    }
+
+    /**
+     * @return Segments {@link #calculateMaxSpeeds(float, float, float)} took from the cache so far
+     */
+    public int getSegmentsReused() {
+        return this.segmentsReused;
+    }
+
     public static float maximizeSpeedWithThrottleSteer(float additionalAcceleration, float v0, float distance, float curvature) {
         if (distance == 0)
             return v0;
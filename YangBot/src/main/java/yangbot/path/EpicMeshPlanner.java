@@ -1,7 +1,7 @@
 package yangbot.path;
 
-import yangbot.cpp.YangBotJNAInterop;
 import yangbot.input.CarData;
+import yangbot.input.GameData;
 import yangbot.input.Physics3D;
 import yangbot.input.RLConstants;
 import yangbot.input.fieldinfo.BoostManager;
@@ -34,6 +34,7 @@ public class EpicMeshPlanner {
     private float arrivalTime = -1, arrivalSpeed = DriveManeuver.max_throttle_speed;
     private PathCreationStrategy pathCreationStrategy;
     private List<Tuple<Vector3, Vector3>> additionalPoints;
+    private PathPlanCache cache = null;
 
     public EpicMeshPlanner() {
         this.additionalPoints = new ArrayList<>();
@@ -138,10 +139,32 @@ public class EpicMeshPlanner {
         return this;
     }
 
+    /**
+     * Skip requests that failed on earlier ticks while the car follows the same course, see {@link PathPlanCache}.
+     * Requests with additional points are always planned
+     */
+    public EpicMeshPlanner withCache(PathPlanCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public EpicMeshPlanner withCache() {
+        return this.withCache(PathPlanCache.current());
+    }
+
     public Optional<SegmentedPath> plan() {
         assert this.startPos != null && this.startTangent != null;
         assert this.endPos != null && this.endTangent != null;
 
+        if (this.cache == null || this.additionalPoints.size() > 0)
+            return this.planUncached();
+
+        final var key = PathPlanCache.key(this.pathCreationStrategy, this.endPos, this.endTangent, this.endOffset, this.arrivalTime, this.arrivalSpeed,
+                this.snapToBoostDist, this.allowDodge, this.allowFullSend, this.avoidBall);
+        return this.cache.get(key, this.startPos, this.startTangent, this.startSpeed, this.boostAvailable, GameData.current().getElapsedSeconds(), this::planUncached);
+    }
+
+    private Optional<SegmentedPath> planUncached() {
         if(this.pathCreationStrategy != PathCreationStrategy.YANG_ARC){
             this.endPos = this.endPos.sub(this.endTangent.mul(this.endOffset * this.arrivalSpeed));
         }
@@ -176,7 +199,7 @@ public class EpicMeshPlanner {
             case NAVMESH -> {
                 assert this.additionalPoints.size() == 0;
                 assert !this.allowFullSend;
-                var curveOptional = YangBotJNAInterop.findPath(this.startPos, this.startTangent, this.endPos, this.endTangent, 20);
+                var curveOptional = Navigator.findPath(this.startPos, this.startTangent, this.endPos, this.endTangent, 20);
                 if (curveOptional.isEmpty() || curveOptional.get().length <= 0)
                     currentPath = Optional.empty();
                 else
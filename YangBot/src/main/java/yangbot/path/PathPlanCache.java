@@ -0,0 +1,203 @@
+package yangbot.path;
+
+import yangbot.path.builders.SegmentedPath;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Remembers which {@link EpicMeshPlanner#plan()} requests failed on earlier ticks, so they aren't planned again every tick.
+ * <p>
+ * Entries are keyed on the quantized request (target position and tangent, offsets, arrival time and speed, strategy and flags).
+ * Each entry also remembers the car state it was planned from. A lookup only hits if the car is still where that plan expected it to be:
+ * the old start moved forward at the old speed, within {@link #POSITION_TOLERANCE}, and with tangent, speed and boost close enough.
+ * Otherwise (or once the entry is older than {@link #MAX_AGE}) the entry is invalidated and planned again.
+ * <p>
+ * Only failed plans are cached. A successful path's time estimate counts from the tick it was planned on,
+ * so handing it out a few ticks later would make callers compare a stale estimate against the time left until the intercept.
+ * Not thread-safe, use {@link #current()} for a cache per bot thread.
+ */
+public class PathPlanCache {
+
+    public static float MAX_AGE = 0.15f;
+    public static float POSITION_TOLERANCE = 30f;
+    public static float TANGENT_TOLERANCE = 0.03f; // radians
+    public static float SPEED_TOLERANCE = 50f;
+    public static float BOOST_TOLERANCE = 10f;
+
+    // Quantization of the key
+    private static final float POSITION_STEP = 5f;
+    private static final float TANGENT_STEP = 0.01f;
+    private static final float TIME_STEP = 1 / 120f;
+
+    private static final ThreadLocal<PathPlanCache> perThread = ThreadLocal.withInitial(PathPlanCache::new);
+
+    private final int capacity;
+    private final Map<Key, Entry> entries;
+
+    private int hits = 0;
+    private int misses = 0;
+    private int invalidations = 0;
+    private long hitNanos = 0;
+    private long missNanos = 0;
+
+    public PathPlanCache() {
+        this(1024);
+    }
+
+    public PathPlanCache(int capacity) {
+        assert capacity > 0;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return this.size() > PathPlanCache.this.capacity;
+            }
+        };
+    }
+
+    public static PathPlanCache current() {
+        return perThread.get();
+    }
+
+    /**
+     * @param key     Quantized request, see {@link #key}
+     * @param now     Game time in seconds
+     * @param planner Plans the path on a miss
+     * @return Optional.empty() on a hit, a freshly planned path otherwise
+     */
+    public Optional<SegmentedPath> get(Key key, Vector3 startPos, Vector3 startTangent, float startSpeed, float boost, float now, Supplier<Optional<SegmentedPath>> planner) {
+        final long ns = System.nanoTime();
+        final Entry entry = this.entries.get(key);
+        if (entry != null) {
+            if (entry.matches(startPos, startTangent, startSpeed, boost, now)) {
+                this.hits++;
+                this.hitNanos += System.nanoTime() - ns;
+                return Optional.empty();
+            }
+            this.invalidations++;
+        }
+
+        final Optional<SegmentedPath> path = planner.get();
+        if (path.isEmpty())
+            this.entries.put(key, new Entry(startPos, startTangent, startSpeed, boost, now));
+        else if (entry != null)
+            this.entries.remove(key);
+        this.misses++;
+        this.missNanos += System.nanoTime() - ns;
+        return path;
+    }
+
+    public static Key key(EpicMeshPlanner.PathCreationStrategy strategy, Vector3 endPos, Vector3 endTangent, float endOffset, float arrivalTime, float arrivalSpeed, float snapToBoostDist, boolean allowDodge, boolean allowFullSend, boolean avoidBall) {
+        final int flags = strategy.ordinal() << 3 | (allowDodge ? 1 : 0) | (allowFullSend ? 2 : 0) | (avoidBall ? 4 : 0);
+        return new Key(new int[]{
+                flags,
+                Math.round(endPos.x / POSITION_STEP), Math.round(endPos.y / POSITION_STEP), Math.round(endPos.z / POSITION_STEP),
+                Math.round(endTangent.x / TANGENT_STEP), Math.round(endTangent.y / TANGENT_STEP), Math.round(endTangent.z / TANGENT_STEP),
+                Math.round(endOffset / TIME_STEP),
+                arrivalTime < 0 ? -1 : Math.round(arrivalTime / TIME_STEP),
+                Math.round(arrivalSpeed / POSITION_STEP),
+                Math.round(snapToBoostDist / POSITION_STEP)
+        });
+    }
+
+    public void invalidate() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public int getHits() {
+        return this.hits;
+    }
+
+    public int getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return Lookups that found an entry but had to plan again, because the car deviated or the entry was too old
+     */
+    public int getInvalidations() {
+        return this.invalidations;
+    }
+
+    public float getHitRate() {
+        final int total = this.hits + this.misses;
+        if (total == 0)
+            return 0;
+        return this.hits / (float) total;
+    }
+
+    public float getAverageHitMicros() {
+        return this.hits == 0 ? 0 : this.hitNanos / (1000f * this.hits);
+    }
+
+    public float getAverageMissMicros() {
+        return this.misses == 0 ? 0 : this.missNanos / (1000f * this.misses);
+    }
+
+    public void resetCounters() {
+        this.hits = this.misses = this.invalidations = 0;
+        this.hitNanos = this.missNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(hits=" + this.hits + ",misses=" + this.misses + ",invalidated=" + this.invalidations + ",hitRate=" + String.format("%.2f", this.getHitRate())
+                + ",hit=" + String.format("%.1f", this.getAverageHitMicros()) + "us,miss=" + String.format("%.1f", this.getAverageMissMicros()) + "us)";
+    }
+
+    public static final class Key {
+        private final int[] values;
+        private final int hash;
+
+        private Key(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(this.values, ((Key) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    // A failed plan
+    private static final class Entry {
+        final Vector3 startPos, startTangent;
+        final float startSpeed, boost, time;
+
+        Entry(Vector3 startPos, Vector3 startTangent, float startSpeed, float boost, float time) {
+            this.startPos = startPos;
+            this.startTangent = startTangent;
+            this.startSpeed = startSpeed;
+            this.boost = boost;
+            this.time = time;
+        }
+
+        boolean matches(Vector3 pos, Vector3 tangent, float speed, float boost, float now) {
+            final float age = now - this.time;
+            if (age < 0 || age > MAX_AGE)
+                return false;
+            if (Math.abs(speed - this.startSpeed) > SPEED_TOLERANCE || Math.abs(boost - this.boost) > BOOST_TOLERANCE)
+                return false;
+            if (tangent.dot(this.startTangent) < Math.cos(TANGENT_TOLERANCE) * tangent.magnitude() * this.startTangent.magnitude())
+                return false;
+            // Where the car would be if it kept going like it did when the path was planned
+            final Vector3 expected = this.startPos.add(this.startTangent.mul(this.startSpeed * age));
+            return expected.distance(pos) <= POSITION_TOLERANCE;
+        }
+    }
+}
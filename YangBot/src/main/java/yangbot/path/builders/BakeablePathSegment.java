@@ -23,6 +23,7 @@ public abstract class BakeablePathSegment extends PathSegment {
     protected float bakedArrivalTime = -1, bakedEndSpeed = -1;
     protected float arrivalSpeed = -1;
     protected boolean allowBoost = false;
+    private boolean speedsOutdated = false;
 
     protected BakeablePathSegment(float startSpeed, float startBoost, float endSpeed, float arrivalTime) {
         super(startSpeed, startBoost);
@@ -146,17 +147,16 @@ public abstract class BakeablePathSegment extends PathSegment {
         if (this.bakedPath == null) {
             this.bakedPath = this.bakeInternal(maxSamples);
             assert this.bakedPath != null : this.getClass().getSimpleName();
+            this.speedsOutdated = true;
+        }
+        if (this.speedsOutdated || this.bakedPath.maxSpeeds.length == 0) {
+            // The curve keeps the segment results of earlier calls, only what the new start/arrival speed changed is simulated again
             this.timeEstimate = this.bakedPath.calculateMaxSpeeds(
                     MathUtils.clip(this.getStartSpeed(), 0, CarData.MAX_VELOCITY),
                     this.arrivalSpeed < 0 ? -1 : this.arrivalSpeed,
                     this.allowBoost ? this.startBoost : 0);
             this.bakedEndSpeed = -1;
-        }else if(this.bakedPath.maxSpeeds.length == 0){
-            this.timeEstimate = this.bakedPath.calculateMaxSpeeds(
-                    MathUtils.clip(this.getStartSpeed(), 0, CarData.MAX_VELOCITY),
-                    this.arrivalSpeed < 0 ? -1 : this.arrivalSpeed,
-                    this.allowBoost ? this.startBoost : 0);
-            this.bakedEndSpeed = -1;
+            this.speedsOutdated = false;
         }
         assert Float.isFinite(this.bakedPath.length);
 
@@ -176,13 +176,14 @@ public abstract class BakeablePathSegment extends PathSegment {
         this.bakedPath.draw(renderer, color);
     }
 
+    // The shape of the path doesn't depend on arrival speed or time, only its speeds have to be calculated again
     public void setArrivalSpeed(float newSpeed){
         this.arrivalSpeed = newSpeed;
-        this.bakedPath = null;
+        this.speedsOutdated = true;
     }
 
     public void setArrivalTime(float t){
         this.arrivalTime = t;
-        this.bakedPath = null;
+        this.speedsOutdated = true;
     }
 }
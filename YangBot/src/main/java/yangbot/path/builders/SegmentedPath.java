@@ -20,6 +20,7 @@ public class SegmentedPath {
     private int currentSegment = 0;
     private float arrivalTime = 0;
     private float startTime = 0;
+    private boolean started = false;
     private Vector3 endTangent = new Vector3(), endPos = new Vector3();
 
     public SegmentedPath(List<PathSegment> segments, float startTime) {
@@ -114,6 +115,10 @@ public class SegmentedPath {
         return this.getLastPathSegment().getEndSpeed();
     }
 
+    public boolean hasStarted() {
+        return this.started;
+    }
+
     public boolean isDone() {
         return this.currentSegment >= this.segmentList.size();
     }
@@ -131,6 +136,7 @@ public class SegmentedPath {
 
         if (this.startTime == 0)
             this.startTime = GameData.current().getCarData().elapsedSeconds;
+        this.started = true;
         var current = this.segmentList.get(this.currentSegment);
         var isDone = current.step(dt, output);
         if (isDone) {
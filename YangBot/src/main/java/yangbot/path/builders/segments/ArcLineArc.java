@@ -11,11 +11,7 @@ import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Matrix2x2;
 import yangbot.util.math.vector.Vector2;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
 
 public class ArcLineArc extends BakeablePathSegment {
 
@@ -49,81 +45,198 @@ public class ArcLineArc extends BakeablePathSegment {
         this.calculateArcs(r1, r2);
     }
 
+    // Sign combinations of r1 and r2 tried by findOptimalALA, in order
+    private static final float[] CANDIDATE_SIGNS = {1, 1, 1, -1, -1, 1, -1, -1};
+
+    /**
+     * Finds the shortest of the four CW/CCW combinations that is valid and stays in bounds.
+     * Candidates are ranked by their closed-form length, only the ones that have to be checked for bounds get baked
+     * (usually just the winner)
+     */
     public static Optional<ArcLineArc> findOptimalALA(Physics2D start, float startBoost, Vector2 endPos, Vector2 endTangent, float startOffset, float r1, float endOffset, float r2){
         r1 = Math.abs(r1);
         assert r1 > 0;
         r2 = Math.abs(r2);
         assert r2 > 0;
-        return Stream.of(
-                new ArcLineArc(start, startBoost, endPos, endTangent, startOffset, r1, endOffset, r2),
-                new ArcLineArc(start, startBoost, endPos, endTangent, startOffset, r1, endOffset, -r2),
-                new ArcLineArc(start, startBoost, endPos, endTangent, startOffset, -r1, endOffset, r2),
-                new ArcLineArc(start, startBoost, endPos, endTangent, startOffset, -r1, endOffset, -r2)
-            )
-                .filter(a -> a.isValid(100))
-                .filter(a -> {
-                    a.bakedPath = a.bakeInternal(SegmentedPath.MAX_SAMPLES);
-                    return a.bakedPath.points.stream().noneMatch(RLConstants::isOutOfBounds);
-                })
-                .min(Comparator.comparingDouble(a -> a.length));
+
+        final Vector2 startTangent = start.forward();
+        final float px = start.position.x + startTangent.x * startOffset, py = start.position.y + startTangent.y * startOffset;
+        final float ex = endPos.x - endTangent.x * endOffset, ey = endPos.y - endTangent.y * endOffset;
+
+        final float[] lengths = new float[4];
+        final float[] geometry = new float[GEOMETRY_SIZE];
+        for (int i = 0; i < 4; i++)
+            lengths[i] = closedFormLength(px, py, startTangent.x, startTangent.y, ex, ey, endTangent.x, endTangent.y, startOffset, CANDIDATE_SIGNS[2 * i] * r1, endOffset, CANDIDATE_SIGNS[2 * i + 1] * r2, 100, geometry);
+
+        // Shortest first, the first one that stays in bounds wins
+        for (int n = 0; n < 4; n++) {
+            int best = -1;
+            for (int i = 0; i < 4; i++) {
+                if (!Float.isNaN(lengths[i]) && (best == -1 || lengths[i] < lengths[best]))
+                    best = i;
+            }
+            if (best == -1)
+                break;
+            lengths[best] = Float.NaN;
+
+            final var arc = new ArcLineArc(start, startBoost, endPos, endTangent, startOffset, CANDIDATE_SIGNS[2 * best] * r1, endOffset, CANDIDATE_SIGNS[2 * best + 1] * r2);
+            if (!arc.isValid(100))
+                continue;
+            arc.bakedPath = arc.bakeInternal(SegmentedPath.MAX_SAMPLES);
+            if (arc.isInBounds())
+                return Optional.of(arc);
+        }
+        return Optional.empty();
     }
 
-    private void calculateArcs(float rad1, float rad2){
-        this.r1 = rad1;
-        this.c1Center = startPos.add(startNormal.mul(this.r1));
-        this.r2 = rad2;
-        this.c2Center = this.endPos.add(endNormal.mul(this.r2));
+    /**
+     * Batch version of findOptimalALA for many targets from the same start, without building or baking anything.
+     * lengths[i] is set to the length of the shortest valid combination towards endPositions[i], NaN if there is none.
+     * Bounds aren't checked, call findOptimalALA on the target that is chosen in the end
+     */
+    public static void findOptimalLengths(Physics2D start, Vector2[] endPositions, Vector2[] endTangents, float startOffset, float r1, float endOffset, float r2, float[] lengths){
+        assert endPositions.length == endTangents.length && lengths.length >= endPositions.length;
+        r1 = Math.abs(r1);
+        assert r1 > 0;
+        r2 = Math.abs(r2);
+        assert r2 > 0;
+
+        final Vector2 startTangent = start.forward();
+        final float px = start.position.x + startTangent.x * startOffset, py = start.position.y + startTangent.y * startOffset;
+        final float[] geometry = new float[GEOMETRY_SIZE];
+
+        for (int t = 0; t < endPositions.length; t++) {
+            final Vector2 endTangent = endTangents[t];
+            final float ex = endPositions[t].x - endTangent.x * endOffset, ey = endPositions[t].y - endTangent.y * endOffset;
+            float best = Float.NaN;
+            for (int i = 0; i < 4; i++) {
+                final float length = closedFormLength(px, py, startTangent.x, startTangent.y, ex, ey, endTangent.x, endTangent.y, startOffset, CANDIDATE_SIGNS[2 * i] * r1, endOffset, CANDIDATE_SIGNS[2 * i + 1] * r2, 100, geometry);
+                if (!Float.isNaN(length) && !(length >= best))
+                    best = length;
+            }
+            lengths[t] = best;
+        }
+    }
 
-        var deltaO = this.c2Center.sub(this.c1Center);
+    // Layout of the geometry written by solve
+    private static final int G_R1 = 0, G_R2 = 1, G_C1 = 2, G_C2 = 4, G_Q1 = 6, G_Q2 = 8, G_PHI1 = 10, G_PHI2 = 11;
+    static final int GEOMETRY_SIZE = 12;
+
+    /**
+     * Length of the arc-line-arc between p (start, already offset) and e (end, already offset) with tangents t and u,
+     * NaN if the (scaled) radii can't be driven at minSpeed
+     *
+     * @param geometry scratch space of GEOMETRY_SIZE, see solve
+     */
+    static float closedFormLength(float px, float py, float tx, float ty, float ex, float ey, float ux, float uy, float startOffset, float r1, float endOffset, float r2, float minSpeed, float[] geometry) {
+        final float length = solve(px, py, tx, ty, ex, ey, ux, uy, startOffset, r1, endOffset, r2, geometry);
+        if (!(DriveManeuver.maxTurningSpeed(1 / geometry[G_R1]) > minSpeed && DriveManeuver.maxTurningSpeed(1 / geometry[G_R2]) > minSpeed))
+            return Float.NaN;
+        return Float.isFinite(length) ? length : Float.NaN;
+    }
+
+    /**
+     * Solves the arc-line-arc in plain floats, shared by the constructor and the closed-form ranking.
+     * Writes the (scaled) radii, circle centers, line endpoints and arc angles to geometry
+     *
+     * @return total length including the offsets
+     */
+    private static float solve(float px, float py, float tx, float ty, float ex, float ey, float ux, float uy, float startOffset, float r1, float endOffset, float r2, float[] geometry) {
+        // normals, Vector2.cross()
+        final float nx = -ty, ny = tx;
+        final float mx = -uy, my = ux;
+
+        float c1x = px + nx * r1, c1y = py + ny * r1;
+        float c2x = ex + mx * r2, c2y = ey + my * r2;
+        float dx = c2x - c1x, dy = c2y - c1y;
 
         // figure out if we transition from CW to CCW or vice versa
         // and compute some of the characteristic lengths for the problem
-        float sign = -Math.signum(this.r1) * Math.signum(this.r2);
-        float R = Math.abs(this.r1) + sign * Math.abs(this.r2);
-        float o1o2 = (float) deltaO.magnitude();
+        float sign = -Math.signum(r1) * Math.signum(r2);
+        float R = Math.abs(r1) + sign * Math.abs(r2);
+        float o1o2 = (float) Math.sqrt(dx * dx + dy * dy);
         float beta = 0.97f;
 
         if (((R * R) / (o1o2 * o1o2)) > beta) {
-            //System.out.println("Scaling back circles");
-            var delta_p = this.endPos.sub(this.startPos);
-            var delta_n = this.endNormal.mul(this.r2).sub(this.startNormal.mul(this.r1));
+            // Scale back the circles
+            final float dpx = ex - px, dpy = ey - py;
+            final float dnx = mx * r2 - nx * r1, dny = my * r2 - ny * r1;
 
-            float a = beta * delta_n.dot(delta_n) - R * R;
-            float b = 2.0f * beta * delta_n.dot(delta_p);
-            float c = beta * delta_p.dot(delta_p);
+            float a = beta * (dnx * dnx + dny * dny) - R * R;
+            float b = 2.0f * beta * (dnx * dpx + dny * dpy);
+            float c = beta * (dpx * dpx + dpy * dpy);
 
             float alpha = (-b - (float) Math.sqrt(b * b - 4.0f * a * c)) / (2.0f * a);
 
             // scale the radii by alpha, and update the relevant quantities
-            this.r1 *= alpha;
-            this.r2 *= alpha;
+            r1 *= alpha;
+            r2 *= alpha;
             R *= alpha;
 
-            this.c1Center = this.startPos.add(this.startNormal.mul(this.r1));
-            this.c2Center = this.endPos.add(this.endNormal.mul(this.r2));
-
-            deltaO = this.c2Center.sub(this.c1Center);
-            o1o2 = (float) deltaO.magnitude();
+            c1x = px + nx * r1;
+            c1y = py + ny * r1;
+            c2x = ex + mx * r2;
+            c2y = ey + my * r2;
+            dx = c2x - c1x;
+            dy = c2y - c1y;
+            o1o2 = (float) Math.sqrt(dx * dx + dy * dy);
         }
 
         // set up a coordinate system along the axis
         // connecting the two circle's centers
-        var e1 = deltaO.normalized();
-        var e2 = e1.cross().mul(-Math.signum(r1));
+        final float e1x = o1o2 == 0 ? 0 : dx / o1o2, e1y = o1o2 == 0 ? 0 : dy / o1o2;
+        final float e2x = -e1y * -Math.signum(r1), e2y = e1x * -Math.signum(r1);
 
         float H = (float) Math.sqrt(o1o2 * o1o2 - R * R);
 
         // the endpoints of the line segment connecting the circles
-        this.q1 = this.c1Center.add((e1.mul(R / o1o2).add(e2.mul(H / o1o2))).mul(Math.abs(this.r1)));
-        this.q2 = this.c2Center.sub((e1.mul(R / o1o2).add(e2.mul(H / o1o2))).mul(sign * Math.abs(this.r2)));
+        final float wx = e1x * (R / o1o2) + e2x * (H / o1o2), wy = e1y * (R / o1o2) + e2y * (H / o1o2);
+        final float q1x = c1x + wx * Math.abs(r1), q1y = c1y + wy * Math.abs(r1);
+        final float q2x = c2x - wx * (sign * Math.abs(r2)), q2y = c2y - wy * (sign * Math.abs(r2));
+
+        float phi1 = 2.0f * Math.signum(normalizedDot(q1x - px, q1y - py, tx, ty)) * (float) Math.asin(Math.abs(normalizedDot(q1x - px, q1y - py, nx, ny)));
+        if (phi1 < 0.0f) phi1 += 2.0f * Math.PI;
+
+        float phi2 = -2.0f * Math.signum(normalizedDot(q2x - ex, q2y - ey, ux, uy)) * (float) Math.asin(Math.abs(normalizedDot(q2x - ex, q2y - ey, mx, my)));
+        if (phi2 < 0.0f) phi2 += 2.0f * Math.PI;
+
+        geometry[G_R1] = r1;
+        geometry[G_R2] = r2;
+        geometry[G_C1] = c1x;
+        geometry[G_C1 + 1] = c1y;
+        geometry[G_C2] = c2x;
+        geometry[G_C2 + 1] = c2y;
+        geometry[G_Q1] = q1x;
+        geometry[G_Q1 + 1] = q1y;
+        geometry[G_Q2] = q2x;
+        geometry[G_Q2 + 1] = q2y;
+        geometry[G_PHI1] = phi1;
+        geometry[G_PHI2] = phi2;
+
+        final float lx = q2x - q1x, ly = q2y - q1y;
+        return startOffset + phi1 * Math.abs(r1) + (float) Math.sqrt(lx * lx + ly * ly) + phi2 * Math.abs(r2) + endOffset;
+    }
 
-        var pq1 = this.q1.sub(this.startPos).normalized();
-        this.phi1 = 2.0f * Math.signum(pq1.dot(this.startTangent)) * (float) Math.asin(Math.abs(pq1.dot(this.startNormal)));
-        if (this.phi1 < 0.0f) this.phi1 += 2.0f * Math.PI;
+    // (x, y).normalized().dot(o)
+    private static float normalizedDot(float x, float y, float ox, float oy) {
+        if (x == 0 && y == 0)
+            return 0;
+        return (x * ox + y * oy) / (float) Math.sqrt(x * x + y * y);
+    }
 
-        var pq2 = this.q2.sub(this.endPos).normalized();
-        this.phi2 = -2.0f * Math.signum(pq2.dot(this.endTangent)) * (float) Math.asin(Math.abs(pq2.dot(this.endNormal)));
-        if (this.phi2 < 0.0f) this.phi2 += 2.0f * Math.PI;
+    private void calculateArcs(float rad1, float rad2){
+        final float[] geometry = new float[GEOMETRY_SIZE];
+        solve(this.startPos.x, this.startPos.y, this.startTangent.x, this.startTangent.y, this.endPos.x, this.endPos.y, this.endTangent.x, this.endTangent.y,
+                this.startOffset, rad1, this.endOffset, rad2, geometry);
+
+        this.r1 = geometry[G_R1];
+        this.r2 = geometry[G_R2];
+        this.c1Center = new Vector2(geometry[G_C1], geometry[G_C1 + 1]);
+        this.c2Center = new Vector2(geometry[G_C2], geometry[G_C2 + 1]);
+        this.q1 = new Vector2(geometry[G_Q1], geometry[G_Q1 + 1]);
+        this.q2 = new Vector2(geometry[G_Q2], geometry[G_Q2 + 1]);
+        this.phi1 = geometry[G_PHI1];
+        this.phi2 = geometry[G_PHI2];
 
         L[0] = startOffset;
         L[1] = this.phi1 * Math.abs(r1);
@@ -133,6 +246,18 @@ public class ArcLineArc extends BakeablePathSegment {
         this.length = L[0] + L[1] + L[2] + L[3] + L[4];
     }
 
+    private boolean isInBounds() {
+        for (int i = 0; i < this.bakedPath.getNumPoints(); i++) {
+            if (RLConstants.isOutOfBounds(this.bakedPath.getPoint(i)))
+                return false;
+        }
+        return true;
+    }
+
+    public float getLength() {
+        return this.length;
+    }
+
     public boolean isValid(float minSpeed){
         return DriveManeuver.maxTurningSpeed(1 / this.r1) > minSpeed &&
                 DriveManeuver.maxTurningSpeed(1 / this.r2) > minSpeed;
@@ -140,7 +265,6 @@ public class ArcLineArc extends BakeablePathSegment {
 
     @Override
     protected @NotNull Curve bakeInternal(int maxSamples) {
-        Curve c = new Curve();
         maxSamples *= 10;
         float ds = this.length / maxSamples;
 
@@ -153,10 +277,8 @@ public class ArcLineArc extends BakeablePathSegment {
             capacity += segments[i];
         }
 
+        Curve c = new Curve(capacity);
         c.length = length;
-        c.points = new ArrayList<>(capacity);
-        c.distances = new float[capacity];
-        c.curvatures = new float[capacity];
 
         int id = 0;
         float s = length;
@@ -166,7 +288,7 @@ public class ArcLineArc extends BakeablePathSegment {
 
         ds = L[0] / segments[0];
         for (int i = 0; i < segments[0]; i++) {
-            c.points.add(MathUtils.lerp(m1, startPos, (float)i / segments[0]).withZ(RLConstants.carElevation));
+            c.setPoint(id, MathUtils.lerp(m1, startPos, (float)i / segments[0]).withZ(RLConstants.carElevation));
             //c.curvatures[id] = 0.0f;
             c.distances[id] = s;
             id++;
@@ -177,7 +299,7 @@ public class ArcLineArc extends BakeablePathSegment {
         var r = startPos.sub(c1Center);
         var Q = Matrix2x2.fromRotation(Math.signum(r1) * phi1 / segments[1]);
         for (int i = 0; i < segments[1]; i++) {
-            c.points.add(c1Center.add(r).withZ(RLConstants.carElevation));
+            c.setPoint(id, c1Center.add(r).withZ(RLConstants.carElevation));
             c.curvatures[id] = 1 / r1;
             c.distances[id] = s;
             id++;
@@ -187,7 +309,7 @@ public class ArcLineArc extends BakeablePathSegment {
 
         ds = L[2] / segments[2];
         for (int i = 0; i < segments[2]; i++) {
-            c.points.add(MathUtils.lerp(q1, q2, (float)i / segments[2]).withZ(RLConstants.carElevation));
+            c.setPoint(id, MathUtils.lerp(q1, q2, (float)i / segments[2]).withZ(RLConstants.carElevation));
             //c.curvatures[id] = 0;
             c.distances[id] = s;
             id++;
@@ -198,7 +320,7 @@ public class ArcLineArc extends BakeablePathSegment {
         r = q2.sub(c2Center);
         Q = Matrix2x2.fromRotation(Math.signum(r2) * phi2 / segments[3]);
         for (int i = 0; i < segments[3]; i++) {
-            c.points.add(c2Center.add(r).withZ(RLConstants.carElevation));
+            c.setPoint(id, c2Center.add(r).withZ(RLConstants.carElevation));
             c.curvatures[id] = 1 / r2;
             c.distances[id] = s;
             id++;
@@ -208,7 +330,7 @@ public class ArcLineArc extends BakeablePathSegment {
 
         ds = L[4] / segments[4];
         for (int i = 0; i <= segments[4]; i++) {
-            c.points.add(MathUtils.lerp(endPos, m2, (float)i / segments[4]).withZ(RLConstants.carElevation));
+            c.setPoint(id, MathUtils.lerp(endPos, m2, (float)i / segments[4]).withZ(RLConstants.carElevation));
             //c.curvatures[id] = 0;
             c.distances[id] = i == segments[4] ? 0 : s;
             id++;
@@ -1,11 +1,9 @@
 package yangbot.path.navmesh;
 
 import yangbot.util.IntArrayList;
-import yangbot.util.Tuple;
 import yangbot.util.math.vector.Vector3;
 
 import java.util.Arrays;
-import java.util.PriorityQueue;
 
 public class Graph {
 
@@ -16,6 +14,8 @@ public class Graph {
     public int[] destinations;
     public float[] weights;
     public float[] lastBestWeights;
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+    private Landmarks landmarks = null;
 
     public Graph(Edge[] edges) {
         try {
@@ -58,111 +58,276 @@ public class Graph {
 
     }
 
-    public int[] astar_sssp(int start, int end, float maximum_weight) {
-        Vector3 destNode = Navigator.navigationNodes[end / Navigator.numDirectionDistinctions];
+    /**
+     * Wraps finished CSR arrays, as stored by {@link NavmeshCache}
+     */
+    public Graph(int[] offsets, int[] destinations, float[] weights) {
+        assert destinations.length == weights.length;
+        assert offsets[offsets.length - 1] == destinations.length;
+        this.numVertices = offsets.length - 1;
+        this.numEdges = destinations.length;
+        this.offsets = offsets;
+        this.destinations = destinations;
+        this.weights = weights;
+    }
 
-        final int nbits = 64;
-        final long one = 1;
+    /**
+     * Search state of one thread, reused by all queries on that thread.
+     * Instead of clearing the arrays, every query bumps the generation; entries stamped with an older generation count as unset.
+     */
+    private static class Workspace {
+        final int[] stamp; // generation in which weight/parent were set
+        final float[] weight;
+        final int[] parent;
+        final int[] closedStamp;
+        final int[] heapIndex; // position in the heap, -1 if not queued, valid if stamp is current
+        final float[] heuristicByNode;
+        final int[] heuristicStamp;
+        final long[] frontierBits;
+        final IntArrayList frontier;
+        final IndexedMinHeap heap;
+        int generation = 0;
+
+        Workspace(int numVertices) {
+            this.stamp = new int[numVertices];
+            this.weight = new float[numVertices];
+            this.parent = new int[numVertices];
+            this.closedStamp = new int[numVertices];
+            this.heapIndex = new int[numVertices];
+            final int directions = Math.max(1, Navigator.numDirectionDistinctions);
+            final int numNodes = (numVertices + directions - 1) / directions;
+            this.heuristicByNode = new float[numNodes];
+            this.heuristicStamp = new int[numNodes];
+            this.frontierBits = new long[(numVertices + 63) / 64];
+            this.frontier = new IntArrayList(numVertices);
+            this.heap = new IndexedMinHeap(numVertices, this.heapIndex);
+        }
 
-        long[] closeSet = new long[(numVertices + nbits - 1) / nbits];
+        void nextGeneration() {
+            if (this.generation == Integer.MAX_VALUE) {
+                Arrays.fill(this.stamp, 0);
+                Arrays.fill(this.closedStamp, 0);
+                Arrays.fill(this.heuristicStamp, 0);
+                this.generation = 0;
+            }
+            this.generation++;
+            this.heap.clear();
+            this.frontier.clear();
+        }
 
-        float[] predictedWeights = new float[numVertices];
-        Arrays.fill(predictedWeights, -1);
-        int[] bestParents = new int[numVertices];
-        Arrays.fill(bestParents, -1);
-        float[] bestWeights = new float[numVertices];
-        Arrays.fill(bestWeights, maximum_weight);
+        float weightOf(int vertex, float maximumWeight) {
+            return this.stamp[vertex] == this.generation ? this.weight[vertex] : maximumWeight;
+        }
 
-        PriorityQueue<Tuple</*id*/Integer, /*total weight*/Float>> openSet = new PriorityQueue<>((x, y) -> Float.compare(x.getValue() + predictedWeights[x.getKey()], y.getValue() + predictedWeights[y.getKey()]));
+        void set(int vertex, float weight, int parent) {
+            if (this.stamp[vertex] != this.generation) {
+                this.stamp[vertex] = this.generation;
+                this.heapIndex[vertex] = -1;
+            }
+            this.weight[vertex] = weight;
+            this.parent[vertex] = parent;
+        }
+    }
 
-        openSet.add(new Tuple<>(start, 0f));
-        int i = 0;
-        while (!openSet.isEmpty()) {
-            i++;
-            final var current = openSet.remove();
-            final int currentId = current.getKey();
-            // Has been visited?
-            if ((closeSet[currentId / nbits] & (one << (currentId % nbits))) == 0) {
-
-                if (currentId == end) {
-                    System.out.println("Iterations: " + i);
-                    return bestParents;
-                }
+    /**
+     * Result of a query, reads straight from the workspace of the thread that ran it.
+     * Only valid until the next query on that thread, see {@link #isValid()}
+     */
+    public static class SearchResult {
+        private final Workspace workspace;
+        private final int generation;
+        private final float maximumWeight;
+        private final boolean reachedEnd;
+        private final int expandedVertices;
+
+        private SearchResult(Workspace workspace, float maximumWeight, boolean reachedEnd, int expandedVertices) {
+            this.workspace = workspace;
+            this.generation = workspace.generation;
+            this.maximumWeight = maximumWeight;
+            this.reachedEnd = reachedEnd;
+            this.expandedVertices = expandedVertices;
+        }
+
+        public boolean isValid() {
+            return this.workspace.generation == this.generation;
+        }
+
+        /**
+         * @return The vertex this vertex was reached from, -1 if it wasn't reached (or is the start of an A* query)
+         */
+        public int parentOf(int vertex) {
+            assert this.isValid() : "Result was overwritten by a newer query on this thread";
+            return this.workspace.stamp[vertex] == this.generation ? this.workspace.parent[vertex] : -1;
+        }
+
+        public float weightOf(int vertex) {
+            assert this.isValid() : "Result was overwritten by a newer query on this thread";
+            return this.workspace.stamp[vertex] == this.generation ? this.workspace.weight[vertex] : this.maximumWeight;
+        }
+
+        /**
+         * @return Whether the end vertex of an A* query was reached
+         */
+        public boolean reachedEnd() {
+            return this.reachedEnd;
+        }
 
-                // Add current node to close set
-                closeSet[currentId / nbits] |= (one << (currentId % nbits));
+        /**
+         * @return Vertices whose edges were looked at, counting repeats in Bellman-Ford
+         */
+        public int getExpandedVertices() {
+            return this.expandedVertices;
+        }
 
-                // Loop through neighbours
-                final int neighbourBegin = offsets[currentId];
-                final int neighbourEnd = offsets[currentId + 1];
+        public int[] toParentArray() {
+            return this.copyParentsInto(new int[this.workspace.stamp.length]);
+        }
 
-                for (int j = neighbourBegin; j < neighbourEnd; j++) {
+        public int[] copyParentsInto(int[] parents) {
+            assert parents.length == this.workspace.stamp.length;
+            for (int i = 0; i < parents.length; i++)
+                parents[i] = this.parentOf(i);
+            return parents;
+        }
 
-                    final int neighbourId = destinations[j];
+        public float[] toWeightArray() {
+            final float[] weights = new float[this.workspace.stamp.length];
+            for (int i = 0; i < weights.length; i++)
+                weights[i] = this.weightOf(i);
+            return weights;
+        }
+    }
+
+    private Workspace workspace() {
+        Workspace workspace = this.workspaces.get();
+        if (workspace == null) {
+            workspace = new Workspace(this.numVertices);
+            this.workspaces.set(workspace);
+        }
+        return workspace;
+    }
+
+    public int getNumVertices() {
+        return this.numVertices;
+    }
+
+    public int getNumEdges() {
+        return this.numEdges;
+    }
+
+    /**
+     * Sets the landmark tables A* takes its heuristic from, null to go back to the straight-line distance
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        if (landmarks != null && !landmarks.matches(this))
+            throw new IllegalStateException("Landmarks were computed for a different graph");
+        this.landmarks = landmarks;
+    }
+
+    public Landmarks getLandmarks() {
+        return this.landmarks;
+    }
+
+    public int[] astar_sssp(int start, int end, float maximum_weight) {
+        return this.astar(start, end, maximum_weight).toParentArray();
+    }
+
+    /**
+     * A* from start to end (-1 to explore everything below maximum_weight), doesn't allocate besides the result.
+     * Uses the landmark heuristic if there are {@link #setLandmarks(Landmarks) landmarks}, which is admissible, so paths are optimal
+     */
+    public SearchResult astar(int start, int end, float maximum_weight) {
+        final Landmarks landmarks = end == -1 ? null : this.landmarks;
+        final Vector3 destNode = end == -1 || landmarks != null ? null : Navigator.navigationNodes[end / Navigator.numDirectionDistinctions];
+        final Workspace ws = this.workspace();
+        ws.nextGeneration();
+        final int generation = ws.generation;
+        final IndexedMinHeap openSet = ws.heap;
+
+        ws.set(start, 0, -1);
+        openSet.insertOrDecrease(start, 0);
+        int expanded = 0;
+        while (!openSet.isEmpty()) {
+            final int currentId = openSet.poll();
+            if (currentId == end)
+                return new SearchResult(ws, maximum_weight, true, expanded);
+            expanded++;
+
+            // Add current node to close set
+            ws.closedStamp[currentId] = generation;
+            final float currentWeight = ws.weight[currentId];
+
+            // Loop through neighbours
+            final int neighbourBegin = offsets[currentId];
+            final int neighbourEnd = offsets[currentId + 1];
+
+            for (int j = neighbourBegin; j < neighbourEnd; j++) {
+                final int neighbourId = destinations[j];
+                // Not visited yet?
+                if (ws.closedStamp[neighbourId] == generation)
+                    continue;
+
+                // G Cost
+                final float totalWeight = currentWeight + weights[j];
+                if (totalWeight >= ws.weightOf(neighbourId, maximum_weight))
+                    continue;
+
+                // Heuristic: Seconds it takes to go from neighbour to end node at max speed + 100
+                float predictedWeight = 0;
+                if (landmarks != null) {
+                    // Admissible, so anything that can't get to the end below the maximum weight can be dropped
+                    predictedWeight = landmarks.lowerBound(neighbourId, end);
+                    if (totalWeight + predictedWeight >= maximum_weight)
+                        continue;
+                } else if (destNode != null) {
                     final int neighbourIdNode = neighbourId / Navigator.numDirectionDistinctions;
-                    // Not visited yet?
-                    if ((closeSet[neighbourId / nbits] & (one << (neighbourId % nbits))) == 0) {
-
-                        // Heuristic: Seconds it takes to go from neighbour to end node at max speed + 100
-                        float predictedWeight = predictedWeights[neighbourIdNode];
-                        if (predictedWeight == -1) {
-                            predictedWeight = ((float) Navigator.navigationNodes[neighbourIdNode].distance(destNode)) / (1400 + 100);
-                            predictedWeights[neighbourIdNode] = predictedWeight;
-                        }
-
-                        // G Cost
-                        float distToNeighbour = weights[j];
-                        float totalWeight = current.getValue() + distToNeighbour;
-
-                        if (totalWeight < bestWeights[neighbourId]) {
-                            bestWeights[neighbourId] = totalWeight;
-                            bestParents[neighbourId] = currentId;
-
-                            openSet.add(new Tuple<>(neighbourId, totalWeight));
-                        }
+                    if (ws.heuristicStamp[neighbourIdNode] != generation) {
+                        ws.heuristicStamp[neighbourIdNode] = generation;
+                        ws.heuristicByNode[neighbourIdNode] = ((float) Navigator.navigationNodes[neighbourIdNode].distance(destNode)) / (1400 + 100);
                     }
+                    predictedWeight = ws.heuristicByNode[neighbourIdNode];
                 }
-            }/*else{
-                if(current.getValue() < bestWeights[current.getKey()])
-                    System.out.println("Neighbour in set twice: "+current.getValue()+" old "+bestWeights[current.getKey()]);
-            }*/
+
+                ws.set(neighbourId, totalWeight, currentId);
+                openSet.insertOrDecrease(neighbourId, totalWeight + predictedWeight);
+            }
         }
-        System.out.println("Iterations: " + i);
-        return bestParents;
+        return new SearchResult(ws, maximum_weight, false, expanded);
     }
 
     public int[] bellman_ford_sssp(int start, float maximum_weight) {
-        int[] bestParents = new int[numVertices];
-        Arrays.fill(bestParents, -1);
-        float[] bestWeights = new float[numVertices];
-        Arrays.fill(bestWeights, maximum_weight);
+        final SearchResult result = this.bellmanFord(start, maximum_weight);
+        lastBestWeights = result.toWeightArray();
+        return result.toParentArray();
+    }
 
-        bestParents[start] = start;
-        bestWeights[start] = 0f;
+    /**
+     * Shortest paths from start to every vertex below maximum_weight, doesn't allocate besides the result
+     */
+    public SearchResult bellmanFord(int start, float maximum_weight) {
+        final Workspace ws = this.workspace();
+        ws.nextGeneration();
+        ws.set(start, 0f, start);
 
-        IntArrayList frontier = new IntArrayList(numVertices);
+        final IntArrayList frontier = ws.frontier;
         frontier.add(start);
 
-        long ms = System.nanoTime();
-
-        int hop = 0;
+        int expanded = 0;
         for (int iter = 0; iter < 128 && frontier.getSize() > 0; iter++) {
-            bellman_ford_iteration(frontier, bestParents, bestWeights);
-            hop++;
+            expanded += frontier.getSize();
+            bellman_ford_iteration(ws, maximum_weight);
         }
-        //System.out.println("Hop: " + hop);
 
-        //System.out.println("analyze: bellman_ford_iteration took "+((System.nanoTime() - ms) * 0.000001f)+"ms");
-        lastBestWeights = bestWeights;
-        return bestParents;
+        return new SearchResult(ws, maximum_weight, false, expanded);
     }
 
     @SuppressWarnings("UnusedReturnValue")
-    private boolean bellman_ford_iteration(IntArrayList frontier, int[] bestParents, float[] bestWeights) {
+    private boolean bellman_ford_iteration(Workspace ws, float maximum_weight) {
         final int nbits = 64;
         final long one = 1;
 
-        long[] visited = new long[(numVertices + nbits - 1) / nbits];
+        final IntArrayList frontier = ws.frontier;
+        final long[] visited = ws.frontierBits; // all zero between iterations
 
         final int[] arr = frontier.getArray();
         final int siz = frontier.getSize();
@@ -170,17 +335,16 @@ public class Graph {
             int source = arr[i];
             int begin = offsets[source];
             int end = offsets[source + 1];
+            final float sourceWeight = ws.weight[source];
 
             for (int j = begin; j < end; j++) {
                 final int destination = destinations[j];
 
-                final float new_weight = bestWeights[source] + weights[j];
-                final float old_weight = bestWeights[destination];
+                final float new_weight = sourceWeight + weights[j];
+                final float old_weight = ws.weightOf(destination, maximum_weight);
 
                 if (new_weight < old_weight) {
-
-                    bestParents[destination] = source;
-                    bestWeights[destination] = new_weight;
+                    ws.set(destination, new_weight, source);
                     visited[destination / nbits] |= (one << (destination % nbits));
                 }
             }
@@ -189,11 +353,13 @@ public class Graph {
         frontier.clear();
 
         for (int i = 0; i < visited.length; i++) {
-            if (visited[i] != 0) {
-                for (int j = 0; j < nbits; j++) {
-                    if ((visited[i] & (one << j)) != 0) {
-                        frontier.add(i * nbits + j);
-                    }
+            long word = visited[i];
+            if (word != 0) {
+                visited[i] = 0;
+                while (word != 0) {
+                    final int j = Long.numberOfTrailingZeros(word);
+                    frontier.add(i * nbits + j);
+                    word &= word - 1;
                 }
             }
         }
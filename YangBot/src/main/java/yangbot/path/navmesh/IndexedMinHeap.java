@@ -0,0 +1,80 @@
+package yangbot.path.navmesh;
+
+/**
+ * Binary min-heap of vertex ids keyed by float priorities, with decrease-key through a vertex to heap position index
+ */
+class IndexedMinHeap {
+
+    private final int[] vertices;
+    private final float[] keys;
+    private final int[] indexOf;
+    private int size = 0;
+
+    /**
+     * @param indexOf Vertex to heap position, shared with the caller, must be -1 for vertices that aren't queued
+     */
+    IndexedMinHeap(int capacity, int[] indexOf) {
+        this.vertices = new int[capacity];
+        this.keys = new float[capacity];
+        this.indexOf = indexOf;
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    // Inserts the vertex, or lowers its key if it is queued already. indexOf[vertex] must be -1 if it isn't
+    void insertOrDecrease(int vertex, float key) {
+        int i = this.indexOf[vertex];
+        if (i == -1) {
+            i = this.size++;
+        } else if (key >= this.keys[i]) {
+            return;
+        }
+        this.siftUp(i, vertex, key);
+    }
+
+    int poll() {
+        final int top = this.vertices[0];
+        this.indexOf[top] = -1;
+        this.size--;
+        if (this.size > 0)
+            this.siftDown(0, this.vertices[this.size], this.keys[this.size]);
+        return top;
+    }
+
+    private void siftUp(int i, int vertex, float key) {
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (this.keys[parent] <= key)
+                break;
+            this.place(i, this.vertices[parent], this.keys[parent]);
+            i = parent;
+        }
+        this.place(i, vertex, key);
+    }
+
+    private void siftDown(int i, int vertex, float key) {
+        final int half = this.size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.size && this.keys[child + 1] < this.keys[child])
+                child++;
+            if (key <= this.keys[child])
+                break;
+            this.place(i, this.vertices[child], this.keys[child]);
+            i = child;
+        }
+        this.place(i, vertex, key);
+    }
+
+    private void place(int i, int vertex, float key) {
+        this.vertices[i] = vertex;
+        this.keys[i] = key;
+        this.indexOf[vertex] = i;
+    }
+}
@@ -0,0 +1,303 @@
+package yangbot.path.navmesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Shortest path weights from and to a few landmark vertices, giving {@link Graph#astar(int, int, float)} an admissible heuristic through the triangle inequality (ALT):
+ * d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L) for every landmark L.
+ * Unlike the straight-line distance this knows about walls and turning costs.
+ * <p>
+ * Landmarks are picked offline by farthest selection, see {@link #main(String[])}. Stored beside the navmesh (little endian):
+ * <pre>
+ * int magic, int version, int numVertices, int numEdges, int numLandmarks, int graphHash, long crc32 of everything after the header
+ * int[numLandmarks] landmarks, float[numVertices * numLandmarks] weights from the landmarks, float[numVertices * numLandmarks] weights to the landmarks
+ * </pre>
+ * Weights are stored per vertex, so the heuristic for a vertex reads one contiguous block.
+ */
+public class Landmarks {
+
+    public static final int MAGIC = 0x4B4D4C59; // "YLMK"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final int[] landmarks;
+    private final float[] fromLandmark; // [vertex * numLandmarks + i] = d(landmark i, vertex), infinite if unreachable
+    private final float[] toLandmark; // [vertex * numLandmarks + i] = d(vertex, landmark i)
+    private final int graphHash;
+
+    private Landmarks(int[] landmarks, float[] fromLandmark, float[] toLandmark, int graphHash) {
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+        this.graphHash = graphHash;
+    }
+
+    public int getNumLandmarks() {
+        return this.landmarks.length;
+    }
+
+    public int getNumVertices() {
+        return this.fromLandmark.length / Math.max(1, this.landmarks.length);
+    }
+
+    public int[] getLandmarks() {
+        return this.landmarks.clone();
+    }
+
+    /**
+     * @return Whether the tables were computed on this graph
+     */
+    public boolean matches(Graph graph) {
+        return graph.getNumVertices() == this.getNumVertices() && hash(graph) == this.graphHash;
+    }
+
+    /**
+     * Lower bound of the shortest path weight from vertex to target, infinite if target can't be reached from vertex
+     */
+    public float lowerBound(int vertex, int target) {
+        final int k = this.landmarks.length;
+        final int v = vertex * k, t = target * k;
+        float bound = 0;
+        for (int i = 0; i < k; i++) {
+            // NaN (both unreachable) fails the comparisons and is ignored
+            final float forward = this.fromLandmark[t + i] - this.fromLandmark[v + i];
+            if (forward > bound)
+                bound = forward;
+            final float backward = this.toLandmark[v + i] - this.toLandmark[t + i];
+            if (backward > bound)
+                bound = backward;
+        }
+        return bound;
+    }
+
+    /**
+     * Picks numLandmarks vertices by farthest selection: each new landmark is the vertex furthest from all landmarks so far, which spreads them along the edges of the map
+     */
+    public static Landmarks select(Graph graph, int numLandmarks) {
+        final int n = graph.getNumVertices();
+        final int[] reverseOffsets = new int[n + 1];
+        final int[] reverseDestinations = new int[graph.getNumEdges()];
+        final float[] reverseWeights = new float[graph.getNumEdges()];
+        reverse(graph, reverseOffsets, reverseDestinations, reverseWeights);
+
+        final int[] heapIndex = new int[n];
+        final IndexedMinHeap heap = new IndexedMinHeap(n, heapIndex);
+        final float[] weights = new float[n];
+        final float[] closest = new float[n]; // smallest weight from any landmark so far
+        Arrays.fill(closest, Float.POSITIVE_INFINITY);
+
+        // Start at the vertex furthest from an arbitrary one
+        int first = 0;
+        while (first < n && graph.offsets[first + 1] == graph.offsets[first])
+            first++;
+        if (first == n)
+            throw new IllegalStateException("Graph has no edges");
+        dijkstra(graph.offsets, graph.destinations, graph.weights, first, weights, heap, heapIndex);
+        int next = farthest(graph, weights);
+
+        final int[] landmarks = new int[numLandmarks];
+        final float[] fromLandmark = new float[n * numLandmarks];
+        final float[] toLandmark = new float[n * numLandmarks];
+        for (int i = 0; i < numLandmarks; i++) {
+            landmarks[i] = next;
+
+            dijkstra(reverseOffsets, reverseDestinations, reverseWeights, next, weights, heap, heapIndex);
+            for (int v = 0; v < n; v++)
+                toLandmark[v * numLandmarks + i] = weights[v];
+
+            dijkstra(graph.offsets, graph.destinations, graph.weights, next, weights, heap, heapIndex);
+            for (int v = 0; v < n; v++) {
+                fromLandmark[v * numLandmarks + i] = weights[v];
+                closest[v] = Math.min(closest[v], weights[v]);
+            }
+            next = farthest(graph, closest);
+        }
+        return new Landmarks(landmarks, fromLandmark, toLandmark, hash(graph));
+    }
+
+    // Reachable vertex with outgoing edges and the largest weight. Unreachable ones are usually stray nodes that would make useless landmarks
+    private static int farthest(Graph graph, float[] weights) {
+        int best = -1;
+        for (int v = 0; v < weights.length; v++) {
+            if (graph.offsets[v + 1] == graph.offsets[v] || weights[v] == 0 || weights[v] == Float.POSITIVE_INFINITY)
+                continue;
+            if (best == -1 || weights[v] > weights[best])
+                best = v;
+        }
+        return best == -1 ? 0 : best;
+    }
+
+    private static void reverse(Graph graph, int[] offsets, int[] destinations, float[] weights) {
+        final int n = graph.getNumVertices();
+        for (int e = 0; e < graph.getNumEdges(); e++)
+            offsets[graph.destinations[e] + 1]++;
+        for (int v = 0; v < n; v++)
+            offsets[v + 1] += offsets[v];
+
+        final int[] fill = Arrays.copyOf(offsets, n);
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                final int slot = fill[graph.destinations[e]]++;
+                destinations[slot] = v;
+                weights[slot] = graph.weights[e];
+            }
+        }
+    }
+
+    // Unbounded single source shortest paths, infinite for unreachable vertices
+    private static void dijkstra(int[] offsets, int[] destinations, float[] edgeWeights, int source, float[] weights, IndexedMinHeap heap, int[] heapIndex) {
+        Arrays.fill(weights, Float.POSITIVE_INFINITY);
+        Arrays.fill(heapIndex, -1);
+        heap.clear();
+
+        weights[source] = 0;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            final int v = heap.poll();
+            final float weight = weights[v];
+            for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                final int u = destinations[j];
+                final float newWeight = weight + edgeWeights[j];
+                if (newWeight < weights[u]) {
+                    weights[u] = newWeight;
+                    heap.insertOrDecrease(u, newWeight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cheap fingerprint of the graph, so tables computed on a different navmesh aren't used
+     */
+    static int hash(Graph graph) {
+        int hash = graph.getNumVertices();
+        for (int v = 0; v <= graph.getNumVertices(); v++)
+            hash = 31 * hash + graph.offsets[v];
+        for (int e = 0; e < graph.getNumEdges(); e++)
+            hash = 31 * (31 * hash + graph.destinations[e]) + Float.floatToIntBits(graph.weights[e]);
+        return hash;
+    }
+
+    public void write(Path file, Graph graph) throws IOException {
+        final int k = this.landmarks.length;
+        final int n = this.getNumVertices();
+        final int payloadSize = 4 * (k + 2 * n * k);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_SIZE);
+        buffer.asIntBuffer().put(this.landmarks);
+        buffer.position(buffer.position() + 4 * k);
+        buffer.asFloatBuffer().put(this.fromLandmark);
+        buffer.position(buffer.position() + 4 * this.fromLandmark.length);
+        buffer.asFloatBuffer().put(this.toLandmark);
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(n);
+        buffer.putInt(graph.getNumEdges());
+        buffer.putInt(k);
+        buffer.putInt(this.graphHash);
+        buffer.putLong(crc.getValue());
+
+        Files.write(file, buffer.array());
+    }
+
+    public static Landmarks map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads the tables from the classpath, mapped if it's a plain file, read into memory if it's packed into a jar
+     *
+     * @return null if the resource doesn't exist
+     */
+    public static Landmarks load(ClassLoader cl, String resource) throws IOException {
+        final URL url = cl.getResource(resource);
+        if (url == null)
+            return null;
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return map(Path.of(url.toURI()));
+            } catch (URISyntaxException e) {
+                // Fall through and read it as a stream
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            return read(ByteBuffer.wrap(in.readAllBytes()));
+        }
+    }
+
+    public static Landmarks read(ByteBuffer buffer) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE)
+            throw new IllegalStateException("Landmark file is truncated");
+
+        final int magic = buffer.getInt();
+        final int version = buffer.getInt();
+        if (magic != MAGIC)
+            throw new IllegalStateException("Not a landmark file");
+        if (version != VERSION)
+            throw new IllegalStateException("Landmark file has version " + version + ", expected " + VERSION);
+
+        final int numVertices = buffer.getInt();
+        buffer.getInt(); // numEdges, only informative
+        final int numLandmarks = buffer.getInt();
+        final int graphHash = buffer.getInt();
+        final long checksum = buffer.getLong();
+
+        final long payloadSize = 4L * (numLandmarks + 2L * numVertices * numLandmarks);
+        if (numVertices < 0 || numLandmarks <= 0 || buffer.remaining() != payloadSize)
+            throw new IllegalStateException("Landmark file has the wrong size");
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if (crc.getValue() != checksum)
+            throw new IllegalStateException("Landmark file checksum mismatch");
+
+        final int[] landmarks = new int[numLandmarks];
+        final float[] fromLandmark = new float[numVertices * numLandmarks];
+        final float[] toLandmark = new float[numVertices * numLandmarks];
+        buffer.asIntBuffer().get(landmarks);
+        buffer.position(buffer.position() + 4 * numLandmarks);
+        buffer.asFloatBuffer().get(fromLandmark);
+        buffer.position(buffer.position() + 4 * fromLandmark.length);
+        buffer.asFloatBuffer().get(toLandmark);
+        return new Landmarks(landmarks, fromLandmark, toLandmark, graphHash);
+    }
+
+    /**
+     * Arguments: navmesh cache file, output file, optionally the number of landmarks (default 8)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: Landmarks <navmesh cache> <output file> [landmarks]");
+            return;
+        }
+        final Graph graph = NavmeshCache.map(Path.of(args[0])).graph;
+        final int numLandmarks = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        final long ms = System.currentTimeMillis();
+        final Landmarks landmarks = select(graph, numLandmarks);
+        System.out.println("Selected " + numLandmarks + " landmarks " + Arrays.toString(landmarks.landmarks) + " in " + (System.currentTimeMillis() - ms) + "ms");
+
+        landmarks.write(Path.of(args[1]), graph);
+        System.out.println("Wrote " + args[1]);
+    }
+}
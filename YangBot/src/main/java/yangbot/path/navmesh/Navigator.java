@@ -3,17 +3,14 @@ package yangbot.path.navmesh;
 import yangbot.input.CarData;
 import yangbot.path.Curve;
 import yangbot.util.Tuple;
-import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Matrix3x3;
 import yangbot.util.math.vector.Vector3;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class Navigator {
 
@@ -22,18 +19,17 @@ public class Navigator {
     public static Vector3[] navigationNormals;
     private static AtomicBoolean loadedStatics = new AtomicBoolean(false);
     public static int numDirectionDistinctions = 16;
-    private static int scale = -1;
-    private static int nx = -1;
-    private static int nv = -1;
     private static Vector3[] directions = new Vector3[0];
-    private static int[] strides = new int[3];
-    private static float[] LUT_times;
-    private static int[] LUT_paths;
+    private static NavigatorLut lut; // Flat ground paths, null if not loaded
     public static Graph navigationGraph;
+    public static NodeIndex nodeIndex;
+    public static int treeCacheSize = 4;
+    private static final ThreadLocal<ShortestPathTreeCache> treeCaches = ThreadLocal.withInitial(() -> new ShortestPathTreeCache(treeCacheSize));
     public final PathAlgorithm pathAlgorithm;
     public int source_node = -1;
     public int source_direction = -1;
-    public int[] navigation_paths;
+    public Graph.SearchResult navigationResult;
+    private int[] sourceTree = null; // Cached parents, replaces navigationResult if set
     public Vector3 source;
 
     public Navigator(PathAlgorithm pathAlgorithm) {
@@ -44,16 +40,18 @@ public class Navigator {
         return loadedStatics.get();
     }
 
-    public static void initStatics(int[] parameters, float[] times, int[] paths, Graph.Edge[] edges, Vector3[] nav_nodes, Vector3[] nav_normals) {
-        navigationGraph = new Graph(edges);
+    public static void initStatics(int[] parameters, Graph.Edge[] edges, Vector3[] nav_nodes, Vector3[] nav_normals) {
+        initStatics(parameters, new Graph(edges), nav_nodes, nav_normals);
+    }
+
+    public static void initStatics(int[] parameters, Graph graph, Vector3[] nav_nodes, Vector3[] nav_normals) {
+        navigationGraph = graph;
 
         navigationNodes = nav_nodes;
         navigationNormals = nav_normals;
+        nodeIndex = new NodeIndex(nav_nodes, nav_normals);
 
-        scale = parameters[0];
-        nx = parameters[1];
         numDirectionDistinctions = parameters[2];
-        nv = parameters[3];
 
         if (numDirectionDistinctions >= 1024)
             throw new IllegalStateException("Read faulty parameters");
@@ -66,13 +64,6 @@ public class Navigator {
             directions[i] = new Vector3(Math.cos(((float) i) / k), Math.sin(((float) i) / k), 0f);
         }
 
-        strides[0] = nv * numDirectionDistinctions * (2 * nx + 1);
-        strides[1] = nv * numDirectionDistinctions;
-        strides[2] = nv;
-
-        LUT_times = times;
-        LUT_paths = paths;
-
         navigationTangents = new Vector3[navigationNormals.length * numDirectionDistinctions];
         for (int i = 0; i < navigationNormals.length; i++) {
             Matrix3x3 basis = Matrix3x3.R3_basis(navigationNormals[i]);
@@ -81,105 +72,106 @@ public class Navigator {
             }
         }
 
-        loadedStatics.set(true);
+        synchronized (loadedStatics) {
+            loadedStatics.set(true);
+            loadedStatics.notifyAll();
+        }
+    }
+
+    // Blocks until initStatics ran
+    private static void awaitStatics() {
+        if (loadedStatics.get())
+            return;
+        synchronized (loadedStatics) {
+            while (!loadedStatics.get()) {
+                try {
+                    loadedStatics.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the navigator to load", e);
+                }
+            }
+        }
     }
 
-    private Curve lutPathTo(CarData car, Vector3 destination, Vector3 tangent, float offset) {
-        final float k = numDirectionDistinctions / 6.28318530f;
+    /**
+     * Sets the table used for paths on flat ground, null to always use the navmesh. See {@link NavigatorLutGenerator}
+     */
+    public static void setLut(NavigatorLut navigatorLut) {
+        lut = navigatorLut;
+    }
+
+    public static NavigatorLut getLut() {
+        return lut;
+    }
+
+    // Walks the predecessors in the lut back from the destination, null if it's out of range or unreachable
+    private static Curve lutPathTo(NavigatorLut lut, Vector3 start, Vector3 startTangent, Vector3 destination, Vector3 tangent, float offset) {
+        final float k = lut.ntheta / 6.28318530f;
         final Vector3 n = new Vector3(0, 0, 1f);
 
         Vector3 unitTangent = tangent.normalized();
-        Matrix3x3 orientation = Matrix3x3.lookAt(new Vector3(car.forward().flatten()), n);
+        Matrix3x3 orientation = Matrix3x3.lookAt(new Vector3(startTangent.flatten()).normalized(), n);
 
-        Vector3 destinationLocal = destination.sub(unitTangent.mul(offset)).sub(car.position).dot(orientation);
-        Vector3 tangentLocal;
+        Vector3 target = destination.sub(unitTangent.mul(offset));
+        Vector3 destinationLocal = target.sub(start).dot(orientation);
 
-        int x = (int) MathUtils.clip(Math.round(destinationLocal.x / scale), -nx, nx);
-        int y = (int) MathUtils.clip(Math.round(destinationLocal.y / scale), -nx, nx);
+        int x = Math.round((float) destinationLocal.x / lut.scale);
+        int y = Math.round((float) destinationLocal.y / lut.scale);
+        if (!lut.contains(x, y))
+            return null;
 
-        tangentLocal = unitTangent.dot(orientation);
+        Vector3 tangentLocal = unitTangent.dot(orientation);
         float angle = (float) Math.atan2(tangentLocal.y, tangentLocal.x);
-        int theta = Math.round(k * angle);
-        if (theta < 0) theta += numDirectionDistinctions;
+        int theta = Math.floorMod(Math.round(k * angle), lut.ntheta);
 
+        // Fastest arrival that's at least as fast as the start
         int v = -1;
-        int v_min = 0;
-        int v_max = nv - 1;
-
-        float speed = 1400.f;
-
-        if (Float.isFinite(speed)) {
-            v_min = (int) MathUtils.clip((int) Math.floor(speed / 100f), 0, nv - 1);
-        }
-
-        float best_time = 1.0e10f;
-
-        for (int u = v_min; u <= v_max; u++) {
-            if (LUT_times[to_id(x, y, theta, u)] < best_time) {
-                best_time = LUT_times[to_id(x, y, theta, u)];
+        float best_time = Float.POSITIVE_INFINITY;
+        for (int u = lut.startVelocity(); u < lut.nv; u++) {
+            final float time = lut.time(lut.index(x, y, theta, u));
+            if (time < best_time) {
+                best_time = time;
                 v = u;
             }
         }
+        if (v == -1)
+            return null;
 
         List<Curve.ControlPoint> ctrl_pts = new ArrayList<>();
+        ctrl_pts.add(new Curve.ControlPoint(target, unitTangent, n));
 
-        for (int i = 0; i < 32; i++) {
-            Vector3 p = orientation.dot(new Vector3(x * scale, y * scale, 0f)).add(car.position);
-            Vector3 t = orientation.dot(directions[theta]);
-
-            if (i == 0) {
-                p = destination;
-                t = tangent;
-            }
-
-            ctrl_pts.add(new Curve.ControlPoint(p, t, n));
-
-            LutComp comp = from_id(LUT_paths[to_id(x, y, theta, v)]);
-            x = comp.x;
-            y = comp.y;
-            theta = comp.theta;
-            v = comp.v;
+        for (int i = 0; i < 4 * lut.nx; i++) {
+            final int code = lut.predecessor(lut.index(x, y, theta, v));
+            if (code == NavigatorLut.UNREACHABLE)
+                break;
+            x -= NavigatorLut.deltaX(code);
+            y -= NavigatorLut.deltaY(code);
+            theta = Math.floorMod(theta - NavigatorLut.deltaTheta(code), lut.ntheta);
+            v -= NavigatorLut.deltaV(code);
 
             if (x == 0 && y == 0 && theta == 0)
                 break;
+
+            Vector3 p = orientation.dot(new Vector3(x * lut.scale, y * lut.scale, 0f)).add(start);
+            Vector3 t = orientation.dot(new Vector3(Math.cos(theta / k), Math.sin(theta / k), 0f));
+            ctrl_pts.add(new Curve.ControlPoint(p, t, n));
         }
 
-        ctrl_pts.add(new Curve.ControlPoint(car.position, car.forward(), n));
+        ctrl_pts.add(new Curve.ControlPoint(start, orientation.dot(new Vector3(1, 0, 0)), n));
 
         Collections.reverse(ctrl_pts);
 
-        ctrl_pts.add(new Curve.ControlPoint(destination, unitTangent, n));
+        if (destination.distance(target) > 1)
+            ctrl_pts.add(new Curve.ControlPoint(destination, unitTangent, n));
 
         return new Curve(ctrl_pts);
     }
 
-    private int to_id(int x, int y, int theta, int v) {
-        return (((x + nx) * strides[0] + (y + nx) * strides[1] + theta * strides[2] + v));
-    }
-
-    private LutComp from_id(long id) {
-        int x = (int) ((id / strides[0]) - nx);
-        id %= strides[0];
-        int y = (int) ((id / strides[1]) - nx);
-        id %= strides[1];
-        int theta = (int) (id / strides[2]);
-        id %= strides[2];
-        int v = (int) (id);
-        return new LutComp(x, y, theta, v);
-    }
-
     private Curve navmeshPathTo(Vector3 startTangent, Vector3 destination, Vector3 tangent, float offset) {
         Vector3 unitTangent = tangent.normalized();
 
-        int destinationNode = -1;
-        float minimum = 1000000.0f;
-        for (int i = 0; i < navigationNodes.length; i++) {
-            float distance = (float) destination.sub(unitTangent.mul(offset)).sub(navigationNodes[i]).magnitude();
-            if (distance < minimum) {
-                destinationNode = i;
-                minimum = distance;
-            }
-        }
+        int destinationNode = nodeIndex.nearest(destination.sub(unitTangent.mul(offset)));
 
         int destination_direction = -1;
         float maximum_alignment = -2.0f;
@@ -194,10 +186,15 @@ public class Navigator {
         int source_id = source_node * numDirectionDistinctions + source_direction;
         int dest_id = destinationNode * numDirectionDistinctions + destination_direction;
 
+        if (this.sourceTree == null && this.pathAlgorithm == PathAlgorithm.BELLMANN_FORD && !navigationResult.isValid()) {
+            // Another search on this thread reused the workspace since analyzeSurroundings
+            navigationResult = navigationGraph.bellmanFord(source_id, 8F);
+        }
+
         if (this.pathAlgorithm == PathAlgorithm.ASTAR) {
             long ms = System.nanoTime();
-            navigation_paths = navigationGraph.astar_sssp(source_id, dest_id, 8F);
-            System.out.println("Navigator: astar_sssp took " + ((System.nanoTime() - ms) * 0.000001f) + "ms");
+            navigationResult = navigationGraph.astar(source_id, dest_id, 8F);
+            System.out.println("Navigator: astar took " + ((System.nanoTime() - ms) * 0.000001f) + "ms");
         }
 
         Vector3 p = navigationNodes[destinationNode];
@@ -212,7 +209,7 @@ public class Navigator {
         for (int i = 0; i < 32; i++) {
 
             // find the navigation node and tangent that brings me here
-            dest_id = navigation_paths[dest_id];
+            dest_id = this.sourceTree != null ? this.sourceTree[dest_id] : navigationResult.parentOf(dest_id);
 
             // if it exists, add another control point to the path
             if (dest_id != -1) {
@@ -247,17 +244,13 @@ public class Navigator {
     }
 
     public Curve pathTo(Vector3 startTangent, Vector3 destination, Vector3 tangent, float offset) {
-        while (!loadedStatics.get()) {
-            try {
-                Thread.sleep(1);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+        awaitStatics();
 
-        //if (Math.max(car.position.z, destination.z) < 50) {
-        //return lutPathTo(car, destination, tangent, offset);
-        //} else
+        if (lut != null && Math.max(this.source.z, destination.z) < 50) {
+            Curve curve = lutPathTo(lut, this.source, startTangent, destination, tangent, offset);
+            if (curve != null)
+                return curve;
+        }
         return navmeshPathTo(startTangent, destination, tangent, offset);
     }
 
@@ -285,15 +278,7 @@ public class Navigator {
     public Tuple<Integer, Vector3> findClosestNode(Vector3 pos) {
         if (!loadedStatics.get())
             throw new IllegalStateException("Navigator didn't load yet");
-        int closest = -1;
-        float minimum = 1000000.0f;
-        for (int i = 0; i < navigationNodes.length; i++) {
-            float distance = (float) pos.sub(navigationNodes[i]).magnitude();
-            if (distance < minimum) {
-                closest = i;
-                minimum = distance;
-            }
-        }
+        int closest = nodeIndex.nearest(pos);
         if (closest == -1)
             return null;
         else
@@ -306,35 +291,48 @@ public class Navigator {
             return new ArrayList<>();
         }
 
-        return IntStream.range(0, navigationNodes.length)
-                .boxed()
-                .map(node -> new Tuple<>(node, pos.sub(navigationNodes[node]).magnitude()))
-                .sorted(Comparator.comparingDouble(Tuple::getValue))
-                .limit(num)
-                .map(p -> new Tuple<>(p.getKey(), navigationNodes[p.getKey()]))
-                .collect(Collectors.toList());
+        final int[] closest = new int[Math.min(num, navigationNodes.length)];
+        final int found = nodeIndex.kNearest(pos, closest.length, closest);
+        final List<Tuple<Integer, Vector3>> nodes = new ArrayList<>(found);
+        for (int i = 0; i < found; i++)
+            nodes.add(new Tuple<>(closest[i], navigationNodes[closest[i]]));
+        return nodes;
     }
 
     public void analyzeSurroundings(Vector3 pos, Vector3 dir) {
-        while (!loadedStatics.get()) {
-            try {
-                Thread.sleep(1);
-            } catch (Exception e) {
-                e.printStackTrace();
+        this.analyzeSurroundings(pos, dir, null);
+    }
+
+    /**
+     * @param up If not null, prefer nodes on a surface facing this way (e.g. the car's roof direction), so a car on the floor doesn't snap to a wall node next to it
+     */
+    public void analyzeSurroundings(Vector3 pos, Vector3 dir, Vector3 up) {
+        awaitStatics();
+
+        int source_id = this.locateSource(pos, dir, up);
+
+        switch (this.pathAlgorithm) {
+            case BELLMANN_FORD: {
+                long ms = System.nanoTime();
+
+                navigationResult = navigationGraph.bellmanFord(source_id, 8F);
+                System.out.println("Navigator: bellmanFord took " + ((System.nanoTime() - ms) * 0.000001f) + "ms");
+            }
+            case ASTAR: {
+                /*long ms = System.nanoTime();
+                navigationResult = navigationGraph.astar(source_id, -1, 8F);
+                System.out.println("Navigator: astar took " + ((System.nanoTime() - ms) * 0.000001f) + "ms");*/
             }
         }
+    }
 
+    // Picks the start node and direction, returns the start vertex
+    private int locateSource(Vector3 pos, Vector3 dir, Vector3 up) {
         this.source = pos;
 
-        this.source_node = -1;
-        float minimum = 1000000.0f;
-        for (int i = 0; i < navigationNodes.length; i++) {
-            float distance = (float) this.source.sub(navigationNodes[i]).magnitude();
-            if (distance < minimum) {
-                source_node = i;
-                minimum = distance;
-            }
-        }
+        this.source_node = up == null ? -1 : nodeIndex.nearest(pos, up, 0.7f);
+        if (this.source_node == -1)
+            this.source_node = nodeIndex.nearest(pos);
 
         Vector3 p = navigationNodes[this.source_node];
         Vector3 n = navigationNormals[this.source_node];
@@ -351,25 +349,42 @@ public class Navigator {
             }
         }
 
-        int source_id = this.source_node * numDirectionDistinctions + this.source_direction;
-
-        switch (this.pathAlgorithm) {
-            case BELLMANN_FORD: {
-                long ms = System.nanoTime();
+        return this.source_node * numDirectionDistinctions + this.source_direction;
+    }
 
-                navigation_paths = navigationGraph.bellman_ford_sssp(source_id, 8F);
-                System.out.println("Navigator: bellman_ford_sssp took " + ((System.nanoTime() - ms) * 0.000001f) + "ms");
-            }
-            case ASTAR: {
-                /*long ms = System.nanoTime();
-                navigation_paths = navigationGraph.astar_sssp(source_id, -1, 8F);
-                System.out.println("Navigator: astar_sssp took " + ((System.nanoTime() - ms) * 0.000001f) + "ms");*/
-            }
+    /**
+     * Java version of YangBotJNAInterop.findPath: closest nodes, shortest path tree from the start, curve through the nodes.
+     * The trees are cached per thread by start node and direction, so repeated queries from (nearly) the same start don't search again
+     *
+     * @return Empty if the navmesh didn't load yet or the destination can't be reached
+     */
+    public static Optional<Curve> findPath(Vector3 startPos, Vector3 startTangent, Vector3 endPos, Vector3 endTangent, float endTangentScalar) {
+        if (!isLoaded())
+            return Optional.empty();
+
+        final NavigatorLut navigatorLut = lut;
+        if (navigatorLut != null && Math.max(startPos.z, endPos.z) < 50) {
+            final Curve curve = lutPathTo(navigatorLut, startPos, startTangent, endPos, endTangent, endTangentScalar);
+            if (curve != null && curve.length > 0)
+                return Optional.of(curve);
         }
+
+        final Navigator nav = new Navigator(PathAlgorithm.BELLMANN_FORD);
+        final int sourceId = nav.locateSource(startPos, startTangent, null);
+        nav.sourceTree = treeCaches.get().get(navigationGraph, sourceId);
+
+        final Curve curve = nav.navmeshPathTo(startTangent, endPos, endTangent, endTangentScalar);
+        if (curve == null || curve.length <= 0)
+            return Optional.empty();
+        return Optional.of(curve);
+    }
+
+    public static ShortestPathTreeCache getTreeCache() {
+        return treeCaches.get();
     }
 
     public void analyzeSurroundings(CarData car) {
-        this.analyzeSurroundings(car.position, car.forward());
+        this.analyzeSurroundings(car.position, car.forward(), car.up());
     }
 
     public enum PathAlgorithm {
@@ -380,18 +395,4 @@ public class Navigator {
     private static class NavData {
 
     }
-
-    private static class LutComp {
-        public int x;
-        public int y;
-        public int theta;
-        public int v;
-
-        public LutComp(int x, int y, int theta, int v) {
-            this.x = x;
-            this.y = y;
-            this.theta = theta;
-            this.v = v;
-        }
-    }
 }
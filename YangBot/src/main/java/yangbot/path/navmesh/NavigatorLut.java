@@ -0,0 +1,204 @@
+package yangbot.path.navmesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Travel times and predecessors on a car-relative lattice of states (x, y, theta, v), used by {@link Navigator} for paths on flat ground.
+ * The car starts at (0, 0, theta = 0) driving at {@link #startSpeed}, x/y are in multiples of {@link #scale}, v in multiples of 100uu/s.
+ * <p>
+ * Times are quantized to 16 bits in steps of {@link #timeStep}, predecessors are stored as the 16-bit difference to the state before.
+ * Layout (little endian):
+ * <pre>
+ * int magic, int version, int scale, int nx, int ntheta, int nv, float startSpeed, float timeStep, long crc32 of everything after the header
+ * short[states] times, short[states] predecessors
+ * </pre>
+ * The buffers are read in place, so a mapped file is never copied onto the heap. See {@link NavigatorLutGenerator} for making one
+ */
+public class NavigatorLut {
+
+    public static final int MAGIC = 0x54554C59; // "YLUT"
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    public static final int UNREACHABLE = 0xFFFF; // time of unreachable states, predecessor of the start and unreachable states
+    public static final int MAX_STEP = 7; // largest x/y difference between a state and its predecessor
+
+    public final int scale;
+    public final int nx;
+    public final int ntheta;
+    public final int nv;
+    public final float startSpeed;
+    public final float timeStep;
+    private final ShortBuffer times;
+    private final ShortBuffer predecessors;
+
+    NavigatorLut(int scale, int nx, int ntheta, int nv, float startSpeed, float timeStep, ShortBuffer times, ShortBuffer predecessors) {
+        this.scale = scale;
+        this.nx = nx;
+        this.ntheta = ntheta;
+        this.nv = nv;
+        this.startSpeed = startSpeed;
+        this.timeStep = timeStep;
+        this.times = times;
+        this.predecessors = predecessors;
+        assert times.capacity() == this.numStates() && predecessors.capacity() == this.numStates();
+    }
+
+    public int numStates() {
+        return (2 * this.nx + 1) * (2 * this.nx + 1) * this.ntheta * this.nv;
+    }
+
+    public int startVelocity() {
+        return Math.min(Math.round(this.startSpeed / 100f), this.nv - 1);
+    }
+
+    public boolean contains(int x, int y) {
+        return Math.abs(x) <= this.nx && Math.abs(y) <= this.nx;
+    }
+
+    public int index(int x, int y, int theta, int v) {
+        return (((x + this.nx) * (2 * this.nx + 1) + (y + this.nx)) * this.ntheta + theta) * this.nv + v;
+    }
+
+    /**
+     * @return Seconds to reach the state, infinite if it can't be reached
+     */
+    public float time(int index) {
+        final int quantized = Short.toUnsignedInt(this.times.get(index));
+        return quantized == UNREACHABLE ? Float.POSITIVE_INFINITY : quantized * this.timeStep;
+    }
+
+    /**
+     * @return Difference to the previous state, {@link #UNREACHABLE} for the start state and unreachable states. Decode with the static helpers
+     */
+    public int predecessor(int index) {
+        return Short.toUnsignedInt(this.predecessors.get(index));
+    }
+
+    // Delta code: 4 bits dx, 4 bits dy, 2 bits dtheta, 2 bits dv, each offset to be positive
+    public static int encodeDelta(int dx, int dy, int dtheta, int dv) {
+        assert Math.abs(dx) <= MAX_STEP && Math.abs(dy) <= MAX_STEP && Math.abs(dtheta) <= 1 && Math.abs(dv) <= 1;
+        return (dx + MAX_STEP) | ((dy + MAX_STEP) << 4) | ((dtheta + 1) << 8) | ((dv + 1) << 10);
+    }
+
+    public static int deltaX(int code) {
+        return (code & 15) - MAX_STEP;
+    }
+
+    public static int deltaY(int code) {
+        return ((code >> 4) & 15) - MAX_STEP;
+    }
+
+    public static int deltaTheta(int code) {
+        return ((code >> 8) & 3) - 1;
+    }
+
+    public static int deltaV(int code) {
+        return ((code >> 10) & 3) - 1;
+    }
+
+    /**
+     * Size of the table when stored in the file
+     */
+    public long sizeInBytes() {
+        return HEADER_SIZE + 4L * this.numStates();
+    }
+
+    public void write(Path file) throws IOException {
+        final int n = this.numStates();
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * n).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_SIZE);
+        buffer.asShortBuffer().put(this.times.duplicate().rewind());
+        buffer.position(HEADER_SIZE + 2 * n);
+        buffer.asShortBuffer().put(this.predecessors.duplicate().rewind());
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, 4 * n);
+
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(this.scale);
+        buffer.putInt(this.nx);
+        buffer.putInt(this.ntheta);
+        buffer.putInt(this.nv);
+        buffer.putFloat(this.startSpeed);
+        buffer.putFloat(this.timeStep);
+        buffer.putLong(crc.getValue());
+
+        Files.write(file, buffer.array());
+    }
+
+    public static NavigatorLut map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads the table from the classpath, mapped if it's a plain file, read into memory if it's packed into a jar
+     *
+     * @return null if the resource doesn't exist
+     */
+    public static NavigatorLut load(ClassLoader cl, String resource) throws IOException {
+        final URL url = cl.getResource(resource);
+        if (url == null)
+            return null;
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return map(Path.of(url.toURI()));
+            } catch (URISyntaxException e) {
+                // Fall through and read it as a stream
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            return read(ByteBuffer.wrap(in.readAllBytes()));
+        }
+    }
+
+    public static NavigatorLut read(ByteBuffer buffer) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE)
+            throw new IllegalStateException("Navigator LUT is truncated");
+
+        final int magic = buffer.getInt();
+        final int version = buffer.getInt();
+        if (magic != MAGIC)
+            throw new IllegalStateException("Not a navigator LUT");
+        if (version != VERSION)
+            throw new IllegalStateException("Navigator LUT has version " + version + ", expected " + VERSION);
+
+        final int scale = buffer.getInt();
+        final int nx = buffer.getInt();
+        final int ntheta = buffer.getInt();
+        final int nv = buffer.getInt();
+        final float startSpeed = buffer.getFloat();
+        final float timeStep = buffer.getFloat();
+        final long checksum = buffer.getLong();
+
+        final long states = (2L * nx + 1) * (2L * nx + 1) * ntheta * nv;
+        if (scale <= 0 || nx < 0 || ntheta <= 0 || nv <= 0 || buffer.remaining() != 4 * states)
+            throw new IllegalStateException("Navigator LUT has the wrong size");
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if (crc.getValue() != checksum)
+            throw new IllegalStateException("Navigator LUT checksum mismatch");
+
+        final ShortBuffer times = buffer.slice(buffer.position(), (int) (2 * states)).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        final ShortBuffer predecessors = buffer.slice(buffer.position() + (int) (2 * states), (int) (2 * states)).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        return new NavigatorLut(scale, nx, ntheta, nv, startSpeed, timeStep, times, predecessors);
+    }
+}
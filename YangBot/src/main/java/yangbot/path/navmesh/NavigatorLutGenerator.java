@@ -0,0 +1,219 @@
+package yangbot.path.navmesh;
+
+import yangbot.input.CarData;
+import yangbot.strategy.manuever.DriveManeuver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Headless tool computing the {@link NavigatorLut} with Dijkstra over the car-relative state lattice.
+ * <p>
+ * Every state can drive 1 to {@link NavigatorLut#MAX_STEP} cells roughly along its heading while turning by at most one direction
+ * and changing speed by at most 100uu/s, as long as the turn fits {@link DriveManeuver#maxTurningCurvature(float)} and the speed change fits throttle/boost or braking.
+ * Flat ground is translation and rotation invariant, so one table from the origin covers every start.
+ */
+public class NavigatorLutGenerator {
+
+    public int scale = 64;
+    public int nx = 96;
+    public int ntheta = 16;
+    public int nv = 23;
+    public float startSpeed = 1400f;
+    public boolean allowBoost = true;
+
+    private long generationNanos = 0;
+    private int reachedStates = 0;
+
+    public NavigatorLutGenerator() {
+    }
+
+    /**
+     * Takes the lattice size from LUT_parameters.bin (scale, nx, ntheta, nv)
+     */
+    public NavigatorLutGenerator(int[] parameters) {
+        this.scale = parameters[0];
+        this.nx = parameters[1];
+        this.ntheta = parameters[2];
+        this.nv = parameters[3];
+    }
+
+    private static class Step {
+        final int dx, dy, dtheta;
+        final float distance, curvature;
+
+        Step(int dx, int dy, int dtheta, float distance, float curvature) {
+            this.dx = dx;
+            this.dy = dy;
+            this.dtheta = dtheta;
+            this.distance = distance;
+            this.curvature = curvature;
+        }
+    }
+
+    // Moves for every heading, going along the average of the old and new heading
+    private Step[][] buildSteps() {
+        final Step[][] steps = new Step[this.ntheta][];
+        final double directionAngle = 2 * Math.PI / this.ntheta;
+        for (int theta = 0; theta < this.ntheta; theta++) {
+            final List<Step> list = new ArrayList<>();
+            for (int dtheta = -1; dtheta <= 1; dtheta++) {
+                final double angle = (theta + dtheta * 0.5) * directionAngle;
+                for (int r = 1; r <= NavigatorLut.MAX_STEP; r++) {
+                    final int dx = (int) Math.round(Math.cos(angle) * r);
+                    final int dy = (int) Math.round(Math.sin(angle) * r);
+                    if (dx == 0 && dy == 0)
+                        continue;
+                    // Skip cells too far off the heading, or already covered by a shorter step
+                    final double error = Math.abs(Math.IEEEremainder(Math.atan2(dy, dx) - angle, 2 * Math.PI));
+                    if (error > directionAngle * 0.5)
+                        continue;
+                    final int finalDtheta = dtheta;
+                    if (list.stream().anyMatch(s -> s.dx == dx && s.dy == dy && s.dtheta == finalDtheta))
+                        continue;
+
+                    final float distance = (float) (Math.hypot(dx, dy) * this.scale);
+                    list.add(new Step(dx, dy, dtheta, distance, (float) (Math.abs(dtheta) * directionAngle / distance)));
+                }
+            }
+            steps[theta] = list.toArray(new Step[0]);
+        }
+        return steps;
+    }
+
+    // Seconds to drive the step from speed bucket v to w, infinite if the car can't
+    private float stepTime(Step step, int v, int w) {
+        final float from = v * 100f, to = w * 100f;
+        if (step.curvature > DriveManeuver.maxTurningCurvature(Math.max(from, to)))
+            return Float.POSITIVE_INFINITY;
+
+        if (to > from) {
+            final float acceleration = DriveManeuver.throttleAcceleration(from) + (this.allowBoost ? DriveManeuver.boost_acceleration : 0);
+            if (to > (this.allowBoost ? CarData.MAX_VELOCITY : DriveManeuver.max_throttle_speed) || to * to - from * from > 2 * acceleration * step.distance)
+                return Float.POSITIVE_INFINITY;
+        } else if (from * from - to * to > -2 * DriveManeuver.brake_acceleration * step.distance) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return step.distance / Math.max((from + to) * 0.5f, 50f);
+    }
+
+    public NavigatorLut generate() {
+        final long startNs = System.nanoTime();
+        final int width = 2 * this.nx + 1;
+        final int numStates = width * width * this.ntheta * this.nv;
+        final Step[][] steps = this.buildSteps();
+
+        // Step times only depend on the step and the speeds
+        final float[][][][] stepTimes = new float[this.ntheta][][][];
+        for (int theta = 0; theta < this.ntheta; theta++) {
+            stepTimes[theta] = new float[steps[theta].length][this.nv][3];
+            for (int s = 0; s < steps[theta].length; s++) {
+                for (int v = 0; v < this.nv; v++) {
+                    for (int dv = -1; dv <= 1; dv++) {
+                        final int w = v + dv;
+                        stepTimes[theta][s][v][dv + 1] = w < 0 || w >= this.nv ? Float.POSITIVE_INFINITY : this.stepTime(steps[theta][s], v, w);
+                    }
+                }
+            }
+        }
+
+        final float[] times = new float[numStates];
+        final short[] predecessors = new short[numStates];
+        final int[] heapIndex = new int[numStates];
+        Arrays.fill(times, Float.POSITIVE_INFINITY);
+        Arrays.fill(predecessors, (short) NavigatorLut.UNREACHABLE);
+        Arrays.fill(heapIndex, -1);
+        final IndexedMinHeap heap = new IndexedMinHeap(numStates, heapIndex);
+
+        final NavigatorLut layout = new NavigatorLut(this.scale, this.nx, this.ntheta, this.nv, this.startSpeed, 1, ShortBuffer.allocate(numStates), ShortBuffer.allocate(numStates));
+        final int start = layout.index(0, 0, 0, layout.startVelocity());
+        times[start] = 0;
+        heap.insertOrDecrease(start, 0);
+
+        this.reachedStates = 0;
+        float maxTime = 0;
+        while (!heap.isEmpty()) {
+            final int state = heap.poll();
+            this.reachedStates++;
+            final float time = times[state];
+            maxTime = time;
+
+            final int v = state % this.nv;
+            final int theta = (state / this.nv) % this.ntheta;
+            final int cell = state / (this.nv * this.ntheta);
+            final int x = cell / width - this.nx;
+            final int y = cell % width - this.nx;
+
+            final Step[] thetaSteps = steps[theta];
+            for (int s = 0; s < thetaSteps.length; s++) {
+                final Step step = thetaSteps[s];
+                final int nextX = x + step.dx, nextY = y + step.dy;
+                if (Math.abs(nextX) > this.nx || Math.abs(nextY) > this.nx)
+                    continue;
+                final int nextTheta = Math.floorMod(theta + step.dtheta, this.ntheta);
+
+                for (int dv = -1; dv <= 1; dv++) {
+                    final float nextTime = time + stepTimes[theta][s][v][dv + 1];
+                    if (nextTime == Float.POSITIVE_INFINITY)
+                        continue;
+                    final int next = layout.index(nextX, nextY, nextTheta, v + dv);
+                    if (nextTime < times[next]) {
+                        times[next] = nextTime;
+                        predecessors[next] = (short) NavigatorLut.encodeDelta(step.dx, step.dy, step.dtheta, dv);
+                        heap.insertOrDecrease(next, nextTime);
+                    }
+                }
+            }
+        }
+
+        // Quantize, the largest code means unreachable
+        final float timeStep = Math.max(maxTime, 1e-3f) / (NavigatorLut.UNREACHABLE - 1);
+        final short[] quantized = new short[numStates];
+        for (int i = 0; i < numStates; i++)
+            quantized[i] = (short) (times[i] == Float.POSITIVE_INFINITY ? NavigatorLut.UNREACHABLE : Math.round(times[i] / timeStep));
+
+        this.generationNanos = System.nanoTime() - startNs;
+        return new NavigatorLut(this.scale, this.nx, this.ntheta, this.nv, this.startSpeed, timeStep, ShortBuffer.wrap(quantized), ShortBuffer.wrap(predecessors));
+    }
+
+    public long getGenerationNanos() {
+        return this.generationNanos;
+    }
+
+    public int getReachedStates() {
+        return this.reachedStates;
+    }
+
+    /**
+     * Arguments: directory containing LUT_parameters.bin, output file, optionally the start speed
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: NavigatorLutGenerator <resource directory> <output file> [start speed]");
+            return;
+        }
+        final ByteBuffer parameterBuffer = ByteBuffer.wrap(Files.readAllBytes(Path.of(args[0]).resolve("LUT_parameters.bin"))).order(ByteOrder.LITTLE_ENDIAN);
+        final int[] parameters = new int[4];
+        for (int i = 0; i < parameters.length; i++)
+            parameters[i] = parameterBuffer.getInt();
+
+        final NavigatorLutGenerator generator = new NavigatorLutGenerator(parameters);
+        if (args.length > 2)
+            generator.startSpeed = Float.parseFloat(args[2]);
+
+        final NavigatorLut lut = generator.generate();
+        final float seconds = generator.getGenerationNanos() * 1e-9f;
+        System.out.println("Generated " + lut.numStates() + " states (" + generator.getReachedStates() + " reachable) in " + seconds + "s, " + (int) (generator.getReachedStates() / seconds) + " states/s");
+        System.out.println("Size: " + (lut.sizeInBytes() / 1024 / 1024) + "MB compressed, " + (8L * lut.numStates() / 1024 / 1024) + "MB as float times and int paths");
+
+        lut.write(Path.of(args[1]));
+        System.out.println("Wrote " + args[1]);
+    }
+}
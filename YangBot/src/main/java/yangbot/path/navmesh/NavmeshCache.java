@@ -0,0 +1,259 @@
+package yangbot.path.navmesh;
+
+import yangbot.util.math.vector.Vector3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Binary navmesh format holding the finished CSR graph plus node positions and normals, so loading needs no edge objects and no sort.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ * int magic, int version, int numVertices, int numEdges, int numNodes, int numDirections, long crc32 of everything after the header
+ * int[numVertices + 1] offsets, int[numEdges] destinations, float[numEdges] weights, float[numNodes * 3] nodes, float[numNodes * 3] normals
+ * </pre>
+ * Loading copies the arrays into the heap, the search loops index plain int[]/float[] and the mapping is only used to read the file.
+ * The graph therefore takes as much heap as one built from the old files, loading just skips the edge objects and the sort.
+ * <p>
+ * Neither the cache nor the edge file it's made from are part of the resources.
+ * soccar_navigation_edges.bin comes from the same navigator export as soccar_navigation_nodes.bin and soccar_navigation_normals.bin,
+ * put it into src/main/resources and run {@code gradlew convertNavmesh} ({@link #main(String[])}) to write soccar_navmesh.ynav next to it.
+ */
+public class NavmeshCache {
+
+    public static final int MAGIC = 0x56414E59; // "YNAV"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    public static class Navmesh {
+        public final Graph graph;
+        public final Vector3[] nodes;
+        public final Vector3[] normals;
+        public final int numDirections;
+
+        public Navmesh(Graph graph, Vector3[] nodes, Vector3[] normals, int numDirections) {
+            this.graph = graph;
+            this.nodes = nodes;
+            this.normals = normals;
+            this.numDirections = numDirections;
+        }
+    }
+
+    public static void write(Path file, Navmesh navmesh) throws IOException {
+        final Graph graph = navmesh.graph;
+        assert navmesh.nodes.length == navmesh.normals.length;
+        assert graph.getNumVertices() == navmesh.nodes.length * navmesh.numDirections;
+
+        final int payloadSize = 4 * (graph.offsets.length + 2 * graph.getNumEdges() + 6 * navmesh.nodes.length);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_SIZE);
+        buffer.asIntBuffer().put(graph.offsets);
+        buffer.position(buffer.position() + 4 * graph.offsets.length);
+        buffer.asIntBuffer().put(graph.destinations, 0, graph.getNumEdges());
+        buffer.position(buffer.position() + 4 * graph.getNumEdges());
+        buffer.asFloatBuffer().put(graph.weights, 0, graph.getNumEdges());
+        buffer.position(buffer.position() + 4 * graph.getNumEdges());
+        putVectors(buffer, navmesh.nodes);
+        putVectors(buffer, navmesh.normals);
+        assert !buffer.hasRemaining();
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(graph.getNumVertices());
+        buffer.putInt(graph.getNumEdges());
+        buffer.putInt(navmesh.nodes.length);
+        buffer.putInt(navmesh.numDirections);
+        buffer.putLong(crc.getValue());
+
+        Files.write(file, buffer.array());
+    }
+
+    /**
+     * Reads the file through a read-only mapping, the result is copied into heap arrays and doesn't reference the mapping
+     */
+    public static Navmesh map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads a navmesh from the classpath, mapped if it's a plain file, read into memory if it's packed into a jar
+     *
+     * @return null if the resource doesn't exist
+     */
+    public static Navmesh load(ClassLoader cl, String resource) throws IOException {
+        final URL url = cl.getResource(resource);
+        if (url == null)
+            return null;
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return map(Path.of(url.toURI()));
+            } catch (URISyntaxException e) {
+                // Fall through and read it as a stream
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            return read(ByteBuffer.wrap(in.readAllBytes()));
+        }
+    }
+
+    public static Navmesh read(ByteBuffer buffer) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE)
+            throw new IllegalStateException("Navmesh cache is truncated");
+
+        final int magic = buffer.getInt();
+        final int version = buffer.getInt();
+        if (magic != MAGIC)
+            throw new IllegalStateException("Not a navmesh cache");
+        if (version != VERSION)
+            throw new IllegalStateException("Navmesh cache has version " + version + ", expected " + VERSION);
+
+        final int numVertices = buffer.getInt();
+        final int numEdges = buffer.getInt();
+        final int numNodes = buffer.getInt();
+        final int numDirections = buffer.getInt();
+        final long checksum = buffer.getLong();
+
+        final long payloadSize = 4L * ((numVertices + 1) + 2L * numEdges + 6L * numNodes);
+        if (numVertices < 0 || numEdges < 0 || numNodes < 0 || buffer.remaining() != payloadSize)
+            throw new IllegalStateException("Navmesh cache has the wrong size");
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if (crc.getValue() != checksum)
+            throw new IllegalStateException("Navmesh cache checksum mismatch");
+
+        final int[] offsets = new int[numVertices + 1];
+        final int[] destinations = new int[numEdges];
+        final float[] weights = new float[numEdges];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + 4 * offsets.length);
+        buffer.asIntBuffer().get(destinations);
+        buffer.position(buffer.position() + 4 * numEdges);
+        buffer.asFloatBuffer().get(weights);
+        buffer.position(buffer.position() + 4 * numEdges);
+        final Vector3[] nodes = getVectors(buffer, numNodes);
+        final Vector3[] normals = getVectors(buffer, numNodes);
+
+        return new Navmesh(new Graph(offsets, destinations, weights), nodes, normals, numDirections);
+    }
+
+    private static void putVectors(ByteBuffer buffer, Vector3[] vectors) {
+        for (Vector3 vec : vectors) {
+            buffer.putFloat((float) vec.x);
+            buffer.putFloat((float) vec.y);
+            buffer.putFloat((float) vec.z);
+        }
+    }
+
+    private static Vector3[] getVectors(ByteBuffer buffer, int count) {
+        final float[] floats = new float[count * 3];
+        buffer.asFloatBuffer().get(floats);
+        buffer.position(buffer.position() + 4 * floats.length);
+
+        final Vector3[] vectors = new Vector3[count];
+        for (int i = 0; i < count; i++)
+            vectors[i] = new Vector3(floats[i * 3], floats[i * 3 + 1], floats[i * 3 + 2]);
+        return vectors;
+    }
+
+    /**
+     * Reads the old edge format, 12-byte records of int src, int dst, float weight
+     */
+    public static Graph.Edge[] readLegacyEdges(InputStream in) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        assert buffer.remaining() % 12 == 0;
+        final Graph.Edge[] edges = new Graph.Edge[buffer.remaining() / 12];
+        for (int i = 0; i < edges.length; i++)
+            edges[i] = new Graph.Edge(buffer.getInt(), buffer.getInt(), buffer.getFloat());
+        return edges;
+    }
+
+    /**
+     * Reads the old node/normal format, a plain list of float triplets
+     *
+     * @param clampToGround Lift positions to at least z=15 like the navigator expects for nodes
+     */
+    public static Vector3[] readLegacyVectors(InputStream in, boolean clampToGround) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        final Vector3[] vectors = new Vector3[buffer.remaining() / 12];
+        for (int i = 0; i < vectors.length; i++) {
+            Vector3 vec = new Vector3(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+            if (clampToGround && vec.z <= 15)
+                vec = vec.withZ(15);
+            vectors[i] = vec;
+        }
+        return vectors;
+    }
+
+    public static Navmesh readLegacy(Path directory, String prefix, int numDirections) throws IOException {
+        final Graph.Edge[] edges;
+        final Vector3[] nodes, normals;
+        try (InputStream in = Files.newInputStream(directory.resolve(prefix + "_navigation_edges.bin"))) {
+            edges = readLegacyEdges(in);
+        }
+        try (InputStream in = Files.newInputStream(directory.resolve(prefix + "_navigation_nodes.bin"))) {
+            nodes = readLegacyVectors(in, true);
+        }
+        try (InputStream in = Files.newInputStream(directory.resolve(prefix + "_navigation_normals.bin"))) {
+            normals = readLegacyVectors(in, false);
+        }
+        Graph graph = new Graph(edges);
+        final int numVertices = nodes.length * numDirections;
+        if (graph.getNumVertices() < numVertices) {
+            // Trailing vertices without outgoing edges aren't part of the edge list
+            final int[] offsets = Arrays.copyOf(graph.offsets, numVertices + 1);
+            Arrays.fill(offsets, graph.offsets.length, offsets.length, graph.getNumEdges());
+            graph = new Graph(offsets, graph.destinations, graph.weights);
+        }
+        return new Navmesh(graph, nodes, normals, numDirections);
+    }
+
+    /**
+     * Converts the old navmesh files to the cache format
+     * <p>
+     * Arguments: directory with the old files and LUT_parameters.bin, navmesh prefix (e.g. soccar), output file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: NavmeshCache <resource directory> <prefix> <output file>");
+            return;
+        }
+        final Path directory = Path.of(args[0]);
+        final Path edgeFile = directory.resolve(args[1] + "_navigation_edges.bin");
+        if (!Files.exists(edgeFile)) {
+            System.out.println(edgeFile + " doesn't exist, copy it from the navigator export the node and normal files come from");
+            return;
+        }
+        final ByteBuffer parameters = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("LUT_parameters.bin"))).order(ByteOrder.LITTLE_ENDIAN);
+        final int numDirections = parameters.getInt(2 * 4);
+
+        long ms = System.currentTimeMillis();
+        final Navmesh navmesh = readLegacy(directory, Objects.requireNonNull(args[1]), numDirections);
+        if (navmesh.graph.getNumVertices() != navmesh.nodes.length * numDirections)
+            throw new IllegalStateException("Graph has " + navmesh.graph.getNumVertices() + " vertices, expected " + navmesh.nodes.length * numDirections);
+        System.out.println("Read navmesh (" + navmesh.graph.getNumEdges() + " edges, " + navmesh.nodes.length + " nodes) in " + (System.currentTimeMillis() - ms) + "ms");
+
+        write(Path.of(args[2]), navmesh);
+        System.out.println("Wrote " + args[2]);
+    }
+}
@@ -0,0 +1,323 @@
+package yangbot.path.navmesh;
+
+import yangbot.util.math.vector.Vector3;
+
+/**
+ * Static k-d tree over the navmesh nodes.
+ * <p>
+ * The tree is implicit: nodes are reordered so the median of every range [lo, hi) sits at (lo + hi) / 2, with its split axis in {@link #axes}.
+ * Queries can skip nodes whose normal doesn't point roughly along a given direction (e.g. to ignore wall nodes while on the floor) and don't allocate.
+ */
+public class NodeIndex {
+
+    private final double[] coords; // x, y, z per tree slot
+    private final double[] normals; // x, y, z per tree slot
+    private final int[] nodeIds; // tree slot -> node index
+    private final byte[] axes;
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    public NodeIndex(Vector3[] nodes, Vector3[] nodeNormals) {
+        assert nodes.length == nodeNormals.length;
+        final int n = nodes.length;
+        this.nodeIds = new int[n];
+        for (int i = 0; i < n; i++)
+            this.nodeIds[i] = i;
+
+        final double[] unsortedCoords = new double[n * 3];
+        for (int i = 0; i < n; i++) {
+            unsortedCoords[i * 3] = nodes[i].x;
+            unsortedCoords[i * 3 + 1] = nodes[i].y;
+            unsortedCoords[i * 3 + 2] = nodes[i].z;
+        }
+
+        this.axes = new byte[n];
+        this.build(unsortedCoords, 0, n);
+
+        this.coords = new double[n * 3];
+        this.normals = new double[n * 3];
+        for (int slot = 0; slot < n; slot++) {
+            final int id = this.nodeIds[slot];
+            System.arraycopy(unsortedCoords, id * 3, this.coords, slot * 3, 3);
+            this.normals[slot * 3] = nodeNormals[id].x;
+            this.normals[slot * 3 + 1] = nodeNormals[id].y;
+            this.normals[slot * 3 + 2] = nodeNormals[id].z;
+        }
+    }
+
+    private void build(double[] unsortedCoords, int lo, int hi) {
+        if (hi - lo <= 1)
+            return;
+
+        // Split along the axis with the largest extent
+        final double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        final double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = lo; i < hi; i++) {
+            for (int a = 0; a < 3; a++) {
+                final double v = unsortedCoords[this.nodeIds[i] * 3 + a];
+                min[a] = Math.min(min[a], v);
+                max[a] = Math.max(max[a], v);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[axis] - min[axis])
+                axis = a;
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        this.select(unsortedCoords, axis, lo, hi - 1, mid);
+        this.axes[mid] = (byte) axis;
+        this.build(unsortedCoords, lo, mid);
+        this.build(unsortedCoords, mid + 1, hi);
+    }
+
+    // Quickselect, places the k-th smallest along the axis at k with smaller ones before and larger ones after it
+    private void select(double[] unsortedCoords, int axis, int left, int right, int k) {
+        while (right > left) {
+            final double pivot = unsortedCoords[this.nodeIds[(left + right) >>> 1] * 3 + axis];
+            int i = left, j = right;
+            while (i <= j) {
+                while (unsortedCoords[this.nodeIds[i] * 3 + axis] < pivot)
+                    i++;
+                while (unsortedCoords[this.nodeIds[j] * 3 + axis] > pivot)
+                    j--;
+                if (i <= j) {
+                    final int tmp = this.nodeIds[i];
+                    this.nodeIds[i] = this.nodeIds[j];
+                    this.nodeIds[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+    public int size() {
+        return this.nodeIds.length;
+    }
+
+    /**
+     * @return Index of the closest node, -1 if there are none
+     */
+    public int nearest(Vector3 pos) {
+        return this.nearest(pos, null, 0);
+    }
+
+    /**
+     * @param normal        Only consider nodes with normal.dot(nodeNormal) >= minNormalDot, null to consider all
+     * @param minNormalDot  Minimum alignment of the node normal
+     * @return Index of the closest node passing the filter, -1 if there are none
+     */
+    public int nearest(Vector3 pos, Vector3 normal, float minNormalDot) {
+        final Search search = this.searches.get();
+        search.begin(Search.NEAREST, pos, normal, minNormalDot);
+        search.run(0, this.nodeIds.length);
+        return search.bestId;
+    }
+
+    /**
+     * Writes the indices of the k closest nodes into out, sorted by ascending distance
+     *
+     * @return The number of nodes written, less than k if there aren't enough nodes passing the filter
+     */
+    public int kNearest(Vector3 pos, int k, int[] out, Vector3 normal, float minNormalDot) {
+        assert out.length >= k;
+        final Search search = this.searches.get();
+        search.begin(Search.K_NEAREST, pos, normal, minNormalDot);
+        search.prepareHeap(k);
+        search.run(0, this.nodeIds.length);
+        return search.drainHeap(out);
+    }
+
+    public int kNearest(Vector3 pos, int k, int[] out) {
+        return this.kNearest(pos, k, out, null, 0);
+    }
+
+    /**
+     * Writes the indices of nodes within radius into out, in no particular order
+     *
+     * @return The number of nodes written, at most out.length
+     */
+    public int withinRadius(Vector3 pos, float radius, int[] out, Vector3 normal, float minNormalDot) {
+        final Search search = this.searches.get();
+        search.begin(Search.RADIUS, pos, normal, minNormalDot);
+        search.radiusSquared = (double) radius * radius;
+        search.out = out;
+        search.run(0, this.nodeIds.length);
+        search.out = null;
+        return search.count;
+    }
+
+    public int withinRadius(Vector3 pos, float radius, int[] out) {
+        return this.withinRadius(pos, radius, out, null, 0);
+    }
+
+    // Per-thread query state, so queries don't allocate
+    private class Search {
+        static final int NEAREST = 0, K_NEAREST = 1, RADIUS = 2;
+
+        int mode;
+        double qx, qy, qz;
+        boolean filter;
+        double fx, fy, fz, minDot;
+
+        int bestId;
+        double bestDistance;
+
+        int k, count;
+        int[] heapIds = new int[16];
+        double[] heapDistances = new double[16];
+
+        double radiusSquared;
+        int[] out;
+
+        void begin(int mode, Vector3 pos, Vector3 normal, float minNormalDot) {
+            this.mode = mode;
+            this.qx = pos.x;
+            this.qy = pos.y;
+            this.qz = pos.z;
+            this.filter = normal != null;
+            if (this.filter) {
+                this.fx = normal.x;
+                this.fy = normal.y;
+                this.fz = normal.z;
+                this.minDot = minNormalDot;
+            }
+            this.bestId = -1;
+            this.bestDistance = Double.MAX_VALUE;
+            this.count = 0;
+        }
+
+        void prepareHeap(int k) {
+            this.k = k;
+            if (this.heapIds.length < k) {
+                this.heapIds = new int[k];
+                this.heapDistances = new double[k];
+            }
+        }
+
+        // Squared distance beyond which nothing is of interest
+        double bound() {
+            switch (this.mode) {
+                case NEAREST:
+                    return this.bestDistance;
+                case K_NEAREST:
+                    return this.count < this.k ? Double.MAX_VALUE : this.heapDistances[0];
+                default:
+                    return this.radiusSquared;
+            }
+        }
+
+        void run(int lo, int hi) {
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                this.consider(mid);
+
+                final int axis = axes[mid];
+                final double diff = (axis == 0 ? this.qx : axis == 1 ? this.qy : this.qz) - coords[mid * 3 + axis];
+                if (diff < 0) {
+                    this.run(lo, mid);
+                    lo = mid + 1;
+                } else {
+                    this.run(mid + 1, hi);
+                    hi = mid;
+                }
+                // Far side can only contain something if the splitting plane is close enough
+                if (diff * diff > this.bound())
+                    return;
+            }
+        }
+
+        private void consider(int slot) {
+            if (this.filter && normals[slot * 3] * this.fx + normals[slot * 3 + 1] * this.fy + normals[slot * 3 + 2] * this.fz < this.minDot)
+                return;
+
+            final double dx = coords[slot * 3] - this.qx;
+            final double dy = coords[slot * 3 + 1] - this.qy;
+            final double dz = coords[slot * 3 + 2] - this.qz;
+            final double distance = dx * dx + dy * dy + dz * dz;
+            final int id = nodeIds[slot];
+
+            switch (this.mode) {
+                case NEAREST:
+                    // Ties go to the lower index, like a linear scan
+                    if (distance < this.bestDistance || (distance == this.bestDistance && id < this.bestId)) {
+                        this.bestDistance = distance;
+                        this.bestId = id;
+                    }
+                    break;
+                case K_NEAREST:
+                    if (this.count < this.k) {
+                        this.heapIds[this.count] = id;
+                        this.heapDistances[this.count] = distance;
+                        this.siftUp(this.count++);
+                    } else if (this.k > 0 && this.isCloser(distance, id, 0)) {
+                        this.heapIds[0] = id;
+                        this.heapDistances[0] = distance;
+                        this.siftDown(0, this.count);
+                    }
+                    break;
+                default:
+                    if (distance <= this.radiusSquared && this.count < this.out.length)
+                        this.out[this.count++] = id;
+                    break;
+            }
+        }
+
+        // Max-heap on (distance, id)
+        private boolean isCloser(double distance, int id, int i) {
+            return distance < this.heapDistances[i] || (distance == this.heapDistances[i] && id < this.heapIds[i]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (!this.isCloser(this.heapDistances[parent], this.heapIds[parent], i))
+                    break;
+                this.swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int size) {
+            while (true) {
+                int largest = i;
+                final int left = 2 * i + 1, right = left + 1;
+                if (left < size && this.isCloser(this.heapDistances[largest], this.heapIds[largest], left))
+                    largest = left;
+                if (right < size && this.isCloser(this.heapDistances[largest], this.heapIds[largest], right))
+                    largest = right;
+                if (largest == i)
+                    return;
+                this.swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            final int id = this.heapIds[i];
+            this.heapIds[i] = this.heapIds[j];
+            this.heapIds[j] = id;
+            final double distance = this.heapDistances[i];
+            this.heapDistances[i] = this.heapDistances[j];
+            this.heapDistances[j] = distance;
+        }
+
+        // Heap sort, leaves the closest node first
+        int drainHeap(int[] out) {
+            final int n = this.count;
+            for (int size = n - 1; size > 0; size--) {
+                this.swap(0, size);
+                this.siftDown(0, size);
+            }
+            System.arraycopy(this.heapIds, 0, out, 0, n);
+            return n;
+        }
+    }
+}
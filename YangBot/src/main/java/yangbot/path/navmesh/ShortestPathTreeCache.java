@@ -0,0 +1,69 @@
+package yangbot.path.navmesh;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of Bellman-Ford parent arrays keyed by source vertex (start node * directions + direction bucket).
+ * Not thread safe, {@link Navigator} keeps one per thread. Evicted arrays are reused for the next search
+ */
+public class ShortestPathTreeCache {
+
+    public static final float MAXIMUM_WEIGHT = 8f;
+
+    private final int capacity;
+    private final LinkedHashMap<Integer, int[]> trees;
+    private Graph graph = null;
+    private int[] recycled = null;
+    private int hits = 0, misses = 0;
+
+    public ShortestPathTreeCache(int capacity) {
+        assert capacity > 0;
+        this.capacity = capacity;
+        this.trees = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                if (this.size() <= ShortestPathTreeCache.this.capacity)
+                    return false;
+                ShortestPathTreeCache.this.recycled = eldest.getValue();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return Parent of every vertex on the shortest path from source, -1 if unreachable. Valid until it gets evicted
+     */
+    public int[] get(Graph graph, int source) {
+        if (this.graph != graph) {
+            this.clear();
+            this.graph = graph;
+        }
+
+        int[] parents = this.trees.get(source);
+        if (parents != null) {
+            this.hits++;
+            return parents;
+        }
+        this.misses++;
+
+        parents = this.recycled != null && this.recycled.length == graph.getNumVertices() ? this.recycled : new int[graph.getNumVertices()];
+        this.recycled = null;
+        graph.bellmanFord(source, MAXIMUM_WEIGHT).copyParentsInto(parents);
+        this.trees.put(source, parents);
+        return parents;
+    }
+
+    public void clear() {
+        this.trees.clear();
+        this.recycled = null;
+    }
+
+    public int getHits() {
+        return this.hits;
+    }
+
+    public int getMisses() {
+        return this.misses;
+    }
+}
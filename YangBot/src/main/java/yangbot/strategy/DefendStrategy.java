@@ -64,11 +64,11 @@ public class DefendStrategy extends Strategy {
 
         // Find intercept
         do {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = ballPrediction.getFrameAfterRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = ballPrediction.indexAfterRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
 
-            final YangBallPrediction.YangPredictionFrame interceptFrame = interceptFrameOptional.get();
+            final YangBallPrediction.YangPredictionFrame interceptFrame = ballPrediction.frameAt(interceptFrameIndex);
             if (interceptFrame.ballData.isInAnyGoal())
                 break;
 
@@ -110,10 +110,10 @@ public class DefendStrategy extends Strategy {
 
         // Path finder
         while (t < ballPrediction.relativeTimeOfLastFrame()) {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = ballPrediction.getFrameAtRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = ballPrediction.indexAtRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
-            final YangBallPrediction.YangPredictionFrame interceptFrame = interceptFrameOptional.get();
+            final YangBallPrediction.YangPredictionFrame interceptFrame = ballPrediction.frameAt(interceptFrameIndex);
 
             t = interceptFrame.relativeTime;
             t += RLConstants.simulationTickFrequency * 4; // 15 ticks / s
@@ -210,10 +210,10 @@ public class DefendStrategy extends Strategy {
 
         // Path finder
         while (t < ballPrediction.relativeTimeOfLastFrame()) {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = ballPrediction.getFrameAtRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = ballPrediction.indexAtRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
-            final YangBallPrediction.YangPredictionFrame interceptFrame = interceptFrameOptional.get();
+            final YangBallPrediction.YangPredictionFrame interceptFrame = ballPrediction.frameAt(interceptFrameIndex);
 
             t = interceptFrame.relativeTime;
             t += RLConstants.simulationTickFrequency * 4; // 15 ticks / s
@@ -333,17 +333,13 @@ public class DefendStrategy extends Strategy {
                 }
 
                 if (car.boost > 10) {
-                    var newAerialFrames = YangBallPrediction.from(framesBeforeGoal.frames.stream()
-                            .filter((frame) -> frame.ballData.position.z < MAX_HEIGHT_AERIAL && frame.ballData.position.z > MAX_HEIGHT_DOUBLEJUMP)
-                            .collect(Collectors.toList()), framesBeforeGoal.tickFrequency);
+                    var newAerialFrames = framesBeforeGoal.filter((frame) -> frame.ballData.position.z < MAX_HEIGHT_AERIAL && frame.ballData.position.z > MAX_HEIGHT_DOUBLEJUMP);
 
                     aerialFrames = YangBallPrediction.merge(aerialFrames, newAerialFrames);
                 }
 
                 {
-                    var newDodgeFrames = YangBallPrediction.from(framesBeforeGoal.frames.stream()
-                            .filter((frame) -> frame.ballData.position.z < DriveDodgeStrikeAbstraction.MAX_STRIKE_HEIGHT)
-                            .collect(Collectors.toList()), framesBeforeGoal.tickFrequency);
+                    var newDodgeFrames = framesBeforeGoal.filter((frame) -> frame.ballData.position.z < DriveDodgeStrikeAbstraction.MAX_STRIKE_HEIGHT);
 
                     dodgeFrames = YangBallPrediction.merge(dodgeFrames, newDodgeFrames);
                 }
@@ -372,16 +368,12 @@ public class DefendStrategy extends Strategy {
                 if (framesBeforeAreaEnter.frames.size() > 0) {
 
                     if (car.boost > 10) {
-                        var newAerialFrames = YangBallPrediction.from(framesBeforeAreaEnter.frames.stream()
-                                .filter((frame) -> frame.ballData.position.z < MAX_HEIGHT_AERIAL && frame.ballData.position.z > MAX_HEIGHT_DOUBLEJUMP)
-                                .collect(Collectors.toList()), framesBeforeAreaEnter.tickFrequency);
+                        var newAerialFrames = framesBeforeAreaEnter.filter((frame) -> frame.ballData.position.z < MAX_HEIGHT_AERIAL && frame.ballData.position.z > MAX_HEIGHT_DOUBLEJUMP);
 
                         aerialFrames = YangBallPrediction.merge(aerialFrames, newAerialFrames);
                     }
 
-                    var newDodgeFrames = YangBallPrediction.from(framesBeforeAreaEnter.frames.stream()
-                            .filter((frame) -> frame.ballData.position.z < DriveDodgeStrikeAbstraction.MAX_STRIKE_HEIGHT)
-                            .collect(Collectors.toList()), framesBeforeAreaEnter.tickFrequency);
+                    var newDodgeFrames = framesBeforeAreaEnter.filter((frame) -> frame.ballData.position.z < DriveDodgeStrikeAbstraction.MAX_STRIKE_HEIGHT);
 
                     dodgeFrames = YangBallPrediction.merge(dodgeFrames, newDodgeFrames);
                 }
@@ -62,11 +62,11 @@ public class OffensiveStrategy extends Strategy {
 
         // Find intercept
         do {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = ballPrediction.getFrameAfterRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = ballPrediction.indexAfterRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
 
-            final YangBallPrediction.YangPredictionFrame interceptFrame = interceptFrameOptional.get();
+            final YangBallPrediction.YangPredictionFrame interceptFrame = ballPrediction.frameAt(interceptFrameIndex);
             if (interceptFrame.ballData.isInAnyGoal())
                 break;
 
@@ -116,10 +116,10 @@ public class OffensiveStrategy extends Strategy {
 
         // Path finder
         while (t < maxT) {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = strikePrediction.getFrameAtRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = strikePrediction.indexAtRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
-            final var interceptFrame = interceptFrameOptional.get();
+            final var interceptFrame = strikePrediction.frameAt(interceptFrameIndex);
 
             t = interceptFrame.relativeTime;
 
@@ -235,8 +235,8 @@ public class OffensiveStrategy extends Strategy {
 
         // Path finder
         while (t < maxT) {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = strikePrediction.getFrameAtRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = strikePrediction.indexAtRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
 
             if (t > 1.5f) // Speed it up, not as important
@@ -244,7 +244,7 @@ public class OffensiveStrategy extends Strategy {
             else // default
                 t += RLConstants.simulationTickFrequency * 2; // 30hz
 
-            final var interceptFrame = interceptFrameOptional.get();
+            final var interceptFrame = strikePrediction.frameAt(interceptFrameIndex);
             if (interceptFrame.ballData.isInAnyGoal())
                 break;
 
@@ -4,6 +4,7 @@ import yangbot.input.ControlsOutput;
 import yangbot.input.GameData;
 import yangbot.input.RLConstants;
 import yangbot.input.interrupt.Interrupt;
+import yangbot.util.profiling.TickProfiler;
 
 import java.util.Optional;
 
@@ -48,11 +49,12 @@ public abstract class Strategy {
             return;
         this.lastStrategyPlan = currentGameTime;
 
-        long ms = System.currentTimeMillis();
+        final long start = System.nanoTime();
         planStrategyInternal();
-        long duration = System.currentTimeMillis() - ms;
-        if (duration > RLConstants.tickFrequency * 1000 * 2.5)
-            System.out.println(gameData.getBotIndex() + ": " + this.getClass().getSimpleName() + " took " + duration + "ms to plan its strategy");
+        final long duration = System.nanoTime() - start;
+        TickProfiler.current().endStrategyPlan(this.getClass(), duration);
+        if (duration > RLConstants.tickFrequency * 1e9 * 2.5)
+            System.out.println(gameData.getBotIndex() + ": " + this.getClass().getSimpleName() + " took " + (duration / 1000000) + "ms to plan its strategy");
 
         plannedStrategy = true;
     }
@@ -118,11 +120,12 @@ public abstract class Strategy {
         if (this.getClass() != DefaultStrategy.class)
             assert !this.isDone : this.getClass().getSimpleName() + " was already done, can't execute step()";
 
-        long ms = System.currentTimeMillis();
+        final long start = System.nanoTime();
         stepInternal(dt, controlsOutput);
-        long duration = System.currentTimeMillis() - ms;
-        if (duration > RLConstants.tickFrequency * 1000 * 2)
-            System.out.println(gameData.getBotIndex() + ": " + this.getClass().getSimpleName() + " took " + duration + "ms to execute its strategy");
+        final long duration = System.nanoTime() - start;
+        TickProfiler.current().endStrategyStep(this.getClass(), duration);
+        if (duration > RLConstants.tickFrequency * 1e9 * 2)
+            System.out.println(gameData.getBotIndex() + ": " + this.getClass().getSimpleName() + " took " + (duration / 1000000) + "ms to execute its strategy");
     }
 
     public abstract Optional<Strategy> suggestStrategy();
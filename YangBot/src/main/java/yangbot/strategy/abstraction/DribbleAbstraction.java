@@ -124,8 +124,8 @@ public class DribbleAbstraction extends Abstraction {
                 }
 
                 float scaler = Math.max(1, Math.abs(forwardDisplacement) + Math.abs(leftDisplacement));
-                driveTarget = driveTarget.add(car.hitbox.permF.mul(forwardDisplacement / scaler));
-                driveTarget = driveTarget.add(car.hitbox.permL.mul(leftDisplacement));
+                driveTarget = driveTarget.add(car.hitbox.getPermF().mul(forwardDisplacement / scaler));
+                driveTarget = driveTarget.add(car.hitbox.getPermL().mul(leftDisplacement));
 
                 renderer.drawString2d("F: " + (forwardDisplacement / scaler) + "\nL: " + leftDisplacement, this.hasBallControl ? Color.GREEN : Color.WHITE, new Point(500, 750), 2, 2);
             }
@@ -152,7 +152,7 @@ public class DribbleAbstraction extends Abstraction {
                             .withEnd(driveTarget, car.forward())
                             .plan().get();
                     /*if(startPosition.distance(endPosition) > 200 && currentPath.tangentAt(Math.max(0, currentPath.findNearest(car.position) - 5)).dot(car.forward()) < 0){ // Following the path will probably fail, we can't drive backwards
-                        Optional<Curve> curveOptional = YangBotJNAInterop.findPath(startPosition, startTangent, endPosition, endTangent, 15);
+                        Optional<Curve> curveOptional = Navigator.findPath(startPosition, startTangent, endPosition, endTangent, 15);
                         if(curveOptional.isPresent())
                             currentPath = curveOptional.get();
                     }*
@@ -5,22 +5,29 @@ import rlbot.flat.QuickChatSelection;
 import yangbot.input.BallData;
 import yangbot.input.CarData;
 import yangbot.input.GameData;
+import yangbot.input.Physics2D;
 import yangbot.input.RLConstants;
 import yangbot.optimizers.graders.ValueNetworkGrader;
 import yangbot.path.EpicMeshPlanner;
 import yangbot.path.builders.SegmentedPath;
+import yangbot.path.builders.segments.ArcLineArc;
 import yangbot.strategy.abstraction.*;
 import yangbot.strategy.manuever.DodgeManeuver;
+import yangbot.strategy.manuever.DriveManeuver;
 import yangbot.util.PosessionUtil;
 import yangbot.util.Tuple;
 import yangbot.util.YangBallPrediction;
 import yangbot.util.math.Line2;
 import yangbot.util.math.MathUtils;
+import yangbot.util.math.vector.Matrix2x2;
 import yangbot.util.math.vector.Vector2;
 import yangbot.util.math.vector.Vector3;
 import yangbot.util.scenario.ScenarioUtil;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -98,11 +105,11 @@ public class LACHelper {
 
         // Find intercept
         do {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = ballPrediction.getFrameAfterRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = ballPrediction.indexAfterRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
 
-            final YangBallPrediction.YangPredictionFrame interceptFrame = interceptFrameOptional.get();
+            final YangBallPrediction.YangPredictionFrame interceptFrame = ballPrediction.frameAt(interceptFrameIndex);
             if (interceptFrame.ballData.isInAnyGoal())
                 break;
 
@@ -152,12 +159,16 @@ public class LACHelper {
         if (verboseDebug)
             System.out.println("##### start path finder");
 
-        // Path finder
+        // Candidate frames and where to hit the ball in them
+        final List<YangBallPrediction.YangPredictionFrame> frames = new ArrayList<>();
+        final List<Float> jumpDelays = new ArrayList<>();
+        final List<Vector3> hitTargets = new ArrayList<>();
+        final List<Vector3> endTangents = new ArrayList<>();
         while (t < maxT) {
-            final var interceptFrameOptional = strikePrediction.getFrameAtRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = strikePrediction.indexAtRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
-            final var interceptFrame = interceptFrameOptional.get();
+            final var interceptFrame = strikePrediction.frameAt(interceptFrameIndex);
 
             t = interceptFrame.relativeTime;
 
@@ -197,7 +208,40 @@ public class LACHelper {
             ).withZ(RLConstants.carElevation);
 
             final Vector3 carToDriveTarget = ballHitTarget.sub(car.position).normalized();
-            final Vector3 endTangent = carToDriveTarget.mul(1).add(ballTargetToGoalTarget.mul(1)).withZ(0).normalized();
+            frames.add(interceptFrame);
+            jumpDelays.add(jumpDelay);
+            hitTargets.add(ballHitTarget);
+            endTangents.add(carToDriveTarget.mul(1).add(ballTargetToGoalTarget.mul(1)).withZ(0).normalized());
+        }
+
+        // Rank all frames at once with the closed-form arc-line-arc lengths, using the tightest radii and offsets the YANG_ARC planner uses.
+        // Frames the shortest one can't reach at full speed don't get a YANG_ARC attempt. Only when the planner starts with the arc,
+        // not with a segment getting out of the goal or down to the ground
+        final float[] arcLengths = new float[frames.size()];
+        Arrays.fill(arcLengths, Float.NaN);
+        final boolean inGoal = Math.abs(car.position.y) > RLConstants.goalDistance - 50 && Math.abs(car.position.x) < RLConstants.goalCenterToPost && car.position.z < RLConstants.goalHeight;
+        if (car.position.z < 50 && !inGoal && !frames.isEmpty()) {
+            final Vector2[] endPositions = new Vector2[frames.size()];
+            final Vector2[] endTangents2d = new Vector2[frames.size()];
+            for (int i = 0; i < frames.size(); i++) {
+                endPositions[i] = hitTargets.get(i).flatten();
+                endTangents2d[i] = endTangents.get(i).flatten();
+            }
+            final Vector2 startTangent = car.getPathStartTangent().flatten().normalized();
+            final Physics2D start = new Physics2D(car.position.flatten().add(startTangent.mul(0.05f * car.forwardSpeed())), startTangent.mul(car.forwardSpeed()), Matrix2x2.lookAt(startTangent), 0);
+            ArcLineArc.findOptimalLengths(start, endPositions, endTangents2d, 5, 1 / DriveManeuver.maxTurningCurvature(1200), 30, 1 / DriveManeuver.maxTurningCurvature(2300), arcLengths);
+        }
+
+        // Path finder
+        for (int candidate = 0; candidate < frames.size(); candidate++) {
+            final var interceptFrame = frames.get(candidate);
+            // NaN if not ranked
+            final boolean arcReachable = !(arcLengths[candidate] > interceptFrame.relativeTime * CarData.MAX_VELOCITY);
+
+            final Vector3 targetBallPos = interceptFrame.ballData.position;
+            final float jumpDelay = jumpDelays.get(candidate);
+            final Vector3 ballHitTarget = hitTargets.get(candidate);
+            final Vector3 endTangent = endTangents.get(candidate);
 
             Function<Optional<SegmentedPath>, Optional<StrikeInfo>> testPath = (Optional<SegmentedPath> p) -> {
                 if (p.isEmpty())
@@ -248,7 +292,7 @@ public class LACHelper {
                 }));
             };
 
-            var potentialStrike = testPath.apply(
+            var potentialStrike = (arcReachable ? testPath.apply(
                     new EpicMeshPlanner()
                         .withStart(car, 0.05f)
                         .withEnd(ballHitTarget, endTangent, MathUtils.clip(jumpDelay * 0.9f - 0.05f, 0.1f, 0.3f))
@@ -256,8 +300,9 @@ public class LACHelper {
                         .withArrivalSpeed(2300)
                         .allowDodge(false)
                         .withCreationStrategy(EpicMeshPlanner.PathCreationStrategy.YANG_ARC)
+                        .withCache()
                     .plan()
-            ).or(() -> testPath.apply(
+            ) : Optional.<StrikeInfo>empty()).or(() -> testPath.apply(
                     new EpicMeshPlanner()
                         .withStart(car, 0.05f)
                         .withEnd(ballHitTarget, endTangent)
@@ -265,6 +310,7 @@ public class LACHelper {
                         .withArrivalSpeed(2300)
                         .allowDodge(car.position.distance(ballHitTarget) > 4000)
                         .withCreationStrategy(EpicMeshPlanner.PathCreationStrategy.YANGPATH)
+                        .withCache()
                         .plan()
             ));
 
@@ -291,8 +337,8 @@ public class LACHelper {
 
         // Path finder
         while (t < maxT) {
-            final Optional<YangBallPrediction.YangPredictionFrame> interceptFrameOptional = strikePrediction.getFrameAtRelativeTime(t);
-            if (interceptFrameOptional.isEmpty())
+            final int interceptFrameIndex = strikePrediction.indexAtRelativeTime(t);
+            if (interceptFrameIndex == -1)
                 break;
 
             if (t > 1.5f) // Speed it up, not as important
@@ -300,7 +346,7 @@ public class LACHelper {
             else // default
                 t += RLConstants.simulationTickFrequency * 2; // 30hz
 
-            final var interceptFrame = interceptFrameOptional.get();
+            final var interceptFrame = strikePrediction.frameAt(interceptFrameIndex);
             if (interceptFrame.ballData.isInAnyGoal())
                 break;
 
@@ -63,17 +63,18 @@ public class DriveManeuver extends Maneuver {
         this.maximumSpeed = max;
     }
 
+    private static final float[][] TURNING_SPEEDS = {
+            {0.00088f, 2300.0f},
+            {0.00110f, 1750.0f},
+            {0.00138f, 1500.0f},
+            {0.00235f, 1000.0f},
+            {0.00398f, 500.0f},
+            {0.00690f, 0.0f}
+    };
+
     public static float maxTurningSpeed(float curvature) { // Curvature -> Max speed
         final int n = 6;
-
-        final float[][] values = {
-                {0.00088f, 2300.0f},
-                {0.00110f, 1750.0f},
-                {0.00138f, 1500.0f},
-                {0.00235f, 1000.0f},
-                {0.00398f, 500.0f},
-                {0.00690f, 0.0f}
-        };
+        final float[][] values = TURNING_SPEEDS;
 
         final float input = Math.abs(curvature);
 
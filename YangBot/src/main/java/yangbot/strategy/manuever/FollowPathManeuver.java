@@ -128,7 +128,7 @@ public class FollowPathManeuver extends Maneuver {
             localMaxSpeeds[0] = v0;
         else {
             float ds = distToTarget - path.distances[startInd + 1];
-            var t = path.tangents.get(startInd + 1).add(path.tangentAt(distToTarget)).normalized();
+            var t = path.getTangent(startInd + 1).add(path.tangentAt(distToTarget)).normalized();
             float attainable_speed = Curve.maximizeSpeedWithThrottleSteer((boost > 0 ? 1f : 0f) * DriveManeuver.boost_acceleration + RLConstants.gravity.dot(t),
                     v0, ds, path.curvatureAt(distToTarget));
             localMaxSpeeds[1] = Math.min(localMaxSpeeds[1], attainable_speed);
@@ -137,7 +137,7 @@ public class FollowPathManeuver extends Maneuver {
 
         for (int i = startOff + startInd; i < path.distances.length; i++) {
             float ds = path.distances[i - 1] - path.distances[i];
-            Vector3 t = path.tangents.get(i).add(path.tangents.get(i - 1)).normalized();
+            Vector3 t = path.getTangent(i).add(path.getTangent(i - 1)).normalized();
 
             float attainable_speed = Curve.maximizeSpeedWithThrottleSteer((boost > 0 ? 1f : 0f) * DriveManeuver.boost_acceleration + RLConstants.gravity.dot(t), localMaxSpeeds[i - 1 - startInd], ds, path.curvatures[i]);
             if(attainable_speed >= localMaxSpeeds[i - startInd])
@@ -3,15 +3,12 @@ package yangbot.strategy.manuever;
 import net.jafama.FastMath;
 import yangbot.input.*;
 import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.MutableMatrix3x3;
+import yangbot.util.math.vector.MutableVector3;
 import yangbot.util.math.vector.Vector3;
 
 public class TurnManeuver extends Maneuver {
 
-    private final Vector3[] e = new Vector3[]{
-            new Vector3(1, 0, 0),
-            new Vector3(0, 1, 0),
-            new Vector3(0, 0, 1)
-    };
     //public ControlsOutput controls = new ControlsOutput();
     public Matrix3x3 target = null;
     public float maxErrorOrientation = 0.10f;
@@ -23,13 +20,18 @@ public class TurnManeuver extends Maneuver {
     private Matrix3x3 Z0 = new Matrix3x3();
     private Matrix3x3 theta = new Matrix3x3();
     private float horizon_time = 0.05f;
-    private Vector3 alpha = new Vector3();
+    private final MutableVector3 alpha = new MutableVector3();
     private Matrix3x3 target_prev = new Matrix3x3();
 
+    // Scratch for the newton iterations in step, they evaluate f 20 times per tick
+    private final MutableVector3 f0 = new MutableVector3(), f_j = new MutableVector3(), delta_alpha = new MutableVector3();
+    private final MutableVector3 alpha_world = new MutableVector3(), omega_prediction = new MutableVector3(), phi_prediction = new MutableVector3();
+    private final MutableMatrix3x3 J = new MutableMatrix3x3(), J_inv = new MutableMatrix3x3();
+
     private static final Vector3 T = new Vector3(-400.f, -130.f, 95.f).div(10.5f);
     private static final Vector3 D = new Vector3(-50.0, -30.0f, -20.0f).div(10.5f);
 
-    private Vector3 G(Vector3 q, Vector3 dq_dt) {
+    private MutableVector3 G(MutableVector3 dq_dt, MutableVector3 dest) {
         float G_roll = -Math.signum(dq_dt.x) * (
                 (Math.abs(dq_dt.x) / D.x) +
                         (T.x / (D.x * D.x)) * (float) FastMath.log(T.x / (T.x + D.x * Math.abs(dq_dt.x)))
@@ -38,16 +40,17 @@ public class TurnManeuver extends Maneuver {
         float G_pitch = -Math.signum(dq_dt.y) * dq_dt.y * dq_dt.y / (2.0f * T.y);
         float G_yaw = Math.signum(dq_dt.z) * dq_dt.z * dq_dt.z / (2.0f * T.z);
 
-        return new Vector3(G_roll, G_pitch, G_yaw);
+        return dest.set(G_roll, G_pitch, G_yaw);
     }
 
-    private Vector3 f(Vector3 alpha_local, float dt) {
-        Vector3 alpha_world = theta.dot(alpha_local);
-        Vector3 omega_prediction = angularError.add(alpha_world.mul(dt));
-        Vector3 phi_prediction = orientationError
-                .add(Z0.dot(angularError.add(alpha_world.mul(0.5f * dt))).mul(dt));
-        Vector3 dphi_dt_prediction = Z0.dot(omega_prediction);
-        return phi_prediction.mul(-1).sub(G(phi_prediction, dphi_dt_prediction));
+    private MutableVector3 f(float alpha_x, float alpha_y, float alpha_z, float dt, MutableVector3 dest) {
+        final MutableVector3 alpha_world = this.alpha_world.setDot(theta, alpha_x, alpha_y, alpha_z);
+        final MutableVector3 omega_prediction = this.omega_prediction.set(angularError).addScaled(alpha_world, dt);
+        final MutableVector3 phi_prediction = this.phi_prediction.set(angularError).addScaled(alpha_world, 0.5f * dt);
+        phi_prediction.setDot(Z0, phi_prediction).mul(dt).add(orientationError);
+        final MutableVector3 dphi_dt_prediction = omega_prediction.setDot(Z0, omega_prediction);
+        final MutableVector3 g = G(dphi_dt_prediction, dest);
+        return dest.set(-phi_prediction.x - g.x, -phi_prediction.y - g.y, -phi_prediction.z - g.z);
     }
 
     private Matrix3x3 Z(Vector3 q) {
@@ -114,7 +117,7 @@ public class TurnManeuver extends Maneuver {
         }
     }
 
-    private Vector3 findControlsFor(Vector3 idealAlpha) {
+    private Vector3 findControlsFor(MutableVector3 idealAlpha) {
         final Vector3 w = omega_local;
         final Vector3 T = new Vector3(-400.f, -130.f, 95.f).div(10.5f);
         final Vector3 D = new Vector3(-50.0, -30.0f, -20.0f).div(10.5f);
@@ -150,7 +153,7 @@ public class TurnManeuver extends Maneuver {
             controlsOutput.withYaw(0);
             controlsOutput.withRoll(0);
         } else {
-            this.alpha = new Vector3();
+            this.alpha.set(0, 0, 0);
             this.Z0 = Z(orientationError);
             dphi_dt = this.Z0.dot(angularError);
             this.horizon_time = Math.max(0.03f, 4.0f * dt);
@@ -158,12 +161,11 @@ public class TurnManeuver extends Maneuver {
             final int n_iterations = 5;
             float eps = 0.001f;
             for (int i = 0; i < n_iterations; i++) {
-                Vector3 f0 = f(alpha, horizon_time);
-                Matrix3x3 J = new Matrix3x3();
+                final MutableVector3 f0 = f(alpha.x, alpha.y, alpha.z, horizon_time, this.f0);
                 for (int j = 0; j < 3; j++) {
-                    Vector3 df_j = (f0.sub(
-                            f(alpha.add(e[j].mul(eps)), horizon_time)
-                    )).div(eps);
+                    // f at alpha + e_j * eps
+                    final MutableVector3 df_j = f(alpha.x + (j == 0 ? eps : 0), alpha.y + (j == 1 ? eps : 0), alpha.z + (j == 2 ? eps : 0), horizon_time, this.f_j);
+                    df_j.set(f0.x - df_j.x, f0.y - df_j.y, f0.z - df_j.z).div(eps);
                     J.assign(0, j, df_j.x);
                     J.assign(1, j, df_j.y);
                     J.assign(2, j, df_j.z);
@@ -171,8 +173,8 @@ public class TurnManeuver extends Maneuver {
                     J.assign(j, j, J.get(j, j) + 0.00001f);
                 }
 
-                Vector3 delta_alpha = J.invert().dot(f0);
-                alpha = alpha.add(delta_alpha);
+                final MutableVector3 delta_alpha = this.delta_alpha.setDot(J_inv.setInverse(J), f0);
+                alpha.add(delta_alpha);
                 if (delta_alpha.magnitude() < 1.0f)
                     break;
             }
@@ -0,0 +1,150 @@
+package yangbot.util;
+
+import yangbot.input.BallSimulator;
+import yangbot.input.ImmutableBallData;
+
+/**
+ * Keeps the ball prediction of the last tick around and reuses it while the ball follows it.
+ * <p>
+ * Every update the observed ball is compared to the predicted frame at the same time.
+ * If they agree, the remaining frames are copied over and only the missing tail is simulated.
+ * If they don't (the ball was touched, a bounce was predicted wrong, the game was paused or reset), the prediction is simulated from scratch.
+ * <p>
+ * Not thread-safe, use one manager per bot.
+ * <p>
+ * Predictions come from the pure-Java {@link BallSimulator}, so the tolerances compare the game's ball against a different physics model than the game's own.
+ * Bots only use a manager when started with {@code -Dyangbot.javaBallPrediction=true}; by default they keep their RLBot or native prediction.
+ * Check {@link #getReuseRate()} on real games before relying on it.
+ */
+public class BallPredictionManager {
+
+    public static final String ENABLE_PROPERTY = "yangbot.javaBallPrediction";
+
+    public static float POSITION_TOLERANCE = 2f;
+    public static float VELOCITY_TOLERANCE = 5f;
+    public static float ANGULAR_VELOCITY_TOLERANCE = 0.05f;
+
+    private final int tickRate;
+    private final float tickFrequency;
+    private final float length;
+    private final int numFrames;
+    private final BallSimulator simulator = new BallSimulator();
+
+    private YangBallPrediction prediction = YangBallPrediction.empty();
+    private float lastTouchTime = -1;
+
+    private int reuseCount = 0;
+    private int resimulationCount = 0;
+    private long simulatedFrames = 0;
+
+    /**
+     * @return A manager if {@link #ENABLE_PROPERTY} is set, null otherwise
+     */
+    public static BallPredictionManager createIfEnabled(int tickRate, float length) {
+        return Boolean.getBoolean(ENABLE_PROPERTY) ? new BallPredictionManager(tickRate, length) : null;
+    }
+
+    public BallPredictionManager(int tickRate, float length) {
+        assert tickRate > 0 && length > 0;
+        this.tickRate = tickRate;
+        this.tickFrequency = 1f / tickRate;
+        this.length = length;
+        this.numFrames = (int) (length / this.tickFrequency);
+    }
+
+    public YangBallPrediction update(ImmutableBallData ball) {
+        final float touchTime = ball.hasBeenTouched() ? ball.getLatestTouch().gameSeconds : -1;
+        final boolean wasTouched = touchTime != this.lastTouchTime;
+        this.lastTouchTime = touchTime;
+
+        final int index = wasTouched ? -1 : this.findMatchingFrame(ball);
+        if (index == -1) {
+            this.resimulationCount++;
+            this.simulator.set(ball.position, ball.velocity, ball.angularVelocity, ball.elapsedSeconds);
+            this.prediction = this.simulator.simulate(this.tickRate, this.length);
+            this.simulatedFrames += this.prediction.size();
+            return this.prediction;
+        }
+
+        this.reuseCount++;
+        if (index == 0)
+            return this.prediction;
+
+        final YangBallPrediction last = this.prediction;
+        final YangBallPrediction.Builder builder = new YangBallPrediction.Builder(this.numFrames);
+        builder.addRange(last, index, last.size(), last.relativeTimeAt(index));
+
+        // Extend the tail from the last known frame
+        final YangBallPrediction.YangPredictionFrame lastFrame = last.lastFrame();
+        final float startAbsolute = lastFrame.absoluteTime;
+        final float startRelative = lastFrame.relativeTime - last.relativeTimeAt(index);
+        this.simulator.set(lastFrame.ballData.position, lastFrame.ballData.velocity, lastFrame.ballData.angularVelocity, startAbsolute);
+        for (int i = 1; builder.size() < this.numFrames; i++) {
+            this.simulator.step(this.tickFrequency);
+            final float t = i * this.tickFrequency;
+            builder.add(startAbsolute + t, startRelative + t,
+                    simulator.px, simulator.py, simulator.pz,
+                    simulator.vx, simulator.vy, simulator.vz,
+                    simulator.wx, simulator.wy, simulator.wz);
+            this.simulatedFrames++;
+        }
+
+        this.prediction = builder.build(this.tickFrequency);
+        return this.prediction;
+    }
+
+    // Index of the frame describing the observed ball, -1 if the ball diverged from the prediction
+    private int findMatchingFrame(ImmutableBallData ball) {
+        if (this.prediction.isEmpty())
+            return -1;
+
+        final int index = this.prediction.indexAtAbsoluteTime(ball.elapsedSeconds - this.tickFrequency * 0.5f);
+        if (index == -1 || Math.abs(this.prediction.absoluteTimeAt(index) - ball.elapsedSeconds) > this.tickFrequency * 0.5f)
+            return -1;
+
+        final ImmutableBallData predicted = this.prediction.frameAt(index).ballData;
+        if (predicted.position.distance(ball.position) > POSITION_TOLERANCE)
+            return -1;
+        if (predicted.velocity.distance(ball.velocity) > VELOCITY_TOLERANCE)
+            return -1;
+        if (predicted.angularVelocity.distance(ball.angularVelocity) > ANGULAR_VELOCITY_TOLERANCE)
+            return -1;
+        return index;
+    }
+
+    public YangBallPrediction getPrediction() {
+        return this.prediction;
+    }
+
+    public void reset() {
+        this.prediction = YangBallPrediction.empty();
+        this.lastTouchTime = -1;
+    }
+
+    public int getReuseCount() {
+        return this.reuseCount;
+    }
+
+    public int getResimulationCount() {
+        return this.resimulationCount;
+    }
+
+    /**
+     * @return Number of frames actually simulated, compared to {@code numUpdates * numFrames} without reuse
+     */
+    public long getSimulatedFrames() {
+        return this.simulatedFrames;
+    }
+
+    public float getReuseRate() {
+        final int total = this.reuseCount + this.resimulationCount;
+        if (total == 0)
+            return 0;
+        return this.reuseCount / (float) total;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(reused=" + this.reuseCount + ",resimulated=" + this.resimulationCount + ",reuseRate=" + String.format("%.2f", this.getReuseRate()) + ")";
+    }
+}
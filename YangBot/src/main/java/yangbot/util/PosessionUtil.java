@@ -52,16 +52,17 @@ public class PosessionUtil {
         float distDriven = 0;
         var testCar = car.toCar2D();
         for (; t < Math.min(4, ballPrediction.relativeTimeOfLastFrame()); t += dt) {
-            var current = ballPrediction.getFrameAtRelativeTime(t);
-            if (current.isEmpty())
+            final int frameIndex = ballPrediction.indexAtRelativeTime(t);
+            if (frameIndex == -1)
                 break;
-            var ball = current.get().ballData;
 
             distDriven += testCar.simulateDriveTimeForward(dt, true);
-            //if(ball.position.z > DriveDodgeStrikeAbstraction.MAX_STRIKE_HEIGHT)
+            //if(ballPrediction.positionZAt(frameIndex) > DriveDodgeStrikeAbstraction.MAX_STRIKE_HEIGHT)
             //    continue;
 
-            float dist = (float) ball.position.flatten().distance(car.position.flatten());
+            final float dx = ballPrediction.positionXAt(frameIndex) - car.position.x;
+            final float dy = ballPrediction.positionYAt(frameIndex) - car.position.y;
+            float dist = (float) Math.sqrt(dx * dx + dy * dy);
             dist -= BallData.COLLISION_RADIUS;
             dist -= car.hitbox.getForwardExtent();
             dist -= 20; // magic
@@ -73,7 +74,7 @@ public class PosessionUtil {
         if (t >= ballPrediction.relativeTimeOfLastFrame() - 0.5f || t >= 3.8f)
             return ballPrediction.relativeTimeOfLastFrame() + 2;
 
-        var targetBallFrame = ballPrediction.getFrameAtRelativeTime(t).get();
+        var targetBallFrame = ballPrediction.frameAt(ballPrediction.indexAtRelativeTime(t));
         float turnTime = MathUtils.remapClip(
                 (float) Math.abs(car.forward().flatten().correctionAngle(targetBallFrame.ballData.position.flatten().sub(car.position.flatten()))),
                 0, (float) Math.PI,
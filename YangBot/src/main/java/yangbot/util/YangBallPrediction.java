@@ -10,32 +10,49 @@ import yangbot.input.BallData;
 import yangbot.input.ImmutableBallData;
 import yangbot.input.RLConstants;
 import yangbot.strategy.DummyRenderer;
+import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Vector3;
 
 import java.awt.*;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 public class YangBallPrediction {
 
     public final int tickRate; // close to 60 or 120
     public final float tickFrequency; // close to 1/60 or 1/120
+    /**
+     * Read-only view over the packed frame storage, frames are materialized lazily and cached.
+     * Prefer the index based accessors ({@link #indexAtRelativeTime(float)}, {@link #frameAt(int)}) in hot loops
+     */
     public final List<YangPredictionFrame> frames;
 
-    private YangBallPrediction(List<YangPredictionFrame> frames, float tickFrequency) {
-        if (frames == null)
-            frames = new ArrayList<>();
-        frames = Collections.unmodifiableList(frames);
+    private final PackedFrames storage;
+    // This prediction is the window [offset, offset + length) of the storage
+    private final int offset;
+    private final int length;
+
+    private YangBallPrediction(PackedFrames storage, int offset, int length, float tickFrequency) {
+        assert offset >= 0 && length >= 0 && offset + length <= storage.size;
 
-        this.frames = frames;
+        this.storage = storage;
+        this.offset = offset;
+        this.length = length;
+        this.frames = new FrameListView();
         this.tickFrequency = tickFrequency;
         this.tickRate = Math.round(1 / tickFrequency);
     }
 
+    private YangBallPrediction(List<YangPredictionFrame> frames, float tickFrequency) {
+        this(PackedFrames.of(frames), 0, frames == null ? 0 : frames.size(), tickFrequency);
+    }
+
     public static YangBallPrediction merge(YangBallPrediction one, YangBallPrediction two) {
         if (one.frames.size() == 0)
             return two;
@@ -96,7 +113,7 @@ public class YangBallPrediction {
     private static YangBallPrediction from(BallPrediction ballPrediction) {
         assert ballPrediction.slicesLength() > 0 : "RLBot Ball Prediction has no frames";
 
-        List<YangPredictionFrame> frames = new ArrayList<>(ballPrediction.slicesLength());
+        final Builder builder = new Builder(ballPrediction.slicesLength());
 
         float startTime = ballPrediction.slices(0).gameSeconds();
         float lastTime = startTime;
@@ -104,7 +121,11 @@ public class YangBallPrediction {
 
         for (int i = 0; i < ballPrediction.slicesLength(); i++) {
             PredictionSlice slice = ballPrediction.slices(i);
-            frames.add(new YangPredictionFrame(slice.gameSeconds() - startTime, slice));
+            Physics physics = slice.physics();
+            builder.add(slice.gameSeconds(), slice.gameSeconds() - startTime,
+                    physics.location().x(), physics.location().y(), physics.location().z(),
+                    physics.velocity().x(), physics.velocity().y(), physics.velocity().z(),
+                    physics.angularVelocity().x(), physics.angularVelocity().y(), physics.angularVelocity().z());
 
             averageDt += slice.gameSeconds() - lastTime;
             lastTime = slice.gameSeconds();
@@ -112,7 +133,7 @@ public class YangBallPrediction {
 
         averageDt /= ballPrediction.slicesLength();
 
-        return new YangBallPrediction(frames, averageDt);
+        return builder.build(averageDt);
     }
 
     public static YangBallPrediction get() {
@@ -135,11 +156,15 @@ public class YangBallPrediction {
     }
 
     public boolean isEmpty() {
-        return this.frames.isEmpty();
+        return this.length == 0;
+    }
+
+    public int size() {
+        return this.length;
     }
 
     public void draw(AdvancedRenderer renderer, Color color, float length) {
-        if (this.frames.size() == 0)
+        if (this.isEmpty())
             return;
         if(renderer instanceof DummyRenderer)
             return;
@@ -148,19 +173,20 @@ public class YangBallPrediction {
         length = Math.min(length, this.relativeTimeOfLastFrame());
 
         float time = 0;
-        float lastAbsTime = this.frames.get(0).absoluteTime;
-        Vector3 lastPos = this.frames.get(0).ballData.position;
+        float lastAbsTime = this.absoluteTimeAt(0);
+        Vector3 lastPos = this.frameAt(0).ballData.position;
         while (time < length) {
-            Optional<YangPredictionFrame> frame = this.getFrameAfterRelativeTime(time);
-            if (frame.isEmpty())
+            int index = this.indexAfterRelativeTime(time);
+            if (index == -1)
                 break;
+            final YangPredictionFrame frame = this.frameAt(index);
 
-            if (Math.floor(lastAbsTime) < Math.floor(frame.get().absoluteTime))
-                renderer.drawLine3d(color.brighter(), frame.get().ballData.position, frame.get().ballData.position.add(0, 0, 50));
+            if (Math.floor(lastAbsTime) < Math.floor(frame.absoluteTime))
+                renderer.drawLine3d(color.brighter(), frame.ballData.position, frame.ballData.position.add(0, 0, 50));
 
-            lastAbsTime = frame.get().absoluteTime;
-            time = frame.get().relativeTime;
-            ImmutableBallData ball = frame.get().ballData;
+            lastAbsTime = frame.absoluteTime;
+            time = frame.relativeTime;
+            ImmutableBallData ball = frame.ballData;
 
             if (ball.makeMutable().isInAnyGoal()) {
                 renderer.drawCentered3dCube(color.brighter().brighter(), ball.position, 50);
@@ -177,19 +203,122 @@ public class YangBallPrediction {
     }
 
     public YangPredictionFrame lastFrame() {
-        assert this.frames.size() > 0;
-        return this.frames.get(this.frames.size() - 1);
+        assert this.length > 0;
+        return this.frameAt(this.length - 1);
     }
 
     public YangPredictionFrame firstFrame() {
-        assert this.frames.size() > 0;
-        return this.frames.get(0);
+        assert this.length > 0;
+        return this.frameAt(0);
     }
 
     public float relativeTimeOfLastFrame() {
-        if (this.frames.size() == 0)
+        if (this.length == 0)
             return -1;
-        return this.lastFrame().relativeTime;
+        return this.relativeTimeAt(this.length - 1);
+    }
+
+    /**
+     * Flyweight access to a frame, repeated calls with the same index return the same object without allocating
+     */
+    public YangPredictionFrame frameAt(int index) {
+        assert index >= 0 && index < this.length : "index=" + index + " length=" + this.length;
+        return this.storage.frame(this.offset + index);
+    }
+
+    public float relativeTimeAt(int index) {
+        assert index >= 0 && index < this.length;
+        return this.storage.relativeTime[this.offset + index];
+    }
+
+    public float absoluteTimeAt(int index) {
+        assert index >= 0 && index < this.length;
+        return this.storage.absoluteTime[this.offset + index];
+    }
+
+    public float positionXAt(int index) {
+        return this.storage.position[(this.offset + index) * 3];
+    }
+
+    public float positionYAt(int index) {
+        return this.storage.position[(this.offset + index) * 3 + 1];
+    }
+
+    public float positionZAt(int index) {
+        return this.storage.position[(this.offset + index) * 3 + 2];
+    }
+
+    /**
+     * @return Index of the first frame with a relative time at or after relativeTime, -1 if there is none
+     */
+    public int indexAtRelativeTime(float relativeTime) {
+        if (this.isEmpty() || this.relativeTimeOfLastFrame() < relativeTime)
+            return -1;
+        if (relativeTime == 0)
+            return 0;
+        assert relativeTime > 0;
+
+        return this.search(this.storage.relativeTime, relativeTime, true);
+    }
+
+    /**
+     * @return Index of the first frame with a relative time strictly after relativeTime, -1 if there is none
+     */
+    public int indexAfterRelativeTime(float relativeTime) {
+        return this.search(this.storage.relativeTime, relativeTime, false);
+    }
+
+    /**
+     * @return Index of the first frame with an absolute time at or after absoluteTime, -1 if there is none
+     */
+    public int indexAtAbsoluteTime(float absoluteTime) {
+        return this.search(this.storage.absoluteTime, absoluteTime, true);
+    }
+
+    // Returns first index in this window whose time is >= (inclusive) or > (exclusive) time, -1 if there is none
+    private int search(float[] times, float time, boolean inclusive) {
+        if (this.length == 0)
+            return -1;
+        final int lo = this.offset;
+        final int hi = this.offset + this.length;
+
+        if (this.storage.uniform) {
+            // Frames are evenly spaced, so we can compute the index directly and only need to correct for float rounding
+            int guess = lo + (int) ((time - times[lo]) / this.storage.step);
+            guess = MathUtils.clip(guess, lo, hi - 1);
+
+            while (guess > lo && matches(times[guess - 1], time, inclusive))
+                guess--;
+            while (guess < hi && !matches(times[guess], time, inclusive))
+                guess++;
+
+            return guess == hi ? -1 : guess - this.offset;
+        }
+
+        int left = lo, right = hi;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (matches(times[mid], time, inclusive))
+                right = mid;
+            else
+                left = mid + 1;
+        }
+        return left == hi ? -1 : left - this.offset;
+    }
+
+    private static boolean matches(float sample, float time, boolean inclusive) {
+        return inclusive ? sample >= time : sample > time;
+    }
+
+    // Zero-copy view of the frames in [fromIndex, toIndex)
+    private YangBallPrediction slice(int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex)
+            return new YangBallPrediction(this.storage, this.offset, 0, this.tickFrequency);
+        return new YangBallPrediction(this.storage, this.offset + fromIndex, toIndex - fromIndex, this.tickFrequency);
+    }
+
+    private int firstIndexOrEnd(int index) {
+        return index == -1 ? this.length : index;
     }
 
     public YangBallPrediction trim(float relativeStartTime, float relativeEndTime) {
@@ -198,107 +327,291 @@ public class YangBallPrediction {
         if (relativeEndTime - relativeStartTime == 0)
             return YangBallPrediction.empty();
 
-        return new YangBallPrediction(this.getFramesBetweenRelative(relativeStartTime, relativeEndTime), this.tickFrequency);
+        return this.getBetweenRelative(relativeStartTime, relativeEndTime);
     }
 
-    // Returns first index at or after relativeTime
-    private int binarySearchRelativeTime(float relative){
-        if(this.frames.size() == 0)
-            return 0;
-        assert relative < this.relativeTimeOfLastFrame() : "rel="+relative+" last="+this.relativeTimeOfLastFrame();
-        int left = 0, right = this.frames.size();
-        int mid;
-        int timeout = 0;
-        int candidate = -1;
-        while(left < right){
-            assert timeout < 200;
-            timeout++;
-            mid = (left + right) / 2;
-            var sample = this.frames.get(mid);
-            if(sample.relativeTime >= relative){
-                right = mid;
-                candidate = mid;
-            }
-            else
-                left = mid + 1;
+    /**
+     * Copies all frames matching the filter into a new prediction, without building intermediate lists
+     */
+    public YangBallPrediction filter(Predicate<YangPredictionFrame> filter) {
+        final Builder builder = new Builder(this.length);
+        for (int i = 0; i < this.length; i++) {
+            final YangPredictionFrame frame = this.frameAt(i);
+            if (filter.test(frame))
+                builder.add(frame);
         }
-        assert candidate != -1;
-        return candidate;
+        return builder.build(this.tickFrequency);
     }
 
     public Optional<YangPredictionFrame> getFrameAtRelativeTime(float relativeTime) {
-        if (this.isEmpty() || this.lastFrame().relativeTime < relativeTime)
+        int index = this.indexAtRelativeTime(relativeTime);
+        if (index == -1)
             return Optional.empty();
-        if (relativeTime == 0)
-            return Optional.of(this.firstFrame());
-        assert relativeTime > 0;
-
-        for(int i = this.binarySearchRelativeTime(relativeTime); i < this.frames.size(); i++){
-            if(this.frames.get(i).relativeTime >= relativeTime)
-                return Optional.of(this.frames.get(i));
-        }
-        return Optional.empty();
+        return Optional.of(this.frameAt(index));
     }
 
     public Optional<YangPredictionFrame> getFrameAfterRelativeTime(float relativeTime) {
-        for(int i = this.binarySearchRelativeTime(relativeTime); i < this.frames.size(); i++){
-            if(this.frames.get(i).relativeTime > relativeTime)
-                return Optional.of(this.frames.get(i));
-        }
-        return Optional.empty();
+        int index = this.indexAfterRelativeTime(relativeTime);
+        if (index == -1)
+            return Optional.empty();
+        return Optional.of(this.frameAt(index));
     }
 
     public Optional<YangPredictionFrame> getFrameAtAbsoluteTime(float absolute) {
-        return this.frames
-                .stream()
-                .filter((f) -> f.absoluteTime >= absolute)
-                .findFirst();
+        int index = this.indexAtAbsoluteTime(absolute);
+        if (index == -1)
+            return Optional.empty();
+        return Optional.of(this.frameAt(index));
     }
 
     public List<YangPredictionFrame> getFramesBeforeRelative(float relativeTime) {
-        return this.frames
-                .stream()
-                .filter((f) -> f.relativeTime < relativeTime)
-                .collect(Collectors.toList());
+        return this.getBeforeRelative(relativeTime).frames;
     }
 
     public List<YangPredictionFrame> getFramesBeforeAbsolute(float absoluteTime) {
-        return this.frames
-                .stream()
-                .filter((f) -> f.absoluteTime < absoluteTime)
-                .collect(Collectors.toList());
+        return this.slice(0, this.firstIndexOrEnd(this.indexAtAbsoluteTime(absoluteTime))).frames;
     }
 
     public YangBallPrediction getBeforeRelative(float relativeTime) {
-        return new YangBallPrediction(getFramesBeforeRelative(relativeTime), this.tickFrequency);
+        return this.slice(0, this.firstIndexOrEnd(this.search(this.storage.relativeTime, relativeTime, true)));
+    }
+
+    public YangBallPrediction getAfterRelative(float relativeTime) {
+        return this.slice(this.firstIndexOrEnd(this.indexAfterRelativeTime(relativeTime)), this.length);
+    }
+
+    public YangBallPrediction getBetweenRelative(float start, float end) {
+        return this.slice(
+                this.firstIndexOrEnd(this.indexAfterRelativeTime(start)),
+                this.firstIndexOrEnd(this.search(this.storage.relativeTime, end, true))
+        );
     }
 
     public List<YangPredictionFrame> getFramesAfterRelative(float relativeTime) {
-        return this.frames
-                .stream()
-                .filter((f) -> f.relativeTime > relativeTime)
-                .collect(Collectors.toList());
+        return this.getAfterRelative(relativeTime).frames;
     }
 
     public List<YangPredictionFrame> getFramesBetweenRelative(float start, float end) {
-        return this.frames
-                .stream()
-                .filter((f) -> f.relativeTime > start && f.relativeTime < end)
-                .collect(Collectors.toList());
+        return this.getBetweenRelative(start, end).frames;
     }
 
     public boolean hasFrames() {
-        return this.frames.size() > 0;
+        return this.length > 0;
     }
 
     enum BallPredictionType {
         RLBOT
     }
 
+    /**
+     * Packs frames directly into the float columns, avoiding a {@link YangPredictionFrame} per frame
+     */
+    public static class Builder {
+        private final PackedFrames storage;
+
+        public Builder(int expectedFrames) {
+            this.storage = new PackedFrames(Math.max(expectedFrames, 1));
+        }
+
+        public Builder add(float absoluteTime, float relativeTime, float px, float py, float pz, float vx, float vy, float vz, float ax, float ay, float az) {
+            this.storage.add(absoluteTime, relativeTime, px, py, pz, vx, vy, vz, ax, ay, az);
+            return this;
+        }
+
+        public Builder add(float absoluteTime, float relativeTime, BallData ball) {
+            return this.add(absoluteTime, relativeTime,
+                    ball.position.x, ball.position.y, ball.position.z,
+                    ball.velocity.x, ball.velocity.y, ball.velocity.z,
+                    ball.angularVelocity.x, ball.angularVelocity.y, ball.angularVelocity.z);
+        }
+
+        public Builder add(YangPredictionFrame frame) {
+            this.storage.add(frame);
+            return this;
+        }
+
+        /**
+         * Copies the frames [fromIndex, toIndex) of another prediction, shifting their relative time by -relativeTimeShift
+         */
+        public Builder addRange(YangBallPrediction source, int fromIndex, int toIndex, float relativeTimeShift) {
+            assert fromIndex >= 0 && toIndex <= source.length;
+            if (toIndex <= fromIndex)
+                return this;
+
+            final PackedFrames src = source.storage;
+            final PackedFrames dst = this.storage;
+            final int count = toIndex - fromIndex;
+            final int srcStart = source.offset + fromIndex;
+            dst.ensureCapacity(dst.size + count);
+
+            System.arraycopy(src.position, srcStart * 3, dst.position, dst.size * 3, count * 3);
+            System.arraycopy(src.velocity, srcStart * 3, dst.velocity, dst.size * 3, count * 3);
+            System.arraycopy(src.angularVelocity, srcStart * 3, dst.angularVelocity, dst.size * 3, count * 3);
+            System.arraycopy(src.absoluteTime, srcStart, dst.absoluteTime, dst.size, count);
+            for (int i = 0; i < count; i++)
+                dst.relativeTime[dst.size + i] = src.relativeTime[srcStart + i] - relativeTimeShift;
+            dst.size += count;
+            return this;
+        }
+
+        public int size() {
+            return this.storage.size;
+        }
+
+        public YangBallPrediction build(float tickFrequency) {
+            this.storage.seal();
+            return new YangBallPrediction(this.storage, 0, this.storage.size, tickFrequency);
+        }
+    }
+
+    /**
+     * Column storage for frames. Predictions created from slicing share the same storage.
+     */
+    private static final class PackedFrames {
+        private float[] position;
+        private float[] velocity;
+        private float[] angularVelocity;
+        private float[] absoluteTime;
+        private float[] relativeTime;
+        private YangPredictionFrame[] frameCache;
+        private int size = 0;
+        private boolean uniform = false;
+        private float step = 0;
+
+        private PackedFrames(int capacity) {
+            this.position = new float[capacity * 3];
+            this.velocity = new float[capacity * 3];
+            this.angularVelocity = new float[capacity * 3];
+            this.absoluteTime = new float[capacity];
+            this.relativeTime = new float[capacity];
+            this.frameCache = new YangPredictionFrame[capacity];
+        }
+
+        private static PackedFrames of(List<YangPredictionFrame> frames) {
+            if (frames == null || frames.isEmpty()) {
+                var storage = new PackedFrames(0);
+                storage.seal();
+                return storage;
+            }
+
+            var storage = new PackedFrames(frames.size());
+            for (int i = 0; i < frames.size(); i++)
+                storage.add(frames.get(i));
+            storage.seal();
+            return storage;
+        }
+
+        private void ensureCapacity(int frames) {
+            if (frames <= this.absoluteTime.length)
+                return;
+            int newCapacity = Math.max(frames, this.absoluteTime.length * 2);
+            this.position = Arrays.copyOf(this.position, newCapacity * 3);
+            this.velocity = Arrays.copyOf(this.velocity, newCapacity * 3);
+            this.angularVelocity = Arrays.copyOf(this.angularVelocity, newCapacity * 3);
+            this.absoluteTime = Arrays.copyOf(this.absoluteTime, newCapacity);
+            this.relativeTime = Arrays.copyOf(this.relativeTime, newCapacity);
+            this.frameCache = Arrays.copyOf(this.frameCache, newCapacity);
+        }
+
+        private void add(float absoluteTime, float relativeTime, float px, float py, float pz, float vx, float vy, float vz, float ax, float ay, float az) {
+            this.ensureCapacity(this.size + 1);
+            final int i = this.size;
+            final int i3 = i * 3;
+
+            this.position[i3] = px;
+            this.position[i3 + 1] = py;
+            this.position[i3 + 2] = pz;
+            this.velocity[i3] = vx;
+            this.velocity[i3 + 1] = vy;
+            this.velocity[i3 + 2] = vz;
+            this.angularVelocity[i3] = ax;
+            this.angularVelocity[i3 + 1] = ay;
+            this.angularVelocity[i3 + 2] = az;
+            this.absoluteTime[i] = absoluteTime;
+            this.relativeTime[i] = relativeTime;
+            this.size++;
+        }
+
+        private void add(YangPredictionFrame frame) {
+            final ImmutableBallData ball = frame.ballData;
+            this.add(frame.absoluteTime, frame.relativeTime,
+                    ball.position.x, ball.position.y, ball.position.z,
+                    ball.velocity.x, ball.velocity.y, ball.velocity.z,
+                    ball.angularVelocity.x, ball.angularVelocity.y, ball.angularVelocity.z);
+            // Keep the original object around, no need to materialize it again
+            this.frameCache[this.size - 1] = frame;
+        }
+
+        // Checks whether frames are evenly spaced, which allows direct index computation
+        private void seal() {
+            for (int i = 1; i < this.size; i++)
+                assert this.relativeTime[i] >= this.relativeTime[i - 1] : "Frames are not ordered by time";
+
+            if (this.size < 2) {
+                this.uniform = false;
+                return;
+            }
+
+            this.step = (this.relativeTime[this.size - 1] - this.relativeTime[0]) / (this.size - 1);
+            if (this.step <= 0) {
+                this.uniform = false;
+                return;
+            }
+            final float absStep = (this.absoluteTime[this.size - 1] - this.absoluteTime[0]) / (this.size - 1);
+            final float tolerance = this.step * 0.25f;
+
+            boolean isUniform = Math.abs(absStep - this.step) < tolerance * 0.1f;
+            for (int i = 0; i < this.size && isUniform; i++) {
+                isUniform = Math.abs(this.relativeTime[i] - (this.relativeTime[0] + i * this.step)) < tolerance &&
+                        Math.abs(this.absoluteTime[i] - (this.absoluteTime[0] + i * this.step)) < tolerance;
+            }
+            this.uniform = isUniform;
+        }
+
+        private YangPredictionFrame frame(int index) {
+            YangPredictionFrame frame = this.frameCache[index];
+            if (frame != null)
+                return frame;
+
+            // Benign race: worst case two threads materialize equal frames
+            final int i3 = index * 3;
+            frame = new YangPredictionFrame(this.absoluteTime[index], this.relativeTime[index], new ImmutableBallData(
+                    new Vector3(this.position[i3], this.position[i3 + 1], this.position[i3 + 2]),
+                    new Vector3(this.velocity[i3], this.velocity[i3 + 1], this.velocity[i3 + 2]),
+                    new Vector3(this.angularVelocity[i3], this.angularVelocity[i3 + 1], this.angularVelocity[i3 + 2]),
+                    this.absoluteTime[index]
+            ));
+            this.frameCache[index] = frame;
+            return frame;
+        }
+    }
+
+    private final class FrameListView extends AbstractList<YangPredictionFrame> implements RandomAccess {
+
+        @Override
+        public YangPredictionFrame get(int index) {
+            if (index < 0 || index >= YangBallPrediction.this.length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + YangBallPrediction.this.length);
+            return YangBallPrediction.this.frameAt(index);
+        }
+
+        @Override
+        public int size() {
+            return YangBallPrediction.this.length;
+        }
+
+        @Override
+        public List<YangPredictionFrame> subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > this.size() || fromIndex > toIndex)
+                throw new IndexOutOfBoundsException("fromIndex=" + fromIndex + " toIndex=" + toIndex + " size=" + this.size());
+            return YangBallPrediction.this.slice(fromIndex, toIndex).frames;
+        }
+    }
+
     public static class YangPredictionFrame {
         public final float absoluteTime;
         public final ImmutableBallData ballData;
-        public float relativeTime;
+        public final float relativeTime;
 
         public YangPredictionFrame(float absoluteTime, float relativeTime, BallData ballData) {
             this.absoluteTime = absoluteTime;
@@ -318,9 +631,5 @@ public class YangBallPrediction {
             Physics physics = predictionSlice.physics();
             this.ballData = new ImmutableBallData(physics, this.absoluteTime);
         }
-
-        public void adjustForLatencyCompensation(float offset) {
-            relativeTime -= offset;
-        }
     }
 }
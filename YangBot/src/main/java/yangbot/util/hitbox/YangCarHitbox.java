@@ -2,7 +2,9 @@ package yangbot.util.hitbox;
 
 import rlbot.flat.BoxShape;
 import rlbot.render.Renderer;
+import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.MutableVector3;
 import yangbot.util.math.vector.Vector3;
 
 import java.awt.*;
@@ -17,9 +19,10 @@ public class YangCarHitbox extends YangHitbox {
 
     private Matrix3x3 orientation;
 
-    public Vector3 permF;
-    public Vector3 permL;
-    public Vector3 permU;
+    // Half extents along the axes of the orientation, only calculated once read. Simulations set a new orientation every step
+    private Vector3 permF;
+    private Vector3 permL;
+    private Vector3 permU;
 
     public YangCarHitbox(BoxShape hitbox, Vector3 offsets, Matrix3x3 orientation) {
         this.hitboxLengths = new Vector3(hitbox.length(), hitbox.width(), hitbox.height()).mul(1, 1, 1);
@@ -52,10 +55,32 @@ public class YangCarHitbox extends YangHitbox {
 
     public void setOrientation(Matrix3x3 orientation) {
         this.orientation = orientation;
+        this.permF = null;
+    }
+
+    private void updatePerms() {
+        if (this.permF != null)
+            return;
+
+        final float f = this.hitboxLengths.x / 2, l = this.hitboxLengths.y / 2, u = this.hitboxLengths.z / 2;
+        this.permF = new Vector3(orientation.get(0, 0) * f, orientation.get(1, 0) * f, orientation.get(2, 0) * f);
+        this.permL = new Vector3(orientation.get(0, 1) * l, orientation.get(1, 1) * l, orientation.get(2, 1) * l);
+        this.permU = new Vector3(orientation.get(0, 2) * u, orientation.get(1, 2) * u, orientation.get(2, 2) * u);
+    }
+
+    public Vector3 getPermF() {
+        this.updatePerms();
+        return this.permF;
+    }
+
+    public Vector3 getPermL() {
+        this.updatePerms();
+        return this.permL;
+    }
 
-        this.permF = this.orientation.forward().mul(this.hitboxLengths.x / 2);
-        this.permL = this.orientation.right().mul(this.hitboxLengths.y / 2);
-        this.permU = this.orientation.up().mul(this.hitboxLengths.z / 2);
+    public Vector3 getPermU() {
+        this.updatePerms();
+        return this.permU;
     }
 
     public YangSphereHitbox asSphere(float scale) {
@@ -73,11 +98,13 @@ public class YangCarHitbox extends YangHitbox {
 
     public Vector3 permutatePoint(Vector3 point, float frontDir, float leftDir, float upDir, float scale) {
         point = applyOffset(point);
+        this.updatePerms();
         return point.add(permF.mul(frontDir * scale)).add(permL.mul(leftDir * scale)).add(permU.mul(upDir * scale));
     }
 
     public Vector3 permutatePoint(Vector3 point, float frontDir, float leftDir, float upDir) {
         point = applyOffset(point);
+        this.updatePerms();
         return point.add(permF.mul(frontDir)).add(permL.mul(leftDir)).add(permU.mul(upDir));
     }
 
@@ -87,15 +114,21 @@ public class YangCarHitbox extends YangHitbox {
 
     @Override
     public Vector3 getClosestPointOnHitbox(Vector3 hitboxPos, Vector3 point) {
-        final Vector3 center = this.orientation.dot(hitboxOffset).add(hitboxPos);
-        final Vector3 halfLengths = this.hitboxLengths.mul(0.5f);
+        return this.getClosestPointOnHitbox(hitboxPos, point, new MutableVector3()).toVector3();
+    }
+
+    /**
+     * Same as {@link #getClosestPointOnHitbox(Vector3, Vector3)}, written into dest
+     */
+    public MutableVector3 getClosestPointOnHitbox(Vector3 hitboxPos, Vector3 point, MutableVector3 dest) {
+        final MutableVector3 center = dest.setDot(this.orientation, this.hitboxOffset.x, this.hitboxOffset.y, this.hitboxOffset.z).add(hitboxPos);
+        final float cx = center.x, cy = center.y, cz = center.z;
+        final float hx = this.hitboxLengths.x * 0.5f, hy = this.hitboxLengths.y * 0.5f, hz = this.hitboxLengths.z * 0.5f;
 
-        Vector3 vLocal = point.sub(center).dot(this.orientation);
-        vLocal = vLocal.clip(0, -halfLengths.x, halfLengths.x);
-        vLocal = vLocal.clip(1, -halfLengths.y, halfLengths.y);
-        vLocal = vLocal.clip(2, -halfLengths.z, halfLengths.z);
+        final MutableVector3 vLocal = dest.setDotTransposed(point.x - cx, point.y - cy, point.z - cz, this.orientation);
+        vLocal.set(MathUtils.clip(vLocal.x, -hx, hx), MathUtils.clip(vLocal.y, -hy, hy), MathUtils.clip(vLocal.z, -hz, hz));
 
-        return this.orientation.dot(vLocal).add(center);
+        return dest.setDot(this.orientation, vLocal).add(cx, cy, cz);
     }
 
     @Override
@@ -15,6 +15,10 @@ public class Car1D {
         this.time = time;
     }
 
+    // Only read by driveForceForward, shared instead of allocating one per step
+    private static final ControlsOutput FULL_THROTTLE = new ControlsOutput().withThrottle(1).withBoost(false);
+    private static final ControlsOutput FULL_BOOST = new ControlsOutput().withThrottle(1).withBoost(true);
+
     // Returns: time | speed
     public static Car1D simulateDriveDistanceForwardAccel(float distance, float startSpeed, float boost) {
         final float totalDist = distance;
@@ -33,7 +37,7 @@ public class Car1D {
 
                 dt = maxTime;
             } else {
-                float force = CarData.driveForceForward(new ControlsOutput().withThrottle(1).withBoost(boost > 0), startSpeed, 0, 0);
+                float force = CarData.driveForceForward(boost > 0 ? FULL_BOOST : FULL_THROTTLE, startSpeed, 0, 0);
                 if (boost > 0)
                     boost -= CarData.BOOST_CONSUMPTION * dt;
 
@@ -111,6 +115,41 @@ public class Car1D {
 
         assert curSpeed > 100 && maxSpeed > 100 : curSpeed + " " + maxSpeed;
 
+        // Braking is a constant force above min speed, so the 1/60s steps have a closed form:
+        // after n steps the speed is v - n * a * dt and the distance dt * (n * v - a * dt * n * (n - 1) / 2)
+        final float dt = 1 / 60f;
+        final float force = CarData.driveForceForward(new ControlsOutput().withThrottle(-1), curSpeed, 0, 0);
+        assert force < 0;
+        final float maxTime = 1.5f;
+
+        int n = Math.max(1, (int) Math.ceil((curSpeed - maxSpeed) / (-force * dt)));
+        if (curSpeed + n * force * dt > maxSpeed) // Rounding
+            n++;
+        if (n * dt > maxTime + dt * 0.5f) {
+            assert false;
+            final int maxSteps = Math.round(maxTime / dt);
+            return new Car1D(dt * (maxSteps * curSpeed + force * dt * maxSteps * (maxSteps - 1) / 2f), curSpeed + maxSteps * force * dt, 0, maxTime);
+        }
+
+        float dist = dt * (n * curSpeed + force * dt * n * (n - 1) / 2f);
+        final float speed = curSpeed + n * force * dt;
+        float t = (n - 1) * dt;
+        if (speed < maxSpeed) {
+            final float oldSpeed = speed - force * dt;
+            final float dPart = (maxSpeed - oldSpeed) / force;
+            assert dPart >= 0 && dPart <= dt : dPart + " " + dt;
+            final float dThrowaway = dt - dPart;
+            t -= dThrowaway;
+            dist -= oldSpeed * dThrowaway;
+        }
+        return new Car1D(dist, speed, 0, t + dt);
+    }
+
+    // simulateDriveDistanceForSlowdown by stepping
+    public static Car1D stepDriveDistanceForSlowdown(float curSpeed, float maxSpeed) {
+        if (curSpeed <= maxSpeed)
+            return new Car1D(0f, curSpeed, 0, 0);
+
         float maxTime = 1.5f;
 
         float dist = 0;
@@ -6,7 +6,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Arrays;
 
 public class Matrix3x3 {
-    private final float[] data = new float[9];
+    final float[] data = new float[9]; // Package-private for the mutable vectors
 
     public Matrix3x3() {
     }
@@ -96,13 +96,17 @@ public class Matrix3x3 {
 
     @NotNull
     public static Matrix3x3 eulerToRotation(@NotNull Vector3 pyr) {
+        return eulerToRotation(pyr.x, pyr.y, pyr.z);
+    }
+
+    public static Matrix3x3 eulerToRotation(float pitch, float yaw, float roll) {
         Matrix3x3 mat = new Matrix3x3();
-        float CP = (float) Math.cos(pyr.x);
-        float SP = (float) Math.sin(pyr.x);
-        float CY = (float) Math.cos(pyr.y);
-        float SY = (float) Math.sin(pyr.y);
-        float CR = (float) Math.cos(pyr.z);
-        float SR = (float) Math.sin(pyr.z);
+        float CP = (float) Math.cos(pitch);
+        float SP = (float) Math.sin(pitch);
+        float CY = (float) Math.cos(yaw);
+        float SY = (float) Math.sin(yaw);
+        float CR = (float) Math.cos(roll);
+        float SR = (float) Math.sin(roll);
 
         mat.assign(0, 0, CP * CY);
         mat.assign(0, 0, CP * CY);
@@ -0,0 +1,146 @@
+package yangbot.util.math.vector;
+
+import net.jafama.FastMath;
+
+/**
+ * Mutable counterpart of {@link Matrix3x3} with in-place operations, see {@link MutableVector3}.
+ * Same column-major layout as {@link Matrix3x3}, the arithmetic matches its operations of the same name.
+ */
+public final class MutableMatrix3x3 {
+
+    final float[] data = new float[9];
+    private final float[] tmp = new float[9];
+
+    public MutableMatrix3x3() {
+    }
+
+    public MutableMatrix3x3(Matrix3x3 o) {
+        this.set(o);
+    }
+
+    public MutableMatrix3x3 set(Matrix3x3 o) {
+        System.arraycopy(o.data, 0, this.data, 0, 9);
+        return this;
+    }
+
+    public MutableMatrix3x3 set(MutableMatrix3x3 o) {
+        System.arraycopy(o.data, 0, this.data, 0, 9);
+        return this;
+    }
+
+    public Matrix3x3 toMatrix3x3() {
+        final Matrix3x3 mat = new Matrix3x3();
+        System.arraycopy(this.data, 0, mat.data, 0, 9);
+        return mat;
+    }
+
+    public float get(int row, int column) {
+        return this.data[row + column * 3];
+    }
+
+    public void assign(int row, int column, float value) {
+        this.data[row + column * 3] = value;
+    }
+
+    public MutableVector3 forward(MutableVector3 dest) {
+        return dest.set(this.data[0], this.data[1], this.data[2]);
+    }
+
+    public MutableVector3 right(MutableVector3 dest) {
+        return dest.set(this.data[3], this.data[4], this.data[5]);
+    }
+
+    public MutableVector3 up(MutableVector3 dest) {
+        return dest.set(this.data[6], this.data[7], this.data[8]);
+    }
+
+    /**
+     * this = {@link Matrix3x3#axisToRotation(Vector3)} of the axis (x, y, z)
+     */
+    public MutableMatrix3x3 setAxisToRotation(float x, float y, float z) {
+        double norm_omega = FastMath.sqrt(x * x + y * y + z * z);
+        if (Math.abs(norm_omega) == 0)
+            norm_omega = 1.1755e-38f;
+
+        final float ux = (float) (x / norm_omega), uy = (float) (y / norm_omega), uz = (float) (z / norm_omega);
+        final double c = FastMath.cos(norm_omega);
+        final double s = FastMath.sin(norm_omega);
+
+        this.data[0] = (float) (ux * ux * (1.0 - c) + c);
+        this.data[3] = (float) (ux * uy * (1.0 - c) - uz * s);
+        this.data[6] = (float) (ux * uz * (1.0 - c) + uy * s);
+
+        this.data[1] = (float) (uy * ux * (1.0 - c) + uz * s);
+        this.data[4] = (float) (uy * uy * (1.0 - c) + c);
+        this.data[7] = (float) (uy * uz * (1.0 - c) - ux * s);
+
+        this.data[2] = (float) (uz * ux * (1.0 - c) - uy * s);
+        this.data[5] = (float) (uz * uy * (1.0 - c) + ux * s);
+        this.data[8] = (float) (uz * uz * (1.0 - c) + c);
+        return this;
+    }
+
+    /**
+     * this = a * b, a and b can be this matrix
+     */
+    public MutableMatrix3x3 setMatrixMul(float[] a, float[] b) {
+        final float[] c = this.tmp;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                float sum = 0.0f;
+                for (int k = 0; k < 3; k++)
+                    sum += a[i + k * 3] * b[k + j * 3];
+                c[i + j * 3] = sum;
+            }
+        }
+        System.arraycopy(c, 0, this.data, 0, 9);
+        return this;
+    }
+
+    public MutableMatrix3x3 setMatrixMul(MutableMatrix3x3 a, MutableMatrix3x3 b) {
+        return this.setMatrixMul(a.data, b.data);
+    }
+
+    public MutableMatrix3x3 setMatrixMul(Matrix3x3 a, Matrix3x3 b) {
+        return this.setMatrixMul(a.data, b.data);
+    }
+
+    /**
+     * this = {@link Matrix3x3#axisToRotation(Vector3)} of the axis (x, y, z) * this, rotates by the angular velocity (x, y, z) / dt
+     */
+    public MutableMatrix3x3 rotate(float x, float y, float z, MutableMatrix3x3 scratch) {
+        scratch.setAxisToRotation(x, y, z);
+        return this.setMatrixMul(scratch.data, this.data);
+    }
+
+    /**
+     * this = the inverse of o, like {@link Matrix3x3#invert()}. o can be this matrix
+     */
+    public MutableMatrix3x3 setInverse(MutableMatrix3x3 o) {
+        final float[] d = o.data, c = this.tmp;
+        final float det = +d[0] * d[4] * d[8]
+                + d[3] * d[7] * d[2]
+                + d[6] * d[1] * d[5]
+                - d[0] * d[7] * d[5]
+                - d[3] * d[1] * d[8]
+                - d[6] * d[4] * d[2];
+        final float inv_detA = 1.0f / det;
+
+        c[0] = (d[4] * d[8] - d[7] * d[5]) * inv_detA;
+        c[3] = (d[6] * d[5] - d[3] * d[8]) * inv_detA;
+        c[6] = (d[3] * d[7] - d[6] * d[4]) * inv_detA;
+        c[1] = (d[7] * d[2] - d[1] * d[8]) * inv_detA;
+        c[4] = (d[0] * d[8] - d[6] * d[2]) * inv_detA;
+        c[7] = (d[6] * d[1] - d[0] * d[7]) * inv_detA;
+        c[2] = (d[1] * d[5] - d[4] * d[2]) * inv_detA;
+        c[5] = (d[3] * d[2] - d[0] * d[5]) * inv_detA;
+        c[8] = (d[0] * d[4] - d[3] * d[1]) * inv_detA;
+        System.arraycopy(c, 0, this.data, 0, 9);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return this.toMatrix3x3().toString();
+    }
+}
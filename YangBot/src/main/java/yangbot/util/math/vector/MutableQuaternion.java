@@ -0,0 +1,134 @@
+package yangbot.util.math.vector;
+
+import net.jafama.FastMath;
+
+/**
+ * Unit quaternion w + xi + yj + zk for integrating an orientation over many small steps, see {@link MutableVector3}.
+ * Rotates the same way as the {@link Matrix3x3} it converts to: local to world.
+ */
+public final class MutableQuaternion {
+
+    public float w = 1, x, y, z;
+
+    public MutableQuaternion() {
+    }
+
+    public MutableQuaternion(Matrix3x3 o) {
+        this.set(o);
+    }
+
+    public MutableQuaternion set(float w, float x, float y, float z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public MutableQuaternion set(MutableQuaternion o) {
+        return this.set(o.w, o.x, o.y, o.z);
+    }
+
+    public MutableQuaternion set(Matrix3x3 o) {
+        return this.setFromMatrix(o.data);
+    }
+
+    public MutableQuaternion set(MutableMatrix3x3 o) {
+        return this.setFromMatrix(o.data);
+    }
+
+    // Shepperd's method, divides by the largest of the four candidates to stay accurate for any rotation
+    private MutableQuaternion setFromMatrix(float[] d) {
+        final float m00 = d[0], m10 = d[1], m20 = d[2];
+        final float m01 = d[3], m11 = d[4], m21 = d[5];
+        final float m02 = d[6], m12 = d[7], m22 = d[8];
+        final float trace = m00 + m11 + m22;
+        if (trace > 0) {
+            final float s = (float) Math.sqrt(trace + 1) * 2;
+            this.set(0.25f * s, (m21 - m12) / s, (m02 - m20) / s, (m10 - m01) / s);
+        } else if (m00 > m11 && m00 > m22) {
+            final float s = (float) Math.sqrt(1 + m00 - m11 - m22) * 2;
+            this.set((m21 - m12) / s, 0.25f * s, (m01 + m10) / s, (m02 + m20) / s);
+        } else if (m11 > m22) {
+            final float s = (float) Math.sqrt(1 + m11 - m00 - m22) * 2;
+            this.set((m02 - m20) / s, (m01 + m10) / s, 0.25f * s, (m12 + m21) / s);
+        } else {
+            final float s = (float) Math.sqrt(1 + m22 - m00 - m11) * 2;
+            this.set((m10 - m01) / s, (m02 + m20) / s, (m12 + m21) / s, 0.25f * s);
+        }
+        return this.normalize();
+    }
+
+    public MutableQuaternion normalize() {
+        final float n = this.w * this.w + this.x * this.x + this.y * this.y + this.z * this.z;
+        if (Math.abs(n - 1) < 1e-3f) {
+            // One newton step for 1 / sqrt(n), plenty for the drift of a single step
+            final float scale = 1.5f - 0.5f * n;
+            return this.set(this.w * scale, this.x * scale, this.y * scale, this.z * scale);
+        }
+        final float scale = (float) (1 / Math.sqrt(n));
+        return this.set(this.w * scale, this.x * scale, this.y * scale, this.z * scale);
+    }
+
+    /**
+     * Rotates by the world space angular velocity (wx, wy, wz) for dt, like {@link MutableMatrix3x3#rotate(float, float, float, MutableMatrix3x3)}
+     */
+    public MutableQuaternion integrate(float wx, float wy, float wz, float dt) {
+        // Rotation by angle |w| * dt: (cos(h), sin(h) * w / |w|) with h = |w| * dt / 2
+        final float hx = wx * dt * 0.5f, hy = wy * dt * 0.5f, hz = wz * dt * 0.5f;
+        final float h2 = hx * hx + hy * hy + hz * hz;
+        final float c, sinc; // cos(h), sin(h) / h
+        if (h2 < 0.09f) {
+            // Taylor series, exact to float precision up to h = 0.3. A tick at max angular velocity is h = 0.05
+            c = 1 - h2 * (1 / 2f - h2 * (1 / 24f - h2 * (1 / 720f)));
+            sinc = 1 - h2 * (1 / 6f - h2 * (1 / 120f - h2 * (1 / 5040f)));
+        } else {
+            final double h = Math.sqrt(h2);
+            c = (float) FastMath.cos(h);
+            sinc = (float) (FastMath.sin(h) / h);
+        }
+        final float dw = c, dx = hx * sinc, dy = hy * sinc, dz = hz * sinc;
+
+        // this = d * this
+        return this.set(
+                dw * this.w - dx * this.x - dy * this.y - dz * this.z,
+                dw * this.x + dx * this.w + dy * this.z - dz * this.y,
+                dw * this.y - dx * this.z + dy * this.w + dz * this.x,
+                dw * this.z + dx * this.y - dy * this.x + dz * this.w
+        ).normalize();
+    }
+
+    public MutableMatrix3x3 toMatrix(MutableMatrix3x3 dest) {
+        this.toMatrix(dest.data);
+        return dest;
+    }
+
+    public Matrix3x3 toMatrix3x3() {
+        final Matrix3x3 mat = new Matrix3x3();
+        this.toMatrix(mat.data);
+        return mat;
+    }
+
+    private void toMatrix(float[] d) {
+        final float xx = this.x * this.x, yy = this.y * this.y, zz = this.z * this.z;
+        final float xy = this.x * this.y, xz = this.x * this.z, yz = this.y * this.z;
+        final float wx = this.w * this.x, wy = this.w * this.y, wz = this.w * this.z;
+
+        d[0] = 1 - 2 * (yy + zz);
+        d[1] = 2 * (xy + wz);
+        d[2] = 2 * (xz - wy);
+
+        d[3] = 2 * (xy - wz);
+        d[4] = 1 - 2 * (xx + zz);
+        d[5] = 2 * (yz + wx);
+
+        d[6] = 2 * (xz + wy);
+        d[7] = 2 * (yz - wx);
+        d[8] = 1 - 2 * (xx + yy);
+    }
+
+    @Override
+    public String toString() {
+        return "MutableQuaternion(w=" + this.w + ", x=" + this.x + ", y=" + this.y + ", z=" + this.z + ")";
+    }
+}
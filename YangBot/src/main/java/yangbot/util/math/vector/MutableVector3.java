@@ -0,0 +1,235 @@
+package yangbot.util.math.vector;
+
+import net.jafama.FastMath;
+
+/**
+ * Mutable counterpart of {@link Vector3}, for inner loops that would otherwise allocate a vector per operation.
+ * <p>
+ * Operations modify this vector and return it for chaining, the setX(a, b) variants write the result of a and b into this vector.
+ * The arithmetic matches the immutable operations of the same name, results are the same floats.
+ * Meant as scratch space owned by one loop (or thread), hand out {@link #toVector3()} copies instead of the vector itself.
+ */
+public final class MutableVector3 {
+
+    public float x, y, z;
+
+    public MutableVector3() {
+    }
+
+    public MutableVector3(float x, float y, float z) {
+        this.set(x, y, z);
+    }
+
+    public MutableVector3(Vector3 o) {
+        this.set(o);
+    }
+
+    public MutableVector3 set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public MutableVector3 set(Vector3 o) {
+        return this.set(o.x, o.y, o.z);
+    }
+
+    public MutableVector3 set(MutableVector3 o) {
+        return this.set(o.x, o.y, o.z);
+    }
+
+    public Vector3 toVector3() {
+        return new Vector3(this.x, this.y, this.z);
+    }
+
+    public float get(int index) {
+        switch (index) {
+            case 0:
+                return this.x;
+            case 1:
+                return this.y;
+            case 2:
+                return this.z;
+        }
+        throw new IllegalArgumentException("Invalid index: " + index);
+    }
+
+    public MutableVector3 add(float x, float y, float z) {
+        this.x += x;
+        this.y += y;
+        this.z += z;
+        return this;
+    }
+
+    public MutableVector3 add(Vector3 o) {
+        return this.add(o.x, o.y, o.z);
+    }
+
+    public MutableVector3 add(MutableVector3 o) {
+        return this.add(o.x, o.y, o.z);
+    }
+
+    /**
+     * this += o * scale
+     */
+    public MutableVector3 addScaled(Vector3 o, float scale) {
+        return this.add(o.x * scale, o.y * scale, o.z * scale);
+    }
+
+    public MutableVector3 addScaled(MutableVector3 o, float scale) {
+        return this.add(o.x * scale, o.y * scale, o.z * scale);
+    }
+
+    public MutableVector3 sub(float x, float y, float z) {
+        this.x -= x;
+        this.y -= y;
+        this.z -= z;
+        return this;
+    }
+
+    public MutableVector3 sub(Vector3 o) {
+        return this.sub(o.x, o.y, o.z);
+    }
+
+    public MutableVector3 sub(MutableVector3 o) {
+        return this.sub(o.x, o.y, o.z);
+    }
+
+    public MutableVector3 mul(double scale) {
+        return this.set((float) (this.x * scale), (float) (this.y * scale), (float) (this.z * scale));
+    }
+
+    public MutableVector3 mul(float xS, float yS, float zS) {
+        this.x *= xS;
+        this.y *= yS;
+        this.z *= zS;
+        return this;
+    }
+
+    public MutableVector3 mul(Vector3 o) {
+        return this.mul(o.x, o.y, o.z);
+    }
+
+    public MutableVector3 mul(MutableVector3 o) {
+        return this.mul(o.x, o.y, o.z);
+    }
+
+    public MutableVector3 div(double scale) {
+        return this.set((float) (this.x / scale), (float) (this.y / scale), (float) (this.z / scale));
+    }
+
+    public MutableVector3 normalize() {
+        final float len = this.x * this.x + this.y * this.y + this.z * this.z;
+        if (len == 0)
+            return this.set(0, 0, 0);
+        final double scale = 1 / FastMath.sqrt(len);
+        return this.set((float) (this.x * scale), (float) (this.y * scale), (float) (this.z * scale));
+    }
+
+    public float dot(float x, float y, float z) {
+        return this.x * x + this.y * y + this.z * z;
+    }
+
+    public float dot(Vector3 o) {
+        return this.dot(o.x, o.y, o.z);
+    }
+
+    public float dot(MutableVector3 o) {
+        return this.dot(o.x, o.y, o.z);
+    }
+
+    public double magnitudeSquared() {
+        return this.x * this.x + this.y * this.y + this.z * this.z;
+    }
+
+    public double magnitude() {
+        return FastMath.sqrt(this.magnitudeSquared());
+    }
+
+    public double distance(Vector3 o) {
+        final float dx = this.x - o.x, dy = this.y - o.y, dz = this.z - o.z;
+        return FastMath.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * this = a - b
+     */
+    public MutableVector3 setSub(Vector3 a, Vector3 b) {
+        return this.set(a.x - b.x, a.y - b.y, a.z - b.z);
+    }
+
+    /**
+     * this = a x b, either can be this vector
+     */
+    public MutableVector3 setCross(float ax, float ay, float az, float bx, float by, float bz) {
+        return this.set(ay * bz - az * by, az * bx - ax * bz, ax * by - ay * bx);
+    }
+
+    public MutableVector3 setCross(MutableVector3 a, MutableVector3 b) {
+        return this.setCross(a.x, a.y, a.z, b.x, b.y, b.z);
+    }
+
+    public MutableVector3 setCross(Vector3 a, MutableVector3 b) {
+        return this.setCross(a.x, a.y, a.z, b.x, b.y, b.z);
+    }
+
+    /**
+     * this = m * v, like {@link Matrix3x3#dot(Vector3)}. v can be this vector
+     */
+    public MutableVector3 setDot(Matrix3x3 m, float vx, float vy, float vz) {
+        final float[] d = m.data;
+        return this.set(
+                d[0] * vx + d[3] * vy + d[6] * vz,
+                d[1] * vx + d[4] * vy + d[7] * vz,
+                d[2] * vx + d[5] * vy + d[8] * vz);
+    }
+
+    public MutableVector3 setDot(Matrix3x3 m, MutableVector3 v) {
+        return this.setDot(m, v.x, v.y, v.z);
+    }
+
+    public MutableVector3 setDot(MutableMatrix3x3 m, float vx, float vy, float vz) {
+        final float[] d = m.data;
+        return this.set(
+                d[0] * vx + d[3] * vy + d[6] * vz,
+                d[1] * vx + d[4] * vy + d[7] * vz,
+                d[2] * vx + d[5] * vy + d[8] * vz);
+    }
+
+    public MutableVector3 setDot(MutableMatrix3x3 m, MutableVector3 v) {
+        return this.setDot(m, v.x, v.y, v.z);
+    }
+
+    /**
+     * this = v * m (the transpose of m times v), like {@link Vector3#dot(Matrix3x3)}. v can be this vector
+     */
+    public MutableVector3 setDotTransposed(float vx, float vy, float vz, Matrix3x3 m) {
+        final float[] d = m.data;
+        return this.set(
+                vx * d[0] + vy * d[1] + vz * d[2],
+                vx * d[3] + vy * d[4] + vz * d[5],
+                vx * d[6] + vy * d[7] + vz * d[8]);
+    }
+
+    public MutableVector3 setDotTransposed(MutableVector3 v, Matrix3x3 m) {
+        return this.setDotTransposed(v.x, v.y, v.z, m);
+    }
+
+    public MutableVector3 setDotTransposed(float vx, float vy, float vz, MutableMatrix3x3 m) {
+        final float[] d = m.data;
+        return this.set(
+                vx * d[0] + vy * d[1] + vz * d[2],
+                vx * d[3] + vy * d[4] + vz * d[5],
+                vx * d[6] + vy * d[7] + vz * d[8]);
+    }
+
+    public MutableVector3 setDotTransposed(MutableVector3 v, MutableMatrix3x3 m) {
+        return this.setDotTransposed(v.x, v.y, v.z, m);
+    }
+
+    @Override
+    public String toString() {
+        return this.toVector3().toString();
+    }
+}
@@ -0,0 +1,86 @@
+package yangbot.util.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size log-linear histogram of durations in nanoseconds, in the style of HdrHistogram.
+ * Every power of two is split into 32 buckets, so percentiles are accurate to about 3%. Recording doesn't allocate.
+ */
+public final class LatencyHistogram {
+
+    private static final int UNIT_SHIFT = 10; // Bucket widths start at 1024ns
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 26; // Largest tracked value is about 2^(10 + 5 + 27)ns, over an hour
+    private static final long MAX_UNITS = (2L * SUB_BUCKETS << MAX_SHIFT) - 1;
+
+    private final long[] counts = new long[(MAX_SHIFT + 2) * SUB_BUCKETS];
+    private long totalCount = 0;
+    private long maxValue = 0;
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        this.counts[bucketIndex(nanos)]++;
+        this.totalCount++;
+        if (nanos > this.maxValue)
+            this.maxValue = nanos;
+    }
+
+    // The first 2 * SUB_BUCKETS buckets are linear, after that each power of two gets SUB_BUCKETS buckets
+    static int bucketIndex(long nanos) {
+        final long units = Math.min(nanos >>> UNIT_SHIFT, MAX_UNITS);
+        if (units < 2 * SUB_BUCKETS)
+            return (int) units;
+        final int shift = 63 - Long.numberOfLeadingZeros(units) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((units >>> shift) - SUB_BUCKETS);
+    }
+
+    // Largest value that lands in the bucket
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return ((index + 1L) << UNIT_SHIFT) - 1;
+        final int shift = index / SUB_BUCKETS - 1;
+        final long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << (shift + UNIT_SHIFT)) - 1;
+    }
+
+    /**
+     * Value that quantile (0 to 1) of the recorded values are at or below, rounded up to the end of its bucket but never above the max
+     */
+    public long valueAtQuantile(double quantile) {
+        if (this.totalCount == 0)
+            return 0;
+        final long target = Math.max(1, (long) Math.ceil(quantile * this.totalCount));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= target)
+                return Math.min(bucketUpperBound(i), this.maxValue);
+        }
+        return this.maxValue;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++)
+            this.counts[i] += other.counts[i];
+        this.totalCount += other.totalCount;
+        this.maxValue = Math.max(this.maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        if (this.totalCount == 0)
+            return;
+        Arrays.fill(this.counts, 0);
+        this.totalCount = 0;
+        this.maxValue = 0;
+    }
+}
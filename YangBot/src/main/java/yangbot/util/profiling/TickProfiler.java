@@ -0,0 +1,227 @@
+package yangbot.util.profiling;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Where the time of a tick goes, one per bot thread. Phases and strategies record their durations into fixed size histograms,
+ * every {@link #reportInterval} ticks p50/p99/max of those ticks are printed (and appended to {@link #dumpFile}) and the histograms start over.
+ * The bot thread only copies the histograms for a report, formatting and writing it happens on a background thread.
+ * <p>
+ * Usage: {@code long start = profiler.start(); ...; profiler.end(Phase.X, start);}, or {@link #accumulate(Phase, long)} for phases that happen in pieces during a tick
+ */
+public final class TickProfiler {
+
+    public enum Phase {
+        TICK("tick"), // Whole processInput
+        PACKET("packet"), // Reading the GameTickPacket into a DataPacket, quick chat
+        GAME_DATA("GameData.update"),
+        BALL_PREDICTION("ball prediction"),
+        STRATEGY("strategy"), // Planning and stepping, per class in the strategy section of the report
+        RENDER("renderer"),
+        OUTPUT("output"),
+        REPORT("report hand-off"); // Copying the histograms for the previous report, on the bot thread
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    public static boolean enabled = !Boolean.getBoolean("yangbot.profile.disable");
+    public static int reportInterval = Integer.getInteger("yangbot.profile.interval", 120 * 60); // Ticks, a minute at 120hz
+    public static String dumpFile = System.getProperty("yangbot.profile.file"); // Reports are appended to it, null to only print them
+
+    // Shared by all profilers, reports of one profiler are written in order
+    private static final ExecutorService reporter = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "TickProfiler reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ThreadLocal<TickProfiler> profilers = ThreadLocal.withInitial(() -> new TickProfiler(Thread.currentThread().getName()));
+
+    private final String name;
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final long[] pending = new long[Phase.values().length]; // Accumulated this tick, recorded by endTick. -1 if nothing was accumulated
+    // Strategy classes get their histograms the first time they are seen, there aren't many of them
+    private final Map<Class<?>, LatencyHistogram> strategyPlans = new HashMap<>();
+    private final Map<Class<?>, LatencyHistogram> strategySteps = new HashMap<>();
+    private long ticks = 0, ticksSinceReset = 0;
+
+    public TickProfiler(String name) {
+        this.name = name;
+        for (int i = 0; i < this.phases.length; i++)
+            this.phases[i] = new LatencyHistogram();
+        Arrays.fill(this.pending, -1);
+    }
+
+    public static TickProfiler current() {
+        return profilers.get();
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void end(Phase phase, long start) {
+        if (enabled)
+            this.phases[phase.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Ends a phase and returns the start of the next one
+     */
+    public long next(Phase phase, long start) {
+        if (!enabled)
+            return 0;
+        final long now = System.nanoTime();
+        this.phases[phase.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Adds the time since start to the phase, it's recorded as one duration at the end of the tick. Returns the start of the next piece
+     */
+    public long accumulate(Phase phase, long start) {
+        if (!enabled)
+            return 0;
+        final long now = System.nanoTime();
+        final int i = phase.ordinal();
+        this.pending[i] = Math.max(this.pending[i], 0) + now - start;
+        return now;
+    }
+
+    public void endStrategyPlan(Class<?> strategy, long nanos) {
+        if (enabled)
+            this.strategyPlans.computeIfAbsent(strategy, c -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void endStrategyStep(Class<?> strategy, long nanos) {
+        if (enabled)
+            this.strategySteps.computeIfAbsent(strategy, c -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Records the whole tick, hands a report to the background thread and starts over every {@link #reportInterval} ticks
+     */
+    public void endTick(long start) {
+        if (!enabled)
+            return;
+        this.end(Phase.TICK, start);
+        for (int i = 0; i < this.pending.length; i++) {
+            if (this.pending[i] >= 0) {
+                this.phases[i].record(this.pending[i]);
+                this.pending[i] = -1;
+            }
+        }
+        this.ticks++;
+        this.ticksSinceReset++;
+        if (reportInterval > 0 && this.ticks % reportInterval == 0) {
+            final long reportStart = System.nanoTime();
+            final TickProfiler snapshot = this.copy();
+            final String fileName = dumpFile;
+            this.reset();
+            reporter.execute(() -> {
+                final String report = snapshot.report();
+                System.out.print(report);
+                if (fileName != null)
+                    snapshot.dump(fileName, report);
+            });
+            // Shows up in the next report, after the tick it happened in
+            this.phases[Phase.REPORT.ordinal()].record(System.nanoTime() - reportStart);
+        }
+    }
+
+    private TickProfiler copy() {
+        final TickProfiler copy = new TickProfiler(this.name);
+        copy.ticks = this.ticks;
+        copy.ticksSinceReset = this.ticksSinceReset;
+        for (int i = 0; i < this.phases.length; i++)
+            copy.phases[i].add(this.phases[i]);
+        this.strategyPlans.forEach((c, histogram) -> copy.strategyPlans.computeIfAbsent(c, k -> new LatencyHistogram()).add(histogram));
+        this.strategySteps.forEach((c, histogram) -> copy.strategySteps.computeIfAbsent(c, k -> new LatencyHistogram()).add(histogram));
+        return copy;
+    }
+
+    // Waits until the reports handed off so far are written
+    static void awaitReports() throws InterruptedException {
+        try {
+            reporter.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public LatencyHistogram getPhase(Phase phase) {
+        return this.phases[phase.ordinal()];
+    }
+
+    public LatencyHistogram getStrategyPlan(Class<?> strategy) {
+        return this.strategyPlans.get(strategy);
+    }
+
+    public LatencyHistogram getStrategyStep(Class<?> strategy) {
+        return this.strategySteps.get(strategy);
+    }
+
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    public String report() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Tick profile %s, %d ticks up to tick %d, ms:%n", this.name, this.ticksSinceReset, this.ticks));
+        sb.append(String.format("  %-40s %8s %8s %8s %8s%n", "", "count", "p50", "p99", "max"));
+        for (var phase : Phase.values())
+            appendLine(sb, phase.label, this.phases[phase.ordinal()]);
+        appendStrategies(sb, "plan", this.strategyPlans);
+        appendStrategies(sb, "step", this.strategySteps);
+        return sb.toString();
+    }
+
+    private static void appendStrategies(StringBuilder sb, String kind, Map<Class<?>, LatencyHistogram> histograms) {
+        final List<Map.Entry<Class<?>, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+        entries.sort((a, b) -> a.getKey().getSimpleName().compareTo(b.getKey().getSimpleName()));
+        for (var entry : entries) {
+            if (entry.getValue().getTotalCount() > 0)
+                appendLine(sb, "  " + entry.getKey().getSimpleName() + " " + kind, entry.getValue());
+        }
+    }
+
+    private static void appendLine(StringBuilder sb, String label, LatencyHistogram histogram) {
+        sb.append(String.format("  %-40s %8d %8.3f %8.3f %8.3f%n", label, histogram.getTotalCount(),
+                histogram.valueAtQuantile(0.5) * 1e-6, histogram.valueAtQuantile(0.99) * 1e-6, histogram.getMaxValue() * 1e-6));
+    }
+
+    public void dump(String fileName) {
+        this.dump(fileName, this.report());
+    }
+
+    private void dump(String fileName, String report) {
+        try (FileWriter writer = new FileWriter(fileName, true)) {
+            writer.write(report);
+        } catch (IOException e) {
+            System.err.println("Could not write tick profile to " + fileName);
+            e.printStackTrace();
+        }
+    }
+
+    public void reset() {
+        this.ticksSinceReset = 0;
+        for (var histogram : this.phases)
+            histogram.reset();
+        this.strategyPlans.values().forEach(LatencyHistogram::reset);
+        this.strategySteps.values().forEach(LatencyHistogram::reset);
+    }
+}
@@ -5,6 +5,7 @@ import rlbot.gamestate.*;
 import yangbot.cpp.YangBotJNAInterop;
 import yangbot.input.*;
 import yangbot.util.AdvancedRenderer;
+import yangbot.util.BallPredictionManager;
 import yangbot.util.YangBallPrediction;
 import yangbot.util.math.MathUtils;
 import yangbot.util.math.vector.Vector3;
@@ -28,6 +29,7 @@ public class Scenario {
     private float timer = 0;
     private float lastTime = -1;
     private int numInvocations = 0;
+    private final BallPredictionManager ballPredictionManager = BallPredictionManager.createIfEnabled(RLConstants.tickRate, 5); // null: use the native prediction
 
     private Scenario() {
     }
@@ -40,7 +42,9 @@ public class Scenario {
 
         final GameData gameData = GameData.current();
         final AdvancedRenderer renderer = AdvancedRenderer.forBotIndex(input.playerIndex);
-        gameData.update(input.car, new ImmutableBallData(input.ball), input.allCars, input.gameInfo, dt, renderer, YangBotJNAInterop.getBallPrediction(input.ball, RLConstants.tickRate, 5));
+        final ImmutableBallData ball = new ImmutableBallData(input.ball);
+        final YangBallPrediction ballPrediction = this.ballPredictionManager != null ? this.ballPredictionManager.update(ball) : YangBotJNAInterop.getBallPrediction(input.ball, RLConstants.tickRate, 5);
+        gameData.update(input.car, ball, input.allCars, input.gameInfo, dt, renderer, ballPrediction);
         ControlsOutput controlsOutput = new ControlsOutput();
 
         switch (this.state) {
@@ -107,6 +111,8 @@ public class Scenario {
     public void reset() {
         this.state = State.RESET;
         this.numInvocations++;
+        if (this.ballPredictionManager != null)
+            this.ballPredictionManager.reset();
     }
 
     public enum State {
@@ -0,0 +1,36 @@
+package yangbot.optimizers.model;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Only loaded through {@link MatMulKernel#select()} when the jdk.incubator.vector module is present
+ */
+class VectorMatMulKernel implements MatMulKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void multiply(float[] weights, int rows, int cols, float[] inputs, int batch, float[] out) {
+        final int upperBound = SPECIES.loopBound(cols);
+        for (int b = 0; b < batch; b++) {
+            final int inOffset = b * cols;
+            final int outOffset = b * rows;
+            for (int r = 0; r < rows; r++) {
+                final int wOffset = r * cols;
+                var acc = FloatVector.zero(SPECIES);
+                int c = 0;
+                for (; c < upperBound; c += SPECIES.length()) {
+                    var w = FloatVector.fromArray(SPECIES, weights, wOffset + c);
+                    var x = FloatVector.fromArray(SPECIES, inputs, inOffset + c);
+                    acc = w.fma(x, acc);
+                }
+                float sum = acc.reduceLanes(VectorOperators.ADD);
+                for (; c < cols; c++)
+                    sum += weights[wOffset + c] * inputs[inOffset + c];
+                out[outOffset + r] = sum;
+            }
+        }
+    }
+}
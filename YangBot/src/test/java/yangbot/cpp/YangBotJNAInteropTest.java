@@ -0,0 +1,45 @@
+package yangbot.cpp;
+
+import com.sun.jna.Memory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.BallData;
+import yangbot.util.math.vector.Vector3;
+
+public class YangBotJNAInteropTest {
+
+    private static FlatPhysics read(Memory memory) {
+        return FlatPhysics.getRootAsFlatPhysics(memory.getByteBuffer(0, memory.size()));
+    }
+
+    @Test
+    public void scratchReusesAndGrowsInputs() {
+        // Scratch doesn't need the native library, only the outer class does
+        final YangBotJNAInterop.Scratch scratch = new YangBotJNAInterop.Scratch();
+        final BallData ball = new BallData(new Vector3(100, -200, 300), new Vector3(1, 2, 3), new Vector3(0.1f, 0.2f, 0.3f));
+
+        final Memory first = scratch.finish(0, ball.makeFlatPhysics(scratch.builder));
+        Assertions.assertEquals(-200, read(first).position().y());
+
+        ball.position = new Vector3(5, 6, 7);
+        final Memory second = scratch.finish(0, ball.makeFlatPhysics(scratch.builder));
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(7, read(second).position().z());
+
+        // Other slots don't share memory
+        final Memory otherSlot = scratch.finish(1, ball.makeFlatPhysics(scratch.builder));
+        Assertions.assertNotSame(first, otherSlot);
+
+        // Larger than the slot
+        final int bigSize = (int) first.size() * 4;
+        final Memory grown = scratch.finish(0, scratch.builder.createString("x".repeat(bigSize)));
+        Assertions.assertNotSame(first, grown);
+        Assertions.assertTrue(grown.size() >= bigSize, "" + grown.size());
+
+        ball.position = new Vector3(-1, -2, -3);
+        final Memory afterGrowth = scratch.finish(0, ball.makeFlatPhysics(scratch.builder));
+        Assertions.assertSame(grown, afterGrowth);
+        Assertions.assertEquals(-2, read(afterGrowth).position().y());
+        Assertions.assertEquals(0.3f, read(afterGrowth).angularVelocity().z());
+    }
+}
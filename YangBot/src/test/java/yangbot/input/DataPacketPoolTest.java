@@ -0,0 +1,192 @@
+package yangbot.input;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import rlbot.flat.*;
+
+import java.lang.management.ManagementFactory;
+
+public class DataPacketPoolTest {
+
+    private static final int NUM_PLAYERS = 4;
+
+    // A packet like the framework would hand out, tick moves everything a bit
+    private static GameTickPacket packet(int tick, boolean touched) {
+        final FlatBufferBuilder builder = new FlatBufferBuilder(1024);
+        final float t = tick / 120f;
+
+        final int[] players = new int[NUM_PLAYERS];
+        for (int i = 0; i < NUM_PLAYERS; i++) {
+            final int name = builder.createString((i % 2 == 0 ? "Yang" : "Human") + " (" + (i + 1) + ")");
+            final int physics = physics(builder, 500 * i + 1400 * t, -2000 + 100 * i, 17 + i, 0.1f * i, 0.2f * i + t);
+            ScoreInfo.startScoreInfo(builder);
+            ScoreInfo.addGoals(builder, i);
+            final int score = ScoreInfo.endScoreInfo(builder);
+            BoxShape.startBoxShape(builder);
+            BoxShape.addLength(builder, 118);
+            BoxShape.addWidth(builder, 84.2f);
+            BoxShape.addHeight(builder, 36.2f);
+            final int hitbox = BoxShape.endBoxShape(builder);
+
+            PlayerInfo.startPlayerInfo(builder);
+            PlayerInfo.addPhysics(builder, physics);
+            PlayerInfo.addScoreInfo(builder, score);
+            PlayerInfo.addHasWheelContact(builder, i != 1);
+            PlayerInfo.addIsBot(builder, i % 2 == 0);
+            PlayerInfo.addJumped(builder, i == 1);
+            PlayerInfo.addName(builder, name);
+            PlayerInfo.addTeam(builder, i / 2);
+            PlayerInfo.addBoost(builder, 10 * i + tick % 50);
+            PlayerInfo.addHitbox(builder, hitbox);
+            PlayerInfo.addHitboxOffset(builder, Vector3.createVector3(builder, 13.9f, 0, 20.8f));
+            players[i] = PlayerInfo.endPlayerInfo(builder);
+        }
+        final int playersVector = GameTickPacket.createPlayersVector(builder, players);
+
+        int touch = 0;
+        if (touched) {
+            final int touchName = builder.createString("Yang (1)");
+            Touch.startTouch(builder);
+            Touch.addPlayerName(builder, touchName);
+            Touch.addGameSeconds(builder, 10);
+            Touch.addLocation(builder, Vector3.createVector3(builder, 0, -100, 93));
+            Touch.addNormal(builder, Vector3.createVector3(builder, 0, 1, 0));
+            touch = Touch.endTouch(builder);
+        }
+        final int ballPhysics = physics(builder, 0, 0, 93 + 500 * t, 0, 0);
+        BallInfo.startBallInfo(builder);
+        BallInfo.addPhysics(builder, ballPhysics);
+        if (touched)
+            BallInfo.addLatestTouch(builder, touch);
+        final int ball = BallInfo.endBallInfo(builder);
+
+        GameInfo.startGameInfo(builder);
+        GameInfo.addSecondsElapsed(builder, 10 + t);
+        GameInfo.addWorldGravityZ(builder, RLConstants.gravity.z);
+        GameInfo.addIsRoundActive(builder, true);
+        final int gameInfo = GameInfo.endGameInfo(builder);
+
+        GameTickPacket.startGameTickPacket(builder);
+        GameTickPacket.addPlayers(builder, playersVector);
+        GameTickPacket.addBall(builder, ball);
+        GameTickPacket.addGameInfo(builder, gameInfo);
+        builder.finish(GameTickPacket.endGameTickPacket(builder));
+        return GameTickPacket.getRootAsGameTickPacket(builder.dataBuffer());
+    }
+
+    private static int physics(FlatBufferBuilder builder, float x, float y, float z, float pitch, float yaw) {
+        Physics.startPhysics(builder);
+        Physics.addLocation(builder, Vector3.createVector3(builder, x, y, z));
+        Physics.addRotation(builder, Rotator.createRotator(builder, pitch, yaw, 0));
+        Physics.addVelocity(builder, Vector3.createVector3(builder, 1400, 10 * x / 1000, 0));
+        Physics.addAngularVelocity(builder, Vector3.createVector3(builder, 0, 0, yaw));
+        return Physics.endPhysics(builder);
+    }
+
+    private static void assertSameVector(yangbot.util.math.vector.Vector3 expected, yangbot.util.math.vector.Vector3 actual) {
+        Assertions.assertEquals(0, expected.distance(actual), 1e-4f, expected + " " + actual);
+    }
+
+    private static void assertSameCar(CarData expected, CarData actual) {
+        assertSameVector(expected.position, actual.position);
+        assertSameVector(expected.velocity, actual.velocity);
+        assertSameVector(expected.angularVelocity, actual.angularVelocity);
+        assertSameVector(expected.orientation.forward(), actual.orientation.forward());
+        assertSameVector(expected.orientation.up(), actual.orientation.up());
+        assertSameVector(expected.hitbox.getPermF(), actual.hitbox.getPermF());
+        assertSameVector(expected.hitbox.hitboxOffset, actual.hitbox.hitboxOffset);
+        Assertions.assertEquals(expected.boost, actual.boost);
+        Assertions.assertEquals(expected.team, actual.team);
+        Assertions.assertEquals(expected.isBot, actual.isBot);
+        Assertions.assertEquals(expected.hasWheelContact, actual.hasWheelContact);
+        Assertions.assertEquals(expected.jumped, actual.jumped);
+        Assertions.assertEquals(expected.goalsScored, actual.goalsScored);
+        Assertions.assertEquals(expected.name, actual.name);
+        Assertions.assertEquals(expected.strippedName, actual.strippedName);
+        Assertions.assertEquals(expected.playerIndex, actual.playerIndex);
+        Assertions.assertEquals(expected.elapsedSeconds, actual.elapsedSeconds);
+    }
+
+    @Test
+    public void pooledMatchesFresh() {
+        final DataPacketPool pool = new DataPacketPool(1);
+        for (int tick = 0; tick < 10; tick++) {
+            final GameTickPacket request = packet(tick, tick >= 5);
+            final DataPacket fresh = new DataPacket(request, 1);
+            final DataPacket pooled = pool.next(request);
+
+            Assertions.assertEquals(NUM_PLAYERS, pooled.allCars.size());
+            for (int i = 0; i < NUM_PLAYERS; i++)
+                assertSameCar(fresh.allCars.get(i), pooled.allCars.get(i));
+            Assertions.assertSame(pooled.allCars.get(1), pooled.car);
+            Assertions.assertEquals(fresh.team, pooled.team);
+            Assertions.assertEquals(fresh.gameInfo.secondsElapsed(), pooled.gameInfo.secondsElapsed());
+
+            assertSameVector(fresh.ball.position, pooled.ball.position);
+            assertSameVector(fresh.ball.velocity, pooled.ball.velocity);
+            Assertions.assertEquals(fresh.ball.hasBeenTouched, pooled.ball.hasBeenTouched);
+            if (tick >= 5)
+                assertSameVector(fresh.ball.latestTouch.position, pooled.ball.latestTouch.position);
+            else
+                Assertions.assertNull(pooled.ball.latestTouch);
+        }
+    }
+
+    @Test
+    public void buffersAlternate() {
+        final DataPacketPool pool = new DataPacketPool(0);
+        final DataPacket first = pool.next(packet(0, true));
+        final CarData firstCar = first.car;
+        final var firstPosition = firstCar.position;
+        final var touch = first.ball.latestTouch;
+        final DataPacket snapshot = first.snapshot();
+
+        final DataPacket second = pool.next(packet(1, true));
+        Assertions.assertNotSame(first, second);
+        Assertions.assertNotSame(firstCar, second.car);
+        Assertions.assertSame(firstPosition, firstCar.position); // Still valid the tick after
+
+        final DataPacket third = pool.next(packet(2, true));
+        Assertions.assertSame(first, third);
+        Assertions.assertSame(firstCar, third.car);
+        Assertions.assertTrue(firstPosition.distance(firstCar.position) > 1);
+        Assertions.assertSame(touch, third.ball.latestTouch); // Same touch isn't read again
+
+        // The snapshot still has the first tick
+        Assertions.assertNotSame(firstCar, snapshot.car);
+        Assertions.assertSame(snapshot.allCars.get(0), snapshot.car);
+        assertSameVector(firstPosition, snapshot.car.position);
+        Assertions.assertEquals(10, snapshot.gameInfo.secondsElapsed());
+        Assertions.assertEquals(10, snapshot.car.elapsedSeconds);
+        Assertions.assertEquals(10 + 2 / 120f, third.car.elapsedSeconds);
+    }
+
+    @Test
+    public void allocationPerTick() {
+        final int ticks = 2000;
+        final GameTickPacket[] requests = new GameTickPacket[ticks];
+        for (int i = 0; i < ticks; i++)
+            requests[i] = packet(i, true);
+
+        final var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final DataPacketPool pool = new DataPacketPool(0);
+        final long[] bytes = new long[2];
+        float tmp = 0;
+        for (int rep = 0; rep < 3; rep++) { // JIT
+            for (int mode = 0; mode < 2; mode++) {
+                final long before = threadBean.getCurrentThreadAllocatedBytes();
+                for (var request : requests) {
+                    final DataPacket packet = mode == 0 ? new DataPacket(request, 0) : pool.next(request);
+                    tmp += packet.car.boost;
+                }
+                bytes[mode] = (threadBean.getCurrentThreadAllocatedBytes() - before) / ticks;
+            }
+        }
+
+        System.out.println("DataPacket with " + NUM_PLAYERS + " cars: " + bytes[0] + " bytes per tick new, " + bytes[1] + " bytes per tick pooled " + tmp);
+        Assertions.assertTrue(bytes[1] * 3 < bytes[0], bytes[1] + " " + bytes[0]);
+        // Only the immutable vectors and matrices of the cars and ball
+        Assertions.assertTrue(bytes[1] < NUM_PLAYERS * 600 + 200, "" + bytes[1]);
+    }
+}
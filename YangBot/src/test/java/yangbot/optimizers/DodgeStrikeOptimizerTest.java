@@ -0,0 +1,121 @@
+package yangbot.optimizers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.*;
+import yangbot.optimizers.graders.OffensiveGrader;
+import yangbot.strategy.manuever.DodgeManeuver;
+import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.List;
+
+public class DodgeStrikeOptimizerTest {
+
+    private static DodgeStrikeOptimizer solve(int parallelism) {
+        return solve(parallelism, false, 0.6f, true);
+    }
+
+    private static DodgeStrikeOptimizer solve(int parallelism, boolean adaptiveSearch, float maxJumpDelay) {
+        return solve(parallelism, adaptiveSearch, maxJumpDelay, true);
+    }
+
+    private static DodgeStrikeOptimizer solve(int parallelism, boolean adaptiveSearch, float maxJumpDelay, boolean shareSimulationPrefix) {
+        final CarData car = new CarData(new Vector3(200, -1200, RLConstants.carElevation), new Vector3(0, 1200, 0), new Vector3(), Matrix3x3.lookAt(new Vector3(0, 1, 0), new Vector3(0, 0, 1)));
+        final BallData ball = new BallData(new Vector3(150, -500, 160), new Vector3(0, 0, 250), new Vector3());
+        return solve(car, ball, parallelism, adaptiveSearch, maxJumpDelay, shareSimulationPrefix);
+    }
+
+    private static DodgeStrikeOptimizer solve(CarData car, BallData ball, int parallelism, boolean adaptiveSearch, float maxJumpDelay, boolean shareSimulationPrefix) {
+        car.hasWheelContact = true;
+        car.elapsedSeconds = 10;
+        ball.elapsedSeconds = 10;
+
+        final GameData gameData = new GameData(0L);
+        gameData.update(car, new ImmutableBallData(ball), List.of(car), RLConstants.gravity.z, RLConstants.tickFrequency, null, BallSimulator.getBallPrediction(ball, RLConstants.tickRate, 5));
+
+        final DodgeStrikeOptimizer optimizer = new DodgeStrikeOptimizer();
+        optimizer.parallelism = parallelism;
+        optimizer.adaptiveSearch = adaptiveSearch;
+        optimizer.maxJumpDelay = maxJumpDelay;
+        optimizer.shareSimulationPrefix = shareSimulationPrefix;
+        optimizer.debugMessages = false;
+        optimizer.useJavaBallSimulation = true; // No native library in unit tests
+        optimizer.customGrader = new OffensiveGrader();
+        optimizer.expectedBallHitTime = car.elapsedSeconds + 0.5f;
+
+        final DodgeManeuver dodge = new DodgeManeuver();
+        dodge.timer = 0;
+        return GameData.runWith(gameData, () -> {
+            optimizer.solveGoodStrike(gameData, dodge);
+            return optimizer;
+        });
+    }
+
+    private static void assertSameStrike(DodgeStrikeOptimizer sequential, DodgeStrikeOptimizer parallel) {
+        Assertions.assertEquals(sequential.strikeSolved, parallel.strikeSolved);
+        Assertions.assertEquals(sequential.getSimulationCount(), parallel.getSimulationCount());
+        Assertions.assertEquals(sequential.strikeDodge.delay, parallel.strikeDodge.delay);
+        Assertions.assertEquals(sequential.strikeDodge.duration, parallel.strikeDodge.duration);
+        Assertions.assertEquals(sequential.optimizedEnableBoostAt, parallel.optimizedEnableBoostAt);
+        Assertions.assertEquals(sequential.dodgeCollisionTime, parallel.dodgeCollisionTime);
+        if (sequential.strikeDodge.direction != null)
+            Assertions.assertEquals(0, sequential.strikeDodge.direction.sub(parallel.strikeDodge.direction).magnitude(), 1e-6);
+        Assertions.assertEquals(sequential.strikeDodge.enablePreorient, parallel.strikeDodge.enablePreorient);
+    }
+
+    @Test
+    public void parallelSweepIsDeterministic() {
+        final DodgeStrikeOptimizer sequential = solve(1);
+        final DodgeStrikeOptimizer parallel = solve(4);
+        Assertions.assertTrue(sequential.strikeSolved);
+        assertSameStrike(sequential, parallel);
+    }
+
+    @Test
+    public void parallelSweepIsDeterministicInOtherScenarios() {
+        final Matrix3x3 forward = Matrix3x3.lookAt(new Vector3(0, 1, 0), new Vector3(0, 0, 1));
+        final Matrix3x3 diagonal = Matrix3x3.lookAt(new Vector3(1, 1, 0).normalized(), new Vector3(0, 0, 1));
+        final CarData[] cars = {
+                new CarData(new Vector3(0, -1500, RLConstants.carElevation), new Vector3(0, 1600, 0), new Vector3(), forward), // Fast, ball on the ground
+                new CarData(new Vector3(-600, -1400, RLConstants.carElevation), new Vector3(700, 700, 0), new Vector3(), diagonal), // Coming in at an angle
+                new CarData(new Vector3(300, -900, RLConstants.carElevation), new Vector3(0, 500, 0), new Vector3(), forward), // Slow, ball falling
+        };
+        final BallData[] balls = {
+                new BallData(new Vector3(0, -700, BallData.COLLISION_RADIUS), new Vector3(0, -200, 0), new Vector3()),
+                new BallData(new Vector3(0, -800, 200), new Vector3(0, 0, 100), new Vector3()),
+                new BallData(new Vector3(250, -450, 300), new Vector3(0, 0, -200), new Vector3()),
+        };
+        for (int i = 0; i < cars.length; i++) {
+            final DodgeStrikeOptimizer sequential = solve(new CarData(cars[i]), new BallData(balls[i]), 1, false, 0.6f, true);
+            final DodgeStrikeOptimizer parallel = solve(new CarData(cars[i]), new BallData(balls[i]), 4, false, 0.6f, true);
+            assertSameStrike(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void adaptiveSearchNeedsFewerSimulations() {
+        final DodgeStrikeOptimizer grid = solve(1, false, 1f);
+        final DodgeStrikeOptimizer adaptive = solve(1, true, 1f);
+
+        Assertions.assertTrue(grid.strikeSolved);
+        Assertions.assertTrue(adaptive.strikeSolved);
+        Assertions.assertTrue(adaptive.getSimulationCount() < grid.getSimulationCount() / 2, adaptive.getSimulationCount() + " vs " + grid.getSimulationCount());
+    }
+
+    @Test
+    public void sharedPrefixMatchesFullReplay() {
+        final DodgeStrikeOptimizer replay = solve(1, false, 1f, false);
+        final DodgeStrikeOptimizer shared = solve(1, false, 1f, true);
+
+        Assertions.assertTrue(replay.strikeSolved);
+        Assertions.assertTrue(shared.strikeSolved);
+        Assertions.assertEquals(replay.getSimulationCount(), shared.getSimulationCount());
+        Assertions.assertEquals(replay.strikeDodge.delay, shared.strikeDodge.delay);
+        Assertions.assertEquals(replay.strikeDodge.duration, shared.strikeDodge.duration);
+        Assertions.assertEquals(replay.dodgeCollisionTime, shared.dodgeCollisionTime);
+        if (replay.strikeDodge.direction != null)
+            Assertions.assertEquals(0, replay.strikeDodge.direction.sub(shared.strikeDodge.direction).magnitude(), 1e-6);
+        Assertions.assertTrue(shared.getSimulatedTicks() * 2 < replay.getSimulatedTicks(), shared.getSimulatedTicks() + " vs " + replay.getSimulatedTicks());
+    }
+}
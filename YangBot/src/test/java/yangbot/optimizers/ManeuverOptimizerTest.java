@@ -1,12 +1,163 @@
 package yangbot.optimizers;
 
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.function.Function;
+
 class ManeuverOptimizerTest {
 
+    public static class Point implements Optimizeable {
+        public float x, y;
+    }
+
+    // Minimum at (3, -2)
+    private static final Function<Point, Float> bowl = p -> (p.x - 3) * (p.x - 3) + 2 * (p.y + 2) * (p.y + 2);
+
+    private static <O extends ManeuverOptimizer<Point>> O setup(O optimizer) {
+        optimizer.addVariable("x", -10, 10, 9);
+        optimizer.addVariable("y", -10, 10, 9);
+        return optimizer;
+    }
+
     @Test
     public void parameterTest() {
         ManeuverOptimizer.OptimizeableParameter optimizeableParameter = new ManeuverOptimizer.OptimizeableParameter("", 10, 20, 10);
+        Assertions.assertEquals(10, optimizeableParameter.next());
+        int count = 1;
+        float last = 10;
+        while (optimizeableParameter.hasNext()) {
+            last = optimizeableParameter.next();
+            count++;
+        }
+        Assertions.assertEquals(10, count);
+        Assertions.assertEquals(20, last);
+        Assertions.assertEquals(15, optimizeableParameter.valueAt(0.5f));
+    }
+
+    public static class DerivedPoint extends Point {
+        public float z;
+    }
+
+    @Test
+    public void singleStepIsMidpoint() {
+        var single = new ManeuverOptimizer.OptimizeableParameter("", 10, 20, 1);
+        Assertions.assertEquals(15, single.next());
+        Assertions.assertFalse(single.hasNext());
+
+        for (var optimizer : List.<ManeuverOptimizer<Point>>of(new BruteForceManeuverOptimizer<>(new Point()), new GridRefinementManeuverOptimizer<>(new Point()))) {
+            optimizer.addVariable("x", -10, 10, 9);
+            optimizer.addVariable("y", -10, 0, 1);
+            optimizer.evaluationBudget = 200;
+            optimizer.optimize(bowl);
+            Assertions.assertEquals(-5, optimizer.maneuver.y, optimizer.toString());
+            Assertions.assertTrue(Float.isFinite(optimizer.maneuver.x), optimizer.toString());
+            Assertions.assertEquals(3, optimizer.maneuver.x, 0.5f, optimizer.toString());
+        }
+    }
+
+    @Test
+    public void inheritedFields() {
+        var point = new DerivedPoint();
+        var optimizer = new BruteForceManeuverOptimizer<Point>(point);
+        optimizer.addVariable("x", -10, 10, 9);
+        optimizer.addVariable("y", -10, 10, 9);
+        optimizer.optimize(bowl);
+        Assertions.assertEquals(2.5f, point.x, 1e-4f);
+        Assertions.assertEquals(-2.5f, point.y, 1e-4f);
+
+        // Same parameters on another class
+        var param = new ManeuverOptimizer.OptimizeableParameter("x", 0, 1, 2);
+        var other = new Point();
+        param.set(point, 0.25f);
+        param.set(other, 0.75f);
+        param.set(point, 0.5f);
+        Assertions.assertEquals(0.5f, point.x);
+        Assertions.assertEquals(0.75f, other.x);
+    }
+
+    @Test
+    public void bruteForce() {
+        var point = new Point();
+        var optimizer = setup(new BruteForceManeuverOptimizer<>(point));
+        optimizer.optimize(bowl);
+
+        Assertions.assertEquals(81, optimizer.getEvaluations());
+        // Closest grid point is (2.5, -2.5)
+        Assertions.assertEquals(2.5f, point.x, 1e-4f);
+        Assertions.assertEquals(-2.5f, point.y, 1e-4f);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void gridRefinement() {
+        var point = new Point();
+        var optimizer = setup(new GridRefinementManeuverOptimizer<>(point));
+        optimizer.evaluationBudget = 81 * 4;
+        optimizer.optimize(bowl);
+
+        Assertions.assertTrue(optimizer.getEvaluations() <= optimizer.evaluationBudget);
+        Assertions.assertEquals(3, point.x, 0.05f, optimizer.toString());
+        Assertions.assertEquals(-2, point.y, 0.05f, optimizer.toString());
+    }
+
+    @Test
+    public void patternSearch() {
+        var point = new Point();
+        var optimizer = setup(new PatternSearchManeuverOptimizer<>(point));
+        optimizer.evaluationBudget = 100;
+        optimizer.optimize(bowl);
+
+        Assertions.assertTrue(optimizer.getEvaluations() < 81, optimizer.toString());
+        Assertions.assertEquals(3, point.x, 0.05f, optimizer.toString());
+        Assertions.assertEquals(-2, point.y, 0.05f, optimizer.toString());
+    }
+
+    @Test
+    public void patternSearchFromStart() {
+        var point = new Point();
+        var optimizer = setup(new PatternSearchManeuverOptimizer<>(point)).setStart(2.5f, -2.5f);
+        optimizer.initialStep = 0.05f;
+        optimizer.evaluationBudget = 40;
+        optimizer.optimize(bowl);
+
+        Assertions.assertEquals(3, point.x, 0.05f, optimizer.toString());
+        Assertions.assertEquals(-2, point.y, 0.05f, optimizer.toString());
+    }
+
+    @Test
+    public void cmaEs() {
+        var point = new Point();
+        var optimizer = setup(new CmaEsManeuverOptimizer<>(point));
+        optimizer.evaluationBudget = 400;
+        optimizer.optimize(bowl);
+
+        Assertions.assertEquals(3, point.x, 0.05f, optimizer.toString());
+        Assertions.assertEquals(-2, point.y, 0.05f, optimizer.toString());
+
+        // Seeded, so the same result every time
+        var other = new Point();
+        var again = setup(new CmaEsManeuverOptimizer<>(other));
+        again.evaluationBudget = 400;
+        again.optimize(bowl);
+        Assertions.assertEquals(point.x, other.x);
+        Assertions.assertEquals(optimizer.getEvaluations(), again.getEvaluations());
+    }
+
+    @Test
+    public void budgetAndEarlyStopping() {
+        var optimizer = setup(new CmaEsManeuverOptimizer<>(new Point()));
+        optimizer.minSigma = 0;
+        optimizer.evaluationBudget = 37;
+        optimizer.optimize(bowl);
+        Assertions.assertEquals(37, optimizer.getEvaluations());
+
+        var point = new Point();
+        var early = setup(new GridRefinementManeuverOptimizer<>(point));
+        early.targetScore = 1;
+        early.optimize(bowl);
+        Assertions.assertTrue(early.getEvaluations() < 81, early.toString());
+        Assertions.assertTrue(early.getBestScore() <= 1);
+        Assertions.assertEquals(early.getBestScore(), bowl.apply(point));
+    }
+}
@@ -0,0 +1,125 @@
+package yangbot.optimizers.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.CarData;
+import yangbot.input.ImmutableBallData;
+import yangbot.input.RLConstants;
+import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class GameStateEvaluatorTest {
+
+    private static CarData car(int index, float x, float y, float boost) {
+        var car = new CarData(new Vector3(x, y, RLConstants.carElevation), new Vector3(x * 0.1f, 500, 0), new Vector3(0, 0, 0.5f), Matrix3x3.lookAt(new Vector3(x, 1000, 0).normalized(), new Vector3(0, 0, 1)));
+        car.playerIndex = index;
+        car.boost = boost;
+        return car;
+    }
+
+    // Straight forward version of gameStateToPrediction for team 0 only cars, one forward pass per car and matchup
+    private static float reference(List<CarData> cars, ImmutableBallData ball, int limit) {
+        var ballEnc = ModelUtils.encodeBall(ball);
+        List<CarData> sorted = new ArrayList<>(cars);
+        sorted.sort(Comparator.comparingDouble(c -> {
+            var enc = ModelUtils.encodeCar(c, ball);
+            float[] input = new float[29];
+            System.arraycopy(enc, 0, input, 0, 20);
+            System.arraycopy(ballEnc, 0, input, 20, 9);
+            return -DeciderYangNet.GAME_STATE_PREDICTOR.deciderForward(input)[0];
+        }));
+        var sample = new CarData(new Vector3(0, -(RLConstants.goalDistance + 200), RLConstants.carElevation), new Vector3(), new Vector3(), Matrix3x3.lookAt(new Vector3(1, 0, 0)));
+        var sampleEnc = ModelUtils.encodeCar(sample, ball);
+
+        float sum = 0;
+        int num = 0;
+        for (var c : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            float[] input = new float[49];
+            System.arraycopy(ballEnc, 0, input, 0, 9);
+            System.arraycopy(ModelUtils.encodeCar(c, ball), 0, input, 9, 20);
+            System.arraycopy(sampleEnc, 0, input, 29, 20);
+            sum += DeciderYangNet.GAME_STATE_PREDICTOR.forward(input)[0];
+            num++;
+        }
+        return sum / num;
+    }
+
+    @Test
+    public void matchesReference() {
+        var cars = List.of(car(0, -500, -2000, 30), car(1, 1500, 500, 100), car(2, 0, -4000, 0));
+        var ball = new ImmutableBallData(new Vector3(200, 300, 400), new Vector3(100, -500, 200), new Vector3(1, 2, 3));
+
+        var evaluator = new GameStateEvaluator();
+        evaluator.setState(cars, ball);
+        Assertions.assertEquals(reference(cars, ball, 3), evaluator.evaluate(0, true, false), 1e-5f);
+        Assertions.assertEquals(reference(cars, ball, 1), evaluator.evaluate(0, false, true), 1e-5f);
+    }
+
+    @Test
+    public void onlyReencodesChanges() {
+        var cars = new ArrayList<>(List.of(car(0, -500, -2000, 30), car(1, 1500, 500, 100), car(2, 0, -4000, 0)));
+        var ball = new ImmutableBallData(new Vector3(200, 300, 400), new Vector3(100, -500, 200), new Vector3(1, 2, 3));
+
+        var evaluator = new GameStateEvaluator();
+        evaluator.setState(cars, ball);
+        evaluator.evaluate(0, true, true);
+        Assertions.assertEquals(3, evaluator.getDeciderEvaluations());
+
+        // Same tick, same objects
+        evaluator.setState(cars, ball);
+        evaluator.evaluate(0, true, true);
+        Assertions.assertEquals(3, evaluator.getDeciderEvaluations());
+        Assertions.assertEquals(3, evaluator.getCarEncodings());
+
+        // One car changed
+        var moved = car(1, 1400, 700, 90);
+        evaluator.updateCar(moved);
+        float incremental = evaluator.evaluate(0, true, true);
+        Assertions.assertEquals(4, evaluator.getDeciderEvaluations());
+        Assertions.assertEquals(4, evaluator.getCarEncodings());
+        cars.set(1, moved);
+        Assertions.assertEquals(reference(cars, ball, 3), incremental, 1e-5f);
+
+        // Stepped in place
+        moved.position = moved.position.add(new Vector3(0, 100, 0));
+        evaluator.updateCar(moved);
+        Assertions.assertEquals(reference(cars, ball, 3), evaluator.evaluate(0, true, true), 1e-5f);
+        Assertions.assertEquals(5, evaluator.getDeciderEvaluations());
+
+        // The ball changes the car relative part of every car, but the rest of the encoding is reused
+        var otherBall = new ImmutableBallData(new Vector3(-200, 1000, 93), new Vector3(), new Vector3());
+        evaluator.updateBall(otherBall);
+        Assertions.assertEquals(reference(cars, otherBall, 3), evaluator.evaluate(0, true, true), 1e-5f);
+        Assertions.assertEquals(8, evaluator.getDeciderEvaluations());
+        Assertions.assertEquals(5, evaluator.getCarEncodings());
+    }
+
+    @Test
+    public void demolitionAndTeamInvalidate() {
+        var cars = List.of(car(0, -500, -2000, 30), car(1, 1500, 500, 100), car(2, 0, -4000, 0));
+        var ball = new ImmutableBallData(new Vector3(200, 300, 400), new Vector3(100, -500, 200), new Vector3(1, 2, 3));
+
+        var evaluator = new GameStateEvaluator();
+        evaluator.setState(cars, ball);
+        evaluator.evaluate(0, true, true);
+
+        // Demolished in place: the car is no longer considered
+        cars.get(1).isDemolished = true;
+        evaluator.updateCar(cars.get(1));
+        Assertions.assertEquals(reference(List.of(cars.get(0), cars.get(2)), ball, 3), evaluator.evaluate(0, true, false), 1e-5f);
+        Assertions.assertEquals(4, evaluator.getCarEncodings());
+
+        // Respawned and switched teams in place, same result as a fresh evaluation
+        cars.get(1).isDemolished = false;
+        cars.get(2).team = 1;
+        evaluator.setState(cars, ball);
+        Assertions.assertEquals(6, evaluator.getCarEncodings());
+        var fresh = new GameStateEvaluator();
+        fresh.setState(cars, ball);
+        Assertions.assertEquals(fresh.evaluate(0, true, false), evaluator.evaluate(0, true, false));
+    }
+}
@@ -0,0 +1,113 @@
+package yangbot.optimizers.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class YangNetTest {
+
+    private static float[] randomInputs(Random random, int size) {
+        float[] inputs = new float[size];
+        for (int i = 0; i < size; i++)
+            inputs[i] = random.nextFloat() * 2 - 1;
+        return inputs;
+    }
+
+    @Test
+    public void batchMatchesSingle() {
+        final var random = new Random(0);
+        final var net = SimpleYangNet.BALL_STATE_PREDICTOR;
+        final int batch = 5;
+        final float[] inputs = randomInputs(random, batch * 9);
+        final float[] out = new float[batch * 9];
+        net.forward(inputs, batch, out);
+
+        for (int b = 0; b < batch; b++) {
+            float[] single = new float[9];
+            System.arraycopy(inputs, b * 9, single, 0, 9);
+            float[] expected = net.forward(single);
+            for (int i = 0; i < 9; i++)
+                Assertions.assertEquals(expected[i], out[b * 9 + i]);
+        }
+    }
+
+    @Test
+    public void deciderBatchMatchesSingle() {
+        final var random = new Random(1);
+        final var net = DeciderYangNet.GAME_STATE_PREDICTOR;
+        final int batch = 6;
+        final float[] deciderInputs = randomInputs(random, batch * 29);
+        final float[] valueInputs = randomInputs(random, batch * 49);
+        final float[] importance = new float[batch];
+        final float[] value = new float[batch];
+        net.deciderForward(deciderInputs, batch, importance);
+        net.forward(valueInputs, batch, value);
+
+        for (int b = 0; b < batch; b++) {
+            float[] single = new float[29];
+            System.arraycopy(deciderInputs, b * 29, single, 0, 29);
+            Assertions.assertEquals(net.deciderForward(single)[0], importance[b]);
+            single = new float[49];
+            System.arraycopy(valueInputs, b * 49, single, 0, 49);
+            Assertions.assertEquals(net.forward(single)[0], value[b]);
+        }
+    }
+
+    @Test
+    public void kernelsAgree() {
+        final var random = new Random(2);
+        // Odd sizes to exercise the scalar tail of the SIMD kernel
+        final int rows = 19, cols = 37, batch = 3;
+        final float[] weights = randomInputs(random, rows * cols);
+        final float[] inputs = randomInputs(random, batch * cols);
+        final float[] scalar = new float[batch * rows];
+        final float[] best = new float[batch * rows];
+        MatMulKernel.SCALAR.multiply(weights, rows, cols, inputs, batch, scalar);
+        MatMulKernel.INSTANCE.multiply(weights, rows, cols, inputs, batch, best);
+
+        for (int i = 0; i < scalar.length; i++)
+            Assertions.assertEquals(scalar[i], best[i], 1e-4f);
+    }
+
+    private static float[] forwardLayers(List<LinearLayer> layers, float[] inputs, int batch, MatMulKernel kernel) {
+        float[] in = inputs;
+        for (LinearLayer layer : layers) {
+            final float[] out = new float[batch * layer.getOutputs()];
+            layer.forward(in, batch, out, kernel);
+            in = out;
+        }
+        return in;
+    }
+
+    @Test
+    public void simdForwardMatchesScalar() {
+        final var random = new Random(3);
+        final int batch = 7;
+        final var decider = DeciderYangNet.GAME_STATE_PREDICTOR.layers;
+        final var nets = List.of(SimpleYangNet.BALL_STATE_PREDICTOR.layers, decider.subList(0, 4), decider.subList(4, 6)); // value and decider heads
+        for (List<LinearLayer> layers : nets) {
+            final float[] inputs = randomInputs(random, batch * layers.get(0).getInputs());
+            final float[] scalar = forwardLayers(layers, inputs, batch, MatMulKernel.SCALAR);
+            final float[] simd = forwardLayers(layers, inputs, batch, MatMulKernel.INSTANCE);
+
+            // FMA and the lane-wise reduction sum in a different order than the scalar loop, so results differ in the last bits
+            for (int i = 0; i < scalar.length; i++)
+                Assertions.assertEquals(scalar[i], simd[i], 1e-4f * Math.max(1, Math.abs(scalar[i])), "output " + i);
+        }
+    }
+
+    @Test
+    public void activations() {
+        final float[] xs = {-30, -5, -1, -0.1f, 0, 0.1f, 1, 5, 25};
+        final var mish = new LinearLayer(1, 1, new float[]{1}, new float[]{0}, LinearLayer.Activation.MISH);
+        final var sigmoid = new LinearLayer(1, 1, new float[]{1}, new float[]{0}, LinearLayer.Activation.SIGMOID);
+        for (float x : xs) {
+            double expectedMish = x * Math.tanh(Math.log1p(Math.exp(x)));
+            double expectedSigmoid = 1 / (1 + Math.exp(-x));
+            Assertions.assertEquals(expectedMish, mish.forward(new float[]{x})[0], 1e-5, "x=" + x);
+            Assertions.assertEquals(expectedSigmoid, sigmoid.forward(new float[]{x})[0], 1e-5, "x=" + x);
+        }
+    }
+}
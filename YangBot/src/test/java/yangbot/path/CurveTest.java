@@ -0,0 +1,292 @@
+package yangbot.path;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.BallData;
+import yangbot.input.CarData;
+import yangbot.input.Physics2D;
+import yangbot.input.RLConstants;
+import yangbot.path.builders.SegmentedPath;
+import yangbot.path.builders.segments.ArcLineArc;
+import yangbot.strategy.manuever.DriveManeuver;
+import yangbot.util.YangBallPrediction;
+import yangbot.util.math.MathUtils;
+import yangbot.util.math.vector.Matrix2x2;
+import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.Vector2;
+import yangbot.util.math.vector.Vector3;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CurveTest {
+
+    // Wiggly path with a loop, so distant parts of it pass close to each other
+    private static Curve makeCurve() {
+        final List<Curve.ControlPoint> controlPoints = new ArrayList<>();
+        controlPoints.add(new Curve.ControlPoint(new Vector3(0, -4000, 17), new Vector3(0, 1, 0)));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(1500, -2000, 17), new Vector3(1, 1, 0).normalized()));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(2500, 0, 17), new Vector3(0, 1, 0)));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(1000, 1500, 17), new Vector3(-1, 0, 0)));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(0, 0, 17), new Vector3(0, -1, 0)));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(1500, -1000, 17), new Vector3(1, 0, 0)));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(3000, 2000, 17), new Vector3(0, 1, 0)));
+        controlPoints.add(new Curve.ControlPoint(new Vector3(0, 4000, 17), new Vector3(-1, 0, 0)));
+        final Curve curve = new Curve(controlPoints, 32);
+        curve.calculateMaxSpeeds(1000, CarData.MAX_VELOCITY, 50);
+        return curve;
+    }
+
+    // The linear scans Curve used to do
+
+    private static int linearSegment(Curve curve, float s) {
+        for (int i = 0; i < curve.getNumPoints() - 1; i++) {
+            if (curve.distances[i] >= s && s >= curve.distances[i + 1])
+                return i;
+        }
+        return -1;
+    }
+
+    private static float linearFindNearest(Curve curve, Vector3 c) {
+        float s = curve.length;
+        float minDistance = (float) c.sub(curve.getPoint(0)).magnitude();
+
+        for (int i = 0; i < curve.getNumPoints() - 1; i++) {
+            Vector3 a = curve.getPoint(i);
+            Vector3 b = curve.getPoint(i + 1);
+
+            float alpha = MathUtils.clip(b.sub(a).dot(c.sub(a)) / Math.max(b.sub(a).dot(b.sub(a)), 0.0001f), 0f, 1f);
+            float distance = (float) c.sub(a.add(b.sub(a).mul(alpha))).magnitude();
+
+            if (distance < minDistance) {
+                minDistance = distance;
+                s = MathUtils.lerp(curve.distances[i], curve.distances[i + 1], alpha);
+            }
+        }
+        return s;
+    }
+
+    @Test
+    public void lookupsMatchLinearScan() {
+        final Curve curve = makeCurve();
+        final Random random = new Random(1);
+        for (int q = 0; q < 2000; q++) {
+            final float s = q < 10 ? curve.distances[q * (curve.getNumPoints() - 1) / 9] : random.nextFloat() * curve.length;
+            final int i = linearSegment(curve, s);
+            Assertions.assertNotEquals(-1, i);
+            final float u = (s - curve.distances[i + 1]) / (curve.distances[i] - curve.distances[i + 1]);
+
+            Assertions.assertEquals(0, curve.pointAt(s).distance(MathUtils.lerp(curve.getPoint(i + 1), curve.getPoint(i), u)), 1e-2);
+            Assertions.assertEquals(0, curve.tangentAt(s).distance(MathUtils.lerp(curve.getTangent(i + 1), curve.getTangent(i), u).normalized()), 1e-4);
+            Assertions.assertEquals(MathUtils.lerp(curve.curvatures[i + 1], curve.curvatures[i], u), curve.curvatureAt(s), 1e-7f);
+            Assertions.assertEquals(MathUtils.lerp(curve.maxSpeeds[i + 1], curve.maxSpeeds[i], u), curve.maxSpeedAt(s), 1e-3f);
+            Assertions.assertEquals(u + i, curve.findIndex(s), 1e-4f);
+        }
+    }
+
+    @Test
+    public void equalDistancesPickFirstSegment() {
+        final Curve curve = new Curve(4);
+        curve.setPoint(0, new Vector3(0, 0, 0));
+        curve.setPoint(1, new Vector3(100, 0, 0));
+        curve.setPoint(2, new Vector3(100, 0, 0));
+        curve.setPoint(3, new Vector3(200, 0, 0));
+        curve.distances = new float[]{200, 100, 100, 0};
+        curve.length = 200;
+
+        Assertions.assertEquals(0, curve.pointAt(100).distance(new Vector3(100, 0, 0)), 1e-4);
+        Assertions.assertEquals(0, curve.findIndex(100), 1e-6f);
+        Assertions.assertEquals(50, curve.findNearest(new Vector3(150, 10, 0)), 1e-3f);
+    }
+
+    @Test
+    public void findNearestMatchesLinearScan() {
+        final Curve curve = makeCurve();
+        final Random random = new Random(2);
+
+        // Random jumps
+        for (int q = 0; q < 2000; q++) {
+            final Vector3 c = new Vector3(random.nextFloat() * 5000 - 1000, random.nextFloat() * 9000 - 4500, 17 + random.nextFloat() * 200);
+            Assertions.assertEquals(linearFindNearest(curve, c), curve.findNearest(c), 1e-2f, c.toString());
+        }
+
+        // Following the path like a car would, with some noise
+        for (float s = curve.length; s >= 0; s -= 7) {
+            final Vector3 c = curve.pointAt(s).add(new Vector3(random.nextFloat() * 60 - 30, random.nextFloat() * 60 - 30, 0));
+            Assertions.assertEquals(linearFindNearest(curve, c), curve.findNearest(c), 1e-2f, c.toString());
+        }
+
+        // Moving a point invalidates the bounds
+        curve.setPoint(curve.getNumPoints() / 2, new Vector3(-3000, 0, 17));
+        final Vector3 c = new Vector3(-2900, 0, 17);
+        Assertions.assertEquals(linearFindNearest(curve, c), curve.findNearest(c), 1e-2f);
+    }
+
+    @Test
+    public void lookupBenchmark() {
+        final Curve curve = makeCurve();
+        final Random random = new Random(3);
+        final int n = 20000;
+        final Vector3[] positions = new Vector3[n];
+        final float[] distances = new float[n];
+        for (int i = 0; i < n; i++) {
+            distances[i] = curve.length * (1 - i / (float) n);
+            positions[i] = curve.pointAt(distances[i]).add(new Vector3(random.nextFloat() * 40 - 20, random.nextFloat() * 40 - 20, 0));
+        }
+
+        float tmp = 0;
+        for (int i = 0; i < n; i++) { // JIT
+            tmp += linearFindNearest(curve, positions[i]) + linearSegment(curve, distances[i]);
+            tmp += curve.findNearest(positions[i]) + curve.maxSpeedAt(distances[i]) + curve.curvatureAt(distances[i]) + curve.findIndex(distances[i]);
+        }
+
+        long ns = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tmp += linearFindNearest(curve, positions[i]);
+        final float linearNearest = (System.nanoTime() - ns) / (float) n;
+        ns = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tmp += linearSegment(curve, distances[i]);
+        final float linearLookup = (System.nanoTime() - ns) / (float) n;
+
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long allocated = threads.getCurrentThreadAllocatedBytes();
+        ns = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tmp += curve.findNearest(positions[i]);
+        final float nearest = (System.nanoTime() - ns) / (float) n;
+        ns = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tmp += curve.maxSpeedAt(distances[i]);
+        final float lookup = (System.nanoTime() - ns) / (float) n;
+        final long allocatedBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+        System.out.println("Curve with " + curve.getNumPoints() + " points: findNearest " + linearNearest + "ns -> " + nearest + "ns, maxSpeedAt segment lookup " + linearLookup + "ns -> " + lookup + "ns, allocated " + allocatedBytes + " bytes " + tmp);
+        Assertions.assertTrue(allocatedBytes < 1024, allocatedBytes + " bytes allocated");
+    }
+
+    private static CarData carAt(Vector3 position, Vector3 forward, float speed) {
+        final CarData car = new CarData(position, forward.mul(speed), new Vector3(), Matrix3x3.lookAt(forward, new Vector3(0, 0, 1)));
+        car.hasWheelContact = true;
+        car.boost = 50;
+        car.elapsedSeconds = 10;
+        return car;
+    }
+
+    private static YangBallPrediction ballPrediction(Vector3 position, Vector3 velocity) {
+        final BallData ball = new BallData(position, velocity, new Vector3());
+        ball.elapsedSeconds = 10;
+        return ball.makeBallPrediction(RLConstants.tickFrequency, 4);
+    }
+
+    @Test
+    public void speedProfileReuseMatchesFullSimulation() {
+        final Curve reused = makeCurve();
+        final float[][] requests = {{1000, CarData.MAX_VELOCITY, 50}, {1000, 1200, 50}, {1000, -1, 50}, {1400, 1200, 50}, {1400, 1200, 0}, {1400, 1200, 80}, {1000, CarData.MAX_VELOCITY, 50}};
+        for (var request : requests) {
+            final float time = reused.calculateMaxSpeeds(request[0], request[1], request[2]);
+
+            final Curve fresh = makeCurve();
+            fresh.useSegmentCache = false;
+            final float freshTime = fresh.calculateMaxSpeeds(request[0], request[1], request[2]);
+            Assertions.assertEquals(freshTime, time);
+            Assertions.assertArrayEquals(fresh.maxSpeeds, reused.maxSpeeds);
+            Assertions.assertEquals(fresh.minimumSpeed, reused.minimumSpeed);
+        }
+        Assertions.assertTrue(reused.getSegmentsReused() > reused.getSegmentsSimulated(), reused.getSegmentsReused() + " " + reused.getSegmentsSimulated());
+    }
+
+    @Test
+    public void pathCheckingMatchesFullCheck() {
+        final Random random = new Random(4);
+        final CarData car = carAt(new Vector3(0, -4000, 17), new Vector3(0, 1, 0), 1000);
+        int collisions = 0;
+        for (int q = 0; q < 60; q++) {
+            final Curve curve = makeCurve();
+            // Ball waiting next to the path or anywhere on the field
+            final Vector3 ballPos = q % 2 == 0
+                    ? curve.pointAt(curve.length - 500 - random.nextFloat() * 3500).add(random.nextFloat() * 600 - 300, random.nextFloat() * 600 - 300, 76)
+                    : new Vector3(random.nextFloat() * 6000 - 2000, random.nextFloat() * 8000 - 4000, 93 + random.nextFloat() * 400);
+            final Vector3 ballVel = q % 2 == 0 ? new Vector3() : new Vector3(random.nextFloat() * 2000 - 1000, random.nextFloat() * 2000 - 1000, 0);
+            final YangBallPrediction prediction = ballPrediction(ballPos, ballVel);
+
+            final float arrival = car.elapsedSeconds + curve.length / 1000;
+            final Curve fullCheck = makeCurve();
+            fullCheck.useSegmentCache = false;
+            final Curve.PathCheckStatus full = fullCheck.doPathChecking(car, arrival, prediction);
+            final Curve.PathCheckStatus status = curve.doPathChecking(car, arrival, prediction);
+
+            Assertions.assertEquals(full.pathStatus, status.pathStatus);
+            Assertions.assertEquals(full.collidedWithBall, status.collidedWithBall, ballPos + " " + ballVel);
+            Assertions.assertEquals(full.distanceAtBallCollision, status.distanceAtBallCollision);
+            Assertions.assertEquals(full.speedNeeded, status.speedNeeded);
+            if (status.collidedWithBall)
+                collisions++;
+
+            // Nothing changed, same result
+            Assertions.assertSame(curve.doPathChecking(car, arrival, prediction), curve.doPathChecking(car, arrival, prediction));
+        }
+        Assertions.assertTrue(collisions > 0 && collisions < 60, collisions + " collisions");
+    }
+
+    @Test
+    public void pathShapesBenchmark() {
+        // Ground strikes drive an ArcLineArc to the ball. While waiting for the strike, arrival time and speed are updated and the path is checked again every tick
+        final Random random = new Random(5);
+        final int n = 200, ticks = 10;
+        final List<ArcLineArc> arcs = new ArrayList<>();
+        final List<CarData> cars = new ArrayList<>();
+        final List<YangBallPrediction> predictions = new ArrayList<>();
+        final float r1 = 1 / DriveManeuver.maxTurningCurvature(1200), r2 = 1 / DriveManeuver.maxTurningCurvature(2300);
+        while (arcs.size() < n) {
+            final double angle = random.nextDouble() * Math.PI * 2;
+            final Vector2 tangent = new Vector2((float) Math.cos(angle), (float) Math.sin(angle));
+            final Physics2D start = new Physics2D(new Vector2(random.nextFloat() * 6000 - 3000, random.nextFloat() * 8000 - 4000), tangent.mul(1400), Matrix2x2.lookAt(tangent), 0);
+            final Vector2 target = new Vector2(random.nextFloat() * 6000 - 3000, random.nextFloat() * 8000 - 4000);
+            final Vector2 targetTangent = target.sub(start.position).normalized();
+            final var arc = ArcLineArc.findOptimalALA(start, 50, target, targetTangent, 5, r1, 40, r2);
+            if (arc.isEmpty())
+                continue;
+            arcs.add(arc.get());
+            cars.add(carAt(new Vector3(start.position, RLConstants.carElevation), new Vector3(start.forward(), 0), 1400));
+            predictions.add(ballPrediction(new Vector3(target.add(targetTangent.mul(150)), BallData.COLLISION_RADIUS + 100), new Vector3(random.nextFloat() * 1000 - 500, random.nextFloat() * 1000 - 500, 300)));
+        }
+
+        float tmp = 0;
+        final long[] nanos = new long[2];
+        for (int rep = 0; rep < 3; rep++) { // First two are JIT warmup
+            for (int mode = 0; mode < 2; mode++) {
+                for (var arc : arcs)
+                    arc.bake(SegmentedPath.MAX_SAMPLES).useSegmentCache = mode == 1;
+                final long ns = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    final ArcLineArc arc = arcs.get(i);
+                    final CarData car = cars.get(i);
+                    for (int tick = 0; tick < ticks; tick++) {
+                        final float arrival = car.elapsedSeconds + arc.getLength() / 1600 + tick * 0.01f;
+                        arc.setArrivalSpeed(2300);
+                        arc.setArrivalTime(arrival);
+                        final Curve curve = arc.bake(SegmentedPath.MAX_SAMPLES);
+                        // Checked again before avoiding the ball, like AvoidObstacleInPathUtil does
+                        tmp += curve.doPathChecking(car, arrival, predictions.get(i)).speedNeeded;
+                        tmp += curve.doPathChecking(car, arrival, predictions.get(i)).speedNeeded;
+                    }
+                }
+                nanos[mode] = System.nanoTime() - ns;
+            }
+        }
+
+        System.out.println("ArcLineArc strike paths (start speed 1400, radii for 1200/2300uu/s, targets anywhere on the field), re-timed and checked twice per tick: "
+                + (nanos[0] / (1000 * n * ticks)) + "us without segment cache, " + (nanos[1] / (1000 * n * ticks)) + "us with " + tmp);
+        long reused = 0, simulated = 0;
+        for (var arc : arcs) {
+            reused += arc.getBakedPath().getSegmentsReused();
+            simulated += arc.getBakedPath().getSegmentsSimulated();
+        }
+        // Half of the bakes run without the cache. With it, only the segments near the arrival are simulated again
+        Assertions.assertTrue(reused * 2 > simulated, reused + " reused, " + simulated + " simulated");
+    }
+}
@@ -0,0 +1,159 @@
+package yangbot.path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.*;
+import yangbot.path.builders.SegmentedPath;
+import yangbot.util.YangBallPrediction;
+import yangbot.util.math.vector.Matrix3x3;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.List;
+import java.util.Optional;
+
+public class PathPlanCacheTest {
+
+    private static final Vector3 START = new Vector3(-1000, -2000, RLConstants.carElevation);
+    private static final Vector3 VELOCITY = new Vector3(0, 1400, 0);
+
+    private static GameData gameDataAt(float t, Vector3 offset) {
+        final CarData car = new CarData(START.add(VELOCITY.mul(t)).add(offset), VELOCITY, new Vector3(), Matrix3x3.lookAt(new Vector3(0, 1, 0), new Vector3(0, 0, 1)));
+        car.hasWheelContact = true;
+        car.boost = 50;
+        car.elapsedSeconds = 10 + t;
+        final BallData ball = new BallData(new Vector3(0, 0, BallData.COLLISION_RADIUS), new Vector3(), new Vector3());
+        ball.elapsedSeconds = car.elapsedSeconds;
+
+        final GameData gameData = new GameData(0L);
+        gameData.update(car, new ImmutableBallData(ball), List.of(car), RLConstants.gravity.z, RLConstants.tickFrequency, null, YangBallPrediction.empty());
+        return gameData;
+    }
+
+    private static Optional<SegmentedPath> plan(GameData gameData, Vector3 target, PathPlanCache cache) {
+        return plan(gameData, target, 13, cache);
+    }
+
+    private static Optional<SegmentedPath> plan(GameData gameData, Vector3 target, float arrivalTime, PathPlanCache cache) {
+        return GameData.runWith(gameData, () -> {
+            final var planner = new EpicMeshPlanner()
+                    .withStart(gameData.getCarData(), 0.05f)
+                    .withEnd(target, new Vector3(0, 1, 0), 0.2f)
+                    .withArrivalTime(arrivalTime)
+                    .withArrivalSpeed(2300)
+                    .allowDodge(false)
+                    .withCreationStrategy(EpicMeshPlanner.PathCreationStrategy.YANG_ARC);
+            if (cache != null)
+                planner.withCache(cache);
+            return planner.plan();
+        });
+    }
+
+    // Out of bounds behind the car, every arc-line-arc leaves the field
+    private static final Vector3 FAILING_TARGET = new Vector3(-1125, -4400, RLConstants.carElevation);
+
+    @Test
+    public void hitsWhileCarFollows() {
+        final PathPlanCache cache = new PathPlanCache();
+
+        final var first = plan(gameDataAt(0, new Vector3()), FAILING_TARGET, cache);
+        Assertions.assertTrue(first.isEmpty());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        final var second = plan(gameDataAt(RLConstants.tickFrequency, new Vector3()), FAILING_TARGET, cache);
+        Assertions.assertTrue(second.isEmpty());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.size());
+
+        // Successful plans are planned again every time
+        final Vector3 target = new Vector3(500, 1000, RLConstants.carElevation);
+        final var path = plan(gameDataAt(RLConstants.tickFrequency, new Vector3()), target, cache);
+        final var again = plan(gameDataAt(2 * RLConstants.tickFrequency, new Vector3()), target, cache);
+        Assertions.assertTrue(path.isPresent());
+        Assertions.assertNotSame(path.get(), again.get());
+        Assertions.assertEquals(3, cache.getMisses());
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void invalidatesWhenCarDeviates() {
+        final PathPlanCache cache = new PathPlanCache();
+
+        plan(gameDataAt(0, new Vector3()), FAILING_TARGET, cache);
+        plan(gameDataAt(RLConstants.tickFrequency, new Vector3(PathPlanCache.POSITION_TOLERANCE * 2, 0, 0)), FAILING_TARGET, cache);
+        Assertions.assertEquals(1, cache.getInvalidations());
+
+        plan(gameDataAt(PathPlanCache.MAX_AGE * 2, new Vector3(PathPlanCache.POSITION_TOLERANCE * 2, 0, 0)), FAILING_TARGET, cache);
+        Assertions.assertEquals(2, cache.getInvalidations());
+        Assertions.assertEquals(0, cache.getHits());
+
+        cache.invalidate();
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void hitDecidesLikeFreshPlan() {
+        final PathPlanCache cache = new PathPlanCache();
+        final GameData planned = gameDataAt(0, new Vector3());
+        // 0.1s later and drifted sideways, but still within the tolerance
+        final GameData now = gameDataAt(12 * RLConstants.tickFrequency, new Vector3(PathPlanCache.POSITION_TOLERANCE * 0.5f, 0, 0));
+        final float interceptTime = 12.5f;
+        final float relativeTime = interceptTime - now.getElapsedSeconds();
+
+        int total = 0, accepted = 0, differentDecisions = 0;
+        for (int y = -4800; y <= 4800; y += 100) {
+            for (int x = -3960; x <= 3960; x += 80) {
+                if (Math.abs(x - START.x) < 100) // ArcLineArc asserts that both arcs have a length
+                    continue;
+                final Vector3 target = new Vector3(x, y, RLConstants.carElevation);
+                plan(planned, target, interceptTime, cache);
+
+                final var cached = plan(now, target, interceptTime, cache);
+                final var fresh = plan(now, target, interceptTime, null);
+                total++;
+
+                // LACHelper.planGroundStrike's check. Successful paths are never reused, so they are planned from the current tick
+                final boolean cachedAccepts = cached.isPresent() && cached.get().getTotalTimeEstimate() <= relativeTime;
+                final boolean freshAccepts = fresh.isPresent() && fresh.get().getTotalTimeEstimate() <= relativeTime;
+                if (cached.isPresent() && fresh.isPresent())
+                    Assertions.assertEquals(fresh.get().getTotalTimeEstimate(), cached.get().getTotalTimeEstimate(), target.toString());
+                if (cachedAccepts)
+                    accepted++;
+                if (cachedAccepts != freshAccepts || cached.isPresent() != fresh.isPresent())
+                    differentDecisions++;
+            }
+        }
+        Assertions.assertTrue(cache.getHits() > 500 && accepted > 500, cache + ", " + accepted + " accepted");
+        // A cached failure can only disagree right at the edge of what's plannable.
+        // Two fresh plans on consecutive ticks disagree there too, e.g. for 1 of ~9400 targets here
+        Assertions.assertTrue(differentDecisions <= total / 1000, differentDecisions + " of " + total);
+    }
+
+    @Test
+    public void steadyStateBenchmark() {
+        // Targets at fixed positions and arrival times, like the frames of a ball prediction replanned every tick.
+        // Half of them can't be reached in bounds. None of them is straight ahead, ArcLineArc asserts that both arcs have a length
+        final int numTargets = 60;
+        final Vector3[] targets = new Vector3[numTargets];
+        for (int i = 0; i < numTargets; i++)
+            targets[i] = new Vector3(-1480 + 50 * i, i % 2 == 0 ? 1500 - 20 * i : -4000 - 10 * i, RLConstants.carElevation);
+
+        final int ticks = 120;
+        final long[] nanos = new long[2];
+        final PathPlanCache cache = new PathPlanCache();
+        for (int mode = 0; mode < 2; mode++) {
+            for (int tick = -ticks; tick < ticks; tick++) { // First half is JIT warmup
+                final GameData gameData = gameDataAt(Math.max(tick, 0) * RLConstants.tickFrequency, new Vector3());
+                if (tick == 0)
+                    cache.resetCounters();
+                final long ns = System.nanoTime();
+                for (var target : targets)
+                    plan(gameData, target, mode == 0 ? null : cache);
+                if (tick >= 0)
+                    nanos[mode] += System.nanoTime() - ns;
+            }
+        }
+
+        System.out.println("Planning " + numTargets + " targets per tick: " + (nanos[0] / (1000 * ticks)) + "us uncached, " + (nanos[1] / (1000 * ticks)) + "us cached, " + cache);
+        Assertions.assertTrue(cache.getHitRate() > 0.4f, cache.toString());
+    }
+}
@@ -0,0 +1,194 @@
+package yangbot.path.builders.segments;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.Physics2D;
+import yangbot.input.RLConstants;
+import yangbot.path.builders.SegmentedPath;
+import yangbot.strategy.manuever.DriveManeuver;
+import yangbot.util.math.vector.Matrix2x2;
+import yangbot.util.math.vector.Vector2;
+
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class ArcLineArcTest {
+
+    private static final float R1 = 1 / DriveManeuver.maxTurningCurvature(1200);
+    private static final float R2 = 1 / DriveManeuver.maxTurningCurvature(2300);
+
+    private static Vector2 randomPos(Random random) {
+        return new Vector2(random.nextFloat() * 7000 - 3500, random.nextFloat() * 9000 - 4500);
+    }
+
+    private static Vector2 randomTangent(Random random) {
+        final double angle = random.nextDouble() * Math.PI * 2;
+        return new Vector2((float) Math.cos(angle), (float) Math.sin(angle));
+    }
+
+    private static Physics2D randomStart(Random random) {
+        final Vector2 tangent = randomTangent(random);
+        return new Physics2D(randomPos(random), tangent.mul(1400), Matrix2x2.lookAt(tangent), 0);
+    }
+
+    // How findOptimalALA used to work: build and bake all four
+    private static Optional<ArcLineArc> referenceOptimalALA(Physics2D start, Vector2 endPos, Vector2 endTangent, float startOffset, float r1, float endOffset, float r2) {
+        return Stream.of(
+                new ArcLineArc(start, 100, endPos, endTangent, startOffset, r1, endOffset, r2),
+                new ArcLineArc(start, 100, endPos, endTangent, startOffset, r1, endOffset, -r2),
+                new ArcLineArc(start, 100, endPos, endTangent, startOffset, -r1, endOffset, r2),
+                new ArcLineArc(start, 100, endPos, endTangent, startOffset, -r1, endOffset, -r2)
+        )
+                .filter(a -> a.isValid(100))
+                .filter(a -> {
+                    var path = a.bakeInternal(SegmentedPath.MAX_SAMPLES);
+                    for (int i = 0; i < path.getNumPoints(); i++) {
+                        if (RLConstants.isOutOfBounds(path.getPoint(i)))
+                            return false;
+                    }
+                    return true;
+                })
+                .min(Comparator.comparingDouble(ArcLineArc::getLength));
+    }
+
+    @Test
+    public void closedFormMatchesArcs() {
+        final Random random = new Random(1);
+        int checked = 0;
+        for (int q = 0; q < 2000; q++) {
+            final Physics2D start = randomStart(random);
+            final Vector2 endPos = randomPos(random);
+            final Vector2 endTangent = randomTangent(random);
+            final float r1 = (random.nextBoolean() ? 1 : -1) * R1, r2 = (random.nextBoolean() ? 1 : -1) * R2;
+
+            final var arc = new ArcLineArc(start, 100, endPos, endTangent, 5, r1, 40, r2);
+            final Vector2 tangent = start.forward();
+            final float length = ArcLineArc.closedFormLength(
+                    start.position.x + tangent.x * 5, start.position.y + tangent.y * 5, tangent.x, tangent.y,
+                    endPos.x - endTangent.x * 40, endPos.y - endTangent.y * 40, endTangent.x, endTangent.y,
+                    5, r1, 40, r2, 100, new float[ArcLineArc.GEOMETRY_SIZE]);
+
+            if (!arc.isValid(100) || !Float.isFinite(arc.getLength())) {
+                Assertions.assertTrue(Float.isNaN(length), "" + length);
+                continue;
+            }
+            checked++;
+            Assertions.assertEquals(arc.getLength(), length, arc.getLength() * 1e-4f);
+        }
+        Assertions.assertTrue(checked > 1000, "Only " + checked + " valid arcs");
+    }
+
+    @Test
+    public void bakedPointsMatchLengths() {
+        final Random random = new Random(5);
+        int checked = 0;
+        for (int q = 0; q < 200; q++) {
+            final Physics2D start = randomStart(random);
+            final float r1 = (random.nextBoolean() ? 1 : -1) * R1, r2 = (random.nextBoolean() ? 1 : -1) * R2;
+            final var arc = new ArcLineArc(start, 100, randomPos(random), randomTangent(random), 5, r1, 40, r2);
+            if (!arc.isValid(100) || !Float.isFinite(arc.getLength()))
+                continue;
+            checked++;
+
+            // The solved geometry has to line up with the lengths: no jumps between the pieces, distances shrink by the chord length
+            final var curve = arc.bakeInternal(SegmentedPath.MAX_SAMPLES);
+            for (int i = 0; i + 1 < curve.getNumPoints(); i++) {
+                final float step = curve.distances[i] - curve.distances[i + 1];
+                Assertions.assertEquals(step, curve.getPoint(i).distance(curve.getPoint(i + 1)), 0.5f, "point " + i);
+            }
+        }
+        Assertions.assertTrue(checked > 100, "Only " + checked + " valid arcs");
+    }
+
+    @Test
+    public void optimalMatchesReference() {
+        final Random random = new Random(2);
+        for (int q = 0; q < 300; q++) {
+            final Physics2D start = randomStart(random);
+            final Vector2 endPos = randomPos(random);
+            final Vector2 endTangent = randomTangent(random);
+
+            final var reference = referenceOptimalALA(start, endPos, endTangent, 5, R1, 40, R2);
+            final var optimal = ArcLineArc.findOptimalALA(start, 100, endPos, endTangent, 5, R1, 40, R2);
+            Assertions.assertEquals(reference.isPresent(), optimal.isPresent());
+            if (reference.isEmpty())
+                continue;
+            Assertions.assertEquals(reference.get().getLength(), optimal.get().getLength(), 1e-2f);
+            Assertions.assertEquals(0, reference.get().getEndPos().distance(optimal.get().getEndPos()), 1e-1f);
+        }
+    }
+
+    @Test
+    public void batchMatchesSingle() {
+        final Random random = new Random(3);
+        final Physics2D start = randomStart(random);
+        final int n = 500;
+        final Vector2[] endPositions = new Vector2[n];
+        final Vector2[] endTangents = new Vector2[n];
+        for (int i = 0; i < n; i++) {
+            endPositions[i] = randomPos(random);
+            endTangents[i] = randomTangent(random);
+        }
+
+        final float[] lengths = new float[n];
+        ArcLineArc.findOptimalLengths(start, endPositions, endTangents, 5, R1, 40, R2, lengths);
+        for (int i = 0; i < n; i++) {
+            final float r1 = R1, r2 = R2;
+            float best = Float.NaN;
+            for (var arc : new ArcLineArc[]{
+                    new ArcLineArc(start, 100, endPositions[i], endTangents[i], 5, r1, 40, r2),
+                    new ArcLineArc(start, 100, endPositions[i], endTangents[i], 5, r1, 40, -r2),
+                    new ArcLineArc(start, 100, endPositions[i], endTangents[i], 5, -r1, 40, r2),
+                    new ArcLineArc(start, 100, endPositions[i], endTangents[i], 5, -r1, 40, -r2)}) {
+                if (arc.isValid(100) && Float.isFinite(arc.getLength()) && !(arc.getLength() >= best))
+                    best = arc.getLength();
+            }
+            if (Float.isNaN(best))
+                Assertions.assertTrue(Float.isNaN(lengths[i]));
+            else
+                Assertions.assertEquals(best, lengths[i], best * 1e-4f);
+        }
+    }
+
+    @Test
+    public void optimalBenchmark() {
+        final Random random = new Random(4);
+        final Physics2D start = randomStart(random);
+        final int n = 2000;
+        final Vector2[] endPositions = new Vector2[n];
+        final Vector2[] endTangents = new Vector2[n];
+        for (int i = 0; i < n; i++) {
+            endPositions[i] = randomPos(random);
+            endTangents[i] = randomTangent(random);
+        }
+        final float[] lengths = new float[n];
+
+        float tmp = 0;
+        for (int rep = 0; rep < 3; rep++) { // JIT
+            for (int i = 0; i < n; i++) {
+                tmp += referenceOptimalALA(start, endPositions[i], endTangents[i], 5, R1, 40, R2).map(ArcLineArc::getLength).orElse(0f);
+                tmp += ArcLineArc.findOptimalALA(start, 100, endPositions[i], endTangents[i], 5, R1, 40, R2).map(ArcLineArc::getLength).orElse(0f);
+            }
+            ArcLineArc.findOptimalLengths(start, endPositions, endTangents, 5, R1, 40, R2, lengths);
+        }
+
+        long ns = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tmp += referenceOptimalALA(start, endPositions[i], endTangents[i], 5, R1, 40, R2).map(ArcLineArc::getLength).orElse(0f);
+        final float reference = (System.nanoTime() - ns) / (1000f * n);
+
+        ns = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tmp += ArcLineArc.findOptimalALA(start, 100, endPositions[i], endTangents[i], 5, R1, 40, R2).map(ArcLineArc::getLength).orElse(0f);
+        final float optimal = (System.nanoTime() - ns) / (1000f * n);
+
+        ns = System.nanoTime();
+        ArcLineArc.findOptimalLengths(start, endPositions, endTangents, 5, R1, 40, R2, lengths);
+        final float batch = (System.nanoTime() - ns) / (1000f * n);
+
+        System.out.println("findOptimalALA: bake all four " + reference + "us, bake the winner " + optimal + "us, batch lengths " + batch + "us per target " + tmp);
+        Assertions.assertTrue(optimal < reference);
+    }
+}
@@ -0,0 +1,178 @@
+package yangbot.path.navmesh;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class GraphTest {
+
+    private static final float MAX_WEIGHT = 8f;
+
+    @BeforeAll
+    public static void loadNavmesh() {
+        SoccarNavmesh.load();
+        System.out.println("Navmesh: " + Navigator.navigationGraph.getNumVertices() + " vertices, " + Navigator.navigationGraph.getNumEdges() + " edges" + (SoccarNavmesh.hasSynthesizedEdges() ? " (synthesized)" : ""));
+    }
+
+    // Plain Dijkstra as a reference
+    private static float[] dijkstra(Graph graph, int start) {
+        final float[] weights = new float[graph.getNumVertices()];
+        Arrays.fill(weights, MAX_WEIGHT);
+        weights[start] = 0;
+        final PriorityQueue<float[]> queue = new PriorityQueue<>((a, b) -> Float.compare(a[1], b[1]));
+        queue.add(new float[]{start, 0});
+        while (!queue.isEmpty()) {
+            final float[] cur = queue.poll();
+            final int v = (int) cur[0];
+            if (cur[1] > weights[v])
+                continue;
+            for (int j = graph.offsets[v]; j < graph.offsets[v + 1]; j++) {
+                final float w = weights[v] + graph.weights[j];
+                if (w < weights[graph.destinations[j]]) {
+                    weights[graph.destinations[j]] = w;
+                    queue.add(new float[]{graph.destinations[j], w});
+                }
+            }
+        }
+        return weights;
+    }
+
+    private static float edgeWeight(Graph graph, int from, int to) {
+        float best = Float.MAX_VALUE;
+        for (int j = graph.offsets[from]; j < graph.offsets[from + 1]; j++) {
+            if (graph.destinations[j] == to)
+                best = Math.min(best, graph.weights[j]);
+        }
+        return best;
+    }
+
+    // Random start vertex that has outgoing edges
+    private static int randomStart(Graph graph, Random random) {
+        while (true) {
+            final int v = random.nextInt(graph.getNumVertices());
+            if (graph.offsets[v + 1] > graph.offsets[v])
+                return v;
+        }
+    }
+
+    private static int randomReachable(float[] weights, Random random) {
+        while (true) {
+            final int v = random.nextInt(weights.length);
+            if (weights[v] < MAX_WEIGHT && weights[v] > 0)
+                return v;
+        }
+    }
+
+    @Test
+    public void bellmanFordMatchesDijkstra() {
+        final Graph graph = Navigator.navigationGraph;
+        final Random random = new Random(1);
+        for (int q = 0; q < 5; q++) {
+            final int start = randomStart(graph, random);
+            final float[] reference = dijkstra(graph, start);
+            final Graph.SearchResult result = graph.bellmanFord(start, MAX_WEIGHT);
+            for (int v = 0; v < reference.length; v++) {
+                Assertions.assertEquals(reference[v], result.weightOf(v), 1e-4f, "vertex " + v);
+                if (reference[v] < MAX_WEIGHT && v != start)
+                    Assertions.assertEquals(result.weightOf(v), result.weightOf(result.parentOf(v)) + edgeWeight(graph, result.parentOf(v), v), 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void astarFindsValidPaths() {
+        final Graph graph = Navigator.navigationGraph;
+        final Random random = new Random(2);
+        for (int q = 0; q < 20; q++) {
+            final int start = randomStart(graph, random);
+            final float[] reference = dijkstra(graph, start);
+            final int end = randomReachable(reference, random);
+
+            final Graph.SearchResult result = graph.astar(start, end, MAX_WEIGHT);
+            Assertions.assertTrue(result.reachedEnd());
+
+            // Walk the path back and add up the edges
+            float pathWeight = 0;
+            int v = end;
+            for (int i = 0; v != start; i++) {
+                Assertions.assertTrue(i < graph.getNumVertices());
+                final int parent = result.parentOf(v);
+                Assertions.assertNotEquals(-1, parent);
+                pathWeight += edgeWeight(graph, parent, v);
+                v = parent;
+            }
+            Assertions.assertEquals(result.weightOf(end), pathWeight, 1e-3f);
+            // The heuristic assumes 1500uu/s, which isn't quite admissible, so the path may be a bit longer than the optimum
+            Assertions.assertTrue(pathWeight >= reference[end] - 1e-4f);
+            Assertions.assertTrue(pathWeight <= reference[end] * 1.25f + 1e-4f, pathWeight + " vs " + reference[end]);
+        }
+    }
+
+    @Test
+    public void reusedWorkspaceGivesSameResults() {
+        final Graph graph = Navigator.navigationGraph;
+        final Random random = new Random(3);
+        final int start = randomStart(graph, random);
+        final int end = randomReachable(dijkstra(graph, start), random);
+
+        final Graph.SearchResult first = graph.astar(start, end, MAX_WEIGHT);
+        final int[] firstParents = first.toParentArray();
+        final float firstWeight = first.weightOf(end);
+
+        for (int i = 0; i < 10; i++) {
+            final int otherStart = randomStart(graph, random);
+            graph.astar(otherStart, -1, 1f);
+            graph.bellmanFord(otherStart, 2f);
+        }
+        Assertions.assertFalse(first.isValid());
+
+        final Graph.SearchResult second = graph.astar(start, end, MAX_WEIGHT);
+        Assertions.assertTrue(second.isValid());
+        Assertions.assertEquals(firstWeight, second.weightOf(end));
+        Assertions.assertArrayEquals(firstParents, second.toParentArray());
+        Assertions.assertArrayEquals(firstParents, graph.astar_sssp(start, end, MAX_WEIGHT));
+    }
+
+    @Test
+    public void queryLatency() {
+        final Graph graph = Navigator.navigationGraph;
+        final Random random = new Random(4);
+        final int queries = 100;
+        final int[] starts = new int[queries];
+        final int[] ends = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = randomStart(graph, random);
+            ends[i] = randomStart(graph, random);
+        }
+
+        long tmp = 0;
+        for (int i = 0; i < queries; i++) { // JIT
+            tmp += graph.astar(starts[i], ends[i], MAX_WEIGHT).parentOf(ends[i]);
+            tmp += graph.bellmanFord(starts[i], MAX_WEIGHT).parentOf(ends[i]);
+        }
+
+        final long[] astar = new long[queries];
+        final long[] bellmanFord = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            long ns = System.nanoTime();
+            tmp += graph.astar(starts[i], ends[i], MAX_WEIGHT).parentOf(ends[i]);
+            astar[i] = System.nanoTime() - ns;
+
+            ns = System.nanoTime();
+            tmp += graph.bellmanFord(starts[i], MAX_WEIGHT).parentOf(ends[i]);
+            bellmanFord[i] = System.nanoTime() - ns;
+        }
+        System.out.println("astar:       " + summary(astar));
+        System.out.println("bellmanFord: " + summary(bellmanFord) + " " + tmp);
+    }
+
+    static String summary(long[] ns) {
+        final long[] sorted = ns.clone();
+        Arrays.sort(sorted);
+        return String.format("p50=%.3fms p99=%.3fms max=%.3fms", sorted[sorted.length / 2] * 1e-6f, sorted[sorted.length * 99 / 100] * 1e-6f, sorted[sorted.length - 1] * 1e-6f);
+    }
+}
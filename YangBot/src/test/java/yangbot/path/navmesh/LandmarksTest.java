@@ -0,0 +1,162 @@
+package yangbot.path.navmesh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class LandmarksTest {
+
+    private static final float MAX_WEIGHT = 8f;
+
+    @TempDir
+    static Path directory;
+    private static Landmarks landmarks;
+
+    @BeforeAll
+    public static void select() {
+        SoccarNavmesh.load();
+        final long ms = System.currentTimeMillis();
+        landmarks = Landmarks.select(Navigator.navigationGraph, 8);
+        System.out.println("Selected landmarks " + Arrays.toString(landmarks.getLandmarks()) + " in " + (System.currentTimeMillis() - ms) + "ms");
+    }
+
+    @AfterEach
+    public void resetGraph() {
+        Navigator.navigationGraph.setLandmarks(null);
+    }
+
+    // Unbounded Dijkstra as a reference
+    private static float[] dijkstra(Graph graph, int start) {
+        final float[] weights = new float[graph.getNumVertices()];
+        Arrays.fill(weights, Float.POSITIVE_INFINITY);
+        weights[start] = 0;
+        final PriorityQueue<float[]> queue = new PriorityQueue<>((a, b) -> Float.compare(a[1], b[1]));
+        queue.add(new float[]{start, 0});
+        while (!queue.isEmpty()) {
+            final float[] cur = queue.poll();
+            final int v = (int) cur[0];
+            if (cur[1] > weights[v])
+                continue;
+            for (int j = graph.offsets[v]; j < graph.offsets[v + 1]; j++) {
+                final float w = weights[v] + graph.weights[j];
+                if (w < weights[graph.destinations[j]]) {
+                    weights[graph.destinations[j]] = w;
+                    queue.add(new float[]{graph.destinations[j], w});
+                }
+            }
+        }
+        return weights;
+    }
+
+    private static int randomStart(Graph graph, Random random) {
+        while (true) {
+            final int v = random.nextInt(graph.getNumVertices());
+            if (graph.offsets[v + 1] > graph.offsets[v])
+                return v;
+        }
+    }
+
+    @Test
+    public void lowerBoundIsAdmissible() {
+        final Graph graph = Navigator.navigationGraph;
+        final Random random = new Random(1);
+        for (int q = 0; q < 3; q++) {
+            final int source = randomStart(graph, random);
+            final float[] reference = dijkstra(graph, source);
+            for (int v = 0; v < reference.length; v++) {
+                if (Float.isInfinite(reference[v]))
+                    continue;
+                final float bound = landmarks.lowerBound(source, v);
+                Assertions.assertTrue(bound <= reference[v] + 1e-4f, bound + " > " + reference[v]);
+            }
+            Assertions.assertEquals(0, landmarks.lowerBound(source, source));
+        }
+    }
+
+    @Test
+    public void astarStaysOptimal() {
+        final Graph graph = Navigator.navigationGraph;
+        graph.setLandmarks(landmarks);
+        final Random random = new Random(2);
+        for (int q = 0; q < 20; q++) {
+            final int start = randomStart(graph, random);
+            final float[] reference = dijkstra(graph, start);
+            final int end = randomStart(graph, random);
+
+            final Graph.SearchResult result = graph.astar(start, end, MAX_WEIGHT);
+            Assertions.assertEquals(reference[end] < MAX_WEIGHT, result.reachedEnd(), "weight " + reference[end]);
+            if (result.reachedEnd())
+                Assertions.assertEquals(reference[end], result.weightOf(end), 1e-3f);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        final Graph graph = Navigator.navigationGraph;
+        final Path file = directory.resolve("roundtrip.ylmk");
+        landmarks.write(file, graph);
+
+        final Landmarks mapped = Landmarks.map(file);
+        Assertions.assertTrue(mapped.matches(graph));
+        Assertions.assertArrayEquals(landmarks.getLandmarks(), mapped.getLandmarks());
+        final Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            final int v = random.nextInt(graph.getNumVertices()), t = random.nextInt(graph.getNumVertices());
+            Assertions.assertEquals(landmarks.lowerBound(v, t), mapped.lowerBound(v, t));
+        }
+
+        final byte[] flipped = Files.readAllBytes(file);
+        flipped[flipped.length / 2] ^= 1;
+        Assertions.assertThrows(IllegalStateException.class, () -> Landmarks.read(ByteBuffer.wrap(flipped)));
+
+        // Tables of another graph are refused
+        final Graph other = new Graph(new Graph.Edge[]{new Graph.Edge(0, 1, 1), new Graph.Edge(1, 0, 1)});
+        Assertions.assertFalse(mapped.matches(other));
+        Assertions.assertThrows(IllegalStateException.class, () -> other.setLandmarks(mapped));
+    }
+
+    @Test
+    public void astarBenchmark() {
+        final Graph graph = Navigator.navigationGraph;
+        final Random random = new Random(4);
+        final int queries = 100;
+        final int[] starts = new int[queries];
+        final int[] ends = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = randomStart(graph, random);
+            ends[i] = randomStart(graph, random);
+        }
+
+        final long[][] times = new long[2][queries];
+        final long[] expanded = new long[2];
+        final int[] reached = new int[2];
+        long tmp = 0;
+        for (int mode = 0; mode < 2; mode++) {
+            graph.setLandmarks(mode == 0 ? null : landmarks);
+            for (int i = 0; i < queries; i++) // JIT
+                tmp += graph.astar(starts[i], ends[i], MAX_WEIGHT).parentOf(ends[i]);
+
+            for (int i = 0; i < queries; i++) {
+                final long ns = System.nanoTime();
+                final Graph.SearchResult result = graph.astar(starts[i], ends[i], MAX_WEIGHT);
+                times[mode][i] = System.nanoTime() - ns;
+                expanded[mode] += result.getExpandedVertices();
+                if (result.reachedEnd())
+                    reached[mode]++;
+            }
+        }
+        System.out.println("astar, straight line: " + GraphTest.summary(times[0]) + ", " + (expanded[0] / queries) + " expanded vertices on average, reached " + reached[0]);
+        System.out.println("astar, landmarks:     " + GraphTest.summary(times[1]) + ", " + (expanded[1] / queries) + " expanded vertices on average, reached " + reached[1] + " " + tmp);
+        Assertions.assertTrue(expanded[1] < expanded[0]);
+    }
+}
@@ -0,0 +1,159 @@
+package yangbot.path.navmesh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import yangbot.path.Curve;
+import yangbot.util.math.vector.Vector3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+public class NavigatorLutTest {
+
+    @TempDir
+    static Path directory;
+    private static NavigatorLut lut;
+    private static NavigatorLutGenerator generator;
+
+    // Smaller than the real table (nx = 96) so it generates quickly
+    @BeforeAll
+    public static void generate() {
+        SoccarNavmesh.load();
+        generator = new NavigatorLutGenerator();
+        generator.nx = 24;
+        lut = generator.generate();
+    }
+
+    @AfterEach
+    public void resetNavigator() {
+        Navigator.setLut(null);
+    }
+
+    @Test
+    public void predecessorsLeadToStart() {
+        final int start = lut.index(0, 0, 0, lut.startVelocity());
+        Assertions.assertEquals(0, lut.time(start));
+        Assertions.assertEquals(NavigatorLut.UNREACHABLE, lut.predecessor(start));
+
+        final Random random = new Random(1);
+        int checked = 0;
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(2 * lut.nx + 1) - lut.nx;
+            int y = random.nextInt(2 * lut.nx + 1) - lut.nx;
+            int theta = random.nextInt(lut.ntheta);
+            int v = random.nextInt(lut.nv);
+            float time = lut.time(lut.index(x, y, theta, v));
+            if (!Float.isFinite(time))
+                continue;
+            checked++;
+
+            int steps = 0;
+            while (lut.index(x, y, theta, v) != start) {
+                final int code = lut.predecessor(lut.index(x, y, theta, v));
+                Assertions.assertNotEquals(NavigatorLut.UNREACHABLE, code);
+                x -= NavigatorLut.deltaX(code);
+                y -= NavigatorLut.deltaY(code);
+                theta = Math.floorMod(theta - NavigatorLut.deltaTheta(code), lut.ntheta);
+                v -= NavigatorLut.deltaV(code);
+                Assertions.assertTrue(lut.contains(x, y));
+
+                final float previous = lut.time(lut.index(x, y, theta, v));
+                // Quantized times may tie, never go up by more than rounding
+                Assertions.assertTrue(previous <= time + lut.timeStep, previous + " > " + time);
+                time = previous;
+                Assertions.assertTrue(++steps < lut.numStates());
+            }
+        }
+        Assertions.assertTrue(checked > 1000, "Only " + checked + " reachable states");
+    }
+
+    @Test
+    public void deltaCodesRoundTrip() {
+        for (int dx = -NavigatorLut.MAX_STEP; dx <= NavigatorLut.MAX_STEP; dx++) {
+            for (int dy = -NavigatorLut.MAX_STEP; dy <= NavigatorLut.MAX_STEP; dy++) {
+                for (int dtheta = -1; dtheta <= 1; dtheta++) {
+                    for (int dv = -1; dv <= 1; dv++) {
+                        final int code = NavigatorLut.encodeDelta(dx, dy, dtheta, dv);
+                        Assertions.assertNotEquals(NavigatorLut.UNREACHABLE, code);
+                        Assertions.assertEquals(dx, NavigatorLut.deltaX(code));
+                        Assertions.assertEquals(dy, NavigatorLut.deltaY(code));
+                        Assertions.assertEquals(dtheta, NavigatorLut.deltaTheta(code));
+                        Assertions.assertEquals(dv, NavigatorLut.deltaV(code));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        final Path file = directory.resolve("roundtrip.ylut");
+        lut.write(file);
+        Assertions.assertEquals(lut.sizeInBytes(), Files.size(file));
+
+        final NavigatorLut mapped = NavigatorLut.map(file);
+        Assertions.assertEquals(lut.scale, mapped.scale);
+        Assertions.assertEquals(lut.nx, mapped.nx);
+        Assertions.assertEquals(lut.ntheta, mapped.ntheta);
+        Assertions.assertEquals(lut.nv, mapped.nv);
+        Assertions.assertEquals(lut.startSpeed, mapped.startSpeed);
+        Assertions.assertEquals(lut.timeStep, mapped.timeStep);
+        for (int i = 0; i < lut.numStates(); i++) {
+            Assertions.assertEquals(lut.time(i), mapped.time(i));
+            Assertions.assertEquals(lut.predecessor(i), mapped.predecessor(i));
+        }
+    }
+
+    @Test
+    public void rejectsCorruptFiles() throws IOException {
+        final Path file = directory.resolve("corrupt.ylut");
+        lut.write(file);
+        final byte[] bytes = Files.readAllBytes(file);
+
+        final byte[] flipped = bytes.clone();
+        flipped[flipped.length / 2] ^= 1;
+        Assertions.assertThrows(IllegalStateException.class, () -> NavigatorLut.read(ByteBuffer.wrap(flipped)));
+
+        final byte[] magic = bytes.clone();
+        magic[0]++;
+        Assertions.assertThrows(IllegalStateException.class, () -> NavigatorLut.read(ByteBuffer.wrap(magic)));
+
+        final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 2);
+        Assertions.assertThrows(IllegalStateException.class, () -> NavigatorLut.read(ByteBuffer.wrap(truncated)));
+    }
+
+    @Test
+    public void findPathUsesLut() {
+        Navigator.setLut(lut);
+        final Vector3 start = new Vector3(-500, -1000, 17);
+        final Vector3 startTangent = new Vector3(0, 1, 0);
+        final Vector3 end = new Vector3(200, 0, 17);
+        final Vector3 endTangent = new Vector3(1, 0, 0);
+
+        final Optional<Curve> curve = Navigator.findPath(start, startTangent, end, endTangent, 20);
+        Assertions.assertTrue(curve.isPresent());
+        Assertions.assertEquals(0, curve.get().pointAt(curve.get().length).distance(start), 1);
+        Assertions.assertEquals(0, curve.get().pointAt(0).distance(end), 1);
+        Assertions.assertTrue(curve.get().length >= end.distance(start));
+
+        // Out of range on the lattice, falls back to the navmesh
+        final Vector3 far = new Vector3(2500, 4000, 17);
+        Assertions.assertTrue(Navigator.findPath(start, startTangent, far, endTangent, 20).isPresent());
+    }
+
+    @Test
+    public void generationBenchmark() {
+        final float seconds = generator.getGenerationNanos() * 1e-9f;
+        System.out.println("Generated " + lut.numStates() + " states (" + generator.getReachedStates() + " reachable) in " + seconds + "s, " + (int) (generator.getReachedStates() / seconds) + " states/s");
+        System.out.println("Size: " + (lut.sizeInBytes() / 1024) + "KB, " + (8L * lut.numStates() / 1024) + "KB as float times and int paths");
+        Assertions.assertTrue(lut.sizeInBytes() < 8L * lut.numStates());
+    }
+}
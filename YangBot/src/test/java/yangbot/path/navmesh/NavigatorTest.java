@@ -0,0 +1,85 @@
+package yangbot.path.navmesh;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import yangbot.path.Curve;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.Optional;
+
+public class NavigatorTest {
+
+    @BeforeAll
+    public static void loadNavmesh() {
+        SoccarNavmesh.load();
+    }
+
+    @Test
+    public void findPathMatchesAnalyzeSurroundings() {
+        final Vector3 startTangent = new Vector3(0, 1, 0);
+        final Vector3[][] queries = {
+                {new Vector3(0, -3000, 17), new Vector3(1000, 2000, 17), new Vector3(0, 1, 0)},
+                {new Vector3(-2000, 0, 17), new Vector3(2500, -1500, 17), new Vector3(1, 0, 0)},
+                {new Vector3(500, 500, 17), new Vector3(-3000, 4000, 17), new Vector3(-1, 0, 0)},
+        };
+        for (Vector3[] query : queries) {
+            final Navigator nav = new Navigator(Navigator.PathAlgorithm.BELLMANN_FORD);
+            nav.analyzeSurroundings(query[0], startTangent);
+            final Curve expected = nav.pathTo(startTangent, query[1], query[2], 20);
+
+            final Optional<Curve> actual = Navigator.findPath(query[0], startTangent, query[1], query[2], 20);
+            Assertions.assertNotNull(expected);
+            Assertions.assertTrue(actual.isPresent());
+            Assertions.assertEquals(expected.length, actual.get().length, 1e-3f);
+            Assertions.assertEquals(expected.getNumPoints(), actual.get().getNumPoints());
+            for (int i = 0; i < expected.getNumPoints(); i++)
+                Assertions.assertEquals(0, expected.getPoint(i).distance(actual.get().getPoint(i)), 1e-3);
+        }
+    }
+
+    @Test
+    public void treesAreReused() {
+        final ShortestPathTreeCache cache = Navigator.getTreeCache();
+        cache.clear();
+        final Vector3 startTangent = new Vector3(0, 1, 0);
+        final Vector3 start = new Vector3(1000, -1000, 17);
+
+        int misses = cache.getMisses(), hits = cache.getHits();
+        Assertions.assertTrue(Navigator.findPath(start, startTangent, new Vector3(0, 3000, 17), startTangent, 20).isPresent());
+        Assertions.assertEquals(misses + 1, cache.getMisses());
+
+        // Same start, nudged slightly like on the next tick
+        Assertions.assertTrue(Navigator.findPath(start.add(new Vector3(1, 2, 0)), startTangent, new Vector3(-2000, 2000, 17), startTangent, 20).isPresent());
+        Assertions.assertEquals(misses + 1, cache.getMisses());
+        Assertions.assertEquals(hits + 1, cache.getHits());
+
+        // Opposite direction is a different tree
+        Navigator.findPath(start, startTangent.mul(-1), new Vector3(0, 3000, 17), startTangent, 20);
+        Assertions.assertEquals(misses + 2, cache.getMisses());
+    }
+
+    @Test
+    public void cachedQueryLatency() {
+        final Vector3 startTangent = new Vector3(0, 1, 0);
+        final Vector3 start = new Vector3(-500, -2500, 17);
+        final Vector3 end = new Vector3(1500, 1000, 17);
+        for (int i = 0; i < 20; i++) { // JIT
+            Navigator.getTreeCache().clear();
+            Navigator.findPath(start, startTangent, end, startTangent, 20);
+            Navigator.findPath(start, startTangent, end, startTangent, 20);
+        }
+
+        Navigator.getTreeCache().clear();
+        long ns = System.nanoTime();
+        Navigator.findPath(start, startTangent, end, startTangent, 20);
+        final long miss = System.nanoTime() - ns;
+
+        ns = System.nanoTime();
+        for (int i = 0; i < 100; i++)
+            Navigator.findPath(start, startTangent, end, startTangent, 20);
+        final long hit = (System.nanoTime() - ns) / 100;
+
+        System.out.println("findPath: " + (miss * 0.000001f) + "ms without cached tree, " + (hit * 0.000001f) + "ms with");
+    }
+}
@@ -0,0 +1,130 @@
+package yangbot.path.navmesh;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import yangbot.util.math.vector.Vector3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class NavmeshCacheTest {
+
+    @TempDir
+    static Path directory;
+    private static Path cacheFile;
+
+    // Writes the navmesh in the old format and converts it like the gradle task would.
+    // Without the edge file in the resources this is the graph SoccarNavmesh synthesizes, not the real one
+    @BeforeAll
+    public static void convert() throws IOException {
+        SoccarNavmesh.load();
+        final Graph graph = Navigator.navigationGraph;
+
+        final ByteBuffer edges = ByteBuffer.allocate(12 * graph.getNumEdges()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int v = 0; v < graph.getNumVertices(); v++) {
+            for (int j = graph.offsets[v]; j < graph.offsets[v + 1]; j++) {
+                edges.putInt(v);
+                edges.putInt(graph.destinations[j]);
+                edges.putFloat(graph.weights[j]);
+            }
+        }
+        Files.write(directory.resolve("soccar_navigation_edges.bin"), edges.array());
+        Files.write(directory.resolve("soccar_navigation_nodes.bin"), vectorBytes(Navigator.navigationNodes));
+        Files.write(directory.resolve("soccar_navigation_normals.bin"), vectorBytes(Navigator.navigationNormals));
+        try (InputStream in = NavmeshCacheTest.class.getClassLoader().getResourceAsStream("LUT_parameters.bin")) {
+            Files.write(directory.resolve("LUT_parameters.bin"), in.readAllBytes());
+        }
+
+        cacheFile = directory.resolve("soccar_navmesh.ynav");
+        NavmeshCache.main(new String[]{directory.toString(), "soccar", cacheFile.toString()});
+    }
+
+    private static byte[] vectorBytes(Vector3[] vectors) {
+        final ByteBuffer buffer = ByteBuffer.allocate(12 * vectors.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (Vector3 vec : vectors) {
+            buffer.putFloat((float) vec.x);
+            buffer.putFloat((float) vec.y);
+            buffer.putFloat((float) vec.z);
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        final NavmeshCache.Navmesh navmesh = NavmeshCache.map(cacheFile);
+        final Graph graph = Navigator.navigationGraph;
+
+        Assertions.assertEquals(Navigator.numDirectionDistinctions, navmesh.numDirections);
+        Assertions.assertArrayEquals(graph.offsets, navmesh.graph.offsets);
+        Assertions.assertArrayEquals(graph.destinations, navmesh.graph.destinations);
+        Assertions.assertArrayEquals(graph.weights, navmesh.graph.weights);
+        Assertions.assertEquals(Navigator.navigationNodes.length, navmesh.nodes.length);
+        for (int i = 0; i < navmesh.nodes.length; i++) {
+            Assertions.assertEquals(0, navmesh.nodes[i].distance(Navigator.navigationNodes[i]), 1e-3);
+            Assertions.assertEquals(0, navmesh.normals[i].distance(Navigator.navigationNormals[i]), 1e-6);
+        }
+    }
+
+    @Test
+    public void rejectsCorruptFiles() throws IOException {
+        final byte[] bytes = Files.readAllBytes(cacheFile);
+
+        final byte[] flipped = bytes.clone();
+        flipped[flipped.length / 2] ^= 1;
+        Assertions.assertThrows(IllegalStateException.class, () -> NavmeshCache.read(ByteBuffer.wrap(flipped)));
+
+        final byte[] version = bytes.clone();
+        version[4]++;
+        Assertions.assertThrows(IllegalStateException.class, () -> NavmeshCache.read(ByteBuffer.wrap(version)));
+
+        final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 4);
+        Assertions.assertThrows(IllegalStateException.class, () -> NavmeshCache.read(ByteBuffer.wrap(truncated)));
+    }
+
+    @Test
+    public void startupBenchmark() throws IOException {
+        for (int i = 0; i < 2; i++) { // JIT
+            NavmeshCache.readLegacy(directory, "soccar", Navigator.numDirectionDistinctions);
+            NavmeshCache.map(cacheFile);
+        }
+
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long heap = usedHeap();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long ns = System.nanoTime();
+        NavmeshCache.Navmesh legacy = NavmeshCache.readLegacy(directory, "soccar", Navigator.numDirectionDistinctions);
+        ns = System.nanoTime() - ns;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        long retained = usedHeap() - heap;
+        System.out.println((SoccarNavmesh.hasSynthesizedEdges() ? "Synthesized graph, " : "") + "Legacy files:  ready in " + (ns * 0.000001f) + "ms, allocated " + (allocated / 1024 / 1024) + "MB, retained " + (retained / 1024 / 1024) + "MB");
+        Assertions.assertNotNull(legacy.graph);
+        legacy = null;
+
+        heap = usedHeap();
+        allocated = threads.getCurrentThreadAllocatedBytes();
+        ns = System.nanoTime();
+        NavmeshCache.Navmesh cached = NavmeshCache.map(cacheFile);
+        ns = System.nanoTime() - ns;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        retained = usedHeap() - heap;
+        // The mapping is only read from, the graph is copied into heap arrays just like the legacy one
+        System.out.println("Navmesh cache (copied into heap arrays): ready in " + (ns * 0.000001f) + "ms, allocated " + (allocated / 1024 / 1024) + "MB, retained " + (retained / 1024 / 1024) + "MB");
+        Assertions.assertNotNull(cached.graph);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
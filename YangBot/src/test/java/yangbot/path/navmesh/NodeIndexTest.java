@@ -0,0 +1,138 @@
+package yangbot.path.navmesh;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import yangbot.util.math.vector.Vector3;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class NodeIndexTest {
+
+    @BeforeAll
+    public static void loadNavmesh() {
+        SoccarNavmesh.load();
+    }
+
+    private static Vector3 randomPosition(Random random) {
+        return new Vector3((random.nextFloat() * 2 - 1) * 4500, (random.nextFloat() * 2 - 1) * 6000, random.nextFloat() * 2100);
+    }
+
+    private static boolean passes(int node, Vector3 normal, float minDot) {
+        return normal == null || Navigator.navigationNormals[node].dot(normal) >= minDot;
+    }
+
+    // Linear scan the navigator used before
+    private static int linearNearest(Vector3 pos, Vector3 normal, float minDot) {
+        int closest = -1;
+        double minimum = Double.MAX_VALUE;
+        for (int i = 0; i < Navigator.navigationNodes.length; i++) {
+            if (!passes(i, normal, minDot))
+                continue;
+            double distance = pos.sub(Navigator.navigationNodes[i]).magnitude();
+            if (distance < minimum) {
+                closest = i;
+                minimum = distance;
+            }
+        }
+        return closest;
+    }
+
+    @Test
+    public void nearestMatchesLinearScan() {
+        final Random random = new Random(1);
+        final Vector3 up = new Vector3(0, 0, 1);
+        for (int i = 0; i < 500; i++) {
+            final Vector3 pos = randomPosition(random);
+            Assertions.assertEquals(linearNearest(pos, null, 0), Navigator.nodeIndex.nearest(pos));
+            Assertions.assertEquals(linearNearest(pos, up, 0.7f), Navigator.nodeIndex.nearest(pos, up, 0.7f));
+        }
+        // Nothing passes
+        Assertions.assertEquals(-1, Navigator.nodeIndex.nearest(new Vector3(), up, 2));
+    }
+
+    @Test
+    public void kNearestMatchesSort() {
+        final Random random = new Random(2);
+        final int[] out = new int[40];
+        for (int i = 0; i < 100; i++) {
+            final Vector3 pos = randomPosition(random);
+            final int k = 1 + random.nextInt(out.length);
+            final Vector3 normal = i % 2 == 0 ? null : new Vector3(1, 0, 0);
+
+            final int[] expected = IntStream.range(0, Navigator.navigationNodes.length)
+                    .filter(n -> passes(n, normal, 0.5f))
+                    .boxed()
+                    .sorted(Comparator.comparingDouble(n -> pos.distance(Navigator.navigationNodes[n])))
+                    .limit(k)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            final int found = Navigator.nodeIndex.kNearest(pos, k, out, normal, 0.5f);
+            Assertions.assertEquals(expected.length, found);
+            for (int j = 0; j < found; j++)
+                Assertions.assertEquals(pos.distance(Navigator.navigationNodes[expected[j]]), pos.distance(Navigator.navigationNodes[out[j]]), 1e-6);
+        }
+    }
+
+    @Test
+    public void radiusMatchesLinearScan() {
+        final Random random = new Random(3);
+        final int[] out = new int[Navigator.navigationNodes.length];
+        for (int i = 0; i < 100; i++) {
+            final Vector3 pos = randomPosition(random);
+            final float radius = 100 + random.nextFloat() * 1000;
+
+            final int[] expected = IntStream.range(0, Navigator.navigationNodes.length)
+                    .filter(n -> pos.distance(Navigator.navigationNodes[n]) <= radius)
+                    .toArray();
+
+            final int found = Navigator.nodeIndex.withinRadius(pos, radius, out);
+            final int[] actual = Arrays.copyOf(out, found);
+            Arrays.sort(actual);
+            Assertions.assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void queryLatency() {
+        final Random random = new Random(4);
+        final Vector3[] queries = new Vector3[2000];
+        for (int i = 0; i < queries.length; i++)
+            queries[i] = randomPosition(random);
+        final int[] out = new int[16];
+
+        long tmp = 0;
+        for (int i = 0; i < queries.length; i++) { // JIT
+            tmp += linearNearest(queries[i], null, 0);
+            tmp += Navigator.nodeIndex.nearest(queries[i]);
+            tmp += Navigator.nodeIndex.kNearest(queries[i], out.length, out);
+        }
+
+        long ns = System.nanoTime();
+        for (int i = 0; i < 200; i++)
+            tmp += linearNearest(queries[i], null, 0);
+        final float linear = (System.nanoTime() - ns) / 200f;
+
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        ns = System.nanoTime();
+        for (Vector3 query : queries)
+            tmp += Navigator.nodeIndex.nearest(query);
+        final float nearest = (System.nanoTime() - ns) / (float) queries.length;
+
+        ns = System.nanoTime();
+        for (Vector3 query : queries)
+            tmp += Navigator.nodeIndex.kNearest(query, out.length, out);
+        final float kNearest = (System.nanoTime() - ns) / (float) queries.length;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+        System.out.println("Linear scan: " + linear / 1000 + "us, nearest: " + nearest / 1000 + "us, 16-nearest: " + kNearest / 1000 + "us, allocated " + allocated + " bytes " + tmp);
+        Assertions.assertTrue(allocated < 1024, allocated + " bytes allocated");
+    }
+}
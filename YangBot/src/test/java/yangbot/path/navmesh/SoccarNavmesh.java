@@ -0,0 +1,163 @@
+package yangbot.path.navmesh;
+
+import yangbot.util.io.LEDataInputStream;
+import yangbot.util.math.vector.Vector3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Loads the soccar navmesh into {@link Navigator} for tests, the same way MainClass does.
+ * The edge file isn't part of the resources, if it's missing the edges are generated from the nodes instead
+ */
+public class SoccarNavmesh {
+
+    private static boolean loaded = false;
+    private static boolean synthesizedEdges = false;
+
+    public static synchronized void load() {
+        if (loaded)
+            return;
+
+        try {
+            final ClassLoader cl = SoccarNavmesh.class.getClassLoader();
+            final int[] parameters = new int[4];
+            try (LEDataInputStream para = new LEDataInputStream(cl.getResourceAsStream("LUT_parameters.bin"))) {
+                for (int i = 0; i < parameters.length; i++)
+                    parameters[i] = para.readIntLE();
+            }
+
+            final List<Vector3> nodes = new ArrayList<>();
+            try (LEDataInputStream para = new LEDataInputStream(cl.getResourceAsStream("soccar_navigation_nodes.bin"))) {
+                while (para.available() > 0) {
+                    Vector3 vec = new Vector3(para.readFloatLE(), para.readFloatLE(), para.readFloatLE());
+                    if (vec.z <= 15)
+                        vec = vec.withZ(15);
+                    nodes.add(vec);
+                }
+            }
+
+            final List<Vector3> normals = new ArrayList<>();
+            try (LEDataInputStream para = new LEDataInputStream(cl.getResourceAsStream("soccar_navigation_normals.bin"))) {
+                while (para.available() > 0)
+                    normals.add(new Vector3(para.readFloatLE(), para.readFloatLE(), para.readFloatLE()));
+            }
+
+            final Vector3[] nodeArray = nodes.toArray(new Vector3[0]);
+            final Vector3[] normalArray = normals.toArray(new Vector3[0]);
+
+            Graph.Edge[] edges = readEdges(cl);
+            if (edges == null) {
+                synthesizedEdges = true;
+                // Tangents are needed to generate edges, initStatics builds them
+                Navigator.initStatics(parameters, new Graph.Edge[]{new Graph.Edge(0, 0, 0)}, nodeArray, normalArray);
+                edges = synthesizeEdges(nodeArray, parameters[2]);
+            }
+            Navigator.initStatics(parameters, edges, nodeArray, normalArray);
+            loaded = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load the soccar navmesh", e);
+        }
+    }
+
+    public static boolean hasSynthesizedEdges() {
+        return synthesizedEdges;
+    }
+
+    private static Graph.Edge[] readEdges(ClassLoader cl) throws IOException {
+        try (InputStream in = cl.getResourceAsStream("soccar_navigation_edges.bin")) {
+            if (in == null)
+                return null;
+            final byte[] allData = in.readAllBytes();
+            final Graph.Edge[] edges = new Graph.Edge[allData.length / 12];
+            final LEDataInputStream para = new LEDataInputStream(new ByteArrayInputStream(allData));
+            for (int i = 0; i < edges.length; i++)
+                edges[i] = new Graph.Edge(para.readIntLE(), para.readIntLE(), para.readFloatLE());
+            return edges;
+        }
+    }
+
+    // Connects every node/direction to the closest nodes ahead of it, arriving straight or turning one direction step
+    private static Graph.Edge[] synthesizeEdges(Vector3[] nodes, int numDirections) {
+        final float minDistance = 150, maxDistance = 500, cellSize = maxDistance;
+        final int neighboursPerDirection = 3;
+
+        // Bucket the nodes on a coarse grid so neighbour lookups don't scan everything
+        final Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int i = 0; i < nodes.length; i++)
+            cells.computeIfAbsent(cellKey(nodes[i], cellSize, 0, 0, 0), k -> new ArrayList<>()).add(i);
+
+        final List<Graph.Edge> edges = new ArrayList<>();
+        final List<Integer> candidates = new ArrayList<>();
+        final int[] best = new int[neighboursPerDirection];
+        final float[] bestDistance = new float[neighboursPerDirection];
+        for (int i = 0; i < nodes.length; i++) {
+            candidates.clear();
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        final List<Integer> cell = cells.get(cellKey(nodes[i], cellSize, dx, dy, dz));
+                        if (cell != null)
+                            candidates.addAll(cell);
+                    }
+                }
+            }
+
+            for (int d = 0; d < numDirections; d++) {
+                final Vector3 tangent = Navigator.navigationTangents[i * numDirections + d];
+                Arrays.fill(best, -1);
+                Arrays.fill(bestDistance, Float.MAX_VALUE);
+                for (int j : candidates) {
+                    final Vector3 offset = nodes[j].sub(nodes[i]);
+                    final float distance = (float) offset.magnitude();
+                    if (distance < minDistance || distance > maxDistance || offset.dot(tangent) < 0.85f * distance)
+                        continue;
+                    // Insert into the sorted list of closest nodes
+                    for (int k = 0; k < neighboursPerDirection; k++) {
+                        if (distance < bestDistance[k]) {
+                            System.arraycopy(best, k, best, k + 1, neighboursPerDirection - k - 1);
+                            System.arraycopy(bestDistance, k, bestDistance, k + 1, neighboursPerDirection - k - 1);
+                            best[k] = j;
+                            bestDistance[k] = distance;
+                            break;
+                        }
+                    }
+                }
+
+                for (int k = 0; k < neighboursPerDirection && best[k] != -1; k++) {
+                    final int j = best[k];
+                    final Vector3 travel = nodes[j].sub(nodes[i]).normalized();
+                    int arrival = 0;
+                    float maxAlignment = -2;
+                    for (int e = 0; e < numDirections; e++) {
+                        final float alignment = (float) travel.dot(Navigator.navigationTangents[j * numDirections + e]);
+                        if (alignment > maxAlignment) {
+                            maxAlignment = alignment;
+                            arrival = e;
+                        }
+                    }
+                    final float time = bestDistance[k] / 1400f;
+                    final int src = i * numDirections + d;
+                    for (int turn = -1; turn <= 1; turn++) {
+                        final int dst = j * numDirections + Math.floorMod(arrival + turn, numDirections);
+                        edges.add(new Graph.Edge(src, dst, time * (1 + 0.3f * Math.abs(turn))));
+                    }
+                }
+            }
+        }
+
+        // Graph derives the vertex count from the highest source
+        final int lastVertex = nodes.length * numDirections - 1;
+        edges.add(new Graph.Edge(lastVertex, lastVertex, 0));
+        return edges.toArray(new Graph.Edge[0]);
+    }
+
+    private static long cellKey(Vector3 pos, float cellSize, int dx, int dy, int dz) {
+        final long x = (long) Math.floor(pos.x / cellSize) + dx + 1024;
+        final long y = (long) Math.floor(pos.y / cellSize) + dy + 1024;
+        final long z = (long) Math.floor(pos.z / cellSize) + dz + 1024;
+        return (x << 40) | (y << 20) | z;
+    }
+}
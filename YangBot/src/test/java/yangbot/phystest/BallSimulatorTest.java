@@ -0,0 +1,103 @@
+package yangbot.phystest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.BallData;
+import yangbot.input.BallSimulator;
+import yangbot.input.RLConstants;
+import yangbot.input.fieldinfo.SoccarArena;
+import yangbot.util.YangBallPrediction;
+import yangbot.util.math.vector.Vector3;
+
+public class BallSimulatorTest {
+
+    private static YangBallPrediction simulate(Vector3 pos, Vector3 vel, float seconds) {
+        return BallSimulator.getBallPrediction(new BallData(pos, vel, new Vector3()), RLConstants.tickRate, seconds);
+    }
+
+    private static void assertInsideArena(YangBallPrediction pred) {
+        for (int i = 0; i < pred.size(); i++) {
+            var contact = SoccarArena.closestSurface(pred.positionXAt(i), pred.positionYAt(i), pred.positionZAt(i));
+            // Collisions are resolved at the start of a step, so allow one tick of penetration
+            Assertions.assertTrue(contact.distance > BallData.COLLISION_RADIUS - 30, "Ball went into a wall at t=" + pred.relativeTimeAt(i) + " " + pred.frameAt(i).ballData);
+        }
+    }
+
+    private static boolean entersGoal(YangBallPrediction pred) {
+        for (int i = 0; i < pred.size(); i++) {
+            if (pred.frameAt(i).ballData.isInAnyGoal())
+                return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void matchesGroundSimulation() {
+        var ball = new BallData(new Vector3(0, 0, 600), new Vector3(500, 300, 800), new Vector3(1, 2, 0));
+        var pred = BallSimulator.getBallPrediction(ball, RLConstants.tickRate, 3);
+        Assertions.assertTrue(pred.size() > 350);
+
+        var simBall = new BallData(ball.position, ball.velocity, ball.angularVelocity);
+        for (int i = 0; i < pred.size(); i++) {
+            Assertions.assertEquals(0, simBall.position.distance(pred.frameAt(i).ballData.position), 0.5f, "t=" + pred.relativeTimeAt(i));
+            simBall.stepCollideGround(RLConstants.tickFrequency);
+        }
+    }
+
+    @Test
+    public void settlesOnGround() {
+        var pred = simulate(new Vector3(500, 500, 300), new Vector3(), 8);
+        var last = pred.lastFrame().ballData;
+        Assertions.assertEquals(BallData.COLLISION_RADIUS, last.position.z, 2);
+        Assertions.assertTrue(last.velocity.magnitude() < 20, last.velocity.toString());
+    }
+
+    @Test
+    public void sideWallBounce() {
+        var pred = simulate(new Vector3(3000, 0, 500), new Vector3(2000, 0, 0), 2);
+        assertInsideArena(pred);
+        Assertions.assertTrue(pred.lastFrame().ballData.velocity.x < -500);
+        Assertions.assertTrue(pred.lastFrame().ballData.position.x < 4000);
+    }
+
+    @Test
+    public void cornerBounce() {
+        var pred = simulate(new Vector3(2500, 3500, 500), new Vector3(1500, 1500, 0), 2);
+        assertInsideArena(pred);
+        var last = pred.lastFrame().ballData;
+        // Bounced straight back off the 45° wall
+        Assertions.assertTrue(last.velocity.x < -300 && last.velocity.y < -300, last.velocity.toString());
+    }
+
+    @Test
+    public void ceilingBounce() {
+        var pred = simulate(new Vector3(0, 0, 1500), new Vector3(0, 0, 2000), 1.5f);
+        assertInsideArena(pred);
+        float maxZ = 0;
+        for (int i = 0; i < pred.size(); i++)
+            maxZ = Math.max(maxZ, pred.positionZAt(i));
+        Assertions.assertTrue(maxZ < RLConstants.arenaHeight - BallData.COLLISION_RADIUS + 20);
+        Assertions.assertTrue(maxZ > RLConstants.arenaHeight - BallData.COLLISION_RADIUS - 20);
+    }
+
+    @Test
+    public void goal() {
+        // Into the goal, stopped by the back of the net
+        var pred = simulate(new Vector3(0, 4000, 200), new Vector3(0, 2500, 0), 3);
+        assertInsideArena(pred);
+        Assertions.assertTrue(entersGoal(pred));
+        for (int i = 0; i < pred.size(); i++)
+            Assertions.assertTrue(pred.positionYAt(i) < SoccarArena.GOAL_BACK_Y - BallData.COLLISION_RADIUS + 5);
+
+        // Same shot next to the post hits the back wall
+        pred = simulate(new Vector3(1500, 4000, 200), new Vector3(0, 2500, 0), 3);
+        assertInsideArena(pred);
+        Assertions.assertFalse(entersGoal(pred));
+        Assertions.assertTrue(pred.lastFrame().ballData.velocity.y < 0);
+
+        // Over the crossbar
+        pred = simulate(new Vector3(0, 4000, 900), new Vector3(0, 2500, 0), 3);
+        assertInsideArena(pred);
+        Assertions.assertFalse(entersGoal(pred));
+    }
+}
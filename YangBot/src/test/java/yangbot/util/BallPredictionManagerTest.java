@@ -0,0 +1,66 @@
+package yangbot.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.BallData;
+import yangbot.input.BallSimulator;
+import yangbot.input.ImmutableBallData;
+import yangbot.input.RLConstants;
+import yangbot.util.math.vector.Vector3;
+
+public class BallPredictionManagerTest {
+
+    @Test
+    public void reusesWhileBallFollowsPrediction() {
+        var manager = new BallPredictionManager(RLConstants.tickRate, 4);
+        var truth = new BallSimulator(new BallData(new Vector3(-1000, 2000, 800), new Vector3(1500, 1800, 400), new Vector3(1, 0, 2)));
+        truth.elapsedSeconds = 20;
+
+        YangBallPrediction pred = null;
+        for (int tick = 0; tick < 240; tick++) {
+            pred = manager.update(new ImmutableBallData(truth.toBallData()));
+            truth.step(RLConstants.tickFrequency);
+        }
+
+        Assertions.assertEquals(1, manager.getResimulationCount(), manager.toString());
+        Assertions.assertEquals(239, manager.getReuseCount());
+        Assertions.assertTrue(manager.getSimulatedFrames() < 2 * 480);
+
+        // Same frames as simulating from scratch, with relative time starting at the current tick
+        var truthBefore = new BallSimulator();
+        truthBefore.set(pred.firstFrame().ballData.position, pred.firstFrame().ballData.velocity, pred.firstFrame().ballData.angularVelocity, pred.firstFrame().absoluteTime);
+        var fresh = truthBefore.simulate(RLConstants.tickRate, 4);
+        Assertions.assertEquals(fresh.size(), pred.size());
+        Assertions.assertEquals(0, pred.relativeTimeAt(0));
+        for (int i = 0; i < pred.size(); i++) {
+            Assertions.assertEquals(fresh.relativeTimeAt(i), pred.relativeTimeAt(i), 1e-4f);
+            Assertions.assertEquals(fresh.absoluteTimeAt(i), pred.absoluteTimeAt(i), 1e-3f);
+            Assertions.assertEquals(0, fresh.frameAt(i).ballData.position.distance(pred.frameAt(i).ballData.position), 1f, "i=" + i);
+        }
+        Assertions.assertEquals(pred.relativeTimeAt(100), pred.relativeTimeAt(pred.indexAtRelativeTime(pred.relativeTimeAt(100))));
+    }
+
+    @Test
+    public void resimulatesOnDivergence() {
+        var manager = new BallPredictionManager(RLConstants.tickRate, 3);
+        var truth = new BallSimulator(new BallData(new Vector3(0, 0, 93.15f), new Vector3(500, 0, 0), new Vector3()));
+
+        for (int tick = 0; tick < 10; tick++) {
+            manager.update(new ImmutableBallData(truth.toBallData()));
+            truth.step(RLConstants.tickFrequency);
+        }
+        Assertions.assertEquals(1, manager.getResimulationCount());
+
+        // Something hit the ball
+        truth.vy += 1000;
+        var pred = manager.update(new ImmutableBallData(truth.toBallData()));
+        Assertions.assertEquals(2, manager.getResimulationCount());
+        Assertions.assertEquals(truth.vy, pred.firstFrame().ballData.velocity.y, 1e-3f);
+
+        // Game time jumped (pause, replay, state setting)
+        truth.elapsedSeconds += 1;
+        manager.update(new ImmutableBallData(truth.toBallData()));
+        Assertions.assertEquals(3, manager.getResimulationCount());
+        Assertions.assertEquals(9, manager.getReuseCount());
+    }
+}
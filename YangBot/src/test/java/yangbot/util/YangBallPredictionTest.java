@@ -0,0 +1,92 @@
+package yangbot.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.BallData;
+import yangbot.input.RLConstants;
+import yangbot.util.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class YangBallPredictionTest {
+
+    private static YangBallPrediction makePrediction() {
+        var ball = new BallData(new Vector3(0, 0, 500), new Vector3(800, 300, 200), new Vector3());
+        ball.elapsedSeconds = 10;
+        return ball.makeBallPrediction(RLConstants.tickFrequency, 3);
+    }
+
+    // Reference implementation: linear scan, like the old stream based lookups
+    private static int linearIndexAtRelative(YangBallPrediction pred, float t) {
+        for (int i = 0; i < pred.frames.size(); i++) {
+            if (pred.frames.get(i).relativeTime >= t)
+                return i;
+        }
+        return -1;
+    }
+
+    @Test
+    public void indexLookup() {
+        var pred = makePrediction();
+        Assertions.assertTrue(pred.size() > 300);
+
+        for (float t = 0.001f; t < pred.relativeTimeOfLastFrame(); t += 0.0137f) {
+            Assertions.assertEquals(linearIndexAtRelative(pred, t), pred.indexAtRelativeTime(t), "t=" + t);
+
+            int after = pred.indexAfterRelativeTime(t);
+            Assertions.assertTrue(pred.relativeTimeAt(after) > t);
+            Assertions.assertTrue(after == 0 || pred.relativeTimeAt(after - 1) <= t);
+
+            int abs = pred.indexAtAbsoluteTime(t + 10);
+            Assertions.assertTrue(pred.absoluteTimeAt(abs) >= t + 10);
+            Assertions.assertTrue(abs == 0 || pred.absoluteTimeAt(abs - 1) < t + 10);
+        }
+
+        Assertions.assertEquals(-1, pred.indexAtRelativeTime(pred.relativeTimeOfLastFrame() + 0.1f));
+        Assertions.assertEquals(-1, pred.indexAfterRelativeTime(pred.relativeTimeOfLastFrame()));
+        Assertions.assertTrue(pred.getFrameAtRelativeTime(10).isEmpty());
+        Assertions.assertSame(pred.firstFrame(), pred.getFrameAtRelativeTime(0).orElseThrow());
+    }
+
+    @Test
+    public void slices() {
+        var pred = makePrediction();
+
+        var between = pred.getFramesBetweenRelative(0.5f, 1.5f);
+        Assertions.assertFalse(between.isEmpty());
+        for (var f : between)
+            Assertions.assertTrue(f.relativeTime > 0.5f && f.relativeTime < 1.5f);
+        Assertions.assertTrue(pred.getFrameAtRelativeTime(0.5f).orElseThrow().relativeTime <= between.get(0).relativeTime);
+
+        var before = pred.getBeforeRelative(1f);
+        Assertions.assertTrue(before.relativeTimeOfLastFrame() < 1f);
+        Assertions.assertEquals(linearIndexAtRelative(pred, 1f), before.size());
+        // Frames are shared with the parent
+        Assertions.assertSame(pred.frameAt(5), before.frameAt(5));
+
+        var trimmed = pred.trim(1f, 2f);
+        Assertions.assertTrue(trimmed.firstFrame().relativeTime > 1f);
+        Assertions.assertTrue(trimmed.lastFrame().relativeTime < 2f);
+        Assertions.assertEquals(trimmed.firstFrame().relativeTime, trimmed.relativeTimeAt(trimmed.indexAtRelativeTime(trimmed.firstFrame().relativeTime)));
+        Assertions.assertTrue(pred.getBetweenRelative(2, 1).isEmpty());
+    }
+
+    @Test
+    public void nonUniformFrames() {
+        var pred = makePrediction();
+        var filtered = pred.filter(f -> f.ballData.position.z < 400 || f.relativeTime < 0.2f);
+        List<YangBallPrediction.YangPredictionFrame> reference = new ArrayList<>();
+        for (var f : pred.frames) {
+            if (f.ballData.position.z < 400 || f.relativeTime < 0.2f)
+                reference.add(f);
+        }
+        Assertions.assertEquals(reference.size(), filtered.size());
+
+        var fromList = YangBallPrediction.from(reference, pred.tickFrequency);
+        for (float t = 0.001f; t < filtered.relativeTimeOfLastFrame(); t += 0.011f) {
+            Assertions.assertEquals(linearIndexAtRelative(fromList, t), filtered.indexAtRelativeTime(t), "t=" + t);
+            Assertions.assertEquals(linearIndexAtRelative(fromList, t), fromList.indexAtRelativeTime(t), "t=" + t);
+        }
+    }
+}
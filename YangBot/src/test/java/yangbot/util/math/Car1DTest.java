@@ -0,0 +1,24 @@
+package yangbot.util.math;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.CarData;
+
+import java.util.Random;
+
+public class Car1DTest {
+
+    @Test
+    public void slowdownMatchesSteps() {
+        final Random random = new Random(3);
+        for (int q = 0; q < 20000; q++) {
+            final float speed = 101 + random.nextFloat() * (CarData.MAX_VELOCITY - 101);
+            final float maxSpeed = 101 + random.nextFloat() * (speed - 101);
+            final Car1D stepped = Car1D.stepDriveDistanceForSlowdown(speed, maxSpeed);
+            final Car1D closed = Car1D.simulateDriveDistanceForSlowdown(speed, maxSpeed);
+            Assertions.assertEquals(stepped.time, closed.time, 1e-4f, speed + " " + maxSpeed);
+            Assertions.assertEquals(stepped.distanceTraveled, closed.distanceTraveled, 0.05f, speed + " " + maxSpeed);
+            Assertions.assertEquals(stepped.speed, closed.speed, 0.05f, speed + " " + maxSpeed);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package yangbot.util.math.vector;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.*;
+import yangbot.strategy.manuever.AerialManeuver;
+import yangbot.strategy.manuever.DodgeManeuver;
+import yangbot.strategy.manuever.TurnManeuver;
+import yangbot.util.YangBallPrediction;
+import yangbot.util.math.MathUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+public class MutableMathTest {
+
+    private static Vector3 randomVector(Random random, float scale) {
+        return new Vector3((random.nextFloat() * 2 - 1) * scale, (random.nextFloat() * 2 - 1) * scale, (random.nextFloat() * 2 - 1) * scale);
+    }
+
+    private static Matrix3x3 randomRotation(Random random) {
+        return Matrix3x3.eulerToRotation(randomVector(random, 3));
+    }
+
+    private static void assertSame(Vector3 expected, MutableVector3 actual) {
+        Assertions.assertEquals(expected.x, actual.x, expected + " " + actual);
+        Assertions.assertEquals(expected.y, actual.y, expected + " " + actual);
+        Assertions.assertEquals(expected.z, actual.z, expected + " " + actual);
+    }
+
+    private static void assertSame(Vector3 expected, Vector3 actual) {
+        assertSame(expected, new MutableVector3(actual));
+    }
+
+    private static void assertSame(Matrix3x3 expected, Matrix3x3 actual) {
+        for (int i = 0; i < 9; i++)
+            Assertions.assertEquals(expected.data[i], actual.data[i], expected + " " + actual);
+    }
+
+    private static CarData randomAirborneCar(Random random) {
+        final CarData car = new CarData(randomVector(random, 1000).add(0, 0, 1100), randomVector(random, 1000), randomVector(random, 3), randomRotation(random));
+        car.hasWheelContact = false;
+        car.boost = 50;
+        return car;
+    }
+
+    private static ControlsOutput randomControls(Random random) {
+        return new ControlsOutput()
+                .withPitch(random.nextFloat() * 2 - 1)
+                .withYaw(random.nextFloat() * 2 - 1)
+                .withRoll(random.nextFloat() * 2 - 1)
+                .withThrottle(random.nextFloat() * 2 - 1)
+                .withBoost(random.nextBoolean());
+    }
+
+    // How CarData.step used to simulate a car in the air, without dodges
+    private static void referenceAerialStep(CarData car, ControlsOutput in, float dt) {
+        final float J = 10.5f;
+        final Vector3 T = new Vector3(-400.f, -130.f, 95.f);
+        final Vector3 H = new Vector3(-50.f, -30.f * (1.f - Math.abs(in.getPitch())), -20.f * (1.0f - Math.abs(in.getYaw())));
+
+        Vector3 rpy = new Vector3(in.getRoll(), in.getPitch(), in.getYaw());
+        if (in.holdBoost() && car.boost > 0) {
+            car.velocity = car.velocity.add(car.forward().mul(AerialManeuver.boost_airthrottle_acceleration * dt));
+            car.boost -= CarData.BOOST_CONSUMPTION * dt;
+        } else {
+            car.velocity = car.velocity.add(car.forward().mul(in.getThrottle() * AerialManeuver.throttle_acceleration * dt));
+        }
+
+        Vector3 w_local = car.angularVelocity.dot(car.orientation);
+        car.angularVelocity = car.angularVelocity.add(car.orientation.dot(T.mul(rpy).add(H.mul(w_local))).mul(dt / J));
+        car.velocity = car.velocity.add(RLConstants.gravity.mul(dt));
+        car.position = car.position.add(car.velocity.mul(dt));
+        car.orientation = Matrix3x3.axisToRotation(car.angularVelocity.mul(dt)).matrixMul(car.orientation);
+
+        car.velocity = car.velocity.div(Math.max(1.0f, car.velocity.magnitude() / CarData.MAX_VELOCITY));
+        car.angularVelocity = car.angularVelocity.div(Math.max(1.0f, car.angularVelocity.magnitude() / CarData.MAX_ANGULAR_VELOCITY));
+        car.elapsedSeconds += dt;
+        car.hitbox.setOrientation(car.orientation);
+    }
+
+    // How CarData.step used to simulate a car in the air, including jump acceleration and dodges.
+    // dodgeTorque holds the car's (private) dodge torque between steps
+    private static void referenceAirStep(CarData car, Vector3[] dodgeTorque, ControlsOutput in, float dt) {
+        if (in.holdJump() && !car.lastControllerInputs.holdJump() && car.jumpTimer < DodgeManeuver.timeout && !car.doubleJumped) {
+            if (Math.abs(in.getPitch()) + Math.abs(in.getRoll()) + Math.abs(in.getYaw()) >= DodgeManeuver.input_threshold) {
+                float vf = car.velocity.dot(car.forward());
+                float scalar = Math.abs(vf) / CarData.MAX_VELOCITY;
+
+                Vector2 dodgeDir = new Vector2(-in.getPitch(), in.getYaw()).normalized();
+                dodgeTorque[0] = car.orientation.dot(new Vector3(new Vector2(dodgeDir.x * 224.0f, dodgeDir.y * 260.0f).cross()));
+
+                if (Math.abs(dodgeDir.x) < 0.1f) dodgeDir = new Vector2(0.0f, dodgeDir.y);
+                if (Math.abs(dodgeDir.y) < 0.1f) dodgeDir = new Vector2(dodgeDir.x, 0.0f);
+
+                boolean backward_dodge;
+                if (Math.abs(vf) < 100.0f)
+                    backward_dodge = dodgeDir.x < 0.0f;
+                else
+                    backward_dodge = (dodgeDir.x >= 0.0f) != (vf > 0.0f);
+
+                Vector2 dv = dodgeDir.mul(500.0f);
+                if (backward_dodge)
+                    dv = dv.mul((16f / 15f) * (1f + 1.5f * scalar), 1);
+                dv = dv.mul(1, (1.0f + 0.9f * scalar));
+
+                car.velocity = car.velocity.add(GameData.current().getGravity().mul(dt)).add(new Vector3(car.getDodgeOrientation().dot(dv)));
+                car.dodgeTimer = 0.0f;
+            } else {
+                dodgeTorque[0] = new Vector3(0, 0, 0);
+                car.velocity = car.velocity.add(GameData.current().getGravity().mul(dt)).add(car.up().mul(DodgeManeuver.speed));
+                car.dodgeTimer = 1.01f * DodgeManeuver.torque_time;
+            }
+            car.position = car.position.add(car.velocity.mul(dt));
+            car.angularVelocity = car.angularVelocity.add(dodgeTorque[0].mul(dt));
+            car.orientation = Matrix3x3.axisToRotation(car.angularVelocity.mul(dt)).matrixMul(car.orientation);
+            car.doubleJumped = true;
+        } else {
+            final float J = 10.5f;
+            final Vector3 T = new Vector3(-400.f, -130.f, 95.f);
+            final Vector3 H = new Vector3(-50.f, -30.f * (1.f - Math.abs(in.getPitch())), -20.f * (1.0f - Math.abs(in.getYaw())));
+
+            Vector3 rpy = new Vector3(in.getRoll(), in.getPitch(), in.getYaw());
+            if (in.holdBoost() && car.boost > 0) {
+                car.velocity = car.velocity.add(car.forward().mul(AerialManeuver.boost_airthrottle_acceleration * dt));
+                car.boost -= CarData.BOOST_CONSUMPTION * dt;
+            } else {
+                car.velocity = car.velocity.add(car.forward().mul(in.getThrottle() * AerialManeuver.throttle_acceleration * dt));
+            }
+
+            if (in.holdJump() && car.enableJumpAcceleration) {
+                if (car.jumpTimer < DodgeManeuver.min_duration)
+                    car.velocity = car.velocity.add(car.up().mul(0.75f * DodgeManeuver.acceleration).sub(car.forward().mul(510.0f)).mul(dt));
+                else
+                    car.velocity = car.velocity.add(car.up().mul(DodgeManeuver.acceleration * dt));
+            }
+
+            if (car.dodgeTimer >= DodgeManeuver.z_damping_start && (car.velocity.z < 0.0f || car.dodgeTimer < DodgeManeuver.z_damping_end))
+                car.velocity = car.velocity.add(new Vector3(0.0f, 0.0f, -car.velocity.z * DodgeManeuver.z_damping));
+
+            if (0.0f <= car.dodgeTimer && car.dodgeTimer <= 0.3f)
+                rpy = rpy.withY(0);
+
+            if (0.0f <= car.dodgeTimer && car.dodgeTimer <= DodgeManeuver.torque_time) {
+                car.angularVelocity = car.angularVelocity.add(dodgeTorque[0].mul(dt));
+            } else {
+                Vector3 w_local = car.angularVelocity.dot(car.orientation);
+                car.angularVelocity = car.angularVelocity.add(car.orientation.dot(T.mul(rpy).add(H.mul(w_local))).mul(dt / J));
+            }
+            car.velocity = car.velocity.add(RLConstants.gravity.mul(dt));
+            car.position = car.position.add(car.velocity.mul(dt));
+            car.orientation = Matrix3x3.axisToRotation(car.angularVelocity.mul(dt)).matrixMul(car.orientation);
+        }
+
+        car.velocity = car.velocity.div(Math.max(1.0f, car.velocity.magnitude() / CarData.MAX_VELOCITY));
+        car.angularVelocity = car.angularVelocity.div(Math.max(1.0f, car.angularVelocity.magnitude() / CarData.MAX_ANGULAR_VELOCITY));
+        car.elapsedSeconds += dt;
+
+        if (car.dodgeTimer >= 0.0f) {
+            if (car.dodgeTimer >= DodgeManeuver.torque_time)
+                car.dodgeTimer = -1.0f;
+            else
+                car.dodgeTimer += dt;
+        }
+        if (car.jumpTimer >= 0.0f)
+            car.jumpTimer += dt;
+        if (!in.holdJump() || car.jumpTimer > DodgeManeuver.max_duration)
+            car.enableJumpAcceleration = false;
+
+        car.hitbox.setOrientation(car.orientation);
+        car.lastControllerInputs = in;
+    }
+
+    // How BallData.step used to work
+    private static void referenceBallStep(BallData ball, float dt) {
+        ball.velocity = ball.velocity.add(ball.velocity.mul(BallData.DRAG).add(RLConstants.gravity).mul(dt));
+        ball.position = ball.position.add(ball.velocity.mul(dt));
+        ball.angularVelocity = ball.angularVelocity.mul(Math.min(1, BallData.MAX_ANGULAR / ball.angularVelocity.magnitude()));
+        ball.velocity = ball.velocity.mul(Math.min(1, BallData.MAX_VELOCITY / ball.velocity.magnitude()));
+        ball.elapsedSeconds += dt;
+    }
+
+    // How YangCarHitbox.getClosestPointOnHitbox used to work
+    private static Vector3 referenceClosestPoint(CarData car, Vector3 point) {
+        final Matrix3x3 orientation = car.orientation;
+        final Vector3 center = orientation.dot(car.hitbox.hitboxOffset).add(car.position);
+        final Vector3 halfLengths = car.hitbox.hitboxLengths.mul(0.5f);
+
+        Vector3 vLocal = point.sub(center).dot(orientation);
+        vLocal = vLocal.clip(0, -halfLengths.x, halfLengths.x);
+        vLocal = vLocal.clip(1, -halfLengths.y, halfLengths.y);
+        vLocal = vLocal.clip(2, -halfLengths.z, halfLengths.z);
+        return orientation.dot(vLocal).add(center);
+    }
+
+    @Test
+    public void vectorOpsMatchImmutable() {
+        final Random random = new Random(1);
+        final MutableVector3 m = new MutableVector3();
+        for (int q = 0; q < 10000; q++) {
+            final Vector3 a = randomVector(random, 1000), b = randomVector(random, 10);
+            final float s = random.nextFloat() * 4 - 2;
+            final Matrix3x3 r = randomRotation(random);
+
+            assertSame(a.add(b), m.set(a).add(b));
+            assertSame(a.sub(b), m.set(a).sub(b));
+            assertSame(a.mul(s), m.set(a).mul(s));
+            assertSame(a.mul(b), m.set(a).mul(b));
+            assertSame(a.add(b.mul(s)), m.set(a).addScaled(b, s));
+            assertSame(a.div(s), m.set(a).div(s));
+            assertSame(a.normalized(), m.set(a).normalize());
+            assertSame(a.crossProduct(b), m.setCross(a, new MutableVector3(b)));
+            assertSame(r.dot(a), m.setDot(r, a.x, a.y, a.z));
+            assertSame(a.dot(r), m.setDotTransposed(a.x, a.y, a.z, r));
+            Assertions.assertEquals(a.dot(b), m.set(a).dot(b));
+            Assertions.assertEquals(a.magnitude(), m.set(a).magnitude());
+            Assertions.assertEquals(a.distance(b), m.set(a).distance(b));
+            assertSame(a, m.set(a).toVector3());
+        }
+    }
+
+    @Test
+    public void matrixOpsMatchImmutable() {
+        final Random random = new Random(2);
+        final MutableMatrix3x3 m = new MutableMatrix3x3(), scratch = new MutableMatrix3x3();
+        for (int q = 0; q < 10000; q++) {
+            final Matrix3x3 a = randomRotation(random), b = randomRotation(random).elementwiseMul(random.nextFloat() * 3 + 0.5f);
+            final Vector3 w = randomVector(random, 0.1f);
+
+            assertSame(a.matrixMul(b), m.setMatrixMul(a, b).toMatrix3x3());
+            assertSame(Matrix3x3.axisToRotation(w), m.setAxisToRotation(w.x, w.y, w.z).toMatrix3x3());
+            assertSame(Matrix3x3.axisToRotation(w).matrixMul(a), m.set(a).rotate(w.x, w.y, w.z, scratch).toMatrix3x3());
+            assertSame(b.invert(), m.set(b).setInverse(m).toMatrix3x3());
+            assertSame(a.forward(), m.set(a).forward(new MutableVector3()));
+            assertSame(a.up(), m.set(a).up(new MutableVector3()));
+        }
+    }
+
+    @Test
+    public void carStepMatchesImmutable() {
+        final Random random = new Random(3);
+        for (int q = 0; q < 100; q++) {
+            final CarData car = randomAirborneCar(random);
+            car.useQuaternionOrientation = false; // The reference multiplies rotation matrices
+            final CarData reference = new CarData(car);
+            reference.boost = car.boost;
+            for (int i = 0; i < 120; i++) {
+                final ControlsOutput controls = randomControls(random);
+                car.step(controls, RLConstants.simulationTickFrequency);
+                referenceAerialStep(reference, controls, RLConstants.simulationTickFrequency);
+            }
+            assertSame(reference.position, car.position);
+            assertSame(reference.velocity, car.velocity);
+            assertSame(reference.angularVelocity, car.angularVelocity);
+            assertSame(reference.orientation, car.orientation);
+            assertSame(reference.hitbox.getPermF(), car.hitbox.getPermF());
+            Assertions.assertEquals(reference.boost, car.boost);
+        }
+    }
+
+    @Test
+    public void carDodgeMatchesImmutable() {
+        final Random random = new Random(7);
+        for (int q = 0; q < 100; q++) {
+            final CarData car = randomAirborneCar(random);
+            car.useQuaternionOrientation = false; // The reference multiplies rotation matrices
+            // Just jumped: jump acceleration while jump is held, then a dodge or double jump 0.1s later
+            car.jumpTimer = 0;
+            car.enableJumpAcceleration = true;
+            final CarData reference = car.fork();
+            reference.boost = car.boost;
+            final Vector3[] referenceTorque = {null};
+            final boolean doubleJump = q % 3 == 0;
+            final GameData gameData = gameDataWith(car);
+            for (int i = 0; i < 120; i++) {
+                final ControlsOutput controls = randomControls(random).withJump(i < 3 || i == 12);
+                if (i == 12 && doubleJump)
+                    controls.withPitch(0).withYaw(0).withRoll(0);
+                GameData.runWith(gameData, () -> {
+                    car.step(controls, RLConstants.simulationTickFrequency);
+                    referenceAirStep(reference, referenceTorque, controls, RLConstants.simulationTickFrequency);
+                    return null;
+                });
+            }
+            Assertions.assertTrue(car.doubleJumped);
+            assertSame(reference.position, car.position);
+            assertSame(reference.velocity, car.velocity);
+            assertSame(reference.angularVelocity, car.angularVelocity);
+            assertSame(reference.orientation, car.orientation);
+            Assertions.assertEquals(reference.boost, car.boost);
+            Assertions.assertEquals(reference.dodgeTimer, car.dodgeTimer);
+            Assertions.assertEquals(reference.jumpTimer, car.jumpTimer);
+        }
+    }
+
+    @Test
+    public void ballAndHitboxMatchImmutable() {
+        final Random random = new Random(4);
+        for (int q = 0; q < 1000; q++) {
+            final BallData ball = new BallData(randomVector(random, 2000).add(0, 0, 2100), randomVector(random, 3000), randomVector(random, 8));
+            final BallData reference = new BallData(ball);
+            for (int i = 0; i < 10; i++) {
+                ball.step(RLConstants.simulationTickFrequency);
+                referenceBallStep(reference, RLConstants.simulationTickFrequency);
+            }
+            assertSame(reference.position, ball.position);
+            assertSame(reference.velocity, ball.velocity);
+            assertSame(reference.angularVelocity, ball.angularVelocity);
+
+            final CarData car = randomAirborneCar(random);
+            final Vector3 point = car.position.add(randomVector(random, 150));
+            assertSame(referenceClosestPoint(car, point), car.hitbox.getClosestPointOnHitbox(car.position, point));
+        }
+    }
+
+    @Test
+    public void turnManeuverConverges() {
+        final Random random = new Random(5);
+        final CarData car = randomAirborneCar(random);
+        final GameData gameData = gameDataWith(car);
+        for (int q = 0; q < 20; q++) {
+            final Matrix3x3 target = randomRotation(random);
+            final TurnManeuver turn = new TurnManeuver();
+            turn.target = target;
+            final CarData result = GameData.runWith(gameData, () -> turn.simulate(car));
+            // Matrix3x3.angle is NaN when the orientations match to float precision
+            Assertions.assertTrue(result.orientation.forward().dot(target.forward()) > 0.98f, result.orientation + " " + target);
+            Assertions.assertTrue(result.orientation.up().dot(target.up()) > 0.98f, result.orientation + " " + target);
+        }
+    }
+
+    private static GameData gameDataWith(CarData car) {
+        final GameData gameData = new GameData(0L);
+        final BallData ball = new BallData(new Vector3(0, 0, BallData.COLLISION_RADIUS), new Vector3(), new Vector3());
+        gameData.update(car, new ImmutableBallData(ball), List.of(car), RLConstants.gravity.z, RLConstants.tickFrequency, null, YangBallPrediction.empty());
+        return gameData;
+    }
+
+    @Test
+    public void stepBenchmark() {
+        final Random random = new Random(6);
+        final int n = 200, steps = 120;
+        final CarData[] cars = new CarData[n];
+        final ControlsOutput[] controls = new ControlsOutput[steps];
+        for (int i = 0; i < n; i++)
+            cars[i] = randomAirborneCar(random);
+        for (int i = 0; i < steps; i++)
+            controls[i] = randomControls(random);
+
+        final var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long[] nanos = new long[2], bytes = new long[2];
+        float tmp = 0;
+        for (int rep = 0; rep < 4; rep++) { // JIT
+            for (int mode = 0; mode < 2; mode++) {
+                final long allocated = threadBean.getCurrentThreadAllocatedBytes();
+                final long ns = System.nanoTime();
+                for (var start : cars) {
+                    final CarData car = new CarData(start);
+                    for (var in : controls) {
+                        if (mode == 0)
+                            referenceAerialStep(car, in, RLConstants.simulationTickFrequency);
+                        else
+                            car.step(in, RLConstants.simulationTickFrequency);
+                    }
+                    tmp += car.position.z;
+                }
+                nanos[mode] = System.nanoTime() - ns;
+                bytes[mode] = threadBean.getCurrentThreadAllocatedBytes() - allocated;
+            }
+        }
+
+        final GameData gameData = gameDataWith(cars[0]);
+        final TurnManeuver turn = new TurnManeuver();
+        turn.target = randomRotation(random);
+        long turnNanos = 0, turnBytes = 0;
+        for (int rep = 0; rep < 4; rep++) {
+            final long allocated = threadBean.getCurrentThreadAllocatedBytes();
+            final long ns = System.nanoTime();
+            for (int i = 0; i < 50; i++)
+                tmp += GameData.runWith(gameData, () -> turn.simulate(cars[0])).elapsedSeconds;
+            turnNanos = (System.nanoTime() - ns) / 50;
+            turnBytes = (threadBean.getCurrentThreadAllocatedBytes() - allocated) / 50;
+        }
+
+        final int total = n * steps;
+        System.out.println("CarData aerial step: immutable " + (nanos[0] / total) + "ns " + (bytes[0] / total) + " bytes, mutable " + (nanos[1] / total) + "ns " + (bytes[1] / total) + " bytes per step; "
+                + "TurnManeuver.simulate " + (turnNanos / 1000) + "us " + (turnBytes / 1024) + "KB " + tmp);
+        Assertions.assertTrue(bytes[1] * 2 < bytes[0], bytes[1] + " " + bytes[0]);
+    }
+}
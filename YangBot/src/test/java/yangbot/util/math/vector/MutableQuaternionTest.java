@@ -0,0 +1,175 @@
+package yangbot.util.math.vector;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.input.*;
+import yangbot.strategy.manuever.AerialManeuver;
+import yangbot.util.YangBallPrediction;
+
+import java.util.List;
+import java.util.Random;
+
+public class MutableQuaternionTest {
+
+    private static Vector3 randomVector(Random random, float scale) {
+        return new Vector3((random.nextFloat() * 2 - 1) * scale, (random.nextFloat() * 2 - 1) * scale, (random.nextFloat() * 2 - 1) * scale);
+    }
+
+    private static void assertSameRotation(Matrix3x3 expected, Matrix3x3 actual, float tolerance) {
+        for (int row = 0; row < 3; row++)
+            for (int col = 0; col < 3; col++)
+                Assertions.assertEquals(expected.get(row, col), actual.get(row, col), tolerance, expected + " " + actual);
+    }
+
+    private static CarData randomAirborneCar(Random random) {
+        final CarData car = new CarData(randomVector(random, 1000).add(0, 0, 1100), randomVector(random, 1000), randomVector(random, 5), Matrix3x3.eulerToRotation(randomVector(random, 3)));
+        car.hasWheelContact = false;
+        car.boost = 100;
+        return car;
+    }
+
+    @Test
+    public void matrixRoundTrip() {
+        final Random random = new Random(1);
+        final MutableQuaternion q = new MutableQuaternion();
+        for (int i = 0; i < 10000; i++) {
+            final Matrix3x3 m = Matrix3x3.eulerToRotation(randomVector(random, 4));
+            assertSameRotation(m, q.set(m).toMatrix3x3(), 1e-6f);
+        }
+        // All branches of the conversion
+        for (var axis : List.of(new Vector3(1, 0, 0), new Vector3(0, 1, 0), new Vector3(0, 0, 1))) {
+            final Matrix3x3 m = Matrix3x3.axisToRotation(axis.mul(Math.PI));
+            assertSameRotation(m, q.set(m).toMatrix3x3(), 1e-6f);
+        }
+    }
+
+    @Test
+    public void integrateMatchesAxisToRotation() {
+        final Random random = new Random(2);
+        final MutableQuaternion q = new MutableQuaternion();
+        for (int i = 0; i < 10000; i++) {
+            final Matrix3x3 m = Matrix3x3.eulerToRotation(randomVector(random, 4));
+            final Vector3 w = randomVector(random, CarData.MAX_ANGULAR_VELOCITY);
+            final float dt = i % 2 == 0 ? RLConstants.simulationTickFrequency : random.nextFloat(); // Also large angles
+            final Matrix3x3 expected = Matrix3x3.axisToRotation(w.mul(dt)).matrixMul(m);
+            assertSameRotation(expected, q.set(m).integrate(w.x, w.y, w.z, dt).toMatrix3x3(), 2e-6f);
+        }
+    }
+
+    @Test
+    public void aerialRolloutsWithinTolerance() {
+        final Random random = new Random(3);
+        float maxPositionError = 0, maxAngleError = 0;
+        for (int q = 0; q < 100; q++) {
+            final CarData start = randomAirborneCar(random);
+            final CarData matrixCar = new CarData(start), quaternionCar = new CarData(start);
+            matrixCar.boost = quaternionCar.boost = start.boost;
+            quaternionCar.useQuaternionOrientation = true;
+            for (int i = 0; i < 300; i++) { // 2.5s
+                final ControlsOutput controls = new ControlsOutput()
+                        .withPitch(random.nextFloat() * 2 - 1)
+                        .withYaw(random.nextFloat() * 2 - 1)
+                        .withRoll(random.nextFloat() * 2 - 1)
+                        .withBoost(random.nextBoolean());
+                matrixCar.step(controls, RLConstants.simulationTickFrequency);
+                quaternionCar.step(controls, RLConstants.simulationTickFrequency);
+            }
+            maxPositionError = Math.max(maxPositionError, (float) matrixCar.position.distance(quaternionCar.position));
+            maxAngleError = Math.max(maxAngleError, (float) Math.acos(Math.min(1, matrixCar.forward().dot(quaternionCar.forward()))));
+            maxAngleError = Math.max(maxAngleError, (float) Math.acos(Math.min(1, matrixCar.up().dot(quaternionCar.up()))));
+        }
+        System.out.println("Quaternion vs matrix orientation after 2.5s: max position error " + maxPositionError + "uu, max angle error " + maxAngleError + "rad");
+        Assertions.assertTrue(maxPositionError < 0.5f, "" + maxPositionError);
+        // Random controls for 2.5s are chaotic, the per step difference is around 1e-6
+        Assertions.assertTrue(maxAngleError < 5e-3f, "" + maxAngleError);
+    }
+
+    @Test
+    public void forkContinuesExactly() {
+        final Random random = new Random(4);
+        final CarData car = randomAirborneCar(random);
+        final ControlsOutput controls = new ControlsOutput().withPitch(0.3f).withYaw(-1).withRoll(0.6f);
+        for (int i = 0; i < 10; i++)
+            car.step(controls, RLConstants.simulationTickFrequency);
+        final CarData fork = car.fork();
+        for (int i = 0; i < 100; i++) {
+            car.step(controls, RLConstants.simulationTickFrequency);
+            fork.step(controls, RLConstants.simulationTickFrequency);
+        }
+        assertSameRotation(car.orientation, fork.orientation, 0);
+        Assertions.assertEquals(0, car.position.distance(fork.position));
+    }
+
+    @Test
+    public void rotationBenchmark() {
+        final Random random = new Random(6);
+        final float[] w = new float[3 * 1024];
+        for (int i = 0; i < w.length; i++)
+            w[i] = (random.nextFloat() * 2 - 1) * CarData.MAX_ANGULAR_VELOCITY;
+        final Matrix3x3 start = Matrix3x3.eulerToRotation(new Vector3(0.1f, 0.2f, 0.3f));
+        final MutableMatrix3x3 matrix = new MutableMatrix3x3(start), scratch = new MutableMatrix3x3(), out = new MutableMatrix3x3();
+        final MutableQuaternion quaternion = new MutableQuaternion(start);
+        final float dt = RLConstants.simulationTickFrequency;
+        final int n = 200000;
+
+        final long[] nanos = {Long.MAX_VALUE, Long.MAX_VALUE}; // Best of the repetitions, after the JIT is done
+        float tmp = 0;
+        for (int rep = 0; rep < 5; rep++) {
+            long ns = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                final int j = 3 * (i & 1023);
+                matrix.rotate(w[j] * dt, w[j + 1] * dt, w[j + 2] * dt, scratch);
+                tmp += matrix.get(0, 0);
+            }
+            nanos[0] = Math.min(nanos[0], System.nanoTime() - ns);
+            ns = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                final int j = 3 * (i & 1023);
+                quaternion.integrate(w[j], w[j + 1], w[j + 2], dt);
+                tmp += quaternion.toMatrix(out).get(0, 0);
+            }
+            nanos[1] = Math.min(nanos[1], System.nanoTime() - ns);
+        }
+        System.out.println("Orientation update: axisToRotation * matrix " + (nanos[0] / (float) n) + "ns, quaternion integrate + toMatrix " + (nanos[1] / (float) n) + "ns " + tmp);
+    }
+
+    @Test
+    public void aerialSimulateBenchmark() {
+        final Random random = new Random(5);
+        final int n = 20;
+        final CarData[] cars = new CarData[n];
+        final AerialManeuver[] aerials = new AerialManeuver[n];
+        for (int i = 0; i < n; i++) {
+            cars[i] = randomAirborneCar(random);
+            cars[i].velocity = new Vector3(0, 0, 300);
+            aerials[i] = new AerialManeuver();
+            aerials[i].target = cars[i].position.add(randomVector(random, 1000)).add(0, 0, 500);
+            aerials[i].arrivalTime = 2.5f;
+        }
+        final GameData gameData = new GameData(0L);
+        final BallData ball = new BallData(new Vector3(0, 0, BallData.COLLISION_RADIUS), new Vector3(), new Vector3());
+        gameData.update(cars[0], new ImmutableBallData(ball), List.of(cars[0]), RLConstants.gravity.z, RLConstants.tickFrequency, null, YangBallPrediction.empty());
+
+        final long[] nanos = {Long.MAX_VALUE, Long.MAX_VALUE}; // Best of the repetitions, after the JIT is done
+        final CarData[][] results = new CarData[2][n];
+        for (int rep = 0; rep < 10; rep++) {
+            for (int mode = 0; mode < 2; mode++) {
+                for (var car : cars)
+                    car.useQuaternionOrientation = mode == 1;
+                final long ns = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    final int index = i;
+                    final int m = mode;
+                    GameData.runWith(gameData, () -> results[m][index] = aerials[index].simulate(cars[index]));
+                }
+                nanos[mode] = Math.min(nanos[mode], System.nanoTime() - ns);
+            }
+        }
+
+        float maxPositionError = 0;
+        for (int i = 0; i < n; i++)
+            maxPositionError = Math.max(maxPositionError, (float) results[0][i].position.distance(results[1][i].position));
+        System.out.println("AerialManeuver.simulate: matrix " + (nanos[0] / n / 1000) + "us, quaternion " + (nanos[1] / n / 1000) + "us per rollout, max position difference " + maxPositionError + "uu");
+        Assertions.assertTrue(maxPositionError < 2f, "" + maxPositionError);
+    }
+}
@@ -0,0 +1,164 @@
+package yangbot.util.profiling;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import yangbot.strategy.DefaultStrategy;
+import yangbot.strategy.RecoverStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TickProfilerTest {
+
+    @Test
+    public void bucketsAreContinuous() {
+        for (int i = 0; i < 800; i++) {
+            final long upper = LatencyHistogram.bucketUpperBound(i);
+            Assertions.assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            Assertions.assertEquals(i + 1, LatencyHistogram.bucketIndex(upper + 1));
+        }
+    }
+
+    @Test
+    public void percentilesWithinBucketError() {
+        final Random random = new Random(1);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int n = 100000;
+        final long[] values = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Log-uniform between 1us and 100ms
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 5);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        Assertions.assertEquals(n, histogram.getTotalCount());
+        Assertions.assertEquals(values[n - 1], histogram.getMaxValue());
+        for (double q : new double[]{0.1, 0.5, 0.9, 0.99, 0.999}) {
+            final long expected = values[(int) Math.ceil(q * n) - 1];
+            final long actual = histogram.valueAtQuantile(q);
+            Assertions.assertTrue(actual >= expected, q + ": " + actual + " < " + expected);
+            // Buckets are 1024ns wide up to 64us, relative after that
+            Assertions.assertEquals(expected, actual, Math.max(expected * 0.035, 1024), "" + q);
+        }
+        Assertions.assertEquals(values[n - 1], histogram.valueAtQuantile(1));
+
+        histogram.reset();
+        Assertions.assertEquals(0, histogram.getTotalCount());
+        Assertions.assertEquals(0, histogram.valueAtQuantile(0.5));
+    }
+
+    @Test
+    public void reportsAndResetsEveryInterval() {
+        final TickProfiler profiler = new TickProfiler("test");
+        TickProfiler.reportInterval = 10;
+        for (int i = 0; i < 25; i++) {
+            long start = profiler.start();
+            start = profiler.next(TickProfiler.Phase.GAME_DATA, start);
+            // Rendering happens in pieces, one value per tick
+            start = profiler.accumulate(TickProfiler.Phase.RENDER, start);
+            profiler.next(TickProfiler.Phase.STRATEGY, start);
+            profiler.accumulate(TickProfiler.Phase.RENDER, profiler.start());
+            profiler.endStrategyStep(DefaultStrategy.class, 1000);
+            if (i % 2 == 0)
+                profiler.endStrategyPlan(RecoverStrategy.class, 5_000_000);
+            profiler.endTick(start);
+        }
+        TickProfiler.reportInterval = 120 * 60;
+
+        Assertions.assertEquals(25, profiler.getTicks());
+        Assertions.assertEquals(5, profiler.getPhase(TickProfiler.Phase.TICK).getTotalCount());
+        Assertions.assertEquals(5, profiler.getPhase(TickProfiler.Phase.GAME_DATA).getTotalCount());
+        Assertions.assertEquals(5, profiler.getPhase(TickProfiler.Phase.RENDER).getTotalCount());
+        Assertions.assertEquals(0, profiler.getPhase(TickProfiler.Phase.OUTPUT).getTotalCount());
+        Assertions.assertEquals(1, profiler.getPhase(TickProfiler.Phase.REPORT).getTotalCount()); // Hand-off at tick 20
+        Assertions.assertEquals(5, profiler.getStrategyStep(DefaultStrategy.class).getTotalCount());
+        Assertions.assertEquals(3, profiler.getStrategyPlan(RecoverStrategy.class).getTotalCount()); // Ticks 20, 22 and 24
+        Assertions.assertEquals(5_000_000, profiler.getStrategyPlan(RecoverStrategy.class).getMaxValue());
+        Assertions.assertNull(profiler.getStrategyPlan(DefaultStrategy.class));
+
+        final String report = profiler.report();
+        Assertions.assertTrue(report.contains("5 ticks up to tick 25"), report);
+        Assertions.assertTrue(report.contains("RecoverStrategy plan"), report);
+        Assertions.assertTrue(report.contains("DefaultStrategy step"), report);
+    }
+
+    @Test
+    public void dumpAppendsToFile() throws IOException {
+        final File file = File.createTempFile("tickprofile", ".txt");
+        file.deleteOnExit();
+        final TickProfiler profiler = new TickProfiler("dump");
+        profiler.endTick(profiler.start());
+        profiler.dump(file.getAbsolutePath());
+        profiler.dump(file.getAbsolutePath());
+
+        final String content = Files.readString(file.toPath());
+        Assertions.assertEquals(0, content.indexOf("Tick profile dump"));
+        Assertions.assertTrue(content.lastIndexOf("Tick profile dump") > 0, content);
+    }
+
+    @Test
+    public void reportsAreWrittenInBackground() throws IOException, InterruptedException {
+        final File file = File.createTempFile("tickprofile", ".txt");
+        file.deleteOnExit();
+        final TickProfiler profiler = new TickProfiler("background");
+        TickProfiler.reportInterval = 5;
+        TickProfiler.dumpFile = file.getAbsolutePath();
+        try {
+            for (int i = 0; i < 10; i++)
+                profiler.endTick(profiler.start());
+        } finally {
+            TickProfiler.reportInterval = 120 * 60;
+            TickProfiler.dumpFile = null;
+        }
+        TickProfiler.awaitReports();
+
+        // Each report has the ticks of its own interval, even though the profiler was reset before it was written
+        final String content = Files.readString(file.toPath());
+        Assertions.assertTrue(content.contains("5 ticks up to tick 5"), content);
+        Assertions.assertTrue(content.contains("5 ticks up to tick 10"), content);
+        Assertions.assertTrue(content.indexOf("up to tick 5") < content.indexOf("up to tick 10"), content);
+        Assertions.assertEquals(0, profiler.getPhase(TickProfiler.Phase.TICK).getTotalCount());
+        Assertions.assertEquals(1, profiler.getPhase(TickProfiler.Phase.REPORT).getTotalCount()); // The hand-off at tick 10, the one at tick 5 went into the second report
+    }
+
+    @Test
+    public void tickDoesNotAllocate() {
+        final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final TickProfiler profiler = new TickProfiler("alloc");
+        profiler.endStrategyStep(DefaultStrategy.class, 1); // Histogram of a new strategy class
+        TickProfiler.reportInterval = 0;
+
+        final Runnable tick = () -> {
+            long start = profiler.start();
+            final long tickStart = start;
+            start = profiler.next(TickProfiler.Phase.BALL_PREDICTION, start);
+            start = profiler.accumulate(TickProfiler.Phase.RENDER, start);
+            profiler.next(TickProfiler.Phase.STRATEGY, start);
+            profiler.endStrategyStep(DefaultStrategy.class, 1000);
+            profiler.endTick(tickStart);
+        };
+        for (int i = 0; i < 20000; i++) // JIT
+            tick.run();
+
+        final long id = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(id);
+        final int n = 100000;
+        long nanos = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            tick.run();
+        nanos = System.nanoTime() - nanos;
+        final long bytes = threadBean.getThreadAllocatedBytes(id) - before;
+        TickProfiler.reportInterval = 120 * 60;
+
+        // 5 timestamps per tick. A 120hz tick has 8.3ms, the profiler should stay far below 1% of that
+        System.out.println("TickProfiler: " + (nanos / n) + "ns " + (bytes / n) + " bytes per instrumented tick");
+        // getThreadAllocatedBytes itself allocates a little
+        Assertions.assertTrue(bytes < 1024, "" + bytes);
+    }
+}